@@ -0,0 +1,272 @@
+package com.dws.challenge.binary;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.TransferRequest;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.ProtocolException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Frames of the binary transfer protocol, numbers are big-endian.
+ * <pre>
+ * request  [int length of the rest][byte type][long correlation id][body]
+ * response [int length of the rest][byte type][long correlation id][byte status][body]
+ * </pre>
+ * Body of a transfer request is [from id][to id][amount] and of a balance request [account id]. Ids are UTF-8
+ * with a short length, amounts are [byte scale][byte length][unscaled two's complement]. Successful transfer has no
+ * response body and balance has [account id][balance][held balance][long version]. Rejected transfer has [long
+ * retry after millis][message], other failures have [message]. Responses on a connection may come in any order,
+ * the correlation id chosen by the client matches them to requests.
+ */
+final class BinaryProtocol {
+
+    static final byte TRANSFER = 1;
+    static final byte BALANCE = 2;
+
+    static final byte OK = 0;
+    static final byte INVALID = 1;
+    static final byte REJECTED = 2;
+    static final byte NOT_FOUND = 3;
+    static final byte FAILED = 4;
+
+    static final int LENGTH_BYTES = Integer.BYTES;
+    // both requests and responses fit, given the limits of strings and amounts
+    static final int MAX_FRAME_BYTES = 1024;
+    // longer ids are rejected, longer messages are truncated
+    private static final int MAX_STRING_BYTES = 256;
+
+    private BinaryProtocol() {
+    }
+
+    static void writeTransfer(ByteBuffer buffer, long correlationId, TransferRequest transferRequest) {
+        int start = beginFrame(buffer, TRANSFER, correlationId);
+        writeString(buffer, transferRequest.getAccountFromId());
+        writeString(buffer, transferRequest.getAccountToId());
+        writeDecimal(buffer, transferRequest.getAmount());
+        endFrame(buffer, start);
+    }
+
+    static void writeBalanceQuery(ByteBuffer buffer, long correlationId, String accountId) {
+        int start = beginFrame(buffer, BALANCE, correlationId);
+        writeString(buffer, accountId);
+        endFrame(buffer, start);
+    }
+
+    static void writeResponse(ByteBuffer buffer, Response response) {
+        int start = beginFrame(buffer, response.type, response.correlationId);
+        buffer.put(response.status);
+        if (response.status == OK) {
+            if (response.account != null) {
+                writeString(buffer, response.account.getAccountId());
+                writeDecimal(buffer, response.account.getBalance());
+                writeDecimal(buffer, response.account.getHeldBalance());
+                buffer.putLong(response.account.getVersion());
+            }
+        } else {
+            if (response.status == REJECTED) {
+                buffer.putLong(response.retryAfterMillis);
+            }
+            writeMessage(buffer, response.message != null ? response.message : "");
+        }
+        endFrame(buffer, start);
+    }
+
+    /**
+     * @return length of the frame at the position of the buffer including its length prefix, or 0 if the buffer
+     * does not hold the whole frame yet
+     */
+    static int frameLength(ByteBuffer buffer) throws ProtocolException {
+        if (buffer.remaining() < LENGTH_BYTES) {
+            return 0;
+        }
+        int length = buffer.getInt(buffer.position());
+        if (length <= 0 || length > MAX_FRAME_BYTES - LENGTH_BYTES) {
+            throw new ProtocolException("Invalid frame length " + length);
+        }
+        return buffer.remaining() >= LENGTH_BYTES + length ? LENGTH_BYTES + length : 0;
+    }
+
+    /**
+     * Reads request of the given frame length at the position of the buffer.
+     */
+    static Request readRequest(ByteBuffer buffer, int frameLength) throws ProtocolException {
+        int limit = enterFrame(buffer, frameLength);
+        try {
+            byte type = buffer.get();
+            long correlationId = buffer.getLong();
+            Request request;
+            if (type == TRANSFER) {
+                request = new Request(correlationId, TransferRequest.builder()
+                        .accountFromId(readString(buffer))
+                        .accountToId(readString(buffer))
+                        .amount(readDecimal(buffer))
+                        .build(), null);
+            } else if (type == BALANCE) {
+                request = new Request(correlationId, null, readString(buffer));
+            } else {
+                throw new ProtocolException("Unknown request type " + type);
+            }
+            exitFrame(buffer);
+            return request;
+        } catch (BufferUnderflowException e) {
+            throw new ProtocolException("Truncated request");
+        } finally {
+            buffer.limit(limit);
+        }
+    }
+
+    /**
+     * Reads response of the given frame length at the position of the buffer.
+     */
+    static Response readResponse(ByteBuffer buffer, int frameLength) throws ProtocolException {
+        int limit = enterFrame(buffer, frameLength);
+        try {
+            byte type = buffer.get();
+            long correlationId = buffer.getLong();
+            byte status = buffer.get();
+            Response response;
+            if (status != OK) {
+                long retryAfterMillis = status == REJECTED ? buffer.getLong() : 0;
+                response = new Response(correlationId, type, status, null, retryAfterMillis, readString(buffer));
+            } else if (type == TRANSFER) {
+                response = Response.ok(correlationId, type, null);
+            } else if (type == BALANCE) {
+                response = Response.ok(correlationId, type, new Account(readString(buffer), readDecimal(buffer),
+                        readDecimal(buffer), buffer.getLong()));
+            } else {
+                throw new ProtocolException("Unknown response type " + type);
+            }
+            exitFrame(buffer);
+            return response;
+        } catch (BufferUnderflowException e) {
+            throw new ProtocolException("Truncated response");
+        } finally {
+            buffer.limit(limit);
+        }
+    }
+
+    /**
+     * Limits the buffer to the frame and skips its length prefix.
+     *
+     * @return limit of the buffer to restore
+     */
+    private static int enterFrame(ByteBuffer buffer, int frameLength) {
+        int limit = buffer.limit();
+        buffer.limit(buffer.position() + frameLength);
+        buffer.position(buffer.position() + LENGTH_BYTES);
+        return limit;
+    }
+
+    private static void exitFrame(ByteBuffer buffer) throws ProtocolException {
+        if (buffer.hasRemaining()) {
+            throw new ProtocolException("Frame has " + buffer.remaining() + " unexpected bytes");
+        }
+    }
+
+    private static int beginFrame(ByteBuffer buffer, byte type, long correlationId) {
+        int start = buffer.position();
+        buffer.position(start + LENGTH_BYTES);
+        buffer.put(type);
+        buffer.putLong(correlationId);
+        return start;
+    }
+
+    private static void endFrame(ByteBuffer buffer, int start) {
+        int length = buffer.position() - start - LENGTH_BYTES;
+        if (length > MAX_FRAME_BYTES - LENGTH_BYTES) {
+            buffer.position(start);
+            throw new IllegalArgumentException("Frame of " + length + " bytes exceeds " + MAX_FRAME_BYTES);
+        }
+        buffer.putInt(start, length);
+    }
+
+    private static void writeString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException("String of " + bytes.length + " bytes exceeds " + MAX_STRING_BYTES);
+        }
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static void writeMessage(ByteBuffer buffer, String message) {
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, MAX_STRING_BYTES);
+        buffer.putShort((short) length);
+        buffer.put(bytes, 0, length);
+    }
+
+    private static String readString(ByteBuffer buffer) throws ProtocolException {
+        int length = buffer.getShort() & 0xffff;
+        if (length > MAX_STRING_BYTES) {
+            throw new ProtocolException("String of " + length + " bytes exceeds " + MAX_STRING_BYTES);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeDecimal(ByteBuffer buffer, BigDecimal value) {
+        byte[] unscaled = value.unscaledValue().toByteArray();
+        if (value.scale() != (byte) value.scale() || unscaled.length > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Amount " + value + " can not be encoded");
+        }
+        buffer.put((byte) value.scale());
+        buffer.put((byte) unscaled.length);
+        buffer.put(unscaled);
+    }
+
+    private static BigDecimal readDecimal(ByteBuffer buffer) {
+        int scale = buffer.get();
+        byte[] unscaled = new byte[buffer.get()];
+        buffer.get(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+
+    /**
+     * Transfer request or id of the account whose balance is requested.
+     */
+    static final class Request {
+        final long correlationId;
+        final TransferRequest transfer;
+        final String accountId;
+
+        Request(long correlationId, TransferRequest transfer, String accountId) {
+            this.correlationId = correlationId;
+            this.transfer = transfer;
+            this.accountId = accountId;
+        }
+    }
+
+    static final class Response {
+        final long correlationId;
+        final byte type;
+        final byte status;
+        // balance response only
+        final Account account;
+        final long retryAfterMillis;
+        final String message;
+
+        Response(long correlationId, byte type, byte status, Account account, long retryAfterMillis,
+                 String message) {
+            this.correlationId = correlationId;
+            this.type = type;
+            this.status = status;
+            this.account = account;
+            this.retryAfterMillis = retryAfterMillis;
+            this.message = message;
+        }
+
+        static Response ok(long correlationId, byte type, Account account) {
+            return new Response(correlationId, type, OK, account, 0, null);
+        }
+
+        static Response failed(long correlationId, byte type, byte status, String message) {
+            return new Response(correlationId, type, status, null, 0, message);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.dws.challenge.binary;
+
+import com.dws.challenge.domain.TransferRequest;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares transfers over the REST endpoint with transfers over {@link BinaryProtocol}, against a running application
+ * with the binary listener enabled. Both runs make the same transfers of a unit between random pairs of fresh
+ * accounts with the same number of requests in flight: concurrent HTTP connections for REST and pipelined requests
+ * on a single connection for the binary protocol. Each run is preceded by a tenth of it as a warm-up.
+ * <p>
+ * Usage: {@code BinaryTransfersBenchmark host restPort binaryPort [transfers [inFlight [accounts]]]}
+ */
+public final class BinaryTransfersBenchmark {
+
+    private final String host;
+    private final int restPort;
+    private final int binaryPort;
+    private final int inFlight;
+    private final HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    private BinaryTransfersBenchmark(String host, int restPort, int binaryPort, int inFlight) {
+        this.host = host;
+        this.restPort = restPort;
+        this.binaryPort = binaryPort;
+        this.inFlight = inFlight;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println(
+                    "Usage: BinaryTransfersBenchmark host restPort binaryPort [transfers [inFlight [accounts]]]");
+            System.exit(1);
+        }
+        int transfers = args.length > 3 ? Integer.parseInt(args[3]) : 100_000;
+        int inFlight = args.length > 4 ? Integer.parseInt(args[4]) : 64;
+        int accounts = args.length > 5 ? Integer.parseInt(args[5]) : 1000;
+        BinaryTransfersBenchmark benchmark = new BinaryTransfersBenchmark(args[0], Integer.parseInt(args[1]),
+                Integer.parseInt(args[2]), inFlight);
+
+        List<String> accountIds = benchmark.createAccounts(accounts);
+        List<TransferRequest> warmUp = randomTransfers(accountIds, transfers / 10, 1);
+        List<TransferRequest> measured = randomTransfers(accountIds, transfers, 2);
+
+        benchmark.transferOverRest(warmUp);
+        System.out.println("REST   " + benchmark.transferOverRest(measured));
+        benchmark.transferOverBinary(warmUp);
+        System.out.println("binary " + benchmark.transferOverBinary(measured));
+    }
+
+    private List<String> createAccounts(int accounts) throws IOException, InterruptedException {
+        // ids of every run are fresh, so runs against the same application do not collide
+        String prefix = "benchmark-" + Long.toString(System.currentTimeMillis(), 36) + "-";
+        List<String> accountIds = new ArrayList<>(accounts);
+        for (int i = 0; i < accounts; i++) {
+            String accountId = prefix + i;
+            HttpResponse<Void> response = httpClient.send(
+                    post("/v1/accounts", "{\"accountId\":\"" + accountId + "\",\"balance\":1000000000}"),
+                    HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() != 201) {
+                throw new IOException("Failed to create account " + accountId + ": " + response.statusCode());
+            }
+            accountIds.add(accountId);
+        }
+        return accountIds;
+    }
+
+    private Result transferOverRest(List<TransferRequest> transfers) throws Exception {
+        long[] latencies = new long[transfers.size()];
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        ExecutorService executorService = Executors.newFixedThreadPool(inFlight);
+
+        long startNanos = System.nanoTime();
+        List<Future<?>> senders = new ArrayList<>();
+        for (int i = 0; i < inFlight; i++) {
+            senders.add(executorService.submit(() -> {
+                int transfer;
+                while ((transfer = next.getAndIncrement()) < transfers.size()) {
+                    TransferRequest request = transfers.get(transfer);
+                    long sentNanos = System.nanoTime();
+                    HttpResponse<Void> response = httpClient.send(post("/v1/transfers",
+                            "{\"accountFromId\":\"" + request.getAccountFromId()
+                                    + "\",\"accountToId\":\"" + request.getAccountToId()
+                                    + "\",\"amount\":" + request.getAmount() + "}"),
+                            HttpResponse.BodyHandlers.discarding());
+                    latencies[transfer] = System.nanoTime() - sentNanos;
+                    if (response.statusCode() != 200) {
+                        failed.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> sender : senders) {
+            sender.get();
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        executorService.shutdown();
+        return new Result(latencies, failed.get(), elapsedNanos);
+    }
+
+    private Result transferOverBinary(List<TransferRequest> transfers) throws Exception {
+        long[] latencies = new long[transfers.size()];
+        AtomicInteger failed = new AtomicInteger();
+        Semaphore window = new Semaphore(inFlight);
+
+        try (BinaryTransfersClient client = new BinaryTransfersClient(host, binaryPort)) {
+            long startNanos = System.nanoTime();
+            for (int i = 0; i < transfers.size(); i++) {
+                window.acquire();
+                int transfer = i;
+                long sentNanos = System.nanoTime();
+                client.transfer(transfers.get(i)).whenComplete((ignored, e) -> {
+                    latencies[transfer] = System.nanoTime() - sentNanos;
+                    if (e != null) {
+                        failed.incrementAndGet();
+                    }
+                    window.release();
+                });
+            }
+            window.acquire(inFlight);
+            return new Result(latencies, failed.get(), System.nanoTime() - startNanos);
+        }
+    }
+
+    private HttpRequest post(String path, String body) {
+        return HttpRequest.newBuilder(URI.create("http://" + host + ":" + restPort + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static List<TransferRequest> randomTransfers(List<String> accountIds, int transfers, long seed) {
+        Random random = new Random(seed);
+        List<TransferRequest> requests = new ArrayList<>(transfers);
+        for (int i = 0; i < transfers; i++) {
+            int from = random.nextInt(accountIds.size());
+            int to = (from + 1 + random.nextInt(accountIds.size() - 1)) % accountIds.size();
+            requests.add(TransferRequest.builder()
+                    .accountFromId(accountIds.get(from))
+                    .accountToId(accountIds.get(to))
+                    .amount(BigDecimal.ONE)
+                    .build());
+        }
+        return requests;
+    }
+
+    private static final class Result {
+        private final long[] latencies;
+        private final int failed;
+        private final long elapsedNanos;
+
+        Result(long[] latencies, int failed, long elapsedNanos) {
+            this.latencies = latencies.clone();
+            Arrays.sort(this.latencies);
+            this.failed = failed;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        private double percentileMicros(double percentile) {
+            if (latencies.length == 0) {
+                return 0;
+            }
+            int index = Math.min(latencies.length - 1, (int) Math.ceil(percentile * latencies.length) - 1);
+            return latencies[Math.max(index, 0)] / 1e3;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d transfers (%d failed) in %d ms, %.0f transfers/s, "
+                            + "latency us p50=%.1f p99=%.1f p99.9=%.1f max=%.1f",
+                    latencies.length, failed, elapsedNanos / 1_000_000,
+                    latencies.length * 1e9 / Math.max(elapsedNanos, 1),
+                    percentileMicros(0.5), percentileMicros(0.99), percentileMicros(0.999),
+                    percentileMicros(1.0));
+        }
+    }
+}
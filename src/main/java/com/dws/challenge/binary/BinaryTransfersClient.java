@@ -0,0 +1,165 @@
+package com.dws.challenge.binary;
+
+import com.dws.challenge.binary.BinaryProtocol.Response;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.TransferRequest;
+import com.dws.challenge.exception.InvalidTransferException;
+import com.dws.challenge.exception.TransferRejectedException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client of {@link BinaryTransfersServer}. Requests are written by the calling thread as they are submitted, without
+ * waiting for responses of previous ones, and responses are read by a thread of the client which completes their
+ * futures in the order they arrive. Safe for use by multiple threads.
+ */
+@Slf4j
+public class BinaryTransfersClient implements Closeable {
+
+    private static final int BUFFER_BYTES = 64 << 10;
+
+    private final SocketChannel channel;
+    // holds a single frame, guarded by itself
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(BinaryProtocol.MAX_FRAME_BYTES);
+    private final Map<Long, CompletableFuture<Response>> pending = new ConcurrentHashMap<>();
+    private final AtomicLong correlationIds = new AtomicLong();
+    private final Thread reader;
+    private volatile IOException failure;
+
+    public BinaryTransfersClient(String host, int port) throws IOException {
+        channel = SocketChannel.open(new InetSocketAddress(host, port));
+        channel.socket().setTcpNoDelay(true);
+        reader = new Thread(this::read, "binary-transfers-client");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * @return future completed once the transfer is executed, or failed with {@link InvalidTransferException},
+     * {@link TransferRejectedException} or {@link IOException} if the connection failed
+     */
+    public CompletableFuture<Void> transfer(TransferRequest transferRequest) {
+        long correlationId = correlationIds.incrementAndGet();
+        CompletableFuture<Void> transferred = new CompletableFuture<>();
+        send(correlationId, buffer -> BinaryProtocol.writeTransfer(buffer, correlationId, transferRequest))
+                .whenComplete((response, e) -> {
+                    if (e != null) {
+                        transferred.completeExceptionally(e);
+                    } else if (response.status == BinaryProtocol.OK) {
+                        transferred.complete(null);
+                    } else {
+                        transferred.completeExceptionally(failure(response));
+                    }
+                });
+        return transferred;
+    }
+
+    /**
+     * @return future of the account or of null if there is no such account
+     */
+    public CompletableFuture<Account> getAccount(String accountId) {
+        long correlationId = correlationIds.incrementAndGet();
+        CompletableFuture<Account> account = new CompletableFuture<>();
+        send(correlationId, buffer -> BinaryProtocol.writeBalanceQuery(buffer, correlationId, accountId))
+                .whenComplete((response, e) -> {
+                    if (e != null) {
+                        account.completeExceptionally(e);
+                    } else if (response.status == BinaryProtocol.OK || response.status == BinaryProtocol.NOT_FOUND) {
+                        account.complete(response.account);
+                    } else {
+                        account.completeExceptionally(failure(response));
+                    }
+                });
+        return account;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+        try {
+            reader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private CompletableFuture<Response> send(long correlationId, FrameWriter frameWriter) {
+        CompletableFuture<Response> response = new CompletableFuture<>();
+        pending.put(correlationId, response);
+        try {
+            synchronized (writeBuffer) {
+                if (failure != null) {
+                    throw failure;
+                }
+                frameWriter.write(writeBuffer);
+                writeBuffer.flip();
+                while (writeBuffer.hasRemaining()) {
+                    channel.write(writeBuffer);
+                }
+                writeBuffer.clear();
+            }
+        } catch (IOException | RuntimeException e) {
+            pending.remove(correlationId);
+            response.completeExceptionally(e);
+        }
+        return response;
+    }
+
+    private static Exception failure(Response response) {
+        if (response.status == BinaryProtocol.REJECTED) {
+            return new TransferRejectedException(response.message, Duration.ofMillis(response.retryAfterMillis));
+        }
+        if (response.status == BinaryProtocol.INVALID) {
+            return new InvalidTransferException(response.message);
+        }
+        return new IOException(response.message);
+    }
+
+    private void read() {
+        ByteBuffer readBuffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        try {
+            while (true) {
+                if (channel.read(readBuffer) < 0) {
+                    throw new EOFException("Server closed the connection");
+                }
+                readBuffer.flip();
+                int frameLength;
+                while ((frameLength = BinaryProtocol.frameLength(readBuffer)) > 0) {
+                    Response response = BinaryProtocol.readResponse(readBuffer, frameLength);
+                    CompletableFuture<Response> future = pending.remove(response.correlationId);
+                    if (future != null) {
+                        future.complete(response);
+                    }
+                }
+                readBuffer.compact();
+            }
+        } catch (IOException e) {
+            log.debug("Binary transfers connection failed: {}", e.getMessage());
+            failure = e;
+        } finally {
+            if (failure == null) {
+                failure = new EOFException("Connection failed");
+            }
+            // requests registered from now on see the failure before they are sent
+            for (CompletableFuture<Response> future : pending.values()) {
+                future.completeExceptionally(failure);
+            }
+            pending.clear();
+        }
+    }
+
+    private interface FrameWriter {
+        void write(ByteBuffer buffer);
+    }
+}
@@ -0,0 +1,355 @@
+package com.dws.challenge.binary;
+
+import com.dws.challenge.binary.BinaryProtocol.Request;
+import com.dws.challenge.binary.BinaryProtocol.Response;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.TransferOutcome;
+import com.dws.challenge.domain.TransferRequest;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.TransfersService;
+import com.dws.challenge.traffic.TrafficRecorder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Serves transfers and balance queries of {@link BinaryProtocol} next to the REST endpoints, for clients which can't
+ * afford HTTP and JSON per transfer. A single selector thread reads and writes all connections through direct
+ * buffers reused across connections, while requests run on workers, as transfers block on account locks. Clients
+ * may pipeline requests; a connection with too many requests in flight is not read until responses are written.
+ */
+@Component
+@ConditionalOnProperty(name = "transfers.binary.enabled", havingValue = "true")
+@Slf4j
+public class BinaryTransfersServer {
+
+    private static final int BUFFER_BYTES = 64 << 10;
+    private static final int MAX_POOLED_BUFFERS = 64;
+
+    private final TransfersService transfersService;
+    private final AccountsService accountsService;
+    private final TrafficRecorder trafficRecorder;
+    private final InetSocketAddress address;
+    private final int maxInFlight;
+    private final ExecutorService workers;
+
+    // buffers of closed connections, used by the selector thread only
+    private final Deque<ByteBuffer> buffers = new ArrayDeque<>();
+    // connections with responses to write, queued by workers
+    private final Queue<Connection> responded = new ConcurrentLinkedQueue<>();
+    private volatile boolean running;
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread selectorThread;
+
+    @Autowired
+    public BinaryTransfersServer(TransfersService transfersService, AccountsService accountsService,
+                                 TrafficRecorder trafficRecorder,
+                                 @Value("${transfers.binary.bind-address:127.0.0.1}") String bindAddress,
+                                 @Value("${transfers.binary.port:18100}") int port,
+                                 @Value("${transfers.binary.worker-threads:16}") int workerThreads,
+                                 @Value("${transfers.binary.max-in-flight:1024}") int maxInFlight)
+            throws IOException {
+        this.transfersService = transfersService;
+        this.accountsService = accountsService;
+        this.trafficRecorder = trafficRecorder;
+        this.address = new InetSocketAddress(InetAddress.getByName(bindAddress), port);
+        this.maxInFlight = maxInFlight;
+        this.workers = Executors.newFixedThreadPool(workerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "binary-transfers");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(address);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        log.info("Accepting binary transfers on {}", serverChannel.getLocalAddress());
+
+        running = true;
+        selectorThread = new Thread(this::select, "binary-transfers-selector");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (selectorThread != null) {
+            running = false;
+            selector.wakeup();
+            selectorThread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        workers.shutdownNow();
+    }
+
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+    }
+
+    private void select() {
+        try {
+            while (running) {
+                selector.select();
+
+                Connection connection;
+                while ((connection = responded.poll()) != null) {
+                    if (connection.key.isValid()) {
+                        handle(connection, false, true);
+                    }
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        handle((Connection) key.attachment(), key.isReadable(), key.isWritable());
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Binary transfers selector failed", e);
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Connection) {
+                    close((Connection) key.attachment());
+                }
+            }
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException e) {
+                log.warn("Failed to close binary transfers listener", e);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Connection connection = new Connection(channel, takeBuffer(), takeBuffer());
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        log.debug("Accepted binary transfers connection {}", channel.getRemoteAddress());
+    }
+
+    private void handle(Connection connection, boolean readable, boolean writable) {
+        try {
+            if (readable && connection.read() < 0) {
+                close(connection);
+                return;
+            }
+            if (writable) {
+                connection.write();
+            }
+            // requests buffered while the connection was over its in-flight limit are dispatched as it drops
+            connection.dispatch();
+            connection.updateInterest();
+        } catch (IOException e) {
+            log.debug("Closing binary transfers connection: {}", e.getMessage());
+            close(connection);
+        }
+    }
+
+    private void close(Connection connection) {
+        if (!connection.key.isValid()) {
+            return;
+        }
+        connection.key.cancel();
+        try {
+            connection.channel.close();
+        } catch (IOException e) {
+            log.debug("Failed to close binary transfers connection", e);
+        }
+        // responses of requests in flight are dropped with the connection
+        releaseBuffer(connection.readBuffer);
+        releaseBuffer(connection.writeBuffer);
+    }
+
+    private ByteBuffer takeBuffer() {
+        ByteBuffer buffer = buffers.poll();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(BUFFER_BYTES);
+    }
+
+    private void releaseBuffer(ByteBuffer buffer) {
+        if (buffers.size() < MAX_POOLED_BUFFERS) {
+            buffer.clear();
+            buffers.push(buffer);
+        }
+    }
+
+    private Response execute(Request request) {
+        try {
+            return request.transfer != null ? transfer(request) : balance(request);
+        } catch (RuntimeException e) {
+            log.error("Binary request {} failed", request.correlationId, e);
+            return Response.failed(request.correlationId,
+                    request.transfer != null ? BinaryProtocol.TRANSFER : BinaryProtocol.BALANCE,
+                    BinaryProtocol.FAILED, "Request failed");
+        }
+    }
+
+    private Response balance(Request request) {
+        Account account = accountsService.getAccount(request.accountId);
+        if (account == null) {
+            return Response.failed(request.correlationId, BinaryProtocol.BALANCE, BinaryProtocol.NOT_FOUND,
+                    "Account " + request.accountId + " does not exist");
+        }
+        return Response.ok(request.correlationId, BinaryProtocol.BALANCE, account);
+    }
+
+    private Response transfer(Request request) {
+        TransferRequest transferRequest = request.transfer;
+        String invalid = validate(transferRequest);
+        if (invalid != null) {
+            return Response.failed(request.correlationId, BinaryProtocol.TRANSFER, BinaryProtocol.INVALID, invalid);
+        }
+        trafficRecorder.recordTransfer(transferRequest);
+        TransferOutcome outcome = transfersService.tryTransfer(transferRequest);
+        if (outcome.isCompleted()) {
+            return Response.ok(request.correlationId, BinaryProtocol.TRANSFER, null);
+        }
+        if (outcome.getReason() == TransferOutcome.Reason.REJECTED) {
+            return new Response(request.correlationId, BinaryProtocol.TRANSFER, BinaryProtocol.REJECTED, null,
+                    outcome.getRetryAfter().toMillis(), outcome.getMessage());
+        }
+        return Response.failed(request.correlationId, BinaryProtocol.TRANSFER, BinaryProtocol.INVALID,
+                outcome.getMessage());
+    }
+
+    /**
+     * Same constraints as validation of the REST transfer request.
+     *
+     * @return violated constraint or null if the request is valid
+     */
+    private static String validate(TransferRequest transferRequest) {
+        if (transferRequest.getAccountFromId().isEmpty() || transferRequest.getAccountToId().isEmpty()) {
+            return "Account ids must not be empty";
+        }
+        if (transferRequest.getAmount().signum() <= 0) {
+            return "Transferred amount must be positive.";
+        }
+        return null;
+    }
+
+    /**
+     * Connection state is used by the selector thread only, except for the queue of responses.
+     */
+    private final class Connection {
+        private final SocketChannel channel;
+        // both kept ready for filling
+        private final ByteBuffer readBuffer;
+        private final ByteBuffer writeBuffer;
+        private final Queue<Response> responses = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean queued = new AtomicBoolean();
+        private SelectionKey key;
+        private int inFlight;
+
+        Connection(SocketChannel channel, ByteBuffer readBuffer, ByteBuffer writeBuffer) {
+            this.channel = channel;
+            this.readBuffer = readBuffer;
+            this.writeBuffer = writeBuffer;
+        }
+
+        int read() throws IOException {
+            return channel.read(readBuffer);
+        }
+
+        /**
+         * Hands complete requests to workers, up to the in-flight limit.
+         */
+        void dispatch() throws IOException {
+            readBuffer.flip();
+            try {
+                int frameLength;
+                while (inFlight < maxInFlight && (frameLength = BinaryProtocol.frameLength(readBuffer)) > 0) {
+                    Request request = BinaryProtocol.readRequest(readBuffer, frameLength);
+                    inFlight++;
+                    workers.execute(() -> respond(execute(request)));
+                }
+            } finally {
+                readBuffer.compact();
+            }
+        }
+
+        /**
+         * Called by workers.
+         */
+        void respond(Response response) {
+            responses.add(response);
+            if (queued.compareAndSet(false, true)) {
+                responded.add(this);
+                selector.wakeup();
+            }
+        }
+
+        /**
+         * Encodes queued responses and writes as much as the socket takes.
+         */
+        void write() throws IOException {
+            // cleared first, so responses added from now on queue the connection again
+            queued.set(false);
+            while (true) {
+                Response response;
+                while (writeBuffer.remaining() >= BinaryProtocol.MAX_FRAME_BYTES
+                        && (response = responses.poll()) != null) {
+                    BinaryProtocol.writeResponse(writeBuffer, response);
+                    inFlight--;
+                }
+
+                writeBuffer.flip();
+                channel.write(writeBuffer);
+                boolean drained = !writeBuffer.hasRemaining();
+                writeBuffer.compact();
+                if (!drained || responses.isEmpty()) {
+                    return;
+                }
+            }
+        }
+
+        void updateInterest() {
+            int interest = inFlight < maxInFlight ? SelectionKey.OP_READ : 0;
+            // the socket did not take all of the responses
+            if (writeBuffer.position() > 0) {
+                interest |= SelectionKey.OP_WRITE;
+            }
+            key.interestOps(interest);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.dws.challenge.cluster;
+
+import com.dws.challenge.domain.ClusterMember;
+import com.dws.challenge.domain.CreditRequest;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Calls of other nodes over their REST endpoints. Every call fails with {@link IOException} if the node does not
+ * respond within the request timeout or responds with an unexpected status.
+ */
+@Component
+@ConditionalOnProperty(name = "cluster.enabled", havingValue = "true")
+public class ClusterClient {
+
+    /**
+     * Set on requests forwarded to the owner of their account, which executes them whichever node owns the account
+     * by its ring, so nodes disagreeing on an owner while one joins do not forward a request back and forth.
+     */
+    public static final String FORWARDED_HEADER = "X-Cluster-Forwarded";
+
+    private static final TypeReference<List<ClusterMember>> MEMBERS = new TypeReference<>() {
+    };
+
+    private final ObjectMapper objectMapper;
+    private final Duration requestTimeout;
+    private final HttpClient httpClient;
+
+    @Autowired
+    public ClusterClient(ObjectMapper objectMapper,
+                         @Value("${cluster.request-timeout-ms:2000}") long requestTimeoutMillis) {
+        this.objectMapper = objectMapper;
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMillis);
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(requestTimeout)
+                .build();
+    }
+
+    public Duration getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    /**
+     * @param pathAndQuery path of the request including its query string, if any
+     * @param body         body of the request, empty if it has none
+     */
+    public HttpResponse<byte[]> forward(String url, String method, String pathAndQuery, String contentType,
+                                        byte[] body) throws IOException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url + pathAndQuery))
+                .timeout(requestTimeout)
+                .header(FORWARDED_HEADER, "true")
+                .method(method, body.length > 0
+                        ? HttpRequest.BodyPublishers.ofByteArray(body)
+                        : HttpRequest.BodyPublishers.noBody());
+        if (contentType != null) {
+            request.header("Content-Type", contentType);
+        }
+        return send(request.build());
+    }
+
+    /**
+     * Announces the member to the node.
+     *
+     * @return members known to the node, including the announced one
+     */
+    public List<ClusterMember> join(String url, ClusterMember member) throws IOException {
+        HttpResponse<byte[]> response = send(post(url + "/v1/cluster/nodes", member));
+        expectStatus(url, response, 200);
+        return objectMapper.readValue(response.body(), MEMBERS);
+    }
+
+    /**
+     * @return false if the node does not have the account
+     */
+    public boolean prepareCredit(String url, String transactionId, CreditRequest credit) throws IOException {
+        HttpResponse<byte[]> response = send(post(url + "/v1/cluster/credits/" + transactionId + "/prepare", credit));
+        expectStatus(url, response, 200, 404);
+        return response.statusCode() == 200;
+    }
+
+    /**
+     * Credits the account once, however many times the credit of the transaction is committed.
+     *
+     * @return false if the node does not have the account
+     */
+    public boolean commitCredit(String url, String transactionId, CreditRequest credit) throws IOException {
+        HttpResponse<byte[]> response = send(post(url + "/v1/cluster/credits/" + transactionId + "/commit", credit));
+        expectStatus(url, response, 200, 404);
+        return response.statusCode() == 200;
+    }
+
+    public void abortCredit(String url, String transactionId) throws IOException {
+        HttpResponse<byte[]> response = send(HttpRequest.newBuilder(
+                        URI.create(url + "/v1/cluster/credits/" + transactionId))
+                .timeout(requestTimeout)
+                .DELETE()
+                .build());
+        expectStatus(url, response, 200);
+    }
+
+    private HttpRequest post(String uri, Object body) throws IOException {
+        return HttpRequest.newBuilder(URI.create(uri))
+                .timeout(requestTimeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                .build();
+    }
+
+    private HttpResponse<byte[]> send(HttpRequest request) throws IOException {
+        try {
+            return httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while calling " + request.uri());
+        }
+    }
+
+    private static void expectStatus(String url, HttpResponse<byte[]> response, int... statuses) throws IOException {
+        for (int status : statuses) {
+            if (response.statusCode() == status) {
+                return;
+            }
+        }
+        throw new IOException("Node " + url + " responded with status " + response.statusCode());
+    }
+}
@@ -0,0 +1,140 @@
+package com.dws.challenge.cluster;
+
+import com.dws.challenge.domain.ClusterMember;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.web.context.WebServerInitializedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Nodes of the cluster and the ring assigning accounts to them. A node joins by announcing itself to the seed nodes
+ * and then to every node they know of; each node adds a node announced to it to its ring, and accounts the new node
+ * owns from then on are moved to it by {@link ClusterRebalancer}. Nodes never leave the ring.
+ */
+@Component
+@ConditionalOnProperty(name = "cluster.enabled", havingValue = "true")
+@Slf4j
+public class ClusterMembership {
+
+    private final String nodeId;
+    private final List<String> seeds;
+    private final ClusterClient clusterClient;
+    // urls by node id, the ring has a node once its url is known; guarded by this
+    private final Map<String, String> urls = new TreeMap<>();
+    private volatile HashRing ring;
+
+    @Autowired
+    public ClusterMembership(ClusterClient clusterClient,
+                             @Value("${cluster.node-id:node-1}") String nodeId,
+                             @Value("${cluster.seeds:}") String seeds,
+                             @Value("${cluster.advertised-url:}") String advertisedUrl,
+                             @Value("${cluster.virtual-nodes:128}") int virtualNodes) {
+        this.clusterClient = clusterClient;
+        this.nodeId = nodeId;
+        this.seeds = Arrays.stream(seeds.split(","))
+                .map(String::trim)
+                .filter(seed -> !seed.isEmpty())
+                .collect(Collectors.toList());
+        this.ring = new HashRing(Collections.singleton(nodeId), virtualNodes);
+        if (!advertisedUrl.isEmpty()) {
+            urls.put(nodeId, advertisedUrl);
+        }
+    }
+
+    /**
+     * Advertises the port of the web server unless the url is configured, which lets local nodes use any free port.
+     */
+    @EventListener(WebServerInitializedEvent.class)
+    public synchronized void webServerInitialized(WebServerInitializedEvent event) {
+        urls.putIfAbsent(nodeId, "http://127.0.0.1:" + event.getWebServer().getPort());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void join() {
+        Deque<String> pending = new ArrayDeque<>(seeds);
+        Set<String> announced = new HashSet<>();
+        announced.add(getUrl(nodeId));
+        while (!pending.isEmpty()) {
+            String url = pending.poll();
+            if (!announced.add(url)) {
+                continue;
+            }
+            try {
+                for (ClusterMember member : clusterClient.join(url, self())) {
+                    addMember(member);
+                    pending.add(member.getUrl());
+                }
+            } catch (IOException e) {
+                log.warn("Failed to announce node {} to {}: {}", nodeId, url, e.getMessage());
+            }
+        }
+        log.info("Node {} at {} is in cluster of {}", nodeId, getUrl(nodeId), ring.getNodeIds());
+    }
+
+    /**
+     * @return true if the member was not known
+     */
+    public synchronized boolean addMember(ClusterMember member) {
+        if (member.getNodeId().equals(nodeId)) {
+            // url of a previous process of this node
+            return false;
+        }
+        String previousUrl = urls.put(member.getNodeId(), member.getUrl());
+        if (member.getUrl().equals(previousUrl)) {
+            return false;
+        }
+        if (!ring.getNodeIds().contains(member.getNodeId())) {
+            ring = ring.withNode(member.getNodeId());
+            log.info("Node {} at {} joined, ring has nodes {}", member.getNodeId(), member.getUrl(),
+                    ring.getNodeIds());
+        }
+        return true;
+    }
+
+    public synchronized List<ClusterMember> getMembers() {
+        List<ClusterMember> members = new ArrayList<>(urls.size());
+        urls.forEach((id, url) -> members.add(ClusterMember.builder().nodeId(id).url(url).build()));
+        return members;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public HashRing getRing() {
+        return ring;
+    }
+
+    public String getOwner(String accountId) {
+        return ring.ownerOf(accountId);
+    }
+
+    public boolean isLocal(String accountId) {
+        return nodeId.equals(ring.ownerOf(accountId));
+    }
+
+    public synchronized String getUrl(String nodeId) {
+        return urls.get(nodeId);
+    }
+
+    private ClusterMember self() {
+        return ClusterMember.builder().nodeId(nodeId).url(getUrl(nodeId)).build();
+    }
+}
@@ -0,0 +1,106 @@
+package com.dws.challenge.cluster;
+
+import com.dws.challenge.repository.AccountsRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves accounts which other nodes own since they joined. Accounts are scanned once per change of the ring, and
+ * again while some of them could not be moved yet. Until an account is moved, requests routed to its new node do
+ * not find it. Accounts are moved by a thread of their own, as moves wait for the nodes they are credited on.
+ */
+@Component
+@ConditionalOnProperty(name = "cluster.enabled", havingValue = "true")
+@Slf4j
+public class ClusterRebalancer {
+
+    private final AccountsRepository accountsRepository;
+    private final ClusterMembership membership;
+    private final ClusterTransfers clusterTransfers;
+    private final long intervalMillis;
+    private ScheduledExecutorService executor;
+    // ring all accounts were moved for, guarded by this
+    private HashRing balancedRing;
+
+    @Autowired
+    public ClusterRebalancer(AccountsRepository accountsRepository, ClusterMembership membership,
+                             ClusterTransfers clusterTransfers,
+                             @Value("${cluster.rebalance-interval-ms:5000}") long intervalMillis) {
+        this.accountsRepository = accountsRepository;
+        this.membership = membership;
+        this.clusterTransfers = clusterTransfers;
+        this.intervalMillis = intervalMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cluster-rebalancer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                rebalance();
+            } catch (RuntimeException e) {
+                // the executor would not run the rebalance again
+                log.error("Rebalance failed, running it again", e);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (executor != null) {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * @return number of accounts of other nodes left on this node
+     */
+    public synchronized int rebalance() {
+        HashRing ring = membership.getRing();
+        if (ring == balancedRing) {
+            return 0;
+        }
+
+        // the balance index may miss an account changed meanwhile, the scan of the accounts does not
+        List<String> accountIds = new ArrayList<>();
+        accountsRepository.forEachAccount(account -> {
+            if (!membership.isLocal(account.getAccountId())) {
+                accountIds.add(account.getAccountId());
+            }
+        });
+
+        int moved = 0;
+        int left = 0;
+        for (String accountId : accountIds) {
+            if (clusterTransfers.moveAccount(accountId)) {
+                moved++;
+            } else {
+                left++;
+            }
+        }
+
+        if (moved > 0 || left > 0) {
+            log.info("Moved {} accounts to other nodes, {} accounts are left to move", moved, left);
+        }
+        if (left == 0) {
+            balancedRing = ring;
+        }
+        return left;
+    }
+}
@@ -0,0 +1,591 @@
+package com.dws.challenge.cluster;
+
+import com.dws.challenge.cluster.CoordinatorLog.Transaction;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.CreditRequest;
+import com.dws.challenge.domain.Hold;
+import com.dws.challenge.domain.TransferExecution;
+import com.dws.challenge.domain.TransferOutcome;
+import com.dws.challenge.domain.TransferRequest;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.exception.InvalidAccountChangeException;
+import com.dws.challenge.exception.NotExistingAccountException;
+import com.dws.challenge.exception.NotExistingHoldException;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.TransfersService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transfers between accounts of different nodes, coordinated by the node of the debit account in two phases:
+ * <ol>
+ * <li>the amount is held on the debit account, the transfer is begun in the {@link CoordinatorLog} and the node of
+ * the credit account prepares the credit by a hold of nothing, which keeps the account from being closed and is
+ * renewed until the credit is committed or aborted;</li>
+ * <li>the commit is forced to the log under the lock of the debit account once its hold is found there, then the
+ * hold is captured and the credit is committed by its node, once however many times it is sent, as the node
+ * remembers credits it applied in its {@link CreditLog}.</li>
+ * </ol>
+ * The hold outlives the prepare request, as its ttl must exceed twice the request timeout; a transfer whose hold
+ * expired or was released anyway is aborted rather than committed without funds. The hold of a committed transfer
+ * which failed to be captured, also as the node crashed, is captured later even once it has expired, as long as it
+ * was not released meanwhile, which recovery ensures by capturing it before the node takes requests.
+ * A transfer fails if the credit could not be prepared, and a committed one is reported completed even if its credit
+ * is not confirmed yet, such credits are sent again until they are. A credit refused as its account is gone anyway,
+ * as when accounts are cleared, is compensated by a logged credit of the amount back to the debit account. Transfers
+ * begun but not committed before a crash are aborted on startup, aborts are sent to the credit node until it
+ * confirms them. Credits, aborts and renewals of prepared credits are retried by threads of their own, so a node
+ * which does not respond delays none of the scheduled jobs of the application. Transfer checks run for cross-node
+ * transfers too, while notifications and transfer listeners do not.
+ */
+@Component
+@ConditionalOnProperty(name = "cluster.enabled", havingValue = "true")
+@Slf4j
+public class ClusterTransfers {
+
+    private static final Duration RETRY_AFTER = Duration.ofSeconds(1);
+    private static final int REMEMBERED_CREDITS = 100_000;
+
+    private final TransfersService transfersService;
+    private final AccountsService accountsService;
+    private final ClusterMembership membership;
+    private final ClusterClient clusterClient;
+    private final Path logPath;
+    private final Path creditLogPath;
+    private final boolean deleteLogs;
+    private final CoordinatorLog coordinatorLog;
+    private final CreditLog creditLog;
+    private final Duration holdTtl;
+    private final long retryIntervalMillis;
+
+    // ids are unique across processes of the node, as they start with the time the process started at
+    private final String transactionIdPrefix;
+    private final AtomicLong transactionIds = new AtomicLong();
+    // committed transactions whose hold is not captured yet
+    private final Map<String, Transaction> uncaptured = new ConcurrentHashMap<>();
+    // committed transactions whose credit is not confirmed yet
+    private final Map<String, Transaction> uncredited = new ConcurrentHashMap<>();
+    // aborted transactions whose abort is not confirmed by the credit node yet
+    private final Map<String, Transaction> unaborted = new ConcurrentHashMap<>();
+    // holds of credits prepared on this node by transaction id
+    private final Map<String, Hold> preparedCredits = new ConcurrentHashMap<>();
+    // ids of credits being committed on this node
+    private final Set<String> committingCredits = ConcurrentHashMap.newKeySet();
+
+    private ScheduledExecutorService retries;
+
+    @Autowired
+    public ClusterTransfers(TransfersService transfersService, AccountsService accountsService,
+                            ClusterMembership membership, ClusterClient clusterClient,
+                            @Value("${cluster.coordinator-log:}") String logPath,
+                            @Value("${cluster.credit-log:}") String creditLogPath,
+                            @Value("${cluster.hold-ttl-ms:60000}") long holdTtlMillis,
+                            @Value("${cluster.credit-retry-interval-ms:1000}") long retryIntervalMillis)
+            throws IOException {
+        this.transfersService = transfersService;
+        this.accountsService = accountsService;
+        this.membership = membership;
+        this.clusterClient = clusterClient;
+        this.deleteLogs = logPath.isEmpty();
+        this.logPath = logPath.isEmpty() ? Files.createTempFile("coordinator", ".log") : Paths.get(logPath);
+        this.creditLogPath = creditLogPath.isEmpty()
+                ? Files.createTempFile("credits", ".log")
+                : Paths.get(creditLogPath);
+        this.coordinatorLog = new CoordinatorLog(this.logPath);
+        this.creditLog = new CreditLog(this.creditLogPath, REMEMBERED_CREDITS);
+        this.holdTtl = Duration.ofMillis(holdTtlMillis);
+        this.retryIntervalMillis = retryIntervalMillis;
+        if (holdTtl.compareTo(clusterClient.getRequestTimeout().multipliedBy(2)) <= 0) {
+            throw new IllegalArgumentException("Hold ttl " + holdTtl + " must exceed twice the request timeout "
+                    + clusterClient.getRequestTimeout());
+        }
+        this.transactionIdPrefix = membership.getNodeId() + "-" + Long.toString(System.currentTimeMillis(), 36) + "-";
+    }
+
+    @PostConstruct
+    public void start() {
+        recover();
+
+        // one thread per task, so credits sent to a node which does not respond delay neither aborts nor renewals
+        retries = Executors.newScheduledThreadPool(3, runnable -> {
+            Thread thread = new Thread(runnable, "cluster-retries");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduleRetries(this::renewPreparedCredits);
+        scheduleRetries(this::sendCredits);
+        scheduleRetries(this::sendAborts);
+    }
+
+    /**
+     * Completes committed transfers of the log and aborts the rest, before the node takes requests. Credits and
+     * aborts are sent once the node runs.
+     */
+    private void recover() {
+        creditLog.load();
+        for (Transaction transaction : coordinatorLog.load()) {
+            if (transaction.isCommitted()) {
+                // captured before the node takes requests, as any access to the account releases expired holds
+                if (debit(transaction)) {
+                    uncredited.put(transaction.transactionId, transaction);
+                }
+            } else {
+                releaseHold(transaction);
+                unaborted.put(transaction.transactionId, transaction);
+            }
+        }
+        if (!unaborted.isEmpty() || !uncredited.isEmpty() || !uncaptured.isEmpty()) {
+            log.info("Recovered coordinator log {}: {} aborts and {} credits to send", logPath, unaborted.size(),
+                    uncredited.size() + uncaptured.size());
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException, InterruptedException {
+        if (retries != null) {
+            retries.shutdown();
+            retries.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        coordinatorLog.close();
+        creditLog.close();
+        if (deleteLogs) {
+            Files.deleteIfExists(logPath);
+            Files.deleteIfExists(creditLogPath);
+        }
+    }
+
+    /**
+     * Executes transfer debiting an account of this node, locally if the credit account is of this node too.
+     */
+    public TransferOutcome transfer(TransferRequest transferRequest) {
+        String creditNodeId = membership.getOwner(transferRequest.getAccountToId());
+        if (creditNodeId.equals(membership.getNodeId()) || !membership.isLocal(transferRequest.getAccountFromId())) {
+            // accounts of other nodes are not found locally, as for requests forwarded while a node joins
+            return transfersService.tryTransfer(transferRequest);
+        }
+
+        TransferOutcome failure = transfersService.check(transferRequest);
+        if (failure != null) {
+            return failure;
+        }
+        TransferOutcome outcome = transferToNode(transferRequest, creditNodeId);
+        if (!outcome.isCompleted()) {
+            transfersService.checkedTransferFailed(transferRequest);
+        }
+        return outcome;
+    }
+
+    /**
+     * Prepares credit of a transfer coordinated by another node.
+     *
+     * @return false if there is no such account
+     */
+    public boolean prepareCredit(String transactionId, String accountId) {
+        try {
+            preparedCredits.put(transactionId, accountsService.authorizeHold(accountId, BigDecimal.ZERO, holdTtl));
+            return true;
+        } catch (NotExistingAccountException e) {
+            return false;
+        } catch (InsufficientFundsException e) {
+            throw new IllegalStateException("Hold of nothing does not need funds", e);
+        }
+    }
+
+    /**
+     * Commits credit of a transfer coordinated by another node. A credit committed again, also after this node
+     * restarted, is not applied, as long as it is among the latest credits of the credit log.
+     *
+     * @return false if there is no such account
+     */
+    public boolean commitCredit(String transactionId, CreditRequest credit) {
+        if (!committingCredits.add(transactionId)) {
+            return true;
+        }
+        try {
+            if (creditLog.contains(transactionId)) {
+                return true;
+            }
+            boolean credited = credit(credit);
+            if (credited) {
+                creditLog.applied(transactionId);
+            }
+            // released once the credit is applied or refused, so the account can't be closed before it is credited
+            abortCredit(transactionId);
+            return credited;
+        } finally {
+            committingCredits.remove(transactionId);
+        }
+    }
+
+    public void abortCredit(String transactionId) {
+        Hold hold = preparedCredits.remove(transactionId);
+        if (hold != null) {
+            releasePreparedCredit(transactionId, hold);
+        }
+    }
+
+    /**
+     * Replaces holds of prepared credits which expire within half of their ttl, so a prepared credit lasts until it
+     * is committed or aborted however long its coordinator takes.
+     */
+    public void renewPreparedCredits() {
+        Instant renewedBefore = Instant.now().plus(holdTtl.dividedBy(2));
+        for (Map.Entry<String, Hold> preparedCredit : preparedCredits.entrySet()) {
+            Hold hold = preparedCredit.getValue();
+            if (hold.getExpiresAt().isAfter(renewedBefore)) {
+                continue;
+            }
+
+            Hold renewed;
+            try {
+                renewed = accountsService.authorizeHold(hold.getAccountId(), BigDecimal.ZERO, holdTtl);
+            } catch (NotExistingAccountException e) {
+                // removed regardless of its holds, the credit is refused once committed
+                preparedCredits.remove(preparedCredit.getKey(), hold);
+                continue;
+            } catch (InsufficientFundsException e) {
+                throw new IllegalStateException("Hold of nothing does not need funds", e);
+            }
+            // the renewed hold is not needed if the credit was committed or aborted meanwhile
+            releasePreparedCredit(preparedCredit.getKey(),
+                    preparedCredits.replace(preparedCredit.getKey(), hold, renewed) ? hold : renewed);
+        }
+    }
+
+    /**
+     * Moves account of this node to the node owning it by the ring: its balance is held and committed like a
+     * transfer crediting the account created there, and the account is closed here, unless it was credited or
+     * prepared for a credit meanwhile. Accounts with held funds are not moved, as transfers from them are in flight.
+     *
+     * @return true if the account is gone from this node
+     */
+    public boolean moveAccount(String accountId) {
+        Account account = accountsService.getAccount(accountId);
+        if (account == null) {
+            return true;
+        }
+        Hold hold;
+        try {
+            // fails if any funds are held, or were debited meanwhile
+            hold = accountsService.authorizeHold(accountId, account.getBalance(), holdTtl);
+        } catch (NotExistingAccountException e) {
+            return true;
+        } catch (InsufficientFundsException e) {
+            return false;
+        }
+
+        Transaction transaction = new Transaction(nextTransactionId(), accountId, accountId, hold.getAmount(),
+                hold.getHoldId(), membership.getOwner(accountId), true);
+        coordinatorLog.begun(transaction);
+        if (!commit(transaction)) {
+            abort(transaction);
+            return false;
+        }
+        try {
+            accountsService.closeAccount(accountId);
+            return true;
+        } catch (NotExistingAccountException e) {
+            return true;
+        } catch (InvalidAccountChangeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Captures again holds of committed transfers which failed to be captured, then sends again credits which were
+     * not confirmed.
+     */
+    public void sendCredits() {
+        for (Transaction transaction : uncaptured.values()) {
+            if (debit(transaction)) {
+                uncaptured.remove(transaction.transactionId);
+                sendCredit(transaction);
+            }
+        }
+        for (Transaction transaction : uncredited.values()) {
+            sendCredit(transaction);
+        }
+    }
+
+    /**
+     * Sends again aborts which were not confirmed.
+     */
+    public void sendAborts() {
+        for (Transaction transaction : unaborted.values()) {
+            sendAbort(transaction);
+        }
+    }
+
+    /**
+     * @return number of committed transfers with credits not confirmed yet
+     */
+    public int getUncreditedCount() {
+        return uncredited.size();
+    }
+
+    private void scheduleRetries(Runnable task) {
+        retries.scheduleWithFixedDelay(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                // the executor would not run the task again
+                log.error("Cluster retries failed, running them again", e);
+            }
+        }, retryIntervalMillis, retryIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private TransferOutcome transferToNode(TransferRequest transferRequest, String creditNodeId) {
+        Hold hold;
+        try {
+            hold = accountsService.authorizeHold(transferRequest.getAccountFromId(), transferRequest.getAmount(),
+                    holdTtl);
+        } catch (NotExistingAccountException e) {
+            return TransferOutcome.notExistingAccount(e);
+        } catch (InsufficientFundsException e) {
+            return TransferOutcome.INSUFFICIENT_FUNDS;
+        }
+
+        Transaction transaction = new Transaction(nextTransactionId(), transferRequest.getAccountFromId(),
+                transferRequest.getAccountToId(), transferRequest.getAmount(), hold.getHoldId(), creditNodeId, false);
+        coordinatorLog.begun(transaction);
+
+        String url = membership.getUrl(creditNodeId);
+        boolean prepared;
+        try {
+            prepared = clusterClient.prepareCredit(url, transaction.transactionId, creditRequest(transaction));
+        } catch (IOException e) {
+            log.warn("Node {} failed to prepare transfer {}: {}", creditNodeId, transaction.transactionId,
+                    e.getMessage());
+            abortPrepared(transaction);
+            return TransferOutcome.rejected("Node " + creditNodeId + " is unavailable", RETRY_AFTER);
+        }
+        if (!prepared) {
+            abort(transaction);
+            return TransferOutcome.notExistingAccount(new NotExistingAccountException(transaction.creditAccountId));
+        }
+
+        if (!commit(transaction)) {
+            abortPrepared(transaction);
+            return TransferOutcome.rejected("Transfer took longer than its hold", RETRY_AFTER);
+        }
+        return TransferOutcome.completed(new TransferExecution(transferRequest, LocalDateTime.now()));
+    }
+
+    /**
+     * Commits transfer by capturing its hold, forcing the commit to the log under the lock of the debit account once
+     * the hold is found there, and sends its credit. A capture failing once the commit is logged is retried, as the
+     * hold of a committed transfer is captured even once it has expired.
+     *
+     * @return false if the hold is gone, so the transfer must be aborted
+     */
+    private boolean commit(Transaction transaction) {
+        AtomicBoolean committed = new AtomicBoolean();
+        try {
+            accountsService.captureHold(transaction.debitAccountId, transaction.holdId, () -> {
+                coordinatorLog.committed(transaction.transactionId);
+                committed.set(true);
+            });
+        } catch (NotExistingAccountException | NotExistingHoldException e) {
+            log.warn("Aborting transfer {} as its hold is gone: {}", transaction.transactionId, e.getMessage());
+            return false;
+        } catch (RuntimeException e) {
+            if (!committed.get()) {
+                throw e;
+            }
+            log.warn("Failed to capture hold of committed transfer {}, capturing it again: {}",
+                    transaction.transactionId, e.getMessage());
+            uncaptured.put(transaction.transactionId, transaction);
+            return true;
+        }
+        sendCredit(transaction);
+        return true;
+    }
+
+    private void abort(Transaction transaction) {
+        releaseHold(transaction);
+        coordinatorLog.aborted(transaction.transactionId);
+    }
+
+    /**
+     * Aborts transfer whose credit may have been prepared, which is aborted on its node too. The transfer is open in
+     * the log until its node confirms the abort.
+     */
+    private void abortPrepared(Transaction transaction) {
+        releaseHold(transaction);
+        sendAbort(transaction);
+    }
+
+    private void sendAbort(Transaction transaction) {
+        String url = membership.getUrl(transaction.participantId);
+        try {
+            if (url == null) {
+                throw new IOException("Url of node " + transaction.participantId + " is not known");
+            }
+            clusterClient.abortCredit(url, transaction.transactionId);
+            coordinatorLog.aborted(transaction.transactionId);
+            unaborted.remove(transaction.transactionId);
+        } catch (IOException e) {
+            if (unaborted.putIfAbsent(transaction.transactionId, transaction) == null) {
+                log.warn("Failed to send abort of transfer {} to node {}, sending it again: {}",
+                        transaction.transactionId, transaction.participantId, e.getMessage());
+            }
+        }
+    }
+
+    private void releaseHold(Transaction transaction) {
+        if (transaction.holdId < 0) {
+            return;
+        }
+        try {
+            accountsService.releaseHold(transaction.debitAccountId, transaction.holdId);
+        } catch (NotExistingAccountException | NotExistingHoldException e) {
+            log.debug("Hold of transfer {} is already released: {}", transaction.transactionId, e.getMessage());
+        }
+    }
+
+    /**
+     * Captures hold of committed transfer, also once it has expired.
+     *
+     * @return false if the capture failed and must be retried
+     */
+    private boolean debit(Transaction transaction) {
+        if (transaction.holdId < 0) {
+            return true;
+        }
+        try {
+            accountsService.captureUnreleasedHold(transaction.debitAccountId, transaction.holdId);
+        } catch (NotExistingHoldException e) {
+            // holds of committed transfers are only ever captured
+            log.debug("Hold of transfer {} is already captured", transaction.transactionId);
+        } catch (NotExistingAccountException e) {
+            // closed once debited, or lost by a repository which does not outlive the node
+            log.warn("Account {} of committed transfer {} is gone", transaction.debitAccountId,
+                    transaction.transactionId);
+        } catch (RuntimeException e) {
+            if (uncaptured.putIfAbsent(transaction.transactionId, transaction) == null) {
+                log.warn("Failed to capture hold of committed transfer {}, capturing it again: {}",
+                        transaction.transactionId, e.getMessage());
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private void sendCredit(Transaction transaction) {
+        boolean credited;
+        try {
+            credited = transaction.participantId.equals(membership.getNodeId())
+                    ? commitCredit(transaction.transactionId, creditRequest(transaction))
+                    : commitCreditOnNode(transaction);
+        } catch (IOException e) {
+            if (uncredited.putIfAbsent(transaction.transactionId, transaction) == null) {
+                log.warn("Failed to send credit of transfer {} to node {}, sending it again: {}",
+                        transaction.transactionId, transaction.participantId, e.getMessage());
+            }
+            return;
+        }
+
+        if (credited) {
+            coordinatorLog.completed(transaction.transactionId);
+            uncredited.remove(transaction.transactionId);
+        } else if (transaction.createAccount) {
+            // the account is created unless it was closed right after, so the credit is sent again
+            if (uncredited.putIfAbsent(transaction.transactionId, transaction) == null) {
+                log.warn("Account {} of transfer {} was closed on node {} while credited, sending it again",
+                        transaction.creditAccountId, transaction.transactionId, transaction.participantId);
+            }
+        } else {
+            refund(transaction);
+        }
+    }
+
+    private boolean commitCreditOnNode(Transaction transaction) throws IOException {
+        String url = membership.getUrl(transaction.participantId);
+        if (url == null) {
+            throw new IOException("Url of node " + transaction.participantId + " is not known");
+        }
+        return clusterClient.commitCredit(url, transaction.transactionId, creditRequest(transaction));
+    }
+
+    /**
+     * Compensates committed transfer whose credit account is gone by a credit of the amount back to the debit
+     * account, on the node owning it now. The debit account is created again if it is gone too.
+     */
+    private void refund(Transaction transaction) {
+        Transaction refund = new Transaction(nextTransactionId(), transaction.creditAccountId,
+                transaction.debitAccountId, transaction.amount, -1, membership.getOwner(transaction.debitAccountId),
+                true);
+        coordinatorLog.compensated(transaction.transactionId, refund);
+        uncredited.remove(transaction.transactionId);
+        log.error("Account {} of committed transfer {} does not exist on node {}, refunding account {} by transfer {}",
+                transaction.creditAccountId, transaction.transactionId, transaction.participantId,
+                transaction.debitAccountId, refund.transactionId);
+        sendCredit(refund);
+    }
+
+    private void releasePreparedCredit(String transactionId, Hold hold) {
+        try {
+            accountsService.releaseHold(hold.getAccountId(), hold.getHoldId());
+        } catch (NotExistingAccountException | NotExistingHoldException e) {
+            log.debug("Hold of credit {} is already released: {}", transactionId, e.getMessage());
+        }
+    }
+
+    /**
+     * Credits account of this node, creating it if the credit asks for it.
+     *
+     * @return false if there is no such account
+     */
+    private boolean credit(CreditRequest credit) {
+        if (credit.isCreateAccount()) {
+            try {
+                accountsService.createAccount(new Account(credit.getAccountId(), credit.getAmount()));
+                return true;
+            } catch (DuplicateAccountIdException e) {
+                // credited like any other account
+            }
+        }
+
+        try {
+            accountsService.credit(credit.getAccountId(), credit.getAmount());
+            return true;
+        } catch (NotExistingAccountException e) {
+            return false;
+        }
+    }
+
+    private static CreditRequest creditRequest(Transaction transaction) {
+        return CreditRequest.builder()
+                .accountId(transaction.creditAccountId)
+                .amount(transaction.amount)
+                .createAccount(transaction.createAccount)
+                .build();
+    }
+
+    private String nextTransactionId() {
+        return transactionIdPrefix + transactionIds.incrementAndGet();
+    }
+}
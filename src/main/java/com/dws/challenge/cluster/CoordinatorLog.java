@@ -0,0 +1,315 @@
+package com.dws.challenge.cluster;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only binary log of cross-node transfers coordinated by this node. A transfer is begun before its
+ * participant is asked to prepare, and the commit decision is forced to disk before any side applies it, so after a
+ * crash committed transfers are completed and the rest are aborted. Concurrent commits share a single force of the
+ * file. A committed transfer whose credit is refused is replaced by its compensation, a committed transfer back to
+ * the debit account, in a single record. The log is rewritten with open transfers only when it is loaded or holds
+ * many finished ones, so a torn record at the tail after a crash is dropped.
+ */
+public class CoordinatorLog implements Closeable {
+
+    private static final byte BEGUN = 1;
+    private static final byte COMMITTED = 2;
+    private static final byte ABORTED = 3;
+    private static final byte COMPLETED = 4;
+    private static final byte COMPENSATED = 5;
+
+    // log is compacted once it holds this many records more than four times the open transfers
+    private static final int COMPACTION_SLACK = 10_000;
+
+    private final Path path;
+    // open transfers by id, guarded by this
+    private final Map<String, Transaction> open = new LinkedHashMap<>();
+    // taken before this, so appends go on while the file is forced
+    private final Object syncLock = new Object();
+    private FileOutputStream fileOut;
+    private DataOutputStream out;
+    private long recordCount;
+    private long appended;
+    // guarded by syncLock
+    private long synced;
+
+    public CoordinatorLog(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * @return transfers begun but neither aborted nor completed before the log was closed
+     */
+    public synchronized Collection<Transaction> load() {
+        open.clear();
+        if (Files.exists(path)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+                readRecords(in, open);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read coordinator log " + path, e);
+            }
+        }
+
+        compact();
+        return new ArrayList<>(open.values());
+    }
+
+    public synchronized void begun(Transaction transaction) {
+        write(transaction.transactionId, BEGUN, transaction);
+        open.put(transaction.transactionId, transaction);
+    }
+
+    /**
+     * Returns once the decision is on disk.
+     */
+    public void committed(String transactionId) {
+        long position;
+        synchronized (this) {
+            write(transactionId, COMMITTED, null);
+            open.get(transactionId).committed = true;
+            position = appended;
+        }
+        sync(position);
+    }
+
+    /**
+     * Finishes committed transfer and commits its compensation, returns once both are on disk.
+     */
+    public void compensated(String transactionId, Transaction compensation) {
+        long position;
+        synchronized (this) {
+            write(transactionId, COMPENSATED, compensation);
+            open.remove(transactionId);
+            compensation.committed = true;
+            open.put(compensation.transactionId, compensation);
+            position = appended;
+        }
+        sync(position);
+    }
+
+    public void aborted(String transactionId) {
+        finished(transactionId, ABORTED);
+    }
+
+    public void completed(String transactionId) {
+        finished(transactionId, COMPLETED);
+    }
+
+    public synchronized int getOpenCount() {
+        return open.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                if (out != null) {
+                    out.close();
+                    out = null;
+                }
+            }
+        }
+    }
+
+    private void finished(String transactionId, byte type) {
+        boolean wasteful;
+        synchronized (this) {
+            write(transactionId, type, null);
+            open.remove(transactionId);
+            wasteful = recordCount > 4L * open.size() + COMPACTION_SLACK;
+        }
+        if (wasteful) {
+            synchronized (syncLock) {
+                synchronized (this) {
+                    if (recordCount > 4L * open.size() + COMPACTION_SLACK) {
+                        compact();
+                    }
+                }
+            }
+        }
+    }
+
+    private void write(String transactionId, byte type, Transaction transaction) {
+        try {
+            out.writeByte(type);
+            out.writeUTF(transactionId);
+            if (type == COMPENSATED) {
+                out.writeUTF(transaction.transactionId);
+            }
+            if (transaction != null) {
+                writeTransaction(out, transaction);
+            }
+            recordCount++;
+            appended++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void sync(long position) {
+        synchronized (syncLock) {
+            if (synced >= position) {
+                // forced along with records of another thread
+                return;
+            }
+            long target;
+            try {
+                synchronized (this) {
+                    out.flush();
+                    target = appended;
+                }
+                fileOut.getChannel().force(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to force coordinator log " + path, e);
+            }
+            synced = target;
+        }
+    }
+
+    /**
+     * Called holding both locks, or holding this before the log is shared.
+     */
+    private void compact() {
+        Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+        try {
+            if (out != null) {
+                out.close();
+            }
+            try (FileOutputStream compactedFile = new FileOutputStream(compacted.toFile());
+                 DataOutputStream compactedOut = new DataOutputStream(new BufferedOutputStream(compactedFile))) {
+                for (Transaction transaction : open.values()) {
+                    compactedOut.writeByte(BEGUN);
+                    compactedOut.writeUTF(transaction.transactionId);
+                    writeTransaction(compactedOut, transaction);
+                    if (transaction.committed) {
+                        compactedOut.writeByte(COMMITTED);
+                        compactedOut.writeUTF(transaction.transactionId);
+                    }
+                }
+                compactedOut.flush();
+                compactedFile.getChannel().force(false);
+            }
+            Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            fileOut = new FileOutputStream(path.toFile(), true);
+            out = new DataOutputStream(new BufferedOutputStream(fileOut));
+            recordCount = open.size();
+            // everything appended so far is either on disk or finished
+            synced = appended;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to compact coordinator log " + path, e);
+        }
+    }
+
+    private static void readRecords(DataInputStream in, Map<String, Transaction> open) throws IOException {
+        try {
+            while (true) {
+                byte type = in.readByte();
+                String transactionId = in.readUTF();
+                switch (type) {
+                    case BEGUN:
+                        open.put(transactionId, readTransaction(in, transactionId));
+                        break;
+                    case COMMITTED:
+                        Transaction transaction = open.get(transactionId);
+                        if (transaction != null) {
+                            transaction.committed = true;
+                        }
+                        break;
+                    case ABORTED:
+                    case COMPLETED:
+                        open.remove(transactionId);
+                        break;
+                    case COMPENSATED:
+                        Transaction compensation = readTransaction(in, in.readUTF());
+                        compensation.committed = true;
+                        open.remove(transactionId);
+                        open.put(compensation.transactionId, compensation);
+                        break;
+                    default:
+                        throw new IOException("Unknown record type " + type);
+                }
+            }
+        } catch (EOFException e) {
+            // end of log or incomplete last record
+        }
+    }
+
+    private static Transaction readTransaction(DataInputStream in, String transactionId) throws IOException {
+        String debitAccountId = in.readUTF();
+        String creditAccountId = in.readUTF();
+        int scale = in.readInt();
+        byte[] unscaledAmount = new byte[in.readUnsignedByte()];
+        in.readFully(unscaledAmount);
+        long holdId = in.readLong();
+        String participantId = in.readUTF();
+        boolean createAccount = in.readBoolean();
+        return new Transaction(transactionId, debitAccountId, creditAccountId,
+                new BigDecimal(new BigInteger(unscaledAmount), scale), holdId, participantId, createAccount);
+    }
+
+    private static void writeTransaction(DataOutputStream out, Transaction transaction) throws IOException {
+        byte[] unscaledAmount = transaction.amount.unscaledValue().toByteArray();
+        out.writeUTF(transaction.debitAccountId);
+        out.writeUTF(transaction.creditAccountId);
+        out.writeInt(transaction.amount.scale());
+        out.writeByte(unscaledAmount.length);
+        out.write(unscaledAmount);
+        out.writeLong(transaction.holdId);
+        out.writeUTF(transaction.participantId);
+        out.writeBoolean(transaction.createAccount);
+    }
+
+    /**
+     * Transfer debiting an account of this node and crediting an account of the participant node.
+     */
+    public static final class Transaction {
+        final String transactionId;
+        final String debitAccountId;
+        final String creditAccountId;
+        final BigDecimal amount;
+        // hold of the amount on the debit account, or -1 if the account was debited when the transfer was begun
+        final long holdId;
+        final String participantId;
+        // credit account is created if it does not exist, as when an account moves to another node
+        final boolean createAccount;
+        // guarded by the log
+        boolean committed;
+
+        Transaction(String transactionId, String debitAccountId, String creditAccountId, BigDecimal amount,
+                    long holdId, String participantId, boolean createAccount) {
+            this.transactionId = transactionId;
+            this.debitAccountId = debitAccountId;
+            this.creditAccountId = creditAccountId;
+            this.amount = amount;
+            this.holdId = holdId;
+            this.participantId = participantId;
+            this.createAccount = createAccount;
+        }
+
+        public String getTransactionId() {
+            return transactionId;
+        }
+
+        public boolean isCommitted() {
+            return committed;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.dws.challenge.cluster;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Append-only log of ids of credits applied on this node, so a credit which its coordinator sends again, even after
+ * this node restarted, is not applied twice. An id is forced to disk before the credit is confirmed, concurrent
+ * appends share a single force of the file; a credit applied right before a crash but not logged yet is applied
+ * again. Only the latest ids are kept, the log is rewritten with them when it is loaded or holds twice as many.
+ */
+public class CreditLog implements Closeable {
+
+    private final Path path;
+    private final int maxIds;
+    // latest ids in the order they were applied, guarded by this
+    private final Set<String> applied = new LinkedHashSet<>();
+    // taken before this, so appends go on while the file is forced
+    private final Object syncLock = new Object();
+    private FileOutputStream fileOut;
+    private DataOutputStream out;
+    private long recordCount;
+    private long appended;
+    // guarded by syncLock
+    private long synced;
+
+    public CreditLog(Path path, int maxIds) {
+        this.path = path;
+        this.maxIds = maxIds;
+    }
+
+    public synchronized void load() {
+        applied.clear();
+        if (Files.exists(path)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+                while (true) {
+                    remember(in.readUTF());
+                }
+            } catch (EOFException e) {
+                // end of log or incomplete last record
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read credit log " + path, e);
+            }
+        }
+
+        compact();
+    }
+
+    public synchronized boolean contains(String transactionId) {
+        return applied.contains(transactionId);
+    }
+
+    /**
+     * Returns once the id is on disk.
+     */
+    public void applied(String transactionId) {
+        long position;
+        synchronized (this) {
+            try {
+                out.writeUTF(transactionId);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            remember(transactionId);
+            recordCount++;
+            appended++;
+            position = appended;
+        }
+        sync(position);
+
+        if (recordCount > 2L * maxIds) {
+            synchronized (syncLock) {
+                synchronized (this) {
+                    if (recordCount > 2L * maxIds) {
+                        compact();
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                if (out != null) {
+                    out.close();
+                    out = null;
+                }
+            }
+        }
+    }
+
+    private void remember(String transactionId) {
+        if (applied.add(transactionId) && applied.size() > maxIds) {
+            Iterator<String> eldest = applied.iterator();
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    private void sync(long position) {
+        synchronized (syncLock) {
+            if (synced >= position) {
+                // forced along with records of another thread
+                return;
+            }
+            long target;
+            try {
+                synchronized (this) {
+                    out.flush();
+                    target = appended;
+                }
+                fileOut.getChannel().force(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to force credit log " + path, e);
+            }
+            synced = target;
+        }
+    }
+
+    /**
+     * Called holding both locks, or holding this before the log is shared.
+     */
+    private void compact() {
+        Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+        try {
+            if (out != null) {
+                out.close();
+            }
+            try (FileOutputStream compactedFile = new FileOutputStream(compacted.toFile());
+                 DataOutputStream compactedOut = new DataOutputStream(new BufferedOutputStream(compactedFile))) {
+                for (String transactionId : applied) {
+                    compactedOut.writeUTF(transactionId);
+                }
+                compactedOut.flush();
+                compactedFile.getChannel().force(false);
+            }
+            Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            fileOut = new FileOutputStream(path.toFile(), true);
+            out = new DataOutputStream(new BufferedOutputStream(fileOut));
+            recordCount = applied.size();
+            // everything appended so far is on disk
+            synced = appended;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to compact credit log " + path, e);
+        }
+    }
+}
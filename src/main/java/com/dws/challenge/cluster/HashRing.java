@@ -0,0 +1,70 @@
+package com.dws.challenge.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Immutable consistent hash ring of node ids. Every node has the given number of virtual nodes on the ring and owns
+ * account ids hashing between its virtual nodes and the preceding ones, so a joining node takes about an equal share
+ * of accounts from every other node and the rest of the accounts stay where they are. Hashes do not depend on the
+ * JVM, so all nodes agree on owners given the same node ids.
+ */
+public final class HashRing {
+
+    private final Set<String> nodeIds;
+    private final int virtualNodes;
+    private final NavigableMap<Long, String> ring = new TreeMap<>();
+
+    public HashRing(Collection<String> nodeIds, int virtualNodes) {
+        if (nodeIds.isEmpty()) {
+            throw new IllegalArgumentException("Ring must have a node");
+        }
+        this.nodeIds = Collections.unmodifiableSet(new TreeSet<>(nodeIds));
+        this.virtualNodes = virtualNodes;
+        for (String nodeId : this.nodeIds) {
+            for (int i = 0; i < virtualNodes; i++) {
+                // on collision the greater node id wins, whatever the order nodes were added in
+                ring.merge(hash(nodeId + "#" + i), nodeId, (existing, added) ->
+                        existing.compareTo(added) > 0 ? existing : added);
+            }
+        }
+    }
+
+    public Set<String> getNodeIds() {
+        return nodeIds;
+    }
+
+    public HashRing withNode(String nodeId) {
+        Set<String> extended = new TreeSet<>(nodeIds);
+        extended.add(nodeId);
+        return new HashRing(extended, virtualNodes);
+    }
+
+    public String ownerOf(String accountId) {
+        Map.Entry<Long, String> owner = ring.ceilingEntry(hash(accountId));
+        return owner != null ? owner.getValue() : ring.firstEntry().getValue();
+    }
+
+    /**
+     * 64-bit FNV-1a of UTF-8 bytes with a final mix, as close ids like account-1 and account-2 differ in few bits.
+     */
+    static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
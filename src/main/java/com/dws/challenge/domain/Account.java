@@ -3,9 +3,13 @@ package com.dws.challenge.domain;
 import com.dws.challenge.exception.InsufficientFundsException;
 import com.dws.challenge.exception.InvalidAccountChangeException;
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.math.BigDecimal;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Setter;
 
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotEmpty;
@@ -22,24 +26,55 @@ public class Account {
   @Min(value = 0, message = "Initial balance must be positive.")
   private BigDecimal balance;
 
+  // part of balance reserved by active holds
+  @JsonIgnore
+  @Setter(AccessLevel.NONE)
+  private BigDecimal heldBalance;
+
+  // assigned by repository on every change, it's not part of account state
+  @JsonIgnore
+  @Setter(AccessLevel.NONE)
+  @EqualsAndHashCode.Exclude
+  private long version;
+
   public Account(String accountId) {
     this.accountId = accountId;
     this.balance = BigDecimal.ZERO;
+    this.heldBalance = BigDecimal.ZERO;
   }
 
   @JsonCreator
   public Account(@JsonProperty("accountId") String accountId,
     @JsonProperty("balance") BigDecimal balance) {
+    this(accountId, balance, BigDecimal.ZERO);
+  }
+
+  public Account(String accountId, BigDecimal balance, BigDecimal heldBalance) {
+    this(accountId, balance, heldBalance, 0);
+  }
+
+  public Account(String accountId, BigDecimal balance, BigDecimal heldBalance, long version) {
     this.accountId = accountId;
     this.balance = balance;
+    this.heldBalance = heldBalance.signum() == 0 ? BigDecimal.ZERO : heldBalance;
+    this.version = version;
   }
 
   public Account copy() {
-    return new Account(accountId, balance);
+    return new Account(accountId, balance, heldBalance, version);
+  }
+
+  public Account withVersion(long version) {
+    return new Account(accountId, balance, heldBalance, version);
+  }
+
+  @JsonIgnore
+  public BigDecimal getAvailableBalance() {
+    return balance.subtract(heldBalance);
   }
 
   public boolean hasFunds(BigDecimal amount) {
-    return balance.compareTo(amount) >= 0;
+    return getAvailableBalance().compareTo(amount) >= 0;
   }
 
   public Account credit(BigDecimal amount) {
@@ -47,7 +82,7 @@ public class Account {
       throw new InvalidAccountChangeException("Can not credit negative amount " + amount);
     }
 
-    return new Account(accountId, balance.add(amount));
+    return new Account(accountId, balance.add(amount), heldBalance, version);
   }
 
   public Account debit(BigDecimal amount) throws InsufficientFundsException {
@@ -56,9 +91,37 @@ public class Account {
     }
 
     if (hasFunds(amount)) {
-      return new Account(accountId, balance.subtract(amount));
+      return new Account(accountId, balance.subtract(amount), heldBalance, version);
+    } else {
+      throw new InsufficientFundsException(this, amount);
+    }
+  }
+
+  public Account hold(BigDecimal amount) throws InsufficientFundsException {
+    if (BigDecimal.ZERO.compareTo(amount) >= 0) {
+      throw new InvalidAccountChangeException("Can not hold non positive amount " + amount);
+    }
+
+    if (hasFunds(amount)) {
+      return new Account(accountId, balance, heldBalance.add(amount), version);
     } else {
       throw new InsufficientFundsException(this, amount);
     }
   }
+
+  public Account releaseHold(BigDecimal amount) {
+    if (heldBalance.compareTo(amount) < 0) {
+      throw new InvalidAccountChangeException("Can not release " + amount + " exceeding held balance " + heldBalance);
+    }
+
+    return new Account(accountId, balance, heldBalance.subtract(amount), version);
+  }
+
+  public Account captureHold(BigDecimal amount) {
+    if (heldBalance.compareTo(amount) < 0) {
+      throw new InvalidAccountChangeException("Can not capture " + amount + " exceeding held balance " + heldBalance);
+    }
+
+    return new Account(accountId, balance.subtract(amount), heldBalance.subtract(amount), version);
+  }
 }
@@ -0,0 +1,13 @@
+package com.dws.challenge.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+@AllArgsConstructor
+@Getter
+public class AccountTransferStats {
+    private final String accountId;
+    private final List<TransferStats> windows;
+}
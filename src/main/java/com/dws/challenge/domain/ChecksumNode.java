@@ -0,0 +1,20 @@
+package com.dws.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Map;
+
+@AllArgsConstructor
+@Getter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ChecksumNode {
+    // hex prefix of buckets of the node, empty for the root
+    private final String prefix;
+    private final String checksum;
+    // checksums of child nodes by prefix, null for a bucket
+    private final Map<String, String> children;
+    // checksums of accounts by id, only for a bucket
+    private final Map<String, String> accounts;
+}
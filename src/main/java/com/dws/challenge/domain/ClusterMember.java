@@ -0,0 +1,19 @@
+package com.dws.challenge.domain;
+
+import lombok.Builder;
+import lombok.Data;
+
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+
+@Data
+@Builder
+public class ClusterMember {
+    @NotNull
+    @NotEmpty
+    private String nodeId;
+
+    @NotNull
+    @NotEmpty
+    private String url;
+}
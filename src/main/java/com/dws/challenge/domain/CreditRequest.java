@@ -0,0 +1,27 @@
+package com.dws.challenge.domain;
+
+import lombok.Builder;
+import lombok.Data;
+
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.PositiveOrZero;
+import java.math.BigDecimal;
+
+/**
+ * Credit of a cross-node transfer, sent by the node of the debit account to the node of the credit account.
+ */
+@Data
+@Builder
+public class CreditRequest {
+    @NotNull
+    @NotEmpty
+    private String accountId;
+
+    @NotNull
+    @PositiveOrZero
+    private BigDecimal amount;
+
+    // set when the account moves to the node, which creates it unless it exists
+    private boolean createAccount;
+}
@@ -0,0 +1,16 @@
+package com.dws.challenge.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+@AllArgsConstructor
+@Getter
+public class Hold {
+    private final long holdId;
+    private final String accountId;
+    private final BigDecimal amount;
+    private final Instant expiresAt;
+}
@@ -0,0 +1,20 @@
+package com.dws.challenge.domain;
+
+import lombok.Builder;
+import lombok.Data;
+
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
+import java.math.BigDecimal;
+import java.time.Duration;
+
+@Data
+@Builder
+public class HoldRequest {
+    @NotNull
+    @Positive(message = "Held amount must be positive.")
+    private BigDecimal amount;
+
+    @NotNull
+    private Duration ttl;
+}
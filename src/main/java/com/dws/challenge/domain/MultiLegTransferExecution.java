@@ -0,0 +1,24 @@
+package com.dws.challenge.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@AllArgsConstructor
+@Getter
+public class MultiLegTransferExecution {
+    private final String accountFromId;
+    private final List<TransferLeg> legs;
+    private final BigDecimal totalAmount;
+    private final LocalDateTime time;
+
+    public MultiLegTransferExecution(MultiLegTransferRequest request, LocalDateTime time) {
+        accountFromId = request.getAccountFromId();
+        legs = request.getLegs();
+        totalAmount = request.getTotalAmount();
+        this.time = time;
+    }
+}
@@ -0,0 +1,23 @@
+package com.dws.challenge.domain;
+
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Getter
+public class MultiLegTransferFailure {
+    private final String accountFromId;
+    private final List<TransferLeg> legs;
+    private final LocalDateTime time;
+    private final TransferOutcome.Reason failureCode;
+    private final String failureReason;
+
+    public MultiLegTransferFailure(MultiLegTransferRequest request, LocalDateTime time, TransferOutcome failure) {
+        accountFromId = request.getAccountFromId();
+        legs = request.getLegs();
+        this.time = time;
+        failureCode = failure.getReason();
+        failureReason = failure.getMessage();
+    }
+}
@@ -0,0 +1,33 @@
+package com.dws.challenge.domain;
+
+import lombok.Getter;
+
+/**
+ * Execution of a completed multi-leg transfer or the reason why it failed, given as the failure of a single
+ * transfer.
+ */
+@Getter
+public final class MultiLegTransferOutcome {
+
+    // null if failed
+    private final MultiLegTransferExecution execution;
+    // null if completed
+    private final TransferOutcome failure;
+
+    private MultiLegTransferOutcome(MultiLegTransferExecution execution, TransferOutcome failure) {
+        this.execution = execution;
+        this.failure = failure;
+    }
+
+    public static MultiLegTransferOutcome completed(MultiLegTransferExecution execution) {
+        return new MultiLegTransferOutcome(execution, null);
+    }
+
+    public static MultiLegTransferOutcome failed(TransferOutcome failure) {
+        return new MultiLegTransferOutcome(null, failure);
+    }
+
+    public boolean isCompleted() {
+        return execution != null;
+    }
+}
@@ -0,0 +1,48 @@
+package com.dws.challenge.domain;
+
+import lombok.Builder;
+import lombok.Data;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Transfer from one account to several accounts, applied as a whole or not at all.
+ */
+@Data
+@Builder
+public class MultiLegTransferRequest {
+    public static final int MAX_LEGS = 1000;
+
+    @NotNull
+    @NotEmpty
+    private String accountFromId;
+
+    @NotNull
+    @NotEmpty
+    @Size(max = MAX_LEGS)
+    private List<@Valid @NotNull TransferLeg> legs;
+
+    public BigDecimal getTotalAmount() {
+        BigDecimal total = BigDecimal.ZERO;
+        for (TransferLeg leg : legs) {
+            total = total.add(leg.getAmount());
+        }
+        return total;
+    }
+
+    /**
+     * @return single transfer of the leg, as seen by transfer checks, listeners and statistics
+     */
+    public TransferRequest toTransferRequest(TransferLeg leg) {
+        return TransferRequest.builder()
+                .accountFromId(accountFromId)
+                .accountToId(leg.getAccountToId())
+                .amount(leg.getAmount())
+                .build();
+    }
+}
@@ -0,0 +1,19 @@
+package com.dws.challenge.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@AllArgsConstructor
+@Getter
+public class ReplicationStatus {
+    private final String role;
+    private final boolean connected;
+    // standby has applied snapshot of the primary and follows its changes
+    private final boolean synced;
+    private final long epoch;
+    // last committed change on primary, last applied change on standby
+    private final long sequence;
+    private final long acknowledgedSequence;
+    // age of the oldest change not yet acknowledged on primary, delay of the last applied change on standby
+    private final long lagMillis;
+}
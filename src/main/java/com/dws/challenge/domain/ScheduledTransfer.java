@@ -0,0 +1,30 @@
+package com.dws.challenge.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Duration;
+import java.time.Instant;
+
+@AllArgsConstructor
+@Getter
+public class ScheduledTransfer {
+    private final long id;
+    private final TransferRequest transfer;
+    private final Instant nextExecution;
+    private final Duration repeatInterval;
+
+    public boolean isRecurring() {
+        return repeatInterval != null;
+    }
+
+    public ScheduledTransfer rescheduleAfter(Instant time) {
+        Instant next = nextExecution.plus(repeatInterval);
+        if (!next.isAfter(time)) {
+            // missed executions, e.g. during downtime, are not caught up
+            long missed = Duration.between(next, time).toMillis() / repeatInterval.toMillis() + 1;
+            next = next.plus(repeatInterval.multipliedBy(missed));
+        }
+        return new ScheduledTransfer(id, transfer, next, repeatInterval);
+    }
+}
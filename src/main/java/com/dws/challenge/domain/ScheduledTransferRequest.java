@@ -0,0 +1,23 @@
+package com.dws.challenge.domain;
+
+import lombok.Builder;
+import lombok.Data;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import java.time.Duration;
+import java.time.Instant;
+
+@Data
+@Builder
+public class ScheduledTransferRequest {
+    @NotNull
+    @Valid
+    private TransferRequest transfer;
+
+    @NotNull
+    private Instant executeAt;
+
+    // transfer is executed once if interval is not set
+    private Duration repeatInterval;
+}
@@ -11,13 +11,15 @@ public class TransferFailure {
     private final String accountToId;
     private final BigDecimal amount;
     private final LocalDateTime time;
+    private final TransferOutcome.Reason failureCode;
     private final String failureReason;
 
-    public TransferFailure(TransferRequest request, LocalDateTime time, String failureReason) {
+    public TransferFailure(TransferRequest request, LocalDateTime time, TransferOutcome outcome) {
         accountFromId = request.getAccountFromId();
         accountToId = request.getAccountToId();
         amount = request.getAmount();
         this.time = time;
-        this.failureReason = failureReason;
+        failureCode = outcome.getReason();
+        failureReason = outcome.getMessage();
     }
 }
@@ -0,0 +1,100 @@
+package com.dws.challenge.domain;
+
+import com.dws.challenge.exception.InvalidTransferException;
+import com.dws.challenge.exception.NotExistingAccountException;
+import com.dws.challenge.exception.TransferRejectedException;
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * Execution of a completed transfer or the reason why it failed. Failures which carry no details are shared
+ * instances, so a failed transfer allocates no more than a completed one.
+ */
+@Getter
+public final class TransferOutcome {
+
+    public enum Reason {
+        SAME_ACCOUNTS,
+        NOT_EXISTING_ACCOUNT,
+        INSUFFICIENT_FUNDS,
+        // a transfer check did not allow the transfer
+        DECLINED,
+        // transfer may succeed if retried later
+        REJECTED,
+        // several legs of a multi-leg transfer credit the same account
+        DUPLICATE_CREDIT_ACCOUNT
+    }
+
+    public static final TransferOutcome SAME_ACCOUNTS =
+            new TransferOutcome(null, Reason.SAME_ACCOUNTS, "Same credit and debit accounts", null, null);
+    public static final TransferOutcome INSUFFICIENT_FUNDS =
+            new TransferOutcome(null, Reason.INSUFFICIENT_FUNDS, "Insufficient funds", null, null);
+
+    // null if failed
+    private final TransferExecution execution;
+    // null if completed
+    private final Reason reason;
+    private final String message;
+    private final Duration retryAfter;
+    private final Exception cause;
+
+    private TransferOutcome(TransferExecution execution, Reason reason, String message, Duration retryAfter,
+                            Exception cause) {
+        this.execution = execution;
+        this.reason = reason;
+        this.message = message;
+        this.retryAfter = retryAfter;
+        this.cause = cause;
+    }
+
+    public static TransferOutcome completed(TransferExecution execution) {
+        return new TransferOutcome(execution, null, null, null, null);
+    }
+
+    public static TransferOutcome notExistingAccount(NotExistingAccountException e) {
+        return new TransferOutcome(null, Reason.NOT_EXISTING_ACCOUNT, "Invalid transfer: " + e.getMessage(), null, e);
+    }
+
+    /**
+     * @param e thrown by a transfer check or admission control
+     */
+    public static TransferOutcome failed(InvalidTransferException e) {
+        if (e instanceof TransferRejectedException) {
+            return new TransferOutcome(null, Reason.REJECTED, e.getMessage(),
+                    ((TransferRejectedException) e).getRetryAfter(), e);
+        }
+        return new TransferOutcome(null, Reason.DECLINED, e.getMessage(), null, e);
+    }
+
+    /**
+     * Failure without a cause, such as one reported by another node.
+     */
+    public static TransferOutcome failed(Reason reason, String message) {
+        return new TransferOutcome(null, reason, message, null, null);
+    }
+
+    public static TransferOutcome rejected(String message, Duration retryAfter) {
+        return new TransferOutcome(null, Reason.REJECTED, message, retryAfter, null);
+    }
+
+    public boolean isCompleted() {
+        return execution != null;
+    }
+
+    /**
+     * @return exception thrown for this failure by the exception based API
+     */
+    public InvalidTransferException toException() {
+        if (isCompleted()) {
+            throw new IllegalStateException("Transfer completed");
+        }
+        if (cause instanceof InvalidTransferException) {
+            return (InvalidTransferException) cause;
+        }
+        if (reason == Reason.REJECTED) {
+            return new TransferRejectedException(message, retryAfter);
+        }
+        return new InvalidTransferException(message, cause);
+    }
+}
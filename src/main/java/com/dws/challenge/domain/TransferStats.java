@@ -0,0 +1,15 @@
+package com.dws.challenge.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@AllArgsConstructor
+@Getter
+public class TransferStats {
+    private final String window;
+    private final long transfers;
+    private final long failures;
+    private final double debitVolume;
+    private final double creditVolume;
+    private final double averageLockWaitMicros;
+}
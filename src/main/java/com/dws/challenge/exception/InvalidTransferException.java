@@ -9,4 +9,8 @@ public class InvalidTransferException extends Exception {
     public InvalidTransferException(String message, Throwable cause) {
         super(message, cause);
     }
+
+    protected InvalidTransferException(String message, boolean writableStackTrace) {
+        super(message, null, false, writableStackTrace);
+    }
 }
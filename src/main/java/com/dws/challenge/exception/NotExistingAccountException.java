@@ -2,6 +2,7 @@ package com.dws.challenge.exception;
 
 public class NotExistingAccountException extends Exception {
     public NotExistingAccountException(String accountId) {
-        super("Account " + accountId + " does not exist");
+        // routine outcome of lookups, which needs no stack trace
+        super("Account " + accountId + " does not exist", null, false, false);
     }
 }
@@ -0,0 +1,7 @@
+package com.dws.challenge.exception;
+
+public class NotExistingHoldException extends Exception {
+    public NotExistingHoldException(String accountId, long holdId) {
+        super("Hold " + holdId + " does not exist on account " + accountId);
+    }
+}
@@ -0,0 +1,9 @@
+package com.dws.challenge.exception;
+
+import java.time.Instant;
+
+public class StateNotRetainedException extends Exception {
+    public StateNotRetainedException(String accountId, Instant asOf) {
+        super("State of account " + accountId + " as of " + asOf + " is not retained");
+    }
+}
@@ -0,0 +1,18 @@
+package com.dws.challenge.exception;
+
+import java.time.Duration;
+
+public class TransferRejectedException extends InvalidTransferException {
+
+    private final Duration retryAfter;
+
+    public TransferRejectedException(String message, Duration retryAfter) {
+        // thrown for every transfer over the limits under load, where stack traces would only add to the load
+        super(message, false);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
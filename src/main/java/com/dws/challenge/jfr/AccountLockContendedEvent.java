@@ -0,0 +1,44 @@
+package com.dws.challenge.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Wait for an account lock held by another thread. Uncontended locks emit nothing.
+ */
+@Name(AccountLockContendedEvent.NAME)
+@Label("Account Lock Contended")
+@Category({"Accounts", "Locks"})
+@Description("Time spent waiting for an account lock held by another thread")
+@Threshold("10 ms")
+@StackTrace(false)
+public class AccountLockContendedEvent extends Event {
+
+    public static final String NAME = "com.dws.challenge.AccountLockContended";
+
+    @Label("Account")
+    String accountId;
+
+    // threads waiting for the lock when this one started to wait
+    @Label("Queue Length")
+    int queueLength;
+
+    public static AccountLockContendedEvent begin(String accountId) {
+        AccountLockContendedEvent event = new AccountLockContendedEvent();
+        event.begin();
+        event.accountId = accountId;
+        return event;
+    }
+
+    /**
+     * Counting waiting threads walks the wait queue of the lock, so callers set it only if the event is enabled.
+     */
+    public void setQueueLength(int queueLength) {
+        this.queueLength = queueLength;
+    }
+}
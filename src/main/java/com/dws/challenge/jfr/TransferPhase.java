@@ -0,0 +1,21 @@
+package com.dws.challenge.jfr;
+
+/**
+ * Phases of a transfer, in the order they are executed.
+ */
+public enum TransferPhase {
+    VALIDATION,
+    CHECKS,
+    ADMISSION,
+    // lock of the account with the lower id, then the other one
+    FIRST_LOCK,
+    SECOND_LOCK,
+    // locks of all accounts of a multi-leg transfer
+    LOCKS,
+    MUTATION,
+    // commit of changed accounts and publishing of their balances
+    REPOSITORY_UPDATE,
+    // committed changes listeners, e.g. a sync standby
+    REPLICATION,
+    NOTIFICATION
+}
@@ -0,0 +1,75 @@
+package com.dws.challenge.jfr;
+
+import com.dws.challenge.domain.MultiLegTransferRequest;
+import com.dws.challenge.domain.TransferRequest;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Duration of a single transfer phase; for lock phases it is the time spent waiting for the lock. Disabled unless
+ * the recording enables it, e.g. with jfr/transfers.jfc. While disabled, shouldCommit() is false and the JIT drops
+ * the allocation, so the events cost next to nothing.
+ */
+@Name(TransferPhaseEvent.NAME)
+@Label("Transfer Phase")
+@Category({"Accounts", "Transfers"})
+@Description("Time spent by a transfer in one of its phases")
+@Enabled(false)
+@StackTrace(false)
+public class TransferPhaseEvent extends Event {
+
+    public static final String NAME = "com.dws.challenge.TransferPhase";
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Debit Account")
+    String accountFromId;
+
+    // null for multi-leg transfers
+    @Label("Credit Account")
+    String accountToId;
+
+    // set for lock phases of single transfers
+    @Label("Locked Account")
+    String lockedAccountId;
+
+    @Label("Legs")
+    int legs;
+
+    public static TransferPhaseEvent begin(TransferPhase phase) {
+        TransferPhaseEvent event = new TransferPhaseEvent();
+        event.phase = phase.name();
+        event.begin();
+        return event;
+    }
+
+    public void finish(TransferRequest transferRequest) {
+        finish(transferRequest, null);
+    }
+
+    public void finish(TransferRequest transferRequest, String lockedAccountId) {
+        end();
+        if (shouldCommit()) {
+            this.accountFromId = transferRequest.getAccountFromId();
+            this.accountToId = transferRequest.getAccountToId();
+            this.lockedAccountId = lockedAccountId;
+            this.legs = 1;
+            commit();
+        }
+    }
+
+    public void finish(MultiLegTransferRequest transferRequest) {
+        end();
+        if (shouldCommit()) {
+            this.accountFromId = transferRequest.getAccountFromId();
+            this.legs = transferRequest.getLegs().size();
+            commit();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.dws.challenge.jfr;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Summarises transfer phase and account lock events of a JFR recording into latency breakdowns, so that a latency
+ * spike can be attributed to a phase and to the accounts transfers waited for. Runs without the application:
+ * <pre>
+ * java -cp build/classes/java/main com.dws.challenge.jfr.TransferRecordingSummary transfers.jfr [from [to]]
+ * </pre>
+ * where from and to are ISO-8601 instants limiting the summary to events which started within them.
+ */
+public final class TransferRecordingSummary {
+
+    private static final int TOP_ACCOUNTS = 10;
+
+    private final Map<TransferPhase, Latencies> phases;
+    private final Map<String, Latencies> lockWaits;
+
+    private TransferRecordingSummary(Map<TransferPhase, Latencies> phases, Map<String, Latencies> lockWaits) {
+        this.phases = phases;
+        this.lockWaits = lockWaits;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 3) {
+            System.err.println("Usage: TransferRecordingSummary <recording.jfr> [from [to]]");
+            System.exit(2);
+        }
+        Instant from = args.length > 1 ? Instant.parse(args[1]) : Instant.MIN;
+        Instant to = args.length > 2 ? Instant.parse(args[2]) : Instant.MAX;
+
+        System.out.println(read(Paths.get(args[0]), from, to));
+    }
+
+    public static TransferRecordingSummary read(Path recording) throws IOException {
+        return read(recording, Instant.MIN, Instant.MAX);
+    }
+
+    /**
+     * Reads events which started within [from, to).
+     */
+    public static TransferRecordingSummary read(Path recording, Instant from, Instant to) throws IOException {
+        Map<TransferPhase, LatenciesBuilder> phases = new EnumMap<>(TransferPhase.class);
+        Map<String, LatenciesBuilder> lockWaits = new HashMap<>();
+
+        try (RecordingFile file = new RecordingFile(recording)) {
+            while (file.hasMoreEvents()) {
+                RecordedEvent event = file.readEvent();
+                if (event.getStartTime().isBefore(from) || !event.getStartTime().isBefore(to)) {
+                    continue;
+                }
+
+                String name = event.getEventType().getName();
+                long durationNanos = event.getDuration().toNanos();
+                if (TransferPhaseEvent.NAME.equals(name)) {
+                    TransferPhase phase = TransferPhase.valueOf(event.getString("phase"));
+                    phases.computeIfAbsent(phase, p -> new LatenciesBuilder()).add(durationNanos);
+                } else if (AccountLockContendedEvent.NAME.equals(name)) {
+                    lockWaits.computeIfAbsent(event.getString("accountId"), id -> new LatenciesBuilder())
+                            .add(durationNanos);
+                }
+            }
+        }
+
+        Map<TransferPhase, Latencies> phaseLatencies = new EnumMap<>(TransferPhase.class);
+        phases.forEach((phase, builder) -> phaseLatencies.put(phase, builder.build()));
+        Map<String, Latencies> lockWaitLatencies = new HashMap<>();
+        lockWaits.forEach((accountId, builder) -> lockWaitLatencies.put(accountId, builder.build()));
+        return new TransferRecordingSummary(phaseLatencies, lockWaitLatencies);
+    }
+
+    /**
+     * @return latencies of the phase or null if the recording has no events of it
+     */
+    public Latencies getPhase(TransferPhase phase) {
+        return phases.get(phase);
+    }
+
+    /**
+     * @return contended lock waits of the account or null if the recording has none
+     */
+    public Latencies getLockWaits(String accountId) {
+        return lockWaits.get(accountId);
+    }
+
+    /**
+     * @return accounts by total time transfers waited for their locks, longest first
+     */
+    public List<String> getMostContendedAccounts(int limit) {
+        List<String> accountIds = new ArrayList<>(lockWaits.keySet());
+        accountIds.sort(Comparator.comparingLong((String id) -> lockWaits.get(id).getTotalNanos()).reversed()
+                .thenComparing(Comparator.naturalOrder()));
+        return accountIds.subList(0, Math.min(limit, accountIds.size()));
+    }
+
+    @Override
+    public String toString() {
+        long totalNanos = 0;
+        for (Latencies latencies : phases.values()) {
+            totalNanos += latencies.getTotalNanos();
+        }
+
+        StringBuilder result = new StringBuilder();
+        result.append(String.format("%-18s %10s %7s %10s %10s %10s %10s%n",
+                "phase", "count", "share", "mean us", "p50 us", "p99 us", "max us"));
+        for (Map.Entry<TransferPhase, Latencies> phase : phases.entrySet()) {
+            Latencies latencies = phase.getValue();
+            result.append(String.format("%-18s %10d %6.1f%% %s%n", phase.getKey(), latencies.getCount(),
+                    100.0 * latencies.getTotalNanos() / Math.max(totalNanos, 1), latencies));
+        }
+
+        List<String> contended = getMostContendedAccounts(TOP_ACCOUNTS);
+        if (!contended.isEmpty()) {
+            result.append(String.format("%nmost contended account locks%n"));
+            result.append(String.format("%-26s %10s %10s %10s %10s %10s%n",
+                    "account", "waits", "mean us", "p50 us", "p99 us", "max us"));
+            for (String accountId : contended) {
+                Latencies latencies = lockWaits.get(accountId);
+                result.append(String.format("%-26s %10d %s%n", accountId, latencies.getCount(), latencies));
+            }
+        }
+        return result.toString();
+    }
+
+    public static final class Latencies {
+        private final long[] sortedNanos;
+        private final long totalNanos;
+
+        private Latencies(long[] sortedNanos, long totalNanos) {
+            this.sortedNanos = sortedNanos;
+            this.totalNanos = totalNanos;
+        }
+
+        public int getCount() {
+            return sortedNanos.length;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public long getPercentileNanos(double percentile) {
+            int index = (int) Math.ceil(percentile / 100 * sortedNanos.length) - 1;
+            return sortedNanos[Math.max(index, 0)];
+        }
+
+        public long getMaxNanos() {
+            return sortedNanos[sortedNanos.length - 1];
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%10.1f %10.1f %10.1f %10.1f", totalNanos / 1e3 / sortedNanos.length,
+                    getPercentileNanos(50) / 1e3, getPercentileNanos(99) / 1e3, getMaxNanos() / 1e3);
+        }
+    }
+
+    private static final class LatenciesBuilder {
+        private long[] nanos = new long[64];
+        private int count;
+        private long totalNanos;
+
+        void add(long durationNanos) {
+            if (count == nanos.length) {
+                nanos = Arrays.copyOf(nanos, count * 2);
+            }
+            nanos[count++] = durationNanos;
+            totalNanos += durationNanos;
+        }
+
+        Latencies build() {
+            long[] sorted = Arrays.copyOf(nanos, count);
+            Arrays.sort(sorted);
+            return new Latencies(sorted, totalNanos);
+        }
+    }
+}
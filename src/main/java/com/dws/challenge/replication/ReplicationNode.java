@@ -0,0 +1,8 @@
+package com.dws.challenge.replication;
+
+import com.dws.challenge.domain.ReplicationStatus;
+
+public interface ReplicationNode {
+
+    ReplicationStatus getStatus();
+}
@@ -0,0 +1,324 @@
+package com.dws.challenge.replication;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.ReplicationStatus;
+import com.dws.challenge.replication.ReplicationProtocol.Changes;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.service.CommittedChangesListener;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streams committed account states and removals to a single standby over a socket. A standby gets snapshot of all
+ * accounts once connected, so it catches up after any disconnect, and changes of the current epoch are applied by
+ * version, so their order does not matter. Holds are replicated as held balances of their accounts, their expiry as
+ * the state after it; hold records stay with the primary, as the standby only serves reads. In sync mode a change is
+ * confirmed to the client only once the standby applied it or the sync timeout elapsed. A standby which falls too
+ * far behind is disconnected and resynchronized.
+ */
+@Component
+@ConditionalOnProperty(name = "replication.role", havingValue = "primary")
+@Slf4j
+public class ReplicationPrimary implements CommittedChangesListener, ReplicationNode {
+
+    private static final int SNAPSHOT_BATCH_SIZE = 1000;
+
+    private final AccountsRepository accountsRepository;
+    private final InetSocketAddress address;
+    private final boolean sync;
+    private final long syncTimeoutMillis;
+    private final int maxPendingChanges;
+
+    // standbys of a previous primary process drop their state, as account versions restart with the process
+    private final long epoch = new SecureRandom().nextLong();
+    private final AtomicLong sequence = new AtomicLong();
+    // changes are queued in sequence order, so an acknowledged sequence covers all lower ones
+    private final Object enqueued = new Object();
+    private final Object acknowledged = new Object();
+    private volatile long acknowledgedSequence;
+    private volatile Connection connection;
+    private volatile ServerSocket serverSocket;
+
+    @Autowired
+    public ReplicationPrimary(AccountsRepository accountsRepository,
+                              @Value("${replication.bind-address:127.0.0.1}") String bindAddress,
+                              @Value("${replication.port:18090}") int port,
+                              @Value("${replication.mode:async}") String mode,
+                              @Value("${replication.sync-timeout-ms:1000}") long syncTimeoutMillis,
+                              @Value("${replication.max-pending-changes:100000}") int maxPendingChanges)
+            throws IOException {
+        if (!"sync".equals(mode) && !"async".equals(mode)) {
+            throw new IllegalArgumentException("Replication mode must be sync or async, not " + mode);
+        }
+        this.accountsRepository = accountsRepository;
+        this.address = new InetSocketAddress(InetAddress.getByName(bindAddress), port);
+        this.sync = "sync".equals(mode);
+        this.syncTimeoutMillis = syncTimeoutMillis;
+        this.maxPendingChanges = maxPendingChanges;
+    }
+
+    /**
+     * Starts accepting standby once the application is ready, so that accounts seeded on startup are in snapshot.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() throws IOException {
+        serverSocket = new ServerSocket();
+        serverSocket.bind(address);
+        log.info("Accepting standby on {} in {} mode", serverSocket.getLocalSocketAddress(), sync ? "sync" : "async");
+
+        Thread acceptor = new Thread(this::accept, "replication-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+        Connection current = connection;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void changesCommitted(List<Account> accounts) {
+        replicate(accounts, Collections.emptyList());
+    }
+
+    @Override
+    public void accountsRemoved(List<String> accountIds) {
+        replicate(Collections.emptyList(), accountIds);
+    }
+
+    @Override
+    public ReplicationStatus getStatus() {
+        Connection current = connection;
+        long lagMillis = 0;
+        if (current != null) {
+            Changes oldest = current.inFlight.peek();
+            if (oldest == null) {
+                oldest = current.pending.peek();
+            }
+            if (oldest != null) {
+                lagMillis = Math.max(System.currentTimeMillis() - oldest.committedAtMillis, 0);
+            }
+        }
+        return new ReplicationStatus("primary", current != null, current != null && current.synced, epoch,
+                sequence.get(), acknowledgedSequence, lagMillis);
+    }
+
+    private void replicate(List<Account> accounts, List<String> removedAccountIds) {
+        long changeSequence;
+        Connection current;
+        boolean queued;
+        synchronized (enqueued) {
+            changeSequence = sequence.incrementAndGet();
+            current = connection;
+            if (current == null) {
+                return;
+            }
+            queued = current.pending.offer(
+                    new Changes(changeSequence, System.currentTimeMillis(), accounts, removedAccountIds));
+        }
+
+        if (!queued) {
+            log.warn("Disconnecting standby {} which is {} changes behind", current, maxPendingChanges);
+            current.close();
+            return;
+        }
+
+        if (sync) {
+            awaitAcknowledged(current, changeSequence);
+        }
+    }
+
+    private void awaitAcknowledged(Connection current, long changeSequence) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(syncTimeoutMillis);
+        synchronized (acknowledged) {
+            while (acknowledgedSequence < changeSequence && connection == current) {
+                long remainingNanos = deadline - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    log.warn("Standby did not acknowledge change {} within {} ms", changeSequence, syncTimeoutMillis);
+                    return;
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(acknowledged, remainingNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+
+                Connection previous = connection;
+                if (previous != null) {
+                    log.info("Replacing standby {} with {}", previous, socket.getRemoteSocketAddress());
+                    previous.close();
+                }
+                Connection current = new Connection(socket);
+                // registered before snapshot is read, so no change committed meanwhile is missed
+                connection = current;
+                current.start();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    log.warn("Failed to accept standby: {}", e.toString());
+                }
+            }
+        }
+    }
+
+    private void acknowledge(long changeSequence) {
+        synchronized (acknowledged) {
+            if (changeSequence > acknowledgedSequence) {
+                acknowledgedSequence = changeSequence;
+            }
+            acknowledged.notifyAll();
+        }
+    }
+
+    private final class Connection {
+        private final Socket socket;
+        private final BlockingQueue<Changes> pending = new LinkedBlockingQueue<>(maxPendingChanges);
+        // sent and not yet acknowledged, in sequence order
+        private final ConcurrentLinkedQueue<Changes> inFlight = new ConcurrentLinkedQueue<>();
+        private volatile boolean synced;
+
+        Connection(Socket socket) {
+            this.socket = socket;
+        }
+
+        void start() {
+            Thread sender = new Thread(this::send, "replication-sender");
+            sender.setDaemon(true);
+            sender.start();
+            Thread receiver = new Thread(this::receive, "replication-receiver");
+            receiver.setDaemon(true);
+            receiver.start();
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                log.debug("Failed to close standby connection: {}", e.toString());
+            }
+            synchronized (acknowledged) {
+                if (connection == this) {
+                    connection = null;
+                }
+                // sync waiters give up on a disconnected standby
+                acknowledged.notifyAll();
+            }
+        }
+
+        private void send() {
+            try {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                ReplicationProtocol.writeHello(out, epoch);
+                sendSnapshot(out);
+                ReplicationProtocol.writeSnapshotEnd(out);
+                out.flush();
+                synced = true;
+                log.info("Sent snapshot to standby {}", this);
+
+                List<Changes> batch = new ArrayList<>();
+                while (!socket.isClosed()) {
+                    Changes changes = pending.poll(1, TimeUnit.SECONDS);
+                    if (changes == null) {
+                        continue;
+                    }
+                    batch.add(changes);
+                    pending.drainTo(batch);
+                    for (Changes batched : batch) {
+                        inFlight.add(batched);
+                        ReplicationProtocol.writeChanges(out, batched);
+                    }
+                    out.flush();
+                    batch.clear();
+                }
+            } catch (IOException e) {
+                log.info("Lost standby {}: {}", this, e.toString());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                close();
+            }
+        }
+
+        private void sendSnapshot(DataOutputStream out) throws IOException {
+            // read before it's sent, so the repository is not held up by a slow standby
+            List<Account> accounts = new ArrayList<>();
+            accountsRepository.forEachAccount(accounts::add);
+            for (int from = 0; from < accounts.size(); from += SNAPSHOT_BATCH_SIZE) {
+                List<Account> batch = accounts.subList(from, Math.min(from + SNAPSHOT_BATCH_SIZE, accounts.size()));
+                ReplicationProtocol.writeChanges(out, new Changes(ReplicationProtocol.SNAPSHOT_SEQUENCE,
+                        System.currentTimeMillis(), batch));
+            }
+        }
+
+        private void receive() {
+            try {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                while (true) {
+                    byte type = in.readByte();
+                    if (type != ReplicationProtocol.ACK) {
+                        throw new IOException("Unexpected frame " + type);
+                    }
+                    long changeSequence = in.readLong();
+                    Changes oldest;
+                    while ((oldest = inFlight.peek()) != null && oldest.sequence <= changeSequence) {
+                        inFlight.poll();
+                    }
+                    acknowledge(changeSequence);
+                }
+            } catch (IOException e) {
+                log.debug("Standby {} closed: {}", this, e.toString());
+            } finally {
+                close();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(socket.getRemoteSocketAddress());
+        }
+    }
+}
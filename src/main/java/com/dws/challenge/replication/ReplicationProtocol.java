@@ -0,0 +1,101 @@
+package com.dws.challenge.replication;
+
+import com.dws.challenge.domain.Account;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Frames exchanged between primary and standby. Primary sends its epoch once connected, then snapshot of all
+ * accounts followed by changes as they are committed. A change carries states of changed accounts and ids of removed
+ * ones. Standby acknowledges every applied change.
+ */
+final class ReplicationProtocol {
+
+    // primary to standby
+    static final byte HELLO = 1;
+    static final byte CHANGES = 2;
+    static final byte SNAPSHOT_END = 3;
+    // standby to primary
+    static final byte ACK = 4;
+
+    // sequence of snapshot frames, which are not acknowledged
+    static final long SNAPSHOT_SEQUENCE = 0;
+
+    private ReplicationProtocol() {
+    }
+
+    static void writeHello(DataOutputStream out, long epoch) throws IOException {
+        out.writeByte(HELLO);
+        out.writeLong(epoch);
+    }
+
+    static void writeChanges(DataOutputStream out, Changes changes) throws IOException {
+        out.writeByte(CHANGES);
+        out.writeLong(changes.sequence);
+        out.writeLong(changes.committedAtMillis);
+        out.writeInt(changes.accounts.size());
+        for (Account account : changes.accounts) {
+            out.writeUTF(account.getAccountId());
+            out.writeUTF(account.getBalance().toString());
+            out.writeUTF(account.getHeldBalance().toString());
+            out.writeLong(account.getVersion());
+        }
+        out.writeInt(changes.removedAccountIds.size());
+        for (String accountId : changes.removedAccountIds) {
+            out.writeUTF(accountId);
+        }
+    }
+
+    static void writeSnapshotEnd(DataOutputStream out) throws IOException {
+        out.writeByte(SNAPSHOT_END);
+    }
+
+    static void writeAck(DataOutputStream out, long sequence) throws IOException {
+        out.writeByte(ACK);
+        out.writeLong(sequence);
+    }
+
+    /**
+     * Reads changes frame, which type byte was already read.
+     */
+    static Changes readChanges(DataInputStream in) throws IOException {
+        long sequence = in.readLong();
+        long committedAtMillis = in.readLong();
+        int count = in.readInt();
+        List<Account> accounts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            accounts.add(new Account(in.readUTF(), new BigDecimal(in.readUTF()), new BigDecimal(in.readUTF()),
+                    in.readLong()));
+        }
+        int removedCount = in.readInt();
+        List<String> removedAccountIds = new ArrayList<>(removedCount);
+        for (int i = 0; i < removedCount; i++) {
+            removedAccountIds.add(in.readUTF());
+        }
+        return new Changes(sequence, committedAtMillis, accounts, removedAccountIds);
+    }
+
+    static final class Changes {
+        final long sequence;
+        final long committedAtMillis;
+        final List<Account> accounts;
+        final List<String> removedAccountIds;
+
+        Changes(long sequence, long committedAtMillis, List<Account> accounts) {
+            this(sequence, committedAtMillis, accounts, Collections.emptyList());
+        }
+
+        Changes(long sequence, long committedAtMillis, List<Account> accounts, List<String> removedAccountIds) {
+            this.sequence = sequence;
+            this.committedAtMillis = committedAtMillis;
+            this.accounts = accounts;
+            this.removedAccountIds = removedAccountIds;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.dws.challenge.replication;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.ReplicationStatus;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.NotExistingAccountException;
+import com.dws.challenge.replication.ReplicationProtocol.Changes;
+import com.dws.challenge.repository.AccountsRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.math.BigDecimal;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Follows primary into the local repository, which then serves reads. Account states are applied only if they are
+ * newer than the applied ones, so snapshot and changes may overlap. Accounts missing from a snapshot were removed
+ * while the standby was disconnected, they are removed once the snapshot is applied. Connection is retried until the
+ * standby stops.
+ */
+@Component
+@ConditionalOnProperty(name = "replication.role", havingValue = "standby")
+@Slf4j
+public class ReplicationStandby implements ReplicationNode {
+
+    private final AccountsRepository accountsRepository;
+    private final InetSocketAddress primaryAddress;
+    private final long reconnectIntervalMillis;
+
+    // primary versions of applied account states, versions assigned by local repository differ
+    private final Map<String, Long> appliedVersions = new HashMap<>();
+    private volatile Long epoch;
+    private volatile boolean connected;
+    private volatile boolean synced;
+    private volatile long appliedSequence;
+    private volatile long lagMillis;
+    private volatile boolean stopped;
+    private volatile Socket socket;
+    private Thread follower;
+
+    @Autowired
+    public ReplicationStandby(AccountsRepository accountsRepository,
+                              @Value("${replication.primary-host:127.0.0.1}") String primaryHost,
+                              @Value("${replication.port:18090}") int primaryPort,
+                              @Value("${replication.reconnect-interval-ms:1000}") long reconnectIntervalMillis) {
+        this.accountsRepository = accountsRepository;
+        this.primaryAddress = InetSocketAddress.createUnresolved(primaryHost, primaryPort);
+        this.reconnectIntervalMillis = reconnectIntervalMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        follower = new Thread(this::follow, "replication-standby");
+        follower.setDaemon(true);
+        follower.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        stopped = true;
+        Socket current = socket;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                log.debug("Failed to close primary connection: {}", e.toString());
+            }
+        }
+        follower.interrupt();
+        follower.join(reconnectIntervalMillis);
+    }
+
+    @Override
+    public ReplicationStatus getStatus() {
+        Long currentEpoch = epoch;
+        long sequence = appliedSequence;
+        return new ReplicationStatus("standby", connected, synced, currentEpoch != null ? currentEpoch : 0,
+                sequence, sequence, lagMillis);
+    }
+
+    private void follow() {
+        while (!stopped) {
+            try (Socket current = new Socket()) {
+                socket = current;
+                current.connect(new InetSocketAddress(primaryAddress.getHostString(), primaryAddress.getPort()));
+                current.setTcpNoDelay(true);
+                connected = true;
+                log.info("Following primary {}", primaryAddress);
+                follow(current);
+            } catch (IOException e) {
+                if (!stopped) {
+                    log.info("Lost primary {}: {}", primaryAddress, e.toString());
+                }
+            } finally {
+                connected = false;
+                synced = false;
+            }
+
+            try {
+                Thread.sleep(reconnectIntervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void follow(Socket current) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(current.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(current.getOutputStream()));
+
+        if (in.readByte() != ReplicationProtocol.HELLO) {
+            throw new IOException("Primary did not introduce itself");
+        }
+        long primaryEpoch = in.readLong();
+        if (epoch == null || epoch != primaryEpoch) {
+            log.info("Dropping accounts replicated from previous primary");
+            accountsRepository.clearAccounts();
+            appliedVersions.clear();
+            appliedSequence = 0;
+            epoch = primaryEpoch;
+        }
+
+        Set<String> snapshotAccounts = new HashSet<>();
+        while (true) {
+            byte type = in.readByte();
+            if (type == ReplicationProtocol.SNAPSHOT_END) {
+                for (String accountId : new ArrayList<>(appliedVersions.keySet())) {
+                    if (!snapshotAccounts.contains(accountId)) {
+                        remove(accountId);
+                    }
+                }
+                snapshotAccounts.clear();
+                synced = true;
+                log.info("Applied snapshot of primary {}", primaryAddress);
+            } else if (type == ReplicationProtocol.CHANGES) {
+                Changes changes = ReplicationProtocol.readChanges(in);
+                for (Account account : changes.accounts) {
+                    apply(account);
+                }
+                for (String accountId : changes.removedAccountIds) {
+                    remove(accountId);
+                }
+                if (changes.sequence == ReplicationProtocol.SNAPSHOT_SEQUENCE) {
+                    for (Account account : changes.accounts) {
+                        snapshotAccounts.add(account.getAccountId());
+                    }
+                } else {
+                    appliedSequence = changes.sequence;
+                    lagMillis = Math.max(System.currentTimeMillis() - changes.committedAtMillis, 0);
+                    ReplicationProtocol.writeAck(out, changes.sequence);
+                    out.flush();
+                }
+            } else {
+                throw new IOException("Unexpected frame " + type);
+            }
+        }
+    }
+
+    private void apply(Account account) {
+        Long appliedVersion = appliedVersions.get(account.getAccountId());
+        if (appliedVersion != null && appliedVersion >= account.getVersion()) {
+            return;
+        }
+
+        Account state = new Account(account.getAccountId(), account.getBalance(), account.getHeldBalance());
+        if (appliedVersion == null) {
+            try {
+                accountsRepository.createAccount(state);
+                appliedVersions.put(account.getAccountId(), account.getVersion());
+                return;
+            } catch (DuplicateAccountIdException e) {
+                // created locally, updated below
+            }
+        }
+
+        try {
+            accountsRepository.lockAccount(account.getAccountId());
+            try {
+                accountsRepository.updateAccount(state);
+            } finally {
+                accountsRepository.releaseAccount(account.getAccountId());
+            }
+        } catch (NotExistingAccountException e) {
+            accountsRepository.createAccount(state);
+        }
+        appliedVersions.put(account.getAccountId(), account.getVersion());
+    }
+
+    private void remove(String accountId) {
+        appliedVersions.remove(accountId);
+        try {
+            // primary clears accounts regardless of their funds, so the account is emptied before it's closed
+            accountsRepository.lockAccount(accountId);
+            try {
+                accountsRepository.updateAccount(new Account(accountId, BigDecimal.ZERO, BigDecimal.ZERO));
+            } finally {
+                accountsRepository.releaseAccount(accountId);
+            }
+            accountsRepository.closeAccount(accountId);
+        } catch (NotExistingAccountException e) {
+            // removed before it was replicated
+        }
+    }
+}
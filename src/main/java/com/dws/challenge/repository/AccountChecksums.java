@@ -0,0 +1,102 @@
+package com.dws.challenge.repository;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Hash tree of account balances for reconciliation with another system which computes it the same way. Accounts are
+ * spread over 16^4 buckets by account id, a bucket is a leaf and a node of the tree is identified by the hex prefix
+ * of its buckets, so every node has 16 children and a bucket is 4 levels below the root.
+ * <p>
+ * Checksum of an account is 64 bits of FNV-1a over the UTF-16 code units of its id, a line feed and its balance
+ * without trailing zeros in plain notation, finished by the splitmix64 mixer. Checksum of a bucket, as well as of any
+ * node, is the sum of checksums of its accounts modulo 2^64. Changes are therefore commutative deltas of a single
+ * bucket, applied without locking; node checksums are summed from buckets on read. A node read while accounts of it
+ * are changing may mix states before and after the change.
+ */
+public final class AccountChecksums {
+
+    public static final int PREFIX_DIGITS = 4;
+    public static final int BUCKETS = 1 << (4 * PREFIX_DIGITS);
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    void add(String accountId, BigDecimal balance) {
+        buckets.addAndGet(bucket(accountId), checksum(accountId, balance));
+    }
+
+    void remove(String accountId, BigDecimal balance) {
+        buckets.addAndGet(bucket(accountId), -checksum(accountId, balance));
+    }
+
+    void update(String accountId, BigDecimal previousBalance, BigDecimal balance) {
+        if (previousBalance.compareTo(balance) != 0) {
+            buckets.addAndGet(bucket(accountId), checksum(accountId, balance) - checksum(accountId, previousBalance));
+        }
+    }
+
+    /**
+     * @param prefix hex prefix of up to {@link #PREFIX_DIGITS} digits, empty for the root
+     */
+    public long getChecksum(String prefix) {
+        int shift = 4 * (PREFIX_DIGITS - prefix.length());
+        int first = prefix.isEmpty() ? 0 : Integer.parseInt(prefix, 16) << shift;
+        long checksum = 0;
+        for (int i = first; i < first + (1 << shift); i++) {
+            checksum += buckets.get(i);
+        }
+        return checksum;
+    }
+
+    /**
+     * @return hex prefix of the bucket of the account
+     */
+    public static String bucketPrefix(String accountId) {
+        String hex = Integer.toHexString(bucket(accountId) | BUCKETS);
+        return hex.substring(hex.length() - PREFIX_DIGITS);
+    }
+
+    /**
+     * @return bucket of the account: top bits of its id's {@link String#hashCode()} mixed by the murmur3 finalizer
+     */
+    public static int bucket(String accountId) {
+        return bucketOfHashCode(accountId.hashCode());
+    }
+
+    /**
+     * @return bucket of an account id with the hash code
+     */
+    static int bucketOfHashCode(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash >>> (32 - 4 * PREFIX_DIGITS);
+    }
+
+    public static long checksum(String accountId, BigDecimal balance) {
+        long hash = FNV_OFFSET_BASIS;
+        hash = fnv(hash, accountId);
+        hash = (hash ^ '\n') * FNV_PRIME;
+        hash = fnv(hash, balance.stripTrailingZeros().toPlainString());
+
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return hash ^ (hash >>> 31);
+    }
+
+    public static String toHex(long checksum) {
+        return String.format("%016x", checksum);
+    }
+
+    private static long fnv(long hash, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+        return hash;
+    }
+}
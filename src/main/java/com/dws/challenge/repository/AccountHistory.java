@@ -0,0 +1,167 @@
+package com.dws.challenge.repository;
+
+import com.dws.challenge.domain.Account;
+
+import java.math.BigDecimal;
+
+/**
+ * States of an account ordered by the time they were committed at, kept as primitives: commit time, version, and
+ * balance and held balance as unscaled values with their scales, 36 bytes per state. Balances which do not fit are
+ * kept as objects in a side array, allocated by the first of them. At most the limit of states is kept, once it's
+ * reached the older half of them is dropped. Appended and expired by the owner of the account lock, read without
+ * locking: slots below the published count are never overwritten, expiry, drops and growth copy the states to new
+ * arrays instead.
+ */
+final class AccountHistory {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private final int maxStates;
+    private volatile Versions versions;
+
+    AccountHistory(long committedAtMillis, Account state, int maxStates) {
+        this.maxStates = Math.max(maxStates, 2);
+        Versions initial = new Versions(Math.min(INITIAL_CAPACITY, this.maxStates));
+        initial.set(0, committedAtMillis, state);
+        initial.count = 1;
+        this.versions = initial;
+    }
+
+    /**
+     * Appends the state committed at the time, which must not precede the last state. Caller must own the lock.
+     */
+    void append(long committedAtMillis, Account state) {
+        Versions current = versions;
+        int count = current.count;
+        // a clock stepping back must not break the order searched by readers
+        committedAtMillis = Math.max(committedAtMillis, current.committedAtMillis[count - 1]);
+
+        if (count == current.committedAtMillis.length) {
+            if (count == maxStates) {
+                // dropping half of the states at once keeps appends amortized constant
+                int retained = count / 2;
+                current = current.copy(count - retained, retained, maxStates);
+            } else {
+                current = current.copy(0, count, Math.min(count * 2, maxStates));
+            }
+            versions = current;
+            count = current.count;
+        }
+        current.set(count, committedAtMillis, state);
+        current.count = count + 1;
+    }
+
+    /**
+     * @return state effective at the time, or null if it's earlier than the first retained state
+     */
+    Account find(String accountId, long asOfMillis) {
+        Versions current = versions;
+        int count = current.count;
+
+        // the last state committed at or before the time
+        int low = 0;
+        int high = count - 1;
+        int found = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (current.committedAtMillis[middle] <= asOfMillis) {
+                found = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return found >= 0 ? current.get(found, accountId) : null;
+    }
+
+    /**
+     * Drops states replaced before the time, keeping the state effective at it. Caller must own the lock.
+     *
+     * @return number of dropped states
+     */
+    int expire(long beforeMillis) {
+        Versions current = versions;
+        int count = current.count;
+
+        int first = 0;
+        while (first + 1 < count && current.committedAtMillis[first + 1] <= beforeMillis) {
+            first++;
+        }
+        if (first > 0) {
+            int retained = count - first;
+            versions = current.copy(first, retained, Math.min(Math.max(INITIAL_CAPACITY, retained * 2), maxStates));
+        }
+        return first;
+    }
+
+    int size() {
+        return versions.count;
+    }
+
+    private static final class Versions {
+        private final long[] committedAtMillis;
+        private final long[] versions;
+        private final long[] unscaledBalances;
+        private final long[] unscaledHeldBalances;
+        // scale of the balance in the upper and scale of the held balance in the lower half
+        private final int[] scales;
+        // balance and held balance of states which do not fit the arrays above, allocated by the first of them
+        private BigDecimal[] largeBalances;
+        // written after the slot it publishes
+        private volatile int count;
+
+        Versions(int capacity) {
+            this.committedAtMillis = new long[capacity];
+            this.versions = new long[capacity];
+            this.unscaledBalances = new long[capacity];
+            this.unscaledHeldBalances = new long[capacity];
+            this.scales = new int[capacity];
+        }
+
+        void set(int slot, long committedAtMillis, Account state) {
+            this.committedAtMillis[slot] = committedAtMillis;
+            this.versions[slot] = state.getVersion();
+            BigDecimal balance = state.getBalance();
+            BigDecimal heldBalance = state.getHeldBalance();
+            if (fits(balance) && fits(heldBalance)) {
+                unscaledBalances[slot] = balance.unscaledValue().longValue();
+                unscaledHeldBalances[slot] = heldBalance.unscaledValue().longValue();
+                scales[slot] = balance.scale() << 16 | heldBalance.scale() & 0xFFFF;
+                return;
+            }
+
+            if (largeBalances == null) {
+                largeBalances = new BigDecimal[2 * this.committedAtMillis.length];
+            }
+            largeBalances[2 * slot] = balance;
+            largeBalances[2 * slot + 1] = heldBalance;
+        }
+
+        Account get(int slot, String accountId) {
+            if (largeBalances != null && largeBalances[2 * slot] != null) {
+                return new Account(accountId, largeBalances[2 * slot], largeBalances[2 * slot + 1], versions[slot]);
+            }
+            return new Account(accountId, BigDecimal.valueOf(unscaledBalances[slot], scales[slot] >> 16),
+                    BigDecimal.valueOf(unscaledHeldBalances[slot], (short) scales[slot]), versions[slot]);
+        }
+
+        Versions copy(int from, int length, int capacity) {
+            Versions copy = new Versions(capacity);
+            System.arraycopy(committedAtMillis, from, copy.committedAtMillis, 0, length);
+            System.arraycopy(versions, from, copy.versions, 0, length);
+            System.arraycopy(unscaledBalances, from, copy.unscaledBalances, 0, length);
+            System.arraycopy(unscaledHeldBalances, from, copy.unscaledHeldBalances, 0, length);
+            System.arraycopy(scales, from, copy.scales, 0, length);
+            if (largeBalances != null) {
+                copy.largeBalances = new BigDecimal[2 * capacity];
+                System.arraycopy(largeBalances, 2 * from, copy.largeBalances, 0, 2 * length);
+            }
+            copy.count = length;
+            return copy;
+        }
+
+        private static boolean fits(BigDecimal value) {
+            return value.unscaledValue().bitLength() < Long.SIZE && value.scale() == (short) value.scale();
+        }
+    }
+}
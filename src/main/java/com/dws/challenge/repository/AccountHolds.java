@@ -0,0 +1,113 @@
+package com.dws.challenge.repository;
+
+import com.dws.challenge.exception.InvalidAccountChangeException;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Active holds of a single account kept in parallel primitive arrays, which is about 25 bytes per hold.
+ * Not thread safe, it's guarded by the account lock.
+ */
+class AccountHolds {
+
+    private long[] ids = new long[2];
+    private long[] expiresAt = new long[2];
+    private long[] unscaledAmounts = new long[2];
+    private byte[] scales = new byte[2];
+    private int size;
+    private long earliestExpiry = Long.MAX_VALUE;
+
+    void add(long id, BigDecimal amount, long expiresAtMillis) {
+        if (amount.scale() > Byte.MAX_VALUE || amount.scale() < Byte.MIN_VALUE
+                || amount.unscaledValue().bitLength() >= Long.SIZE) {
+            throw new InvalidAccountChangeException("Can not hold amount " + amount);
+        }
+
+        if (size == ids.length) {
+            int capacity = size * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            expiresAt = Arrays.copyOf(expiresAt, capacity);
+            unscaledAmounts = Arrays.copyOf(unscaledAmounts, capacity);
+            scales = Arrays.copyOf(scales, capacity);
+        }
+
+        ids[size] = id;
+        expiresAt[size] = expiresAtMillis;
+        unscaledAmounts[size] = amount.unscaledValue().longValueExact();
+        scales[size] = (byte) amount.scale();
+        size++;
+        earliestExpiry = Math.min(earliestExpiry, expiresAtMillis);
+    }
+
+    boolean contains(long id) {
+        for (int i = 0; i < size; i++) {
+            if (ids[i] == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return held amount or null if there is no such hold
+     */
+    BigDecimal remove(long id) {
+        for (int i = 0; i < size; i++) {
+            if (ids[i] == id) {
+                BigDecimal amount = amountAt(i);
+                removeAt(i);
+                updateEarliestExpiry();
+                return amount;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return total amount of removed holds
+     */
+    BigDecimal removeExpired(long nowMillis) {
+        BigDecimal total = BigDecimal.ZERO;
+        if (nowMillis < earliestExpiry) {
+            return total;
+        }
+
+        for (int i = size - 1; i >= 0; i--) {
+            if (expiresAt[i] <= nowMillis) {
+                total = total.add(amountAt(i));
+                removeAt(i);
+            }
+        }
+        updateEarliestExpiry();
+        return total;
+    }
+
+    boolean hasExpired(long nowMillis) {
+        return nowMillis >= earliestExpiry;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    private BigDecimal amountAt(int index) {
+        return new BigDecimal(BigInteger.valueOf(unscaledAmounts[index]), scales[index]);
+    }
+
+    private void removeAt(int index) {
+        size--;
+        ids[index] = ids[size];
+        expiresAt[index] = expiresAt[size];
+        unscaledAmounts[index] = unscaledAmounts[size];
+        scales[index] = scales[size];
+    }
+
+    private void updateEarliestExpiry() {
+        earliestExpiry = Long.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            earliestExpiry = Math.min(earliestExpiry, expiresAt[i]);
+        }
+    }
+}
@@ -1,20 +1,151 @@
 package com.dws.challenge.repository;
 
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Hold;
 import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.InsufficientFundsException;
 import com.dws.challenge.exception.NotExistingAccountException;
+import com.dws.challenge.exception.NotExistingHoldException;
+import com.dws.challenge.exception.StateNotRetainedException;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.function.Consumer;
 
 public interface AccountsRepository {
 
   void createAccount(Account account) throws DuplicateAccountIdException;
 
+  /**
+   * Creates accounts in bulk, it's meant for seeding the repository before it takes traffic. Whether accounts of the
+   * batch created before a duplicate are kept depends on the implementation.
+   */
+  void createAccounts(List<Account> accounts) throws DuplicateAccountIdException;
+
   Account getAccount(String accountId);
 
-  void clearAccounts();
+  /**
+   * @return true if replaced account states are kept for {@link #getAccount(String, Instant)}
+   */
+  boolean keepsHistory();
+
+  /**
+   * @return account state effective at the time, or null if the account did not exist then
+   * @throws StateNotRetainedException if the state at that time is not retained anymore, or not at all if the
+   * repository does not keep history
+   */
+  Account getAccount(String accountId, Instant asOf) throws StateNotRetainedException;
+
+  /**
+   * Removes account without funds and holds. Changes of the account waiting for it finish with
+   * {@link NotExistingAccountException}, and its id can be used for a new account right away.
+   *
+   * @throws com.dws.challenge.exception.InvalidAccountChangeException if the account has funds or holds
+   */
+  void closeAccount(String accountId) throws NotExistingAccountException;
+
+  /**
+   * Removes all accounts, it's safe while the repository takes traffic.
+   */
+  default void clearAccounts() {
+    clearAccounts(accountId -> {
+    });
+  }
+
+  /**
+   * Removes accounts like {@link #clearAccounts()} and passes ids of removed accounts to the consumer once they are
+   * unlocked.
+   */
+  void clearAccounts(Consumer<String> removedAccounts);
+
+  /**
+   * Accounts with balance within inclusive bounds ordered by balance and account id, null bound is unbounded.
+   */
+  List<Account> getAccountsByBalance(BigDecimal minBalance, BigDecimal maxBalance, boolean descending, int limit);
+
+  /**
+   * Passes every account to the action. Accounts created or removed meanwhile may be passed or not, but unlike
+   * {@link #getAccountsByBalance} an account changed meanwhile is never missed.
+   */
+  void forEachAccount(Consumer<Account> action);
+
+  /**
+   * @return checksums of account balances kept up to date with every change, or null if the repository does not keep
+   * them
+   */
+  AccountChecksums getChecksums();
+
+  /**
+   * Accounts of the checksum bucket, found by a scan of all accounts.
+   */
+  List<Account> getChecksumBucket(int bucket);
 
   Account lockAccount(String accountId) throws NotExistingAccountException;
 
   void releaseAccount(String accountId);
 
   Account updateAccount(Account account);
+
+  /**
+   * Makes updates of the accounts locked by this thread durable before they are released, so a failure to commit is
+   * told apart from a failure to release. Accounts must be released afterwards anyway. Repositories which apply every
+   * update right away do nothing.
+   */
+  default void commitAccounts() {
+  }
+
+  Hold authorizeHold(String accountId, BigDecimal amount, Duration ttl)
+      throws NotExistingAccountException, InsufficientFundsException;
+
+  default Account captureHold(String accountId, long holdId)
+      throws NotExistingAccountException, NotExistingHoldException {
+    return captureHold(accountId, holdId, () -> {
+    });
+  }
+
+  /**
+   * Captures the hold like {@link #captureHold(String, long)}, running the action under the account lock once the
+   * hold is found, so the hold can't expire or be released between the action and the capture. The hold is not
+   * captured if the action throws.
+   */
+  Account captureHold(String accountId, long holdId, Runnable beforeCapture)
+      throws NotExistingAccountException, NotExistingHoldException;
+
+  /**
+   * Captures the hold like {@link #captureHold(String, long)} even if it has expired, as long as it was not released
+   * yet. It's meant for completing captures decided before a restart, before the account is accessed otherwise, as
+   * any access releases expired holds.
+   */
+  Account captureUnreleasedHold(String accountId, long holdId)
+      throws NotExistingAccountException, NotExistingHoldException;
+
+  Account releaseHold(String accountId, long holdId) throws NotExistingAccountException, NotExistingHoldException;
+
+  /**
+   * Releases holds expired since the previous call, visiting only accounts with such holds.
+   *
+   * @return number of accounts with released holds
+   */
+  default int releaseExpiredHolds() {
+    return releaseExpiredHolds(account -> {
+    });
+  }
+
+  /**
+   * Releases holds like {@link #releaseExpiredHolds()} and passes states of visited accounts to the consumer once
+   * they are unlocked. Expired holds may have been released already by an earlier access to the account, which
+   * changes its state just like the release by this call, so every visited account is passed.
+   *
+   * @return number of accounts with holds released by this call
+   */
+  int releaseExpiredHolds(Consumer<Account> visitedAccounts);
+
+  /**
+   * Drops account states replaced before the history retention period, keeping the state effective at its start.
+   *
+   * @return number of dropped states
+   */
+  int expireAccountHistory();
 }
@@ -1,52 +1,210 @@
 package com.dws.challenge.repository;
 
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Hold;
 import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.exception.InvalidAccountChangeException;
 import com.dws.challenge.exception.NotExistingAccountException;
+import com.dws.challenge.exception.NotExistingHoldException;
+import com.dws.challenge.exception.StateNotRetainedException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 @Repository
+@ConditionalOnProperty(name = "accounts.repository", havingValue = "in-memory", matchIfMissing = true)
 public class AccountsRepositoryInMemory implements AccountsRepository {
 
+    static final long DEFAULT_HISTORY_RETENTION_MILLIS = Duration.ofHours(24).toMillis();
+    static final int DEFAULT_MAX_HISTORY_STATES = 1024;
+
     private final Map<String, PersistedAccount> accounts = new ConcurrentHashMap<>();
+    // kept up to date under account locks
+    private final BalanceIndex balanceIndex = new BalanceIndex();
+    private final ChecksumBucketIndex checksumBucketIndex = new ChecksumBucketIndex();
+    private final AccountChecksums checksums = new AccountChecksums();
+
+    // accounts with holds expiring within a second, keyed by the end of that second
+    private final ConcurrentNavigableMap<Long, Set<String>> holdExpiries = new ConcurrentSkipListMap<>();
+    private final AtomicLong holdIds = new AtomicLong();
+    // accounts re-created with the same id start from higher versions than before
+    private final AtomicLong createdAccounts = new AtomicLong();
+    private final Clock clock;
+    private final long historyRetentionMillis;
+    private final int maxHistoryStates;
+
+    public AccountsRepositoryInMemory() {
+        this(Clock.systemUTC(), DEFAULT_HISTORY_RETENTION_MILLIS, DEFAULT_MAX_HISTORY_STATES);
+    }
+
+    @Autowired
+    public AccountsRepositoryInMemory(@Value("${accounts.history.retention-ms:86400000}") long historyRetentionMillis,
+                                      @Value("${accounts.history.max-states:1024}") int maxHistoryStates) {
+        this(Clock.systemUTC(), historyRetentionMillis, maxHistoryStates);
+    }
+
+    AccountsRepositoryInMemory(Clock clock) {
+        this(clock, DEFAULT_HISTORY_RETENTION_MILLIS, DEFAULT_MAX_HISTORY_STATES);
+    }
+
+    AccountsRepositoryInMemory(Clock clock, long historyRetentionMillis) {
+        this(clock, historyRetentionMillis, DEFAULT_MAX_HISTORY_STATES);
+    }
+
+    AccountsRepositoryInMemory(Clock clock, long historyRetentionMillis, int maxHistoryStates) {
+        this.clock = clock;
+        this.historyRetentionMillis = historyRetentionMillis;
+        this.maxHistoryStates = maxHistoryStates;
+    }
 
     @Override
     public void createAccount(Account account) throws DuplicateAccountIdException {
-        PersistedAccount previousAccount = accounts.putIfAbsent(account.getAccountId(), new PersistedAccount(account));
-        if (previousAccount != null) {
-            throw new DuplicateAccountIdException(
-                    "Account id " + account.getAccountId() + " already exists!");
+        create(account, createdAccounts.incrementAndGet() << 32);
+    }
+
+    @Override
+    public void createAccounts(List<Account> newAccounts) throws DuplicateAccountIdException {
+        // incarnations of the whole batch are reserved at once to keep loader threads off the shared counter
+        long incarnation = createdAccounts.getAndAdd(newAccounts.size());
+        for (Account account : newAccounts) {
+            create(account, ++incarnation << 32);
         }
     }
 
     @Override
     public Account getAccount(String accountId) {
         PersistedAccount account = accounts.get(accountId);
+        if (account == null) {
+            return null;
+        }
 
-        return account != null ? account.getAccount() : null;
+        // expired holds are released lazily, unless the account is busy with another change
+        long now = clock.millis();
+        if (account.hasExpiredHolds(now) && account.tryLock()) {
+            try {
+                if (!account.isClosed()) {
+                    account.releaseExpiredHolds(now);
+                }
+            } finally {
+                account.unlock();
+            }
+        }
+
+        return account.read();
     }
 
     @Override
-    public void clearAccounts() {
-        // this method should be properly synchronized: repository should stop create accounts, method should wait until all acquired locks are released
-        // but as far as this method is supposed to be used only in tests, it's synchronization is omitted for simplicity
-
-        accounts.clear();
+    public boolean keepsHistory() {
+        return true;
     }
 
     @Override
-    public Account lockAccount(String accountId) throws NotExistingAccountException {
+    public Account getAccount(String accountId, Instant asOf) throws StateNotRetainedException {
         PersistedAccount account = accounts.get(accountId);
-        if (account == null) {
-            throw new NotExistingAccountException(accountId);
+        return account != null ? account.readAsOf(asOf.toEpochMilli()) : null;
+    }
+
+    @Override
+    public void closeAccount(String accountId) throws NotExistingAccountException {
+        PersistedAccount account = lockExistingAccount(accountId);
+        try {
+            account.releaseExpiredHolds(clock.millis());
+            if (account.hasHolds() || account.getBalance().signum() != 0) {
+                throw new InvalidAccountChangeException("Account " + accountId + " still has funds or holds");
+            }
+            remove(account);
+        } finally {
+            account.unlock();
+        }
+    }
+
+    /**
+     * Closes accounts one at a time under their locks, regardless of their funds. Changes in flight finish before
+     * their accounts are removed or find them removed, accounts created meanwhile may be kept. Entries of closed
+     * accounts in hold expiries are dropped by the sweep.
+     */
+    @Override
+    public void clearAccounts(Consumer<String> removedAccounts) {
+        for (Map.Entry<String, PersistedAccount> entry : accounts.entrySet()) {
+            PersistedAccount account = entry.getValue();
+            boolean removed = false;
+            account.lock();
+            try {
+                if (!account.isClosed()) {
+                    remove(account);
+                    removed = true;
+                }
+            } finally {
+                account.unlock();
+            }
+            if (removed) {
+                removedAccounts.accept(entry.getKey());
+            }
+        }
+    }
+
+    @Override
+    public List<Account> getAccountsByBalance(BigDecimal minBalance, BigDecimal maxBalance, boolean descending,
+                                              int limit) {
+        // accounts are read after the index lookup, an account changed meanwhile is returned with its new balance
+        List<Account> result = new ArrayList<>();
+        for (String accountId : balanceIndex.find(minBalance, maxBalance, descending, limit)) {
+            PersistedAccount account = accounts.get(accountId);
+            if (account != null) {
+                result.add(account.read());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void forEachAccount(Consumer<Account> action) {
+        for (PersistedAccount account : accounts.values()) {
+            action.accept(account.read());
+        }
+    }
+
+    @Override
+    public AccountChecksums getChecksums() {
+        return checksums;
+    }
+
+    /**
+     * Looks the accounts up in the bucket index, an account changed after the lookup is returned with its new balance.
+     */
+    @Override
+    public List<Account> getChecksumBucket(int bucket) {
+        List<Account> result = new ArrayList<>();
+        for (String accountId : checksumBucketIndex.find(bucket)) {
+            PersistedAccount account = accounts.get(accountId);
+            if (account != null) {
+                result.add(account.read());
+            }
         }
+        return result;
+    }
 
-        return account.lock();
+    @Override
+    public Account lockAccount(String accountId) throws NotExistingAccountException {
+        PersistedAccount account = lockExistingAccount(accountId);
+        account.releaseExpiredHolds(clock.millis());
+        return account.getAccount();
     }
 
     @Override
@@ -60,35 +218,205 @@ public class AccountsRepositoryInMemory implements AccountsRepository {
     @Override
     public Account updateAccount(Account account) {
         PersistedAccount persistedAccount = accounts.computeIfPresent(account.getAccountId(),
-                (id, persistedAcc) -> persistedAcc.update(account));
+                (id, persistedAcc) -> update(persistedAcc, account));
         return persistedAccount != null ? persistedAccount.getAccount() : null;
     }
 
-    private static class PersistedAccount {
-        private Account account;
-        private final Lock lock;
+    @Override
+    public Hold authorizeHold(String accountId, BigDecimal amount, Duration ttl)
+            throws NotExistingAccountException, InsufficientFundsException {
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new InvalidAccountChangeException("Hold ttl must be positive");
+        }
+        PersistedAccount account = lockExistingAccount(accountId);
+        try {
+            long now = clock.millis();
+            account.releaseExpiredHolds(now);
+
+            Account heldAccount = account.getAccount().hold(amount);
+            long holdId = holdIds.incrementAndGet();
+            long expiresAt = now + ttl.toMillis();
+            account.addHold(holdId, amount, expiresAt);
+            account.update(heldAccount, now);
 
-        PersistedAccount(Account account) {
-            this.account = account.copy();
-            this.lock = new ReentrantLock();
+            holdExpiries.computeIfAbsent(expiryBucket(expiresAt), bucket -> ConcurrentHashMap.newKeySet())
+                    .add(accountId);
+            return new Hold(holdId, accountId, amount, Instant.ofEpochMilli(expiresAt));
+        } finally {
+            account.unlock();
         }
+    }
+
+    @Override
+    public Account captureHold(String accountId, long holdId, Runnable beforeCapture)
+            throws NotExistingAccountException, NotExistingHoldException {
+        PersistedAccount account = lockExistingAccount(accountId);
+        try {
+            account.releaseExpiredHolds(clock.millis());
+
+            if (!account.hasHold(holdId)) {
+                throw new NotExistingHoldException(accountId, holdId);
+            }
+            beforeCapture.run();
 
-        public PersistedAccount update(Account account) {
-            this.account = account.copy();
-            return this;
+            BigDecimal amount = account.removeHold(holdId);
+            return update(account, account.getAccount().captureHold(amount)).getAccount();
+        } finally {
+            account.unlock();
         }
+    }
 
-        public Account getAccount() {
-            return account.copy();
+    @Override
+    public Account captureUnreleasedHold(String accountId, long holdId)
+            throws NotExistingAccountException, NotExistingHoldException {
+        PersistedAccount account = lockExistingAccount(accountId);
+        try {
+            BigDecimal amount = account.removeHold(holdId);
+            if (amount == null) {
+                throw new NotExistingHoldException(accountId, holdId);
+            }
+            update(account, account.getAccount().captureHold(amount));
+            account.releaseExpiredHolds(clock.millis());
+            return account.getAccount();
+        } finally {
+            account.unlock();
         }
+    }
+
+    @Override
+    public Account releaseHold(String accountId, long holdId)
+            throws NotExistingAccountException, NotExistingHoldException {
+        PersistedAccount account = lockExistingAccount(accountId);
+        try {
+            account.releaseExpiredHolds(clock.millis());
 
-        public Account lock() {
-            lock.lock();
-            return getAccount();
+            BigDecimal amount = account.removeHold(holdId);
+            if (amount == null) {
+                throw new NotExistingHoldException(accountId, holdId);
+            }
+            return account.update(account.getAccount().releaseHold(amount), clock.millis()).getAccount();
+        } finally {
+            account.unlock();
         }
+    }
+
+    @Override
+    public int releaseExpiredHolds(Consumer<Account> visitedAccounts) {
+        long now = clock.millis();
+        int released = 0;
+
+        Map.Entry<Long, Set<String>> bucket;
+        while ((bucket = holdExpiries.firstEntry()) != null && bucket.getKey() <= now) {
+            holdExpiries.remove(bucket.getKey());
 
-        public void unlock() {
-            lock.unlock();
+            for (String accountId : bucket.getValue()) {
+                PersistedAccount account = accounts.get(accountId);
+                if (account == null) {
+                    continue;
+                }
+
+                Account state;
+                account.lock();
+                try {
+                    if (account.isClosed()) {
+                        continue;
+                    }
+                    if (account.releaseExpiredHolds(now)) {
+                        released++;
+                    }
+                    state = account.getAccount();
+                } finally {
+                    account.unlock();
+                }
+                visitedAccounts.accept(state);
+            }
+        }
+
+        return released;
+    }
+
+    @Override
+    public int expireAccountHistory() {
+        long before = clock.millis() - historyRetentionMillis;
+        int expired = 0;
+
+        for (PersistedAccount account : accounts.values()) {
+            // accounts busy with a change are visited by the next sweep
+            if (!account.hasHistory() || !account.tryLock()) {
+                continue;
+            }
+            try {
+                expired += account.expireHistory(before);
+            } finally {
+                account.unlock();
+            }
+        }
+
+        return expired;
+    }
+
+    private void create(Account account, long initialVersion) throws DuplicateAccountIdException {
+        PersistedAccount persistedAccount = new PersistedAccount(account, initialVersion, clock.millis(), false,
+                maxHistoryStates);
+        // locked until indexed, so that changes racing with creation are indexed after it
+        persistedAccount.lock();
+        try {
+            PersistedAccount previousAccount = accounts.putIfAbsent(account.getAccountId(), persistedAccount);
+            if (previousAccount != null) {
+                throw new DuplicateAccountIdException(
+                        "Account id " + account.getAccountId() + " already exists!");
+            }
+            balanceIndex.add(account.getAccountId(), account.getBalance());
+            checksums.add(account.getAccountId(), account.getBalance());
+            checksumBucketIndex.add(account.getAccountId());
+        } finally {
+            persistedAccount.unlock();
         }
     }
+
+    /**
+     * Changes account state, caller must own the lock.
+     */
+    private PersistedAccount update(PersistedAccount persistedAccount, Account account) {
+        BigDecimal previousBalance = persistedAccount.getBalance();
+        persistedAccount.update(account, clock.millis());
+        balanceIndex.update(account.getAccountId(), previousBalance, account.getBalance());
+        checksums.update(account.getAccountId(), previousBalance, account.getBalance());
+        return persistedAccount;
+    }
+
+    /**
+     * Removes account from the repository and its indexes, caller must own the lock.
+     */
+    private void remove(PersistedAccount account) {
+        Account state = account.getAccount();
+        account.close();
+        accounts.remove(state.getAccountId(), account);
+        balanceIndex.remove(state.getAccountId(), state.getBalance());
+        checksums.remove(state.getAccountId(), state.getBalance());
+        checksumBucketIndex.remove(state.getAccountId());
+    }
+
+    /**
+     * Locks account. Account closed while the caller waited for its lock is looked up again, so the caller either
+     * gets an account which is still in the repository or finds out it does not exist.
+     */
+    private PersistedAccount lockExistingAccount(String accountId) throws NotExistingAccountException {
+        while (true) {
+            PersistedAccount account = accounts.get(accountId);
+            if (account == null) {
+                throw new NotExistingAccountException(accountId);
+            }
+
+            account.lock();
+            if (!account.isClosed()) {
+                return account;
+            }
+            account.unlock();
+        }
+    }
+
+    private static long expiryBucket(long expiresAtMillis) {
+        return (expiresAtMillis + 999) / 1000 * 1000;
+    }
 }
@@ -0,0 +1,651 @@
+package com.dws.challenge.repository;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Hold;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.exception.InvalidAccountChangeException;
+import com.dws.challenge.exception.NotExistingAccountException;
+import com.dws.challenge.exception.NotExistingHoldException;
+import com.dws.challenge.exception.StateNotRetainedException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.support.SQLStateSQLExceptionTranslator;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Relational repository. Accounts locked by a thread share one transaction: {@link #lockAccount} selects rows
+ * {@code FOR UPDATE} in the order callers lock them, {@link #updateAccount} only queues the change, and
+ * {@link #commitAccounts} or else releasing the last locked account writes all queued changes in a single JDBC batch
+ * and commits. The transaction is rolled back instead if some locked account was not updated, as when the caller
+ * failed before updating all of them, or if the commit failed.
+ */
+@Repository
+@ConditionalOnProperty(name = "accounts.repository", havingValue = "jdbc")
+@DependsOnDatabaseInitialization
+@Slf4j
+public class AccountsRepositoryJdbc implements AccountsRepository {
+
+    private static final String SELECT_ACCOUNT =
+            "SELECT balance, held_balance, version FROM accounts WHERE account_id = ?";
+    private static final String LOCK_ACCOUNT = SELECT_ACCOUNT + " FOR UPDATE";
+    private static final String INSERT_ACCOUNT =
+            "INSERT INTO accounts (account_id, balance, held_balance, checksum_bucket, version) "
+                    + "VALUES (?, ?, ?, ?, (NEXT VALUE FOR account_incarnations) * 4294967296)";
+    private static final String UPDATE_ACCOUNT =
+            "UPDATE accounts SET balance = ?, held_balance = ?, version = version + 1 WHERE account_id = ?";
+    private static final String SELECT_CHECKSUM_BUCKET =
+            "SELECT account_id, balance, held_balance, version FROM accounts WHERE checksum_bucket = ?";
+    private static final String DELETE_ACCOUNT = "DELETE FROM accounts WHERE account_id = ?";
+    private static final String SELECT_EXPIRED_HOLDS =
+            "SELECT COALESCE(SUM(amount), 0) FROM account_holds WHERE account_id = ? AND expires_at <= ?";
+    private static final String DELETE_EXPIRED_HOLDS =
+            "DELETE FROM account_holds WHERE account_id = ? AND expires_at <= ?";
+    private static final String INSERT_HOLD =
+            "INSERT INTO account_holds (hold_id, account_id, amount, expires_at) "
+                    + "VALUES (NEXT VALUE FOR account_hold_ids, ?, ?, ?)";
+    private static final String SELECT_HOLD =
+            "SELECT amount FROM account_holds WHERE hold_id = ? AND account_id = ?";
+    private static final String DELETE_HOLD = "DELETE FROM account_holds WHERE hold_id = ?";
+    private static final String DELETE_HOLDS = "DELETE FROM account_holds WHERE account_id = ?";
+    private static final String SELECT_ACCOUNTS_WITH_EXPIRED_HOLDS =
+            "SELECT DISTINCT account_id FROM account_holds WHERE expires_at <= ?";
+
+    private final DataSource dataSource;
+    private final Clock clock;
+    private final SQLStateSQLExceptionTranslator exceptionTranslator = new SQLStateSQLExceptionTranslator();
+    private final ThreadLocal<UnitOfWork> unitOfWork = new ThreadLocal<>();
+
+    @Autowired
+    public AccountsRepositoryJdbc(DataSource dataSource) {
+        this(dataSource, Clock.systemUTC());
+    }
+
+    AccountsRepositoryJdbc(DataSource dataSource, Clock clock) {
+        this.dataSource = dataSource;
+        this.clock = clock;
+    }
+
+    @Override
+    public void createAccount(Account account) throws DuplicateAccountIdException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(INSERT_ACCOUNT)) {
+            statement.setString(1, account.getAccountId());
+            statement.setBigDecimal(2, account.getBalance());
+            statement.setBigDecimal(3, account.getHeldBalance());
+            statement.setInt(4, AccountChecksums.bucket(account.getAccountId()));
+            statement.executeUpdate();
+        } catch (SQLIntegrityConstraintViolationException e) {
+            throw new DuplicateAccountIdException("Account id " + account.getAccountId() + " already exists!");
+        } catch (SQLException e) {
+            throw translate("createAccount", e);
+        }
+    }
+
+    @Override
+    public void createAccounts(List<Account> accounts) throws DuplicateAccountIdException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(INSERT_ACCOUNT)) {
+            connection.setAutoCommit(false);
+            try {
+                for (Account account : accounts) {
+                    statement.setString(1, account.getAccountId());
+                    statement.setBigDecimal(2, account.getBalance());
+                    statement.setBigDecimal(3, account.getHeldBalance());
+                    statement.setInt(4, AccountChecksums.bucket(account.getAccountId()));
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            // batch failures report the state of the failed insert
+            if (e instanceof SQLIntegrityConstraintViolationException
+                    || (e.getSQLState() != null && e.getSQLState().startsWith("23"))) {
+                throw new DuplicateAccountIdException("Batch of " + accounts.size()
+                        + " accounts contains an id which already exists: " + e.getMessage());
+            }
+            throw translate("createAccounts", e);
+        }
+    }
+
+    @Override
+    public Account getAccount(String accountId) {
+        UnitOfWork work = unitOfWork.get();
+        if (work != null && work.lockedAccounts.containsKey(accountId)) {
+            return work.lockedAccounts.get(accountId).copy();
+        }
+
+        try (Connection connection = dataSource.getConnection()) {
+            return selectAccount(connection, SELECT_ACCOUNT, accountId);
+        } catch (SQLException e) {
+            throw translate("getAccount", e);
+        }
+    }
+
+    /**
+     * Not kept, the database is reconciled by its own means.
+     */
+    @Override
+    public AccountChecksums getChecksums() {
+        return null;
+    }
+
+    /**
+     * Reads the bucket by its index, account rows store their bucket as {@link AccountChecksums} computes it, so the
+     * accounts are known even though the checksums are not.
+     */
+    @Override
+    public List<Account> getChecksumBucket(int bucket) {
+        List<Account> result = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(SELECT_CHECKSUM_BUCKET)) {
+            statement.setInt(1, bucket);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    result.add(new Account(resultSet.getString(1), resultSet.getBigDecimal(2),
+                            resultSet.getBigDecimal(3), resultSet.getLong(4)));
+                }
+            }
+        } catch (SQLException e) {
+            throw translate("getChecksumBucket", e);
+        }
+        return result;
+    }
+
+    /**
+     * The schema keeps only current account states.
+     */
+    @Override
+    public boolean keepsHistory() {
+        return false;
+    }
+
+    @Override
+    public Account getAccount(String accountId, Instant asOf) throws StateNotRetainedException {
+        throw new StateNotRetainedException(accountId, asOf);
+    }
+
+    @Override
+    public void closeAccount(String accountId) throws NotExistingAccountException {
+        UnitOfWork work = beginOwnUnitOfWork();
+        boolean committed = false;
+        try {
+            // locking account releases its expired holds, so any held balance left is of live holds
+            Account account = lockAccount(work, accountId);
+            if (account.getBalance().signum() != 0 || account.getHeldBalance().signum() != 0) {
+                throw new InvalidAccountChangeException("Account " + accountId + " still has funds or holds");
+            }
+
+            try (PreparedStatement statement = work.connection.prepareStatement(DELETE_ACCOUNT)) {
+                statement.setString(1, accountId);
+                statement.executeUpdate();
+            }
+            committed = true;
+        } catch (SQLException e) {
+            throw translate("closeAccount", e);
+        } finally {
+            endUnitOfWork(work, committed);
+        }
+    }
+
+    /**
+     * Deletes accounts listed first one at a time, so that only ids of deleted accounts are passed. Accounts created
+     * meanwhile may be kept.
+     */
+    @Override
+    public void clearAccounts(Consumer<String> removedAccounts) {
+        List<String> accountIds = new ArrayList<>();
+        forEachAccount(account -> accountIds.add(account.getAccountId()));
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement deleteHolds = connection.prepareStatement(DELETE_HOLDS);
+             PreparedStatement deleteAccount = connection.prepareStatement(DELETE_ACCOUNT)) {
+            for (String accountId : accountIds) {
+                deleteHolds.setString(1, accountId);
+                deleteHolds.executeUpdate();
+                deleteAccount.setString(1, accountId);
+                if (deleteAccount.executeUpdate() > 0) {
+                    removedAccounts.accept(accountId);
+                }
+            }
+        } catch (SQLException e) {
+            throw translate("clearAccounts", e);
+        }
+    }
+
+    @Override
+    public List<Account> getAccountsByBalance(BigDecimal minBalance, BigDecimal maxBalance, boolean descending,
+                                              int limit) {
+        String order = descending ? " DESC" : "";
+        String query = "SELECT account_id, balance, held_balance, version FROM accounts WHERE 1 = 1"
+                + (minBalance != null ? " AND balance >= ?" : "")
+                + (maxBalance != null ? " AND balance <= ?" : "")
+                + " ORDER BY balance" + order + ", account_id" + order + " LIMIT ?";
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            int parameter = 1;
+            if (minBalance != null) {
+                statement.setBigDecimal(parameter++, minBalance);
+            }
+            if (maxBalance != null) {
+                statement.setBigDecimal(parameter++, maxBalance);
+            }
+            statement.setInt(parameter, limit);
+
+            List<Account> accounts = new ArrayList<>();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    accounts.add(new Account(resultSet.getString(1), resultSet.getBigDecimal(2),
+                            resultSet.getBigDecimal(3), resultSet.getLong(4)));
+                }
+            }
+            return accounts;
+        } catch (SQLException e) {
+            throw translate("getAccountsByBalance", e);
+        }
+    }
+
+    /**
+     * Reads accounts in a single query, the action runs while it's read.
+     */
+    @Override
+    public void forEachAccount(Consumer<Account> action) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "SELECT account_id, balance, held_balance, version FROM accounts");
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                action.accept(new Account(resultSet.getString(1), resultSet.getBigDecimal(2),
+                        resultSet.getBigDecimal(3), resultSet.getLong(4)));
+            }
+        } catch (SQLException e) {
+            throw translate("forEachAccount", e);
+        }
+    }
+
+    @Override
+    public Account lockAccount(String accountId) throws NotExistingAccountException {
+        UnitOfWork work = beginUnitOfWork();
+        try {
+            return lockAccount(work, accountId).copy();
+        } catch (NotExistingAccountException e) {
+            if (work.lockCount == 0) {
+                endUnitOfWork(work, false);
+            }
+            throw e;
+        } catch (SQLException e) {
+            if (work.lockCount == 0) {
+                endUnitOfWork(work, false);
+            }
+            throw translate("lockAccount", e);
+        }
+    }
+
+    @Override
+    public void releaseAccount(String accountId) {
+        UnitOfWork work = unitOfWork.get();
+        if (work == null || !work.lockedAccounts.containsKey(accountId)) {
+            return;
+        }
+
+        if (--work.lockCount == 0) {
+            endUnitOfWork(work, !work.failed && work.updatedAccounts.containsAll(work.lockedAccounts.keySet()));
+        }
+    }
+
+    /**
+     * Writes queued changes and commits, which also unlocks the rows. Releasing the accounts then only ends the unit
+     * of work, or rolls it back if the commit failed.
+     */
+    @Override
+    public void commitAccounts() {
+        UnitOfWork work = unitOfWork.get();
+        if (work == null || work.failed) {
+            return;
+        }
+
+        try {
+            flushUpdates(work);
+            work.connection.commit();
+        } catch (SQLException e) {
+            work.failed = true;
+            throw translate("commitAccounts", e);
+        }
+    }
+
+    @Override
+    public Account updateAccount(Account account) {
+        UnitOfWork work = unitOfWork.get();
+        if (work != null) {
+            Account locked = work.lockedAccounts.get(account.getAccountId());
+            if (locked != null) {
+                Account updated = account.withVersion(locked.getVersion() + 1);
+                work.lockedAccounts.put(account.getAccountId(), updated);
+                work.updatedAccounts.add(account.getAccountId());
+                work.pendingUpdates.add(updated);
+                return updated.copy();
+            }
+        }
+
+        try (Connection connection = dataSource.getConnection()) {
+            try (PreparedStatement statement = connection.prepareStatement(UPDATE_ACCOUNT)) {
+                bindUpdate(statement, account);
+                if (statement.executeUpdate() == 0) {
+                    return null;
+                }
+            }
+            return selectAccount(connection, SELECT_ACCOUNT, account.getAccountId());
+        } catch (SQLException e) {
+            throw translate("updateAccount", e);
+        }
+    }
+
+    @Override
+    public Hold authorizeHold(String accountId, BigDecimal amount, Duration ttl)
+            throws NotExistingAccountException, InsufficientFundsException {
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new InvalidAccountChangeException("Hold ttl must be positive");
+        }
+
+        UnitOfWork work = beginOwnUnitOfWork();
+        boolean committed = false;
+        try {
+            Account heldAccount = lockAccount(work, accountId).hold(amount);
+            long expiresAt = clock.millis() + ttl.toMillis();
+
+            long holdId;
+            try (PreparedStatement statement = work.connection.prepareStatement(INSERT_HOLD, new String[]{"hold_id"})) {
+                statement.setString(1, accountId);
+                statement.setBigDecimal(2, amount);
+                statement.setLong(3, expiresAt);
+                statement.executeUpdate();
+                try (ResultSet keys = statement.getGeneratedKeys()) {
+                    keys.next();
+                    holdId = keys.getLong(1);
+                }
+            }
+
+            updateAccount(heldAccount);
+            committed = true;
+            return new Hold(holdId, accountId, amount, Instant.ofEpochMilli(expiresAt));
+        } catch (SQLException e) {
+            throw translate("authorizeHold", e);
+        } finally {
+            endUnitOfWork(work, committed);
+        }
+    }
+
+    @Override
+    public Account captureHold(String accountId, long holdId, Runnable beforeCapture)
+            throws NotExistingAccountException, NotExistingHoldException {
+        return settleHold(accountId, holdId, true, true, beforeCapture);
+    }
+
+    @Override
+    public Account captureUnreleasedHold(String accountId, long holdId)
+            throws NotExistingAccountException, NotExistingHoldException {
+        return settleHold(accountId, holdId, true, false, () -> {
+        });
+    }
+
+    @Override
+    public Account releaseHold(String accountId, long holdId)
+            throws NotExistingAccountException, NotExistingHoldException {
+        return settleHold(accountId, holdId, false, true, null);
+    }
+
+    @Override
+    public int releaseExpiredHolds(Consumer<Account> visitedAccounts) {
+        List<String> accountIds = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(SELECT_ACCOUNTS_WITH_EXPIRED_HOLDS)) {
+            statement.setLong(1, clock.millis());
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    accountIds.add(resultSet.getString(1));
+                }
+            }
+        } catch (SQLException e) {
+            throw translate("releaseExpiredHolds", e);
+        }
+
+        // locking account releases its expired holds
+        int released = 0;
+        for (String accountId : accountIds) {
+            Account state;
+            try {
+                state = lockAccount(accountId);
+                released++;
+            } catch (NotExistingAccountException e) {
+                log.debug("Skipping expired holds of removed account {}", accountId);
+                continue;
+            } finally {
+                releaseAccount(accountId);
+            }
+            visitedAccounts.accept(state);
+        }
+        return released;
+    }
+
+    @Override
+    public int expireAccountHistory() {
+        return 0;
+    }
+
+    private Account settleHold(String accountId, long holdId, boolean capture, boolean releaseExpired,
+                               Runnable beforeCapture) throws NotExistingAccountException, NotExistingHoldException {
+        UnitOfWork work = beginOwnUnitOfWork();
+        boolean committed = false;
+        try {
+            // expired holds are released by the next access otherwise
+            Account account = lockAccount(work, accountId, releaseExpired);
+
+            BigDecimal amount;
+            try (PreparedStatement statement = work.connection.prepareStatement(SELECT_HOLD)) {
+                statement.setLong(1, holdId);
+                statement.setString(2, accountId);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    if (!resultSet.next()) {
+                        throw new NotExistingHoldException(accountId, holdId);
+                    }
+                    amount = resultSet.getBigDecimal(1);
+                }
+            }
+            if (capture) {
+                beforeCapture.run();
+            }
+            try (PreparedStatement statement = work.connection.prepareStatement(DELETE_HOLD)) {
+                statement.setLong(1, holdId);
+                statement.executeUpdate();
+            }
+
+            Account updated = updateAccount(capture ? account.captureHold(amount) : account.releaseHold(amount));
+            committed = true;
+            return updated;
+        } catch (SQLException e) {
+            throw translate("settleHold", e);
+        } finally {
+            endUnitOfWork(work, committed);
+        }
+    }
+
+    private Account lockAccount(UnitOfWork work, String accountId) throws SQLException, NotExistingAccountException {
+        return lockAccount(work, accountId, true);
+    }
+
+    private Account lockAccount(UnitOfWork work, String accountId, boolean releaseExpired)
+            throws SQLException, NotExistingAccountException {
+        if (work.lockStatement == null) {
+            work.lockStatement = work.connection.prepareStatement(LOCK_ACCOUNT);
+        }
+
+        work.lockStatement.setString(1, accountId);
+        Account account;
+        try (ResultSet resultSet = work.lockStatement.executeQuery()) {
+            if (!resultSet.next()) {
+                throw new NotExistingAccountException(accountId);
+            }
+            account = readAccount(accountId, resultSet);
+        }
+
+        if (releaseExpired && account.getHeldBalance().signum() > 0) {
+            Account released = releaseExpiredHolds(work, account);
+            if (released != account) {
+                // released holds are committed by themselves, when nothing else changes the account
+                work.updatedAccounts.add(accountId);
+            }
+            account = released;
+        }
+
+        work.lockedAccounts.put(accountId, account);
+        work.lockCount++;
+        return account;
+    }
+
+    private Account releaseExpiredHolds(UnitOfWork work, Account account) throws SQLException {
+        long now = clock.millis();
+        BigDecimal expiredAmount;
+        try (PreparedStatement statement = work.connection.prepareStatement(SELECT_EXPIRED_HOLDS)) {
+            statement.setString(1, account.getAccountId());
+            statement.setLong(2, now);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                expiredAmount = resultSet.getBigDecimal(1);
+            }
+        }
+        if (expiredAmount.signum() == 0) {
+            return account;
+        }
+
+        try (PreparedStatement statement = work.connection.prepareStatement(DELETE_EXPIRED_HOLDS)) {
+            statement.setString(1, account.getAccountId());
+            statement.setLong(2, now);
+            statement.executeUpdate();
+        }
+        Account released = account.releaseHold(expiredAmount);
+        try (PreparedStatement statement = work.connection.prepareStatement(UPDATE_ACCOUNT)) {
+            bindUpdate(statement, released);
+            statement.executeUpdate();
+        }
+        return released.withVersion(account.getVersion() + 1);
+    }
+
+    private UnitOfWork beginOwnUnitOfWork() {
+        if (unitOfWork.get() != null) {
+            throw new IllegalStateException("Holds can not be changed while accounts are locked by the same thread");
+        }
+        return beginUnitOfWork();
+    }
+
+    private UnitOfWork beginUnitOfWork() {
+        UnitOfWork work = unitOfWork.get();
+        if (work != null) {
+            return work;
+        }
+
+        try {
+            Connection connection = dataSource.getConnection();
+            connection.setAutoCommit(false);
+            work = new UnitOfWork(connection);
+            unitOfWork.set(work);
+            return work;
+        } catch (SQLException e) {
+            throw translate("beginUnitOfWork", e);
+        }
+    }
+
+    private void endUnitOfWork(UnitOfWork work, boolean commit) {
+        unitOfWork.remove();
+
+        try (Connection connection = work.connection) {
+            if (commit) {
+                flushUpdates(work);
+                connection.commit();
+            } else {
+                connection.rollback();
+            }
+        } catch (SQLException e) {
+            throw translate("endUnitOfWork", e);
+        }
+    }
+
+    private void flushUpdates(UnitOfWork work) throws SQLException {
+        if (work.pendingUpdates.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement statement = work.connection.prepareStatement(UPDATE_ACCOUNT)) {
+            for (Account account : work.pendingUpdates) {
+                bindUpdate(statement, account);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+        work.pendingUpdates.clear();
+    }
+
+    private Account selectAccount(Connection connection, String query, String accountId) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setString(1, accountId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? readAccount(accountId, resultSet) : null;
+            }
+        }
+    }
+
+    private static Account readAccount(String accountId, ResultSet resultSet) throws SQLException {
+        return new Account(accountId, resultSet.getBigDecimal(1), resultSet.getBigDecimal(2), resultSet.getLong(3));
+    }
+
+    private static void bindUpdate(PreparedStatement statement, Account account) throws SQLException {
+        statement.setBigDecimal(1, account.getBalance());
+        statement.setBigDecimal(2, account.getHeldBalance());
+        statement.setString(3, account.getAccountId());
+    }
+
+    private DataAccessException translate(String task, SQLException e) {
+        return exceptionTranslator.translate(task, null, e);
+    }
+
+    private static class UnitOfWork {
+        private final Connection connection;
+        private final Map<String, Account> lockedAccounts = new HashMap<>();
+        private final List<Account> pendingUpdates = new ArrayList<>();
+        private final Set<String> updatedAccounts = new HashSet<>();
+        private PreparedStatement lockStatement;
+        private int lockCount;
+        // set once a commit failed, so that releasing the accounts rolls back
+        private boolean failed;
+
+        UnitOfWork(Connection connection) {
+            this.connection = connection;
+        }
+    }
+}
@@ -0,0 +1,707 @@
+package com.dws.challenge.repository;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Hold;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.exception.InvalidAccountChangeException;
+import com.dws.challenge.exception.NotExistingAccountException;
+import com.dws.challenge.exception.NotExistingHoldException;
+import com.dws.challenge.exception.StateNotRetainedException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Keeps recently used accounts in memory and evicts the rest to a local file, so the number of accounts is bounded
+ * by disk rather than heap. Hot accounts are evicted by the CLOCK algorithm once their estimated size exceeds the
+ * memory budget, evicted accounts are promoted back by any access. Locked accounts and accounts with holds are
+ * never evicted. The file is a spill area, it's truncated on startup. Only hot accounts keep their history, it's
+ * dropped on eviction and starts over from the promotion, earlier states are not retained. Only balances of hot
+ * accounts are indexed, listings by balance scan the file for evicted accounts, so an evicted account takes no more
+ * heap than its slot in the index of the file, which counts in the memory budget. Checksums are kept in a fixed
+ * array, whatever the number of accounts. Checksum buckets of hot accounts are indexed as well, those of evicted
+ * accounts are told by the hashes of their ids in the index of the file.
+ */
+@Repository
+@ConditionalOnProperty(name = "accounts.repository", havingValue = "tiered")
+@Slf4j
+public class AccountsRepositoryTiered implements AccountsRepository {
+
+    // account, its lock, id, balance, map entry, balance index entry and checksum bucket index entry
+    static final int ESTIMATED_HOT_ACCOUNT_BYTES = 448;
+    // slot of 12 bytes in the index of the file, which is a quarter to half empty
+    static final int ESTIMATED_COLD_ACCOUNT_BYTES = 24;
+    // state kept in the history of a hot account takes 36 bytes, history arrays may be half empty
+    static final int ESTIMATED_HISTORY_STATE_BYTES = 72;
+
+    private final Map<String, HotAccount> hotAccounts = new ConcurrentHashMap<>();
+    private final ColdAccountStore coldAccounts;
+    // covers both tiers, eviction and promotion do not change balances
+    private final AccountChecksums checksums = new AccountChecksums();
+    // covers hot accounts, changed under their locks and by eviction and promotion
+    private final BalanceIndex balanceIndex = new BalanceIndex();
+    // covers hot accounts like the balance index
+    private final ChecksumBucketIndex checksumBucketIndex = new ChecksumBucketIndex();
+    private final Path coldFile;
+    private final boolean deleteColdFile;
+    private final long memoryBudgetBytes;
+    // states in histories of hot accounts, changed under their locks
+    private final AtomicLong hotHistoryStates = new AtomicLong();
+
+    // only one thread moves the clock hand, others skip eviction meanwhile
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private Iterator<HotAccount> clockHand = Collections.emptyIterator();
+
+    // accounts with holds expiring within a second, keyed by the end of that second
+    private final ConcurrentNavigableMap<Long, Set<String>> holdExpiries = new ConcurrentSkipListMap<>();
+    private final AtomicLong holdIds = new AtomicLong();
+    // accounts re-created with the same id start from higher versions than before
+    private final AtomicLong createdAccounts = new AtomicLong();
+    private final Clock clock;
+    private final long historyRetentionMillis;
+    private final int maxHistoryStates;
+
+    @Autowired
+    public AccountsRepositoryTiered(@Value("${accounts.tiered.file:}") String coldFile,
+                                    @Value("${accounts.tiered.memory-budget-mb:512}") long memoryBudgetMb,
+                                    @Value("${accounts.history.retention-ms:86400000}") long historyRetentionMillis,
+                                    @Value("${accounts.history.max-states:1024}") int maxHistoryStates)
+            throws IOException {
+        this(Clock.systemUTC(), coldFile.isEmpty() ? null : Paths.get(coldFile), memoryBudgetMb << 20,
+                historyRetentionMillis, maxHistoryStates);
+    }
+
+    /**
+     * @param maxHotAccounts accounts without history fitting the memory budget before evicted accounts take their
+     * share of it
+     */
+    AccountsRepositoryTiered(Clock clock, Path coldFile, int maxHotAccounts) throws IOException {
+        this(clock, coldFile, (long) maxHotAccounts * ESTIMATED_HOT_ACCOUNT_BYTES,
+                AccountsRepositoryInMemory.DEFAULT_HISTORY_RETENTION_MILLIS,
+                AccountsRepositoryInMemory.DEFAULT_MAX_HISTORY_STATES);
+    }
+
+    /**
+     * @param coldFile file of evicted accounts, temporary file is used if null
+     */
+    AccountsRepositoryTiered(Clock clock, Path coldFile, long memoryBudgetBytes, long historyRetentionMillis,
+                             int maxHistoryStates) throws IOException {
+        this.clock = clock;
+        this.historyRetentionMillis = historyRetentionMillis;
+        this.maxHistoryStates = maxHistoryStates;
+        this.deleteColdFile = coldFile == null;
+        this.coldFile = coldFile != null ? coldFile : Files.createTempFile("accounts-cold", ".log");
+        this.coldAccounts = new ColdAccountStore(this.coldFile);
+        // at least one account is kept in memory
+        this.memoryBudgetBytes = Math.max(memoryBudgetBytes, ESTIMATED_HOT_ACCOUNT_BYTES);
+        log.info("Keeping accounts within {} bytes in memory, evicting the rest to {}", this.memoryBudgetBytes,
+                this.coldFile);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        coldAccounts.close();
+        if (deleteColdFile) {
+            Files.deleteIfExists(coldFile);
+        }
+    }
+
+    @Override
+    public void createAccount(Account account) throws DuplicateAccountIdException {
+        create(account, createdAccounts.incrementAndGet() << 32);
+        evictOverBudget();
+    }
+
+    @Override
+    public void createAccounts(List<Account> newAccounts) throws DuplicateAccountIdException {
+        long incarnation = createdAccounts.getAndAdd(newAccounts.size());
+        for (Account account : newAccounts) {
+            create(account, ++incarnation << 32);
+            evictOverBudget();
+        }
+    }
+
+    @Override
+    public Account getAccount(String accountId) {
+        HotAccount account = hotAccount(accountId);
+        if (account == null) {
+            return null;
+        }
+
+        // expired holds are released lazily, unless the account is busy with another change
+        long now = clock.millis();
+        if (account.hasExpiredHolds(now) && account.tryLock()) {
+            try {
+                if (!account.isRemoved()) {
+                    account.releaseExpiredHolds(now);
+                }
+            } finally {
+                account.unlock();
+            }
+        }
+
+        // account evicted meanwhile is not changed anymore, so its last state is still current
+        Account state = account.read();
+        evictOverBudget();
+        return state;
+    }
+
+    @Override
+    public boolean keepsHistory() {
+        return true;
+    }
+
+    @Override
+    public Account getAccount(String accountId, Instant asOf) throws StateNotRetainedException {
+        HotAccount account = hotAccount(accountId);
+        if (account == null) {
+            return null;
+        }
+
+        try {
+            return account.readAsOf(asOf.toEpochMilli());
+        } finally {
+            evictOverBudget();
+        }
+    }
+
+    @Override
+    public void closeAccount(String accountId) throws NotExistingAccountException {
+        HotAccount account = lockHotAccount(accountId);
+        try {
+            account.releaseExpiredHolds(clock.millis());
+            if (account.hasHolds() || account.getBalance().signum() != 0) {
+                throw new InvalidAccountChangeException("Account " + accountId + " still has funds or holds");
+            }
+            remove(account);
+        } finally {
+            account.unlock();
+        }
+    }
+
+    /**
+     * Closes accounts one at a time like {@link AccountsRepositoryInMemory#clearAccounts}, evicted accounts are
+     * promoted to be closed. Ids of all accounts are collected first.
+     */
+    @Override
+    public void clearAccounts(Consumer<String> removedAccounts) {
+        List<String> accountIds = new ArrayList<>(hotAccounts.keySet());
+        coldAccounts.forEach(account -> accountIds.add(account.getAccountId()));
+
+        for (String accountId : accountIds) {
+            HotAccount account;
+            try {
+                account = lockHotAccount(accountId);
+            } catch (NotExistingAccountException e) {
+                // closed meanwhile or listed by both tiers
+                continue;
+            }
+            try {
+                remove(account);
+            } finally {
+                account.unlock();
+            }
+            removedAccounts.accept(accountId);
+        }
+    }
+
+    /**
+     * Scans the file for evicted accounts, keeping only the first ones of the listing, and looks hot accounts up in
+     * the balance index, without promoting any account. Like in
+     * {@link AccountsRepositoryInMemory#getAccountsByBalance}, an account changed after the lookup is returned with
+     * its new balance. Accounts moving between tiers during the listing may be missed.
+     */
+    @Override
+    public List<Account> getAccountsByBalance(BigDecimal minBalance, BigDecimal maxBalance, boolean descending,
+                                              int limit) {
+        Comparator<Account> order = Comparator.comparing(Account::getBalance).thenComparing(Account::getAccountId);
+        if (descending) {
+            order = order.reversed();
+        }
+
+        // the last of the first evicted accounts of the listing is on top
+        PriorityQueue<Account> evicted = new PriorityQueue<>(order.reversed());
+        coldAccounts.forEach(account -> {
+            if ((minBalance == null || account.getBalance().compareTo(minBalance) >= 0)
+                    && (maxBalance == null || account.getBalance().compareTo(maxBalance) <= 0)
+                    && !hotAccounts.containsKey(account.getAccountId())) {
+                evicted.add(account);
+                if (evicted.size() > limit) {
+                    evicted.poll();
+                }
+            }
+        });
+
+        // accounts evicted during the scan may be found in both tiers
+        Map<String, Account> found = new HashMap<>();
+        for (Account account : evicted) {
+            found.put(account.getAccountId(), account);
+        }
+        for (String accountId : balanceIndex.find(minBalance, maxBalance, descending, limit)) {
+            Account account = peek(accountId);
+            if (account != null) {
+                found.put(accountId, account);
+            }
+        }
+
+        List<Account> result = new ArrayList<>(found.values());
+        result.sort(order);
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    /**
+     * Passes hot accounts and then evicted ones which were not passed yet. An account evicted meanwhile is in the
+     * file by the time it's read, an account promoted meanwhile is still there, so none is missed. Evicted accounts
+     * are read before they are passed, so evictions are not held up by the action.
+     */
+    @Override
+    public void forEachAccount(Consumer<Account> action) {
+        Set<String> passed = new HashSet<>();
+        for (HotAccount account : hotAccounts.values()) {
+            Account state = account.read();
+            passed.add(state.getAccountId());
+            action.accept(state);
+        }
+
+        List<Account> evicted = new ArrayList<>();
+        coldAccounts.forEach(account -> {
+            if (!passed.contains(account.getAccountId())) {
+                evicted.add(account);
+            }
+        });
+        for (Account account : evicted) {
+            // stored state of an account promoted meanwhile may be outdated already
+            HotAccount hotAccount = hotAccounts.get(account.getAccountId());
+            action.accept(hotAccount != null ? hotAccount.read() : account);
+        }
+    }
+
+    @Override
+    public AccountChecksums getChecksums() {
+        return checksums;
+    }
+
+    /**
+     * Looks hot accounts up in the bucket index and reads only records of the bucket from the file, without promoting
+     * any account. Accounts moving between tiers during the lookup may be missed.
+     */
+    @Override
+    public List<Account> getChecksumBucket(int bucket) {
+        List<Account> result = new ArrayList<>();
+        for (String accountId : checksumBucketIndex.find(bucket)) {
+            HotAccount account = hotAccounts.get(accountId);
+            if (account != null) {
+                result.add(account.read());
+            }
+        }
+        coldAccounts.forEachInBucket(bucket, account -> {
+            if (!hotAccounts.containsKey(account.getAccountId())) {
+                result.add(account);
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public Account lockAccount(String accountId) throws NotExistingAccountException {
+        HotAccount account = lockHotAccount(accountId);
+        account.releaseExpiredHolds(clock.millis());
+        return account.getAccount();
+    }
+
+    @Override
+    public void releaseAccount(String accountId) {
+        // account locked by the caller can not be evicted
+        HotAccount account = hotAccounts.get(accountId);
+        if (account != null) {
+            account.unlock();
+        }
+        // accounts which were locked while the budget was exceeded are evicted once released
+        evictOverBudget();
+    }
+
+    @Override
+    public Account updateAccount(Account account) {
+        HotAccount hotAccount = hotAccounts.computeIfPresent(account.getAccountId(),
+                (id, persistedAccount) -> update(persistedAccount, account));
+        return hotAccount != null ? hotAccount.getAccount() : null;
+    }
+
+    @Override
+    public Hold authorizeHold(String accountId, BigDecimal amount, Duration ttl)
+            throws NotExistingAccountException, InsufficientFundsException {
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new InvalidAccountChangeException("Hold ttl must be positive");
+        }
+        HotAccount account = lockHotAccount(accountId);
+        try {
+            long now = clock.millis();
+            account.releaseExpiredHolds(now);
+
+            Account heldAccount = account.getAccount().hold(amount);
+            long holdId = holdIds.incrementAndGet();
+            long expiresAt = now + ttl.toMillis();
+            account.addHold(holdId, amount, expiresAt);
+            account.update(heldAccount, now);
+
+            holdExpiries.computeIfAbsent(expiryBucket(expiresAt), bucket -> ConcurrentHashMap.newKeySet())
+                    .add(accountId);
+            return new Hold(holdId, accountId, amount, Instant.ofEpochMilli(expiresAt));
+        } finally {
+            account.unlock();
+        }
+    }
+
+    @Override
+    public Account captureHold(String accountId, long holdId, Runnable beforeCapture)
+            throws NotExistingAccountException, NotExistingHoldException {
+        HotAccount account = lockHotAccount(accountId);
+        try {
+            account.releaseExpiredHolds(clock.millis());
+
+            if (!account.hasHold(holdId)) {
+                throw new NotExistingHoldException(accountId, holdId);
+            }
+            beforeCapture.run();
+
+            BigDecimal amount = account.removeHold(holdId);
+            return update(account, account.getAccount().captureHold(amount)).getAccount();
+        } finally {
+            account.unlock();
+        }
+    }
+
+    @Override
+    public Account captureUnreleasedHold(String accountId, long holdId)
+            throws NotExistingAccountException, NotExistingHoldException {
+        HotAccount account = lockHotAccount(accountId);
+        try {
+            BigDecimal amount = account.removeHold(holdId);
+            if (amount == null) {
+                throw new NotExistingHoldException(accountId, holdId);
+            }
+            update(account, account.getAccount().captureHold(amount));
+            account.releaseExpiredHolds(clock.millis());
+            return account.getAccount();
+        } finally {
+            account.unlock();
+        }
+    }
+
+    @Override
+    public Account releaseHold(String accountId, long holdId)
+            throws NotExistingAccountException, NotExistingHoldException {
+        HotAccount account = lockHotAccount(accountId);
+        try {
+            account.releaseExpiredHolds(clock.millis());
+
+            BigDecimal amount = account.removeHold(holdId);
+            if (amount == null) {
+                throw new NotExistingHoldException(accountId, holdId);
+            }
+            return account.update(account.getAccount().releaseHold(amount), clock.millis()).getAccount();
+        } finally {
+            account.unlock();
+        }
+    }
+
+    @Override
+    public int releaseExpiredHolds(Consumer<Account> visitedAccounts) {
+        long now = clock.millis();
+        int released = 0;
+
+        Map.Entry<Long, Set<String>> bucket;
+        while ((bucket = holdExpiries.firstEntry()) != null && bucket.getKey() <= now) {
+            holdExpiries.remove(bucket.getKey());
+
+            for (String accountId : bucket.getValue()) {
+                // accounts with holds are not evicted
+                HotAccount account = hotAccounts.get(accountId);
+                if (account == null) {
+                    continue;
+                }
+
+                Account state;
+                account.lock();
+                try {
+                    if (account.isRemoved()) {
+                        continue;
+                    }
+                    if (account.releaseExpiredHolds(now)) {
+                        released++;
+                    }
+                    state = account.getAccount();
+                } finally {
+                    account.unlock();
+                }
+                visitedAccounts.accept(state);
+            }
+        }
+
+        return released;
+    }
+
+    @Override
+    public int expireAccountHistory() {
+        long before = clock.millis() - historyRetentionMillis;
+        int expired = 0;
+
+        for (HotAccount account : hotAccounts.values()) {
+            // accounts busy with a change are visited by the next sweep
+            if (!account.hasHistory() || !account.tryLock()) {
+                continue;
+            }
+            try {
+                int expiredStates = account.expireHistory(before);
+                hotHistoryStates.addAndGet(-expiredStates);
+                expired += expiredStates;
+            } finally {
+                account.unlock();
+            }
+        }
+
+        return expired;
+    }
+
+    int getHotAccounts() {
+        return hotAccounts.size();
+    }
+
+    int getColdAccounts() {
+        return coldAccounts.size();
+    }
+
+    private void create(Account account, long initialVersion) throws DuplicateAccountIdException {
+        boolean[] duplicate = new boolean[1];
+        // atomic with promotion of the same id, so an evicted account can not be shadowed by a new one
+        hotAccounts.compute(account.getAccountId(), (id, existing) -> {
+            if (existing != null || coldAccounts.get(id) != null) {
+                duplicate[0] = true;
+                return existing;
+            }
+            checksums.add(id, account.getBalance());
+            balanceIndex.add(id, account.getBalance());
+            checksumBucketIndex.add(id);
+            return new HotAccount(account, initialVersion, clock.millis(), false, -1);
+        });
+
+        if (duplicate[0]) {
+            throw new DuplicateAccountIdException("Account id " + account.getAccountId() + " already exists!");
+        }
+    }
+
+    /**
+     * Changes account state, caller must own the lock.
+     */
+    private HotAccount update(HotAccount hotAccount, Account account) {
+        BigDecimal previousBalance = hotAccount.getBalance();
+        hotAccount.update(account, clock.millis());
+        checksums.update(account.getAccountId(), previousBalance, account.getBalance());
+        balanceIndex.update(account.getAccountId(), previousBalance, account.getBalance());
+        return hotAccount;
+    }
+
+    /**
+     * Removes account from both tiers, caller must own the lock.
+     */
+    private void remove(HotAccount account) {
+        Account state = account.getAccount();
+        if (account.storedVersion >= 0) {
+            coldAccounts.remove(state.getAccountId());
+        }
+        hotHistoryStates.addAndGet(-account.getHistorySize());
+        account.close();
+        hotAccounts.remove(state.getAccountId(), account);
+        checksums.remove(state.getAccountId(), state.getBalance());
+        balanceIndex.remove(state.getAccountId(), state.getBalance());
+        checksumBucketIndex.remove(state.getAccountId());
+    }
+
+    /**
+     * @return current state of the account, read from the file without promotion if it was evicted, or null if
+     * there is no such account
+     */
+    private Account peek(String accountId) {
+        HotAccount account = hotAccounts.get(accountId);
+        if (account == null) {
+            Account coldAccount = coldAccounts.get(accountId);
+            // state stored before a promotion which happened meanwhile may be outdated already
+            account = hotAccounts.get(accountId);
+            if (account == null) {
+                return coldAccount;
+            }
+        }
+        return account.read();
+    }
+
+    /**
+     * @return account promoted to memory if it was evicted, or null if there is no such account
+     */
+    private HotAccount hotAccount(String accountId) {
+        HotAccount account = hotAccounts.get(accountId);
+        if (account != null) {
+            account.referenced = true;
+            return account;
+        }
+
+        // callers evict over budget once they locked or read the account, so it's not evicted right away
+        return hotAccounts.computeIfAbsent(accountId, id -> {
+            Account coldAccount = coldAccounts.get(id);
+            if (coldAccount == null) {
+                return null;
+            }
+            balanceIndex.add(id, coldAccount.getBalance());
+            checksumBucketIndex.add(id);
+            return new HotAccount(coldAccount, coldAccount.getVersion(), clock.millis(), true,
+                    coldAccount.getVersion());
+        });
+    }
+
+    /**
+     * Locks account in memory. Account evicted while the caller waited for its lock is promoted again and account
+     * closed meanwhile is looked up again, so a lock is never taken on an account which is not in memory anymore.
+     */
+    private HotAccount lockHotAccount(String accountId) throws NotExistingAccountException {
+        while (true) {
+            HotAccount account = hotAccount(accountId);
+            if (account == null) {
+                throw new NotExistingAccountException(accountId);
+            }
+
+            account.lock();
+            if (!account.isRemoved()) {
+                evictOverBudget();
+                return account;
+            }
+            account.unlock();
+        }
+    }
+
+    private void evictOverBudget() {
+        if (estimatedHeapBytes() <= memoryBudgetBytes || !evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            // every account is passed at most twice, first to clear its reference bit and then to evict it
+            long steps = 2L * hotAccounts.size() + 1;
+            while (estimatedHeapBytes() > memoryBudgetBytes && steps-- > 0) {
+                if (!clockHand.hasNext()) {
+                    clockHand = hotAccounts.values().iterator();
+                    if (!clockHand.hasNext()) {
+                        return;
+                    }
+                }
+
+                HotAccount account = clockHand.next();
+                if (account.referenced) {
+                    account.referenced = false;
+                } else {
+                    evict(account);
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private void evict(HotAccount account) {
+        // the lock is reentrant, so accounts locked by the evicting thread itself are skipped too
+        if (account.isLocked() || !account.tryLock()) {
+            return;
+        }
+        try {
+            if (account.isRemoved() || account.hasHolds()) {
+                return;
+            }
+
+            // accounts not changed since promotion are already stored
+            Account state = account.getAccount();
+            if (state.getVersion() != account.storedVersion) {
+                coldAccounts.put(state);
+            }
+            account.evicted = true;
+            hotHistoryStates.addAndGet(-account.getHistorySize());
+            balanceIndex.remove(state.getAccountId(), state.getBalance());
+            checksumBucketIndex.remove(state.getAccountId());
+            hotAccounts.remove(state.getAccountId(), account);
+        } finally {
+            account.unlock();
+        }
+    }
+
+    /**
+     * @return estimated heap taken by hot accounts and by the index of the file, which covers evicted accounts as
+     * well as promoted ones stored before
+     */
+    private long estimatedHeapBytes() {
+        return (long) hotAccounts.size() * ESTIMATED_HOT_ACCOUNT_BYTES
+                + hotHistoryStates.get() * ESTIMATED_HISTORY_STATE_BYTES
+                + (long) coldAccounts.size() * ESTIMATED_COLD_ACCOUNT_BYTES;
+    }
+
+    private static long expiryBucket(long expiresAtMillis) {
+        return (expiresAtMillis + 999) / 1000 * 1000;
+    }
+
+    private final class HotAccount extends PersistedAccount {
+        // set on every access, cleared by the clock hand
+        private volatile boolean referenced = true;
+        // guarded by the account lock
+        private boolean evicted;
+        // version of the account in the cold store, or -1 if it's not stored
+        private final long storedVersion;
+
+        HotAccount(Account account, long initialVersion, long createdAtMillis, boolean existedBefore,
+                   long storedVersion) {
+            super(account, initialVersion, createdAtMillis, existedBefore, maxHistoryStates);
+            this.storedVersion = storedVersion;
+        }
+
+        /**
+         * Counts states added to the history by the update in the memory estimate, caller must own the lock.
+         */
+        @Override
+        public PersistedAccount update(Account account, long committedAtMillis) {
+            int previousHistorySize = getHistorySize();
+            super.update(account, committedAtMillis);
+            hotHistoryStates.addAndGet(getHistorySize() - previousHistorySize);
+            return this;
+        }
+
+        /**
+         * @return true if the account was evicted or closed, caller must own the lock
+         */
+        boolean isRemoved() {
+            return evicted || isClosed();
+        }
+    }
+}
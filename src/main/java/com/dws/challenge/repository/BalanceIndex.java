@@ -0,0 +1,82 @@
+package com.dws.challenge.repository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Accounts ordered by balance and account id in a lock-free skip list. Changes of an account are expected to be
+ * serialized by its lock, changes of different accounts don't contend unless they touch the same skip list nodes.
+ * Readers are weakly consistent, an account which is being moved may be missed by a concurrent query.
+ */
+class BalanceIndex {
+
+    private final ConcurrentSkipListSet<Entry> entries = new ConcurrentSkipListSet<>();
+
+    void add(String accountId, BigDecimal balance) {
+        entries.add(new Entry(balance, accountId, 0));
+    }
+
+    void remove(String accountId, BigDecimal balance) {
+        entries.remove(new Entry(balance, accountId, 0));
+    }
+
+    void update(String accountId, BigDecimal previousBalance, BigDecimal balance) {
+        if (previousBalance.compareTo(balance) != 0) {
+            remove(accountId, previousBalance);
+            add(accountId, balance);
+        }
+    }
+
+    /**
+     * @return ids of accounts with balance within inclusive bounds, null bound is unbounded
+     */
+    List<String> find(BigDecimal minBalance, BigDecimal maxBalance, boolean descending, int limit) {
+        NavigableSet<Entry> range = entries;
+        if (minBalance != null) {
+            range = range.tailSet(new Entry(minBalance, null, -1), true);
+        }
+        if (maxBalance != null) {
+            range = range.headSet(new Entry(maxBalance, null, 1), true);
+        }
+        if (descending) {
+            range = range.descendingSet();
+        }
+
+        List<String> accountIds = new ArrayList<>(Math.min(limit, 1024));
+        for (Entry entry : range) {
+            if (accountIds.size() == limit) {
+                break;
+            }
+            accountIds.add(entry.accountId);
+        }
+        return accountIds;
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+        private final BigDecimal balance;
+        private final String accountId;
+        // bounds of a range sort before (-1) or after (1) all accounts with the same balance
+        private final int bound;
+
+        Entry(BigDecimal balance, String accountId, int bound) {
+            this.balance = balance;
+            this.accountId = accountId;
+            this.bound = bound;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int result = balance.compareTo(other.balance);
+            if (result != 0) {
+                return result;
+            }
+            if (bound != 0 || other.bound != 0) {
+                return Integer.compare(bound, other.bound);
+            }
+            return accountId.compareTo(other.accountId);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.dws.challenge.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Account ids ordered by {@link AccountChecksums} bucket and account id in a lock-free skip list, so accounts of a
+ * bucket are found without a scan of all accounts. Like {@link BalanceIndex}, changes of an account are expected to
+ * be serialized by its lock and readers are weakly consistent.
+ */
+class ChecksumBucketIndex {
+
+    private final ConcurrentSkipListSet<Entry> entries = new ConcurrentSkipListSet<>();
+
+    void add(String accountId) {
+        entries.add(new Entry(AccountChecksums.bucket(accountId), accountId));
+    }
+
+    void remove(String accountId) {
+        entries.remove(new Entry(AccountChecksums.bucket(accountId), accountId));
+    }
+
+    /**
+     * @return ids of accounts of the bucket in account id order
+     */
+    List<String> find(int bucket) {
+        List<String> accountIds = new ArrayList<>();
+        // no account id sorts before the empty one
+        for (Entry entry : entries.subSet(new Entry(bucket, ""), new Entry(bucket + 1, ""))) {
+            accountIds.add(entry.accountId);
+        }
+        return accountIds;
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+        private final int bucket;
+        private final String accountId;
+
+        Entry(int bucket, String accountId) {
+            this.bucket = bucket;
+            this.accountId = accountId;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int result = Integer.compare(bucket, other.bucket);
+            return result != 0 ? result : accountId.compareTo(other.accountId);
+        }
+    }
+}
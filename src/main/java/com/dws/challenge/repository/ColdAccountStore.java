@@ -0,0 +1,378 @@
+package com.dws.challenge.repository;
+
+import com.dws.challenge.domain.Account;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Append-only file of evicted accounts with an open addressing index of record offsets, about 16 bytes of heap per
+ * account. Account ids are not kept in memory, so an index hit is confirmed by reading the record. Space of
+ * overwritten and removed records is reclaimed by compaction once it exceeds the space of live records.
+ * Lookups run in parallel, appends and compaction are exclusive.
+ */
+final class ColdAccountStore implements Closeable {
+
+    private static final int INITIAL_CAPACITY = 1 << 10;
+    private static final long MIN_COMPACTION_BYTES = 16L << 20;
+    // covers records of ids up to about 80 bytes in a single read
+    private static final int READ_AHEAD_BYTES = 128;
+
+    private final Path file;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private FileChannel channel;
+    private int[] hashes;
+    // record offset + 1, zero marks an empty slot
+    private long[] offsets;
+    // read without the lock by the memory estimate of the repository
+    private volatile int size;
+    private long end;
+    private long garbageBytes;
+
+    ColdAccountStore(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        reset();
+    }
+
+    /**
+     * @return stored account or null if account was never stored
+     */
+    Account get(String accountId) {
+        lock.readLock().lock();
+        try {
+            int slot = findSlot(accountId, hash(accountId));
+            return offsets[slot] != 0 ? read(offsets[slot] - 1).account : null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Stores account replacing its previously stored state. Only balance and version are stored, held balance must
+     * be zero.
+     */
+    void put(Account account) {
+        if (account.getHeldBalance().signum() != 0) {
+            throw new IllegalArgumentException("Account " + account.getAccountId() + " has held balance");
+        }
+        ByteBuffer record = encode(account);
+
+        lock.writeLock().lock();
+        try {
+            long offset = end;
+            writeFully(channel, record, offset);
+            end += record.limit();
+
+            int hash = hash(account.getAccountId());
+            int slot = findSlot(account.getAccountId(), hash);
+            if (offsets[slot] != 0) {
+                garbageBytes += recordLength(offsets[slot] - 1);
+            } else {
+                hashes[slot] = hash;
+                size++;
+            }
+            offsets[slot] = offset + 1;
+
+            if (size * 4L > offsets.length * 3L) {
+                resize();
+            }
+            compactIfWasteful();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes stored account, the file is truncated once it's left without accounts.
+     */
+    void remove(String accountId) {
+        lock.writeLock().lock();
+        try {
+            int slot = findSlot(accountId, hash(accountId));
+            if (offsets[slot] == 0) {
+                return;
+            }
+            garbageBytes += recordLength(offsets[slot] - 1);
+            removeSlot(slot);
+            size--;
+
+            if (size == 0) {
+                channel.truncate(0);
+                reset();
+            } else {
+                compactIfWasteful();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Visits every stored account, stores are blocked meanwhile.
+     */
+    void forEach(Consumer<Account> action) {
+        lock.readLock().lock();
+        try {
+            for (long offset : offsets) {
+                if (offset != 0) {
+                    action.accept(read(offset - 1).account);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Visits stored accounts of the {@link AccountChecksums} bucket, which is told by the hashes kept in memory, so
+     * only records of the bucket are read. Stores are blocked meanwhile.
+     */
+    void forEachInBucket(int bucket, Consumer<Account> action) {
+        lock.readLock().lock();
+        try {
+            for (int slot = 0; slot < offsets.length; slot++) {
+                if (offsets[slot] != 0 && AccountChecksums.bucketOfHashCode(idHashCode(hashes[slot])) == bucket) {
+                    action.accept(read(offsets[slot] - 1).account);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    long fileSize() {
+        lock.readLock().lock();
+        try {
+            return end;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            channel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void reset() {
+        hashes = new int[INITIAL_CAPACITY];
+        offsets = new long[INITIAL_CAPACITY];
+        size = 0;
+        end = 0;
+        garbageBytes = 0;
+    }
+
+    /**
+     * @return slot of the account or the empty slot where it would be inserted
+     */
+    private int findSlot(String accountId, int hash) throws IOException {
+        int mask = offsets.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            if (offsets[slot] == 0
+                    || hashes[slot] == hash && accountId.equals(read(offsets[slot] - 1).account.getAccountId())) {
+                return slot;
+            }
+        }
+    }
+
+    private void resize() {
+        int[] oldHashes = hashes;
+        long[] oldOffsets = offsets;
+        hashes = new int[oldOffsets.length * 2];
+        offsets = new long[oldOffsets.length * 2];
+
+        int mask = offsets.length - 1;
+        for (int i = 0; i < oldOffsets.length; i++) {
+            if (oldOffsets[i] != 0) {
+                int slot = oldHashes[i] & mask;
+                while (offsets[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                hashes[slot] = oldHashes[i];
+                offsets[slot] = oldOffsets[i];
+            }
+        }
+    }
+
+    /**
+     * Empties the slot and moves back following slots of the same probe sequence, so lookups need no tombstones.
+     */
+    private void removeSlot(int slot) {
+        int mask = offsets.length - 1;
+        offsets[slot] = 0;
+        for (int next = (slot + 1) & mask; offsets[next] != 0; next = (next + 1) & mask) {
+            // a slot can move back to the empty one only if the empty one is not before the start of its probe
+            if (((next - hashes[next]) & mask) >= ((next - slot) & mask)) {
+                hashes[slot] = hashes[next];
+                offsets[slot] = offsets[next];
+                offsets[next] = 0;
+                slot = next;
+            }
+        }
+    }
+
+    private void compactIfWasteful() throws IOException {
+        if (garbageBytes > MIN_COMPACTION_BYTES && garbageBytes > end - garbageBytes) {
+            compact();
+        }
+    }
+
+    /**
+     * Copies live records to a new file which then replaces the current one, caller must own the write lock.
+     */
+    private void compact() throws IOException {
+        Path compacted = file.resolveSibling(file.getFileName() + ".compact");
+        FileChannel compactedChannel = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            long[] compactedOffsets = new long[offsets.length];
+            long compactedEnd = 0;
+            for (int slot = 0; slot < offsets.length; slot++) {
+                if (offsets[slot] != 0) {
+                    ByteBuffer record = read(offsets[slot] - 1).record;
+                    writeFully(compactedChannel, record, compactedEnd);
+                    compactedOffsets[slot] = compactedEnd + 1;
+                    compactedEnd += record.limit();
+                }
+            }
+            Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            channel.close();
+            channel = compactedChannel;
+            offsets = compactedOffsets;
+            end = compactedEnd;
+            garbageBytes = 0;
+        } catch (IOException | RuntimeException e) {
+            compactedChannel.close();
+            throw e;
+        }
+    }
+
+    private static int hash(String accountId) {
+        int hash = accountId.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * @return {@link String#hashCode()} of the account id, hash() keeps its upper half, so applying it again undoes it
+     */
+    private static int idHashCode(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    // record is [length of the rest][id length][id][version][scale][unscaled length][unscaled balance]
+    private static ByteBuffer encode(Account account) {
+        byte[] id = account.getAccountId().getBytes(StandardCharsets.UTF_8);
+        byte[] unscaled = account.getBalance().unscaledValue().toByteArray();
+        int length = Integer.BYTES + id.length + Long.BYTES + Integer.BYTES + Integer.BYTES + unscaled.length;
+
+        ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + length);
+        record.putInt(length)
+                .putInt(id.length)
+                .put(id)
+                .putLong(account.getVersion())
+                .putInt(account.getBalance().scale())
+                .putInt(unscaled.length)
+                .put(unscaled);
+        record.flip();
+        return record;
+    }
+
+    private int recordLength(long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+        readFully(header, offset);
+        return Integer.BYTES + header.getInt(0);
+    }
+
+    private StoredRecord read(long offset) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(READ_AHEAD_BYTES);
+        int read = channel.read(record, offset);
+        if (read < Integer.BYTES) {
+            throw new EOFException("Truncated account record at " + offset + " of " + file);
+        }
+        int length = Integer.BYTES + record.getInt(0);
+        if (length > READ_AHEAD_BYTES) {
+            record = ByteBuffer.allocate(length);
+            readFully(record, offset);
+        } else if (read < length) {
+            record.position(read).limit(length);
+            readFully(record, offset);
+        }
+        record.position(Integer.BYTES).limit(length);
+
+        byte[] id = new byte[record.getInt()];
+        record.get(id);
+        long version = record.getLong();
+        int scale = record.getInt();
+        byte[] unscaled = new byte[record.getInt()];
+        record.get(unscaled);
+
+        Account account = new Account(new String(id, StandardCharsets.UTF_8),
+                new BigDecimal(new BigInteger(unscaled), scale), BigDecimal.ZERO, version);
+        record.rewind();
+        return new StoredRecord(account, record);
+    }
+
+    /**
+     * Reads buffer from its position up to its limit, starting at offset plus the position.
+     */
+    private void readFully(ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException("Truncated account record at " + offset + " of " + file);
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+        buffer.rewind();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, offset + buffer.position());
+        }
+        buffer.rewind();
+    }
+
+    private static final class StoredRecord {
+        private final Account account;
+        private final ByteBuffer record;
+
+        StoredRecord(Account account, ByteBuffer record) {
+            this.account = account;
+            this.record = record;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.dws.challenge.repository;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.init.DataSourceScriptDatabaseInitializer;
+import org.springframework.boot.sql.init.DatabaseInitializationMode;
+import org.springframework.boot.sql.init.DatabaseInitializationSettings;
+import org.springframework.boot.sql.init.dependency.DatabaseInitializationDependencyConfigurer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+/**
+ * Data source and schema of {@link AccountsRepositoryJdbc}, which replace the excluded Spring Boot auto-configuration
+ * so other repositories start without a database. The data source is configured by the usual
+ * {@code spring.datasource} properties and is an embedded H2 database if they are not set.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "accounts.repository", havingValue = "jdbc")
+@EnableConfigurationProperties(DataSourceProperties.class)
+@Import(DatabaseInitializationDependencyConfigurer.class)
+public class JdbcRepositoryConfiguration {
+
+    @Bean
+    public DataSource dataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().build();
+    }
+
+    @Bean
+    public DataSourceScriptDatabaseInitializer accountsSchemaInitializer(DataSource dataSource) {
+        DatabaseInitializationSettings settings = new DatabaseInitializationSettings();
+        settings.setSchemaLocations(List.of("classpath:schema.sql"));
+        settings.setMode(DatabaseInitializationMode.ALWAYS);
+        return new DataSourceScriptDatabaseInitializer(dataSource, settings);
+    }
+}
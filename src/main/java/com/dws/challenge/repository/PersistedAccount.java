@@ -0,0 +1,211 @@
+package com.dws.challenge.repository;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.StateNotRetainedException;
+import com.dws.challenge.jfr.AccountLockContendedEvent;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.concurrent.locks.ReentrantLock;
+
+class PersistedAccount {
+    // written under lock, read without it
+    private volatile Account account;
+    private final ReentrantLock lock;
+    // allocated only while account has holds, guarded by lock
+    private AccountHolds holds;
+    // time the initial state is effective from
+    private final long createdAtMillis;
+    // set if the account existed before its initial state, such as an account loaded from elsewhere, so its earlier
+    // states are not retained rather than missing
+    private final boolean existedBefore;
+    private final int maxHistoryStates;
+    // allocated by the first update, written under lock, read without it
+    private volatile AccountHistory history;
+    // set under lock once the account is removed from the repository, so callers which looked it up before and
+    // waited for its lock can tell it's gone
+    private boolean closed;
+
+    PersistedAccount(Account account, long initialVersion, long createdAtMillis, boolean existedBefore,
+                     int maxHistoryStates) {
+        this.account = account.withVersion(initialVersion);
+        this.lock = new ReentrantLock();
+        this.createdAtMillis = createdAtMillis;
+        this.existedBefore = existedBefore;
+        this.maxHistoryStates = maxHistoryStates;
+    }
+
+    /**
+     * Replaces account state, version provided by caller is ignored and incremented instead. Replaced state is kept
+     * in the history until it expires.
+     */
+    public PersistedAccount update(Account account, long committedAtMillis) {
+        Account updated = account.withVersion(this.account.getVersion() + 1);
+        if (history == null) {
+            history = new AccountHistory(createdAtMillis, this.account, maxHistoryStates);
+        }
+        // appended before the state is replaced, so readers which see no history see the initial state
+        history.append(committedAtMillis, updated);
+        this.account = updated;
+        return this;
+    }
+
+    public Account getAccount() {
+        return account.copy();
+    }
+
+    public BigDecimal getBalance() {
+        return account.getBalance();
+    }
+
+    public long getVersion() {
+        return account.getVersion();
+    }
+
+    /**
+     * @return state effective at the time, or null if the account did not exist then
+     * @throws StateNotRetainedException if the state at the time was expired or dropped from the history
+     */
+    public Account readAsOf(long asOfMillis) throws StateNotRetainedException {
+        Account initial = account;
+        AccountHistory currentHistory = history;
+        Account state;
+        if (currentHistory == null) {
+            state = asOfMillis >= createdAtMillis ? initial.copy() : null;
+        } else {
+            state = currentHistory.find(initial.getAccountId(), asOfMillis);
+        }
+
+        if (state == null && (existedBefore || asOfMillis >= createdAtMillis)) {
+            throw new StateNotRetainedException(initial.getAccountId(), Instant.ofEpochMilli(asOfMillis));
+        }
+        return state;
+    }
+
+    /**
+     * Drops states replaced before the time, caller must own the lock.
+     *
+     * @return number of dropped states
+     */
+    public int expireHistory(long beforeMillis) {
+        return history != null ? history.expire(beforeMillis) : 0;
+    }
+
+    public boolean hasHistory() {
+        return history != null;
+    }
+
+    /**
+     * @return number of states kept in the history, zero until the first update
+     */
+    public int getHistorySize() {
+        AccountHistory currentHistory = history;
+        return currentHistory != null ? currentHistory.size() : 0;
+    }
+
+    /**
+     * Reads account without locking, so reads are never held up by changes. Every account is read consistently on
+     * its own, but the debit of a transfer may be seen before its credit, or the other way around.
+     */
+    public Account read() {
+        return account.copy();
+    }
+
+    public Account lock() {
+        acquire();
+        return getAccount();
+    }
+
+    public boolean tryLock() {
+        return lock.tryLock();
+    }
+
+    public void unlock() {
+        lock.unlock();
+    }
+
+    public boolean isLocked() {
+        return lock.isLocked();
+    }
+
+    private void acquire() {
+        if (lock.tryLock()) {
+            return;
+        }
+
+        AccountLockContendedEvent event = AccountLockContendedEvent.begin(account.getAccountId());
+        if (event.isEnabled()) {
+            event.setQueueLength(lock.getQueueLength());
+        }
+        lock.lock();
+        event.commit();
+    }
+
+    /**
+     * Marks account removed from the repository, caller must own the lock. Its holds are dropped with it, the
+     * object itself is collected once callers still referring to it are done.
+     */
+    public void close() {
+        closed = true;
+        holds = null;
+    }
+
+    /**
+     * Caller must own the lock.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public void addHold(long holdId, BigDecimal amount, long expiresAtMillis) {
+        if (holds == null) {
+            holds = new AccountHolds();
+        }
+        holds.add(holdId, amount, expiresAtMillis);
+    }
+
+    /**
+     * @return held amount or null if there is no such hold
+     */
+    public BigDecimal removeHold(long holdId) {
+        if (holds == null) {
+            return null;
+        }
+
+        BigDecimal amount = holds.remove(holdId);
+        if (holds.isEmpty()) {
+            holds = null;
+        }
+        return amount;
+    }
+
+    public boolean hasHolds() {
+        return holds != null;
+    }
+
+    public boolean hasHold(long holdId) {
+        return holds != null && holds.contains(holdId);
+    }
+
+    public boolean hasExpiredHolds(long nowMillis) {
+        return holds != null && holds.hasExpired(nowMillis);
+    }
+
+    /**
+     * Releases expired holds, caller must own the lock.
+     *
+     * @return true if any hold was released
+     */
+    public boolean releaseExpiredHolds(long nowMillis) {
+        if (!hasExpiredHolds(nowMillis)) {
+            return false;
+        }
+
+        BigDecimal expiredAmount = holds.removeExpired(nowMillis);
+        if (holds.isEmpty()) {
+            holds = null;
+        }
+        update(account.releaseHold(expiredAmount), nowMillis);
+        return true;
+    }
+}
@@ -0,0 +1,175 @@
+package com.dws.challenge.scheduling;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel with {@value #LEVELS} levels of {@value #WHEEL_SIZE} slots each. A timer is kept in the
+ * lowest level where its deadline shares all higher digits with the current tick and is moved down a level when the
+ * wheel above cascades, so scheduling and cancelling are O(1) and advancing costs O(1) per tick plus expired timers.
+ * Deadlines further than 2^32 ticks away simply wait on the top level for more rotations.
+ * <p>
+ * Not thread safe, callers are expected to synchronize access.
+ */
+public class HierarchicalTimingWheel<T> {
+
+    private static final int BITS = 8;
+    private static final int WHEEL_SIZE = 1 << BITS;
+    private static final int SLOT_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 4;
+
+    private final Bucket<T>[][] wheels;
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    public HierarchicalTimingWheel(long startTick) {
+        this.currentTick = startTick;
+        this.wheels = new Bucket[LEVELS][WHEEL_SIZE];
+        for (int level = 0; level < LEVELS; level++) {
+            for (int slot = 0; slot < WHEEL_SIZE; slot++) {
+                wheels[level][slot] = new Bucket<>();
+            }
+        }
+    }
+
+    public long getCurrentTick() {
+        return currentTick;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Deadlines which are not in the future expire on the next tick.
+     */
+    public Timer<T> schedule(long deadlineTick, T payload) {
+        Timer<T> timer = new Timer<>(Math.max(deadlineTick, currentTick + 1), payload);
+        place(timer);
+        size++;
+        return timer;
+    }
+
+    public boolean cancel(Timer<T> timer) {
+        if (timer.bucket == null) {
+            return false;
+        }
+        timer.bucket.remove(timer);
+        size--;
+        return true;
+    }
+
+    public void advanceTo(long tick, Consumer<T> expired) {
+        while (currentTick < tick) {
+            currentTick++;
+
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (BITS * level)) - 1)) == 0) {
+                    cascade(wheels[level][digit(currentTick, level)], expired);
+                }
+            }
+
+            Bucket<T> bucket = wheels[0][digit(currentTick, 0)];
+            for (Timer<T> timer = bucket.detach(); timer != null; ) {
+                Timer<T> next = timer.next;
+                expire(timer, expired);
+                timer = next;
+            }
+        }
+    }
+
+    private void cascade(Bucket<T> bucket, Consumer<T> expired) {
+        for (Timer<T> timer = bucket.detach(); timer != null; ) {
+            Timer<T> next = timer.next;
+            timer.prev = null;
+            timer.next = null;
+            if (timer.deadline <= currentTick) {
+                expire(timer, expired);
+            } else {
+                place(timer);
+            }
+            timer = next;
+        }
+    }
+
+    private void expire(Timer<T> timer, Consumer<T> expired) {
+        timer.prev = null;
+        timer.next = null;
+        size--;
+        expired.accept(timer.payload);
+    }
+
+    private void place(Timer<T> timer) {
+        int level = 0;
+        while (level < LEVELS - 1
+                && (timer.deadline >>> (BITS * (level + 1))) != (currentTick >>> (BITS * (level + 1)))) {
+            level++;
+        }
+        wheels[level][digit(timer.deadline, level)].add(timer);
+    }
+
+    private static int digit(long tick, int level) {
+        return (int) ((tick >>> (BITS * level)) & SLOT_MASK);
+    }
+
+    public static final class Timer<T> {
+        private final long deadline;
+        private final T payload;
+        private Bucket<T> bucket;
+        private Timer<T> prev;
+        private Timer<T> next;
+
+        private Timer(long deadline, T payload) {
+            this.deadline = deadline;
+            this.payload = payload;
+        }
+
+        public long getDeadline() {
+            return deadline;
+        }
+
+        public T getPayload() {
+            return payload;
+        }
+    }
+
+    private static final class Bucket<T> {
+        private Timer<T> head;
+
+        void add(Timer<T> timer) {
+            timer.bucket = this;
+            timer.prev = null;
+            timer.next = head;
+            if (head != null) {
+                head.prev = timer;
+            }
+            head = timer;
+        }
+
+        void remove(Timer<T> timer) {
+            if (timer.prev != null) {
+                timer.prev.next = timer.next;
+            } else {
+                head = timer.next;
+            }
+            if (timer.next != null) {
+                timer.next.prev = timer.prev;
+            }
+            timer.bucket = null;
+            timer.prev = null;
+            timer.next = null;
+        }
+
+        /**
+         * Empties the bucket and returns its former timers as a list linked by {@code next}.
+         */
+        Timer<T> detach() {
+            Timer<T> detached = head;
+            head = null;
+            for (Timer<T> timer = detached; timer != null; timer = timer.next) {
+                timer.bucket = null;
+            }
+            return detached;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.dws.challenge.scheduling;
+
+import com.dws.challenge.domain.ScheduledTransfer;
+import com.dws.challenge.domain.TransferRequest;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Append-only binary log of pending scheduled transfers. Every change is a small record, and the log is rewritten
+ * with live transfers only when it is loaded or compacted, so a torn record at the tail after a crash is dropped.
+ * Records are on disk once flushed, concurrent flushes share a single force of the file.
+ */
+public class ScheduledTransfersJournal implements Closeable {
+
+    private static final byte SCHEDULED = 1;
+    private static final byte RESCHEDULED = 2;
+    private static final byte REMOVED = 3;
+
+    private final Path path;
+    // taken before this, so records are appended while the file is forced
+    private final Object syncLock = new Object();
+    private FileOutputStream fileOut;
+    private DataOutputStream out;
+    private long recordCount;
+    private long appended;
+    // guarded by syncLock
+    private long synced;
+
+    public ScheduledTransfersJournal(Path path) {
+        this.path = path;
+    }
+
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    public synchronized Collection<ScheduledTransfer> load() {
+        Map<Long, ScheduledTransfer> transfers = new LinkedHashMap<>();
+        if (Files.exists(path)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+                readRecords(in, transfers);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read scheduled transfers from " + path, e);
+            }
+        }
+
+        rewrite(transfers.values());
+        return transfers.values();
+    }
+
+    public synchronized void scheduled(ScheduledTransfer transfer) {
+        try {
+            writeScheduled(out, transfer);
+            appended();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public synchronized void rescheduled(ScheduledTransfer transfer) {
+        try {
+            out.writeByte(RESCHEDULED);
+            out.writeLong(transfer.getId());
+            out.writeLong(transfer.getNextExecution().toEpochMilli());
+            appended();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public synchronized void removed(long id) {
+        try {
+            out.writeByte(REMOVED);
+            out.writeLong(id);
+            appended();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns once records appended so far are on disk, along with records appended by other threads meanwhile.
+     */
+    public void flush() {
+        long position;
+        synchronized (this) {
+            position = appended;
+        }
+        synchronized (syncLock) {
+            if (synced >= position) {
+                // forced along with records of another thread
+                return;
+            }
+            long target;
+            try {
+                synchronized (this) {
+                    if (out == null) {
+                        throw new IllegalStateException("Scheduled transfers journal " + path + " is closed");
+                    }
+                    out.flush();
+                    target = appended;
+                }
+                fileOut.getChannel().force(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to force scheduled transfers journal " + path, e);
+            }
+            synced = target;
+        }
+    }
+
+    /**
+     * Rewrites the journal with live transfers only, they are on disk once this returns.
+     */
+    public void compact(Collection<ScheduledTransfer> liveTransfers) {
+        synchronized (syncLock) {
+            synchronized (this) {
+                rewrite(liveTransfers);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                if (out != null) {
+                    try {
+                        out.flush();
+                        fileOut.getChannel().force(false);
+                    } finally {
+                        out.close();
+                        out = null;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Called holding both locks, or holding this before the journal is shared.
+     */
+    private void rewrite(Collection<ScheduledTransfer> liveTransfers) {
+        Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+        try {
+            if (out != null) {
+                out.close();
+            }
+            try (FileOutputStream compactedFile = new FileOutputStream(compacted.toFile());
+                 DataOutputStream compactedOut = new DataOutputStream(new BufferedOutputStream(compactedFile))) {
+                for (ScheduledTransfer transfer : liveTransfers) {
+                    writeScheduled(compactedOut, transfer);
+                }
+                compactedOut.flush();
+                compactedFile.getChannel().force(false);
+            }
+            Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            fileOut = new FileOutputStream(path.toFile(), true);
+            out = new DataOutputStream(new BufferedOutputStream(fileOut));
+            recordCount = liveTransfers.size();
+            // everything appended so far is either on disk or no longer live
+            synced = appended;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to compact scheduled transfers journal " + path, e);
+        }
+    }
+
+    private void appended() {
+        recordCount++;
+        appended++;
+    }
+
+    private static void readRecords(DataInputStream in, Map<Long, ScheduledTransfer> transfers) throws IOException {
+        try {
+            while (true) {
+                byte type = in.readByte();
+                long id = in.readLong();
+                switch (type) {
+                    case SCHEDULED:
+                        transfers.put(id, readScheduled(in, id));
+                        break;
+                    case RESCHEDULED:
+                        Instant nextExecution = Instant.ofEpochMilli(in.readLong());
+                        transfers.computeIfPresent(id, (transferId, transfer) -> new ScheduledTransfer(
+                                transferId, transfer.getTransfer(), nextExecution, transfer.getRepeatInterval()));
+                        break;
+                    case REMOVED:
+                        transfers.remove(id);
+                        break;
+                    default:
+                        throw new IOException("Unknown record type " + type);
+                }
+            }
+        } catch (EOFException e) {
+            // end of journal or incomplete last record
+        }
+    }
+
+    private static ScheduledTransfer readScheduled(DataInputStream in, long id) throws IOException {
+        Instant nextExecution = Instant.ofEpochMilli(in.readLong());
+        long repeatIntervalMillis = in.readLong();
+        String accountFromId = in.readUTF();
+        String accountToId = in.readUTF();
+        int scale = in.readInt();
+        byte[] unscaledAmount = new byte[in.readUnsignedByte()];
+        in.readFully(unscaledAmount);
+
+        TransferRequest transfer = TransferRequest.builder()
+                .accountFromId(accountFromId)
+                .accountToId(accountToId)
+                .amount(new BigDecimal(new BigInteger(unscaledAmount), scale))
+                .build();
+        Duration repeatInterval = repeatIntervalMillis > 0 ? Duration.ofMillis(repeatIntervalMillis) : null;
+        return new ScheduledTransfer(id, transfer, nextExecution, repeatInterval);
+    }
+
+    private static void writeScheduled(DataOutputStream out, ScheduledTransfer transfer) throws IOException {
+        TransferRequest request = transfer.getTransfer();
+        byte[] unscaledAmount = request.getAmount().unscaledValue().toByteArray();
+
+        out.writeByte(SCHEDULED);
+        out.writeLong(transfer.getId());
+        out.writeLong(transfer.getNextExecution().toEpochMilli());
+        out.writeLong(transfer.isRecurring() ? transfer.getRepeatInterval().toMillis() : 0);
+        out.writeUTF(request.getAccountFromId());
+        out.writeUTF(request.getAccountToId());
+        out.writeInt(request.getAmount().scale());
+        out.writeByte(unscaledAmount.length);
+        out.write(unscaledAmount);
+    }
+}
@@ -0,0 +1,157 @@
+package com.dws.challenge.seed;
+
+import com.dws.challenge.domain.Account;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses {@code accountId,balance} lines of a chunk which starts and ends at line boundaries. Lines are parsed
+ * in place, only account id string and balance are allocated per account. Blank lines are skipped, as is the
+ * {@code accountId,balance} header at the very beginning of the file.
+ */
+final class AccountsCsvParser {
+
+    private static final byte[] HEADER_ID = "accountId".getBytes(StandardCharsets.US_ASCII);
+    // more digits may not fit into long
+    private static final int MAX_LONG_DIGITS = 18;
+
+    private final ByteBuffer chunk;
+    private final long chunkOffset;
+    private byte[] idBytes = new byte[64];
+    private int position;
+    private boolean headerAllowed;
+
+    AccountsCsvParser(ByteBuffer chunk, long chunkOffset) {
+        this.chunk = chunk;
+        this.chunkOffset = chunkOffset;
+        this.headerAllowed = chunkOffset == 0;
+    }
+
+    /**
+     * @return number of bytes parsed so far
+     */
+    int getPosition() {
+        return Math.min(position, chunk.limit());
+    }
+
+    /**
+     * @return next account or null at the end of the chunk
+     */
+    Account next() {
+        int limit = chunk.limit();
+        while (position < limit) {
+            int start = position;
+            int lineEnd = start;
+            while (lineEnd < limit && chunk.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            position = lineEnd + 1;
+
+            int end = lineEnd;
+            if (end > start && chunk.get(end - 1) == '\r') {
+                end--;
+            }
+            start = skipSpaces(start, end);
+            if (start == end) {
+                continue;
+            }
+
+            int separator = start;
+            while (separator < end && chunk.get(separator) != ',') {
+                separator++;
+            }
+            if (separator == end) {
+                throw malformedLine(start, "no balance");
+            }
+
+            int idLength = readId(start, separator);
+            boolean header = headerAllowed && isHeader(idLength);
+            headerAllowed = false;
+            if (header) {
+                continue;
+            }
+            return new Account(new String(idBytes, 0, idLength, StandardCharsets.UTF_8),
+                    readBalance(separator + 1, end));
+        }
+        return null;
+    }
+
+    private int readId(int start, int end) {
+        while (end > start && chunk.get(end - 1) == ' ') {
+            end--;
+        }
+        int length = end - start;
+        if (length == 0) {
+            throw malformedLine(start, "no account id");
+        }
+        if (length > idBytes.length) {
+            idBytes = new byte[Math.max(length, idBytes.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            idBytes[i] = chunk.get(start + i);
+        }
+        return length;
+    }
+
+    private BigDecimal readBalance(int start, int end) {
+        start = skipSpaces(start, end);
+        while (end > start && chunk.get(end - 1) == ' ') {
+            end--;
+        }
+
+        long unscaled = 0;
+        int digits = 0;
+        int scale = -1;
+        for (int i = start; i < end; i++) {
+            byte b = chunk.get(i);
+            if (b >= '0' && b <= '9') {
+                unscaled = unscaled * 10 + (b - '0');
+                digits++;
+                if (scale >= 0) {
+                    scale++;
+                }
+            } else if (b == '.' && scale < 0) {
+                scale = 0;
+            } else {
+                throw malformedLine(start, "balance is not a positive decimal number");
+            }
+        }
+        if (digits == 0) {
+            throw malformedLine(start, "no balance");
+        }
+
+        if (digits > MAX_LONG_DIGITS) {
+            byte[] balance = new byte[end - start];
+            for (int i = 0; i < balance.length; i++) {
+                balance[i] = chunk.get(start + i);
+            }
+            return new BigDecimal(new String(balance, StandardCharsets.US_ASCII));
+        }
+        return BigDecimal.valueOf(unscaled, Math.max(scale, 0));
+    }
+
+    private boolean isHeader(int idLength) {
+        if (idLength != HEADER_ID.length) {
+            return false;
+        }
+        for (int i = 0; i < idLength; i++) {
+            if (idBytes[i] != HEADER_ID[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int skipSpaces(int start, int end) {
+        while (start < end && chunk.get(start) == ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private IllegalArgumentException malformedLine(int index, String reason) {
+        return new IllegalArgumentException("Malformed seed line at byte " + (chunkOffset + index) + ": " + reason);
+    }
+}
@@ -0,0 +1,196 @@
+package com.dws.challenge.seed;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.AccountsRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Loads accounts from accounts.seed.file CSV while the application context starts, so the web server only accepts
+ * requests once the repository is populated. The file is memory mapped in chunks aligned to lines, which are parsed
+ * in parallel and created in batches.
+ */
+@Component
+@ConditionalOnProperty(name = "accounts.seed.file")
+@Slf4j
+public class AccountsSeedLoader {
+
+    // chunks are mapped separately, a single mapping is limited to 2GB
+    private static final long MAX_CHUNK_SIZE = 256L << 20;
+    private static final long MIN_CHUNK_SIZE = 1L << 20;
+
+    private final AccountsRepository accountsRepository;
+    private final Path seedFile;
+    private final int threads;
+    private final int batchSize;
+    private final long progressIntervalMillis;
+
+    private final LongAdder loadedAccounts = new LongAdder();
+    private final LongAdder loadedBytes = new LongAdder();
+
+    @Autowired
+    public AccountsSeedLoader(AccountsRepository accountsRepository,
+                              @Value("${accounts.seed.file}") String seedFile,
+                              @Value("${accounts.seed.threads:0}") int threads,
+                              @Value("${accounts.seed.batch-size:10000}") int batchSize,
+                              @Value("${accounts.seed.progress-interval-ms:5000}") long progressIntervalMillis) {
+        this.accountsRepository = accountsRepository;
+        this.seedFile = Paths.get(seedFile);
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.batchSize = batchSize;
+        this.progressIntervalMillis = progressIntervalMillis;
+    }
+
+    public long getLoadedAccounts() {
+        return loadedAccounts.sum();
+    }
+
+    @PostConstruct
+    public void load() throws IOException, InterruptedException {
+        long startNanos = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(seedFile, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long[] boundaries = chunkBoundaries(channel, size);
+            log.info("Loading accounts from {} ({} MB) in {} chunks on {} threads",
+                    seedFile, size >> 20, boundaries.length - 1, threads);
+
+            AtomicInteger threadNumber = new AtomicInteger();
+            ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "accounts-seed-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                List<Future<?>> chunks = new ArrayList<>(boundaries.length - 1);
+                for (int i = 0; i + 1 < boundaries.length; i++) {
+                    long offset = boundaries[i];
+                    long length = boundaries[i + 1] - offset;
+                    chunks.add(executor.submit(() -> {
+                        loadChunk(channel.map(FileChannel.MapMode.READ_ONLY, offset, length), offset);
+                        return null;
+                    }));
+                }
+                executor.shutdown();
+
+                while (!executor.awaitTermination(progressIntervalMillis, TimeUnit.MILLISECONDS)) {
+                    logProgress("Loaded", size, startNanos);
+                }
+                for (Future<?> chunk : chunks) {
+                    chunk.get();
+                }
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Failed to load accounts from " + seedFile, e.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+            logProgress("Finished loading", size, startNanos);
+        }
+    }
+
+    private void loadChunk(MappedByteBuffer chunk, long offset) {
+        AccountsCsvParser parser = new AccountsCsvParser(chunk, offset);
+        List<Account> batch = new ArrayList<>(batchSize);
+        int reportedPosition = 0;
+
+        Account account;
+        while ((account = parser.next()) != null) {
+            batch.add(account);
+            if (batch.size() == batchSize) {
+                accountsRepository.createAccounts(batch);
+                loadedAccounts.add(batch.size());
+                loadedBytes.add(parser.getPosition() - reportedPosition);
+                reportedPosition = parser.getPosition();
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            accountsRepository.createAccounts(batch);
+            loadedAccounts.add(batch.size());
+        }
+        loadedBytes.add(parser.getPosition() - reportedPosition);
+    }
+
+    private void logProgress(String state, long size, long startNanos) {
+        long accounts = loadedAccounts.sum();
+        long bytes = loadedBytes.sum();
+        double seconds = Math.max(System.nanoTime() - startNanos, 1) / 1e9;
+        log.info("{} {} accounts, {}% of {} in {} s: {} accounts/s, {} MB/s",
+                state, accounts, size > 0 ? bytes * 100 / size : 100, seedFile, String.format("%.1f", seconds),
+                (long) (accounts / seconds), String.format("%.1f", bytes / seconds / (1 << 20)));
+    }
+
+    /**
+     * Splits file into chunks for all threads, each starting at the beginning of a line.
+     */
+    private long[] chunkBoundaries(FileChannel channel, long size) throws IOException {
+        int chunks = (int) Math.max(Math.min(threads * 4L, size / MIN_CHUNK_SIZE + 1),
+                (size + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE);
+
+        long[] boundaries = new long[chunks + 1];
+        int count = 1;
+        for (int i = 1; i < chunks; i++) {
+            long boundary = lineStart(channel, Math.max(size / chunks * i, boundaries[count - 1]), size);
+            if (boundary > boundaries[count - 1] && boundary < size) {
+                boundaries[count++] = boundary;
+            }
+        }
+        boundaries[count++] = size;
+
+        long[] result = new long[count];
+        System.arraycopy(boundaries, 0, result, 0, count);
+        for (int i = 1; i < count; i++) {
+            if (result[i] - result[i - 1] > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Seed file " + seedFile + " has a line longer than 2GB");
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return start of the first line at or after position
+     */
+    private static long lineStart(FileChannel channel, long position, long size) throws IOException {
+        if (position == 0) {
+            return 0;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long offset = position - 1;
+        while (offset < size) {
+            buffer.clear();
+            int read = channel.read(buffer, offset);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return offset + i + 1;
+                }
+            }
+            offset += read;
+        }
+        return size;
+    }
+}
@@ -1,17 +1,43 @@
 package com.dws.challenge.service;
 
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.ChecksumNode;
+import com.dws.challenge.domain.Hold;
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.exception.NotExistingAccountException;
+import com.dws.challenge.exception.NotExistingHoldException;
+import com.dws.challenge.exception.StateNotRetainedException;
+import com.dws.challenge.repository.AccountChecksums;
 import com.dws.challenge.repository.AccountsRepository;
 import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
 @Service
+@Slf4j
 public class AccountsService {
 
   @Getter
   private final AccountsRepository accountsRepository;
 
+  @Autowired(required = false)
+  private List<CommittedChangesListener> committedChangesListeners = Collections.emptyList();
+
+  @Autowired
+  private BalanceChangePublisher balanceChangePublisher;
+
   @Autowired
   public AccountsService(AccountsRepository accountsRepository) {
     this.accountsRepository = accountsRepository;
@@ -19,9 +45,185 @@ public class AccountsService {
 
   public void createAccount(Account account) {
     this.accountsRepository.createAccount(account);
+    changed(account.getAccountId());
   }
 
   public Account getAccount(String accountId) {
     return this.accountsRepository.getAccount(accountId);
   }
+
+  public boolean keepsAccountHistory() {
+    return this.accountsRepository.keepsHistory();
+  }
+
+  public Account getAccount(String accountId, Instant asOf) throws StateNotRetainedException {
+    return this.accountsRepository.getAccount(accountId, asOf);
+  }
+
+  public void closeAccount(String accountId) throws NotExistingAccountException {
+    this.accountsRepository.closeAccount(accountId);
+    removed(Collections.singletonList(accountId));
+  }
+
+  /**
+   * Removes all accounts regardless of their funds, see {@link AccountsRepository#clearAccounts()}.
+   */
+  public void clearAccounts() {
+    List<String> removedAccountIds = new ArrayList<>();
+    this.accountsRepository.clearAccounts(removedAccountIds::add);
+    if (!removedAccountIds.isEmpty()) {
+      removed(removedAccountIds);
+    }
+  }
+
+  public List<Account> getAccountsByBalance(BigDecimal minBalance, BigDecimal maxBalance, boolean descending,
+                                            int limit) {
+    return this.accountsRepository.getAccountsByBalance(minBalance, maxBalance, descending, limit);
+  }
+
+  /**
+   * @param prefix hex prefix of checksum buckets, empty for the root
+   * @return checksum of the node with checksums of its children, or with checksums of its accounts if it's a bucket;
+   * null if the repository does not keep checksums
+   */
+  public ChecksumNode getChecksums(String prefix) {
+    AccountChecksums checksums = this.accountsRepository.getChecksums();
+    if (checksums == null) {
+      return null;
+    }
+
+    if (prefix.length() == AccountChecksums.PREFIX_DIGITS) {
+      Map<String, String> accounts = new TreeMap<>();
+      for (Account account : this.accountsRepository.getChecksumBucket(Integer.parseInt(prefix, 16))) {
+        accounts.put(account.getAccountId(),
+          AccountChecksums.toHex(AccountChecksums.checksum(account.getAccountId(), account.getBalance())));
+      }
+      return new ChecksumNode(prefix, AccountChecksums.toHex(checksums.getChecksum(prefix)), null, accounts);
+    }
+
+    // the node is summed from the same reads as its children, so they add up even while accounts change
+    Map<String, String> children = new LinkedHashMap<>();
+    long checksum = 0;
+    for (int digit = 0; digit < 16; digit++) {
+      String child = prefix + Character.forDigit(digit, 16);
+      long childChecksum = checksums.getChecksum(child);
+      children.put(child, AccountChecksums.toHex(childChecksum));
+      checksum += childChecksum;
+    }
+    return new ChecksumNode(prefix, AccountChecksums.toHex(checksum), children, null);
+  }
+
+  /**
+   * Credits the account by itself, as for the credit of a transfer whose debit account is on another node.
+   */
+  public Account credit(String accountId, BigDecimal amount) throws NotExistingAccountException {
+    Account account = this.accountsRepository.lockAccount(accountId);
+    Account credited;
+    try {
+      credited = account.credit(amount);
+      Account updated = this.accountsRepository.updateAccount(credited);
+      credited = updated != null ? updated : credited;
+      this.accountsRepository.commitAccounts();
+    } finally {
+      this.accountsRepository.releaseAccount(accountId);
+    }
+    return changed(credited);
+  }
+
+  public Hold authorizeHold(String accountId, BigDecimal amount, Duration ttl)
+    throws NotExistingAccountException, InsufficientFundsException {
+    Hold hold = this.accountsRepository.authorizeHold(accountId, amount, ttl);
+    changed(accountId);
+    return hold;
+  }
+
+  public Account captureHold(String accountId, long holdId)
+    throws NotExistingAccountException, NotExistingHoldException {
+    return changed(this.accountsRepository.captureHold(accountId, holdId));
+  }
+
+  /**
+   * Captures hold like {@link AccountsRepository#captureHold(String, long, Runnable)}.
+   */
+  public Account captureHold(String accountId, long holdId, Runnable beforeCapture)
+    throws NotExistingAccountException, NotExistingHoldException {
+    return changed(this.accountsRepository.captureHold(accountId, holdId, beforeCapture));
+  }
+
+  /**
+   * Captures hold like {@link AccountsRepository#captureUnreleasedHold(String, long)}.
+   */
+  public Account captureUnreleasedHold(String accountId, long holdId)
+    throws NotExistingAccountException, NotExistingHoldException {
+    return changed(this.accountsRepository.captureUnreleasedHold(accountId, holdId));
+  }
+
+  public Account releaseHold(String accountId, long holdId)
+    throws NotExistingAccountException, NotExistingHoldException {
+    return changed(this.accountsRepository.releaseHold(accountId, holdId));
+  }
+
+  @Scheduled(fixedDelayString = "${accounts.holds.sweep-interval-ms:1000}")
+  public void releaseExpiredHolds() {
+    // holds released lazily before the sweep are passed too, so listeners and subscribers learn of every expiry
+    List<Account> visitedAccounts = new ArrayList<>();
+    int released = this.accountsRepository.releaseExpiredHolds(visitedAccounts::add);
+    if (released > 0) {
+      log.debug("Released expired holds of {} accounts", released);
+    }
+    if (!visitedAccounts.isEmpty()) {
+      changed(visitedAccounts);
+    }
+  }
+
+  @Scheduled(fixedDelayString = "${accounts.history.sweep-interval-ms:60000}")
+  public void expireAccountHistory() {
+    int expired = this.accountsRepository.expireAccountHistory();
+    if (expired > 0) {
+      log.debug("Dropped {} expired account states", expired);
+    }
+  }
+
+  private void changed(String accountId) {
+    if (committedChangesListeners.isEmpty() && !balanceChangePublisher.isSubscribed(accountId)) {
+      return;
+    }
+    // read after the change, a later state of the account is fine for listeners and subscribers
+    Account account = this.accountsRepository.getAccount(accountId);
+    if (account != null) {
+      changed(account);
+    }
+  }
+
+  private Account changed(Account account) {
+    changed(Collections.singletonList(account));
+    return account;
+  }
+
+  /**
+   * Publishes committed states to balance streams and passes them to listeners, as transfers do.
+   */
+  private void changed(List<Account> accounts) {
+    for (Account account : accounts) {
+      balanceChangePublisher.publish(account);
+    }
+    for (CommittedChangesListener listener : committedChangesListeners) {
+      try {
+        listener.changesCommitted(accounts);
+      } catch (RuntimeException e) {
+        log.error("Committed changes listener {} failed on {}", listener, accounts, e);
+      }
+    }
+  }
+
+  private void removed(List<String> accountIds) {
+    balanceChangePublisher.accountsRemoved(accountIds);
+    for (CommittedChangesListener listener : committedChangesListeners) {
+      try {
+        listener.accountsRemoved(accountIds);
+      } catch (RuntimeException e) {
+        log.error("Committed changes listener {} failed on removal of {}", listener, accountIds, e);
+      }
+    }
+  }
 }
@@ -0,0 +1,51 @@
+package com.dws.challenge.service;
+
+import java.time.Duration;
+
+/**
+ * Concurrency limit adjusted by observed latency: it grows by one while latency stays below target and the limit
+ * is actually used, and backs off multiplicatively once smoothed latency exceeds target.
+ * Updates are racy on purpose, a lost sample only delays adaptation.
+ */
+class AdaptiveLimit {
+
+    private static final double SMOOTHING = 0.2;
+    private static final double BACKOFF = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long targetLatencyNanos;
+
+    private volatile int limit;
+    private volatile long smoothedLatencyNanos;
+
+    AdaptiveLimit(int minLimit, int maxLimit, Duration targetLatency) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.targetLatencyNanos = targetLatency.toNanos();
+        this.limit = maxLimit;
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    void onSample(long latencyNanos, int inFlight) {
+        long smoothed = smoothedLatencyNanos;
+        smoothed = smoothed == 0 ? latencyNanos : (long) (smoothed + SMOOTHING * (latencyNanos - smoothed));
+        smoothedLatencyNanos = smoothed;
+
+        int current = limit;
+        if (smoothed > targetLatencyNanos) {
+            limit = Math.max(minLimit, (int) (current * BACKOFF));
+        } else if (inFlight * 2 >= current) {
+            limit = Math.min(maxLimit, current + 1);
+        }
+    }
+
+    Duration retryAfter() {
+        // a couple of observed latencies, but never less than the 1 second granularity of Retry-After
+        long seconds = (2 * smoothedLatencyNanos + 999_999_999L) / 1_000_000_000L;
+        return Duration.ofSeconds(Math.max(1, seconds));
+    }
+}
@@ -0,0 +1,188 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.Account;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Fans balance changes out to subscribers. Publishing only records the latest balance per account in each
+ * interested subscription and schedules its delivery, so a slow subscriber gets coalesced updates and never
+ * holds back the transfer which published them. Buffered updates are bounded by subscribed accounts. Removal of an
+ * account is delivered too, and forgets the versions delivered for it.
+ */
+@Component
+@Slf4j
+public class BalanceChangePublisher {
+
+    private final Map<String, Set<Subscription>> subscriptionsByAccount = new ConcurrentHashMap<>();
+    private final Executor executor;
+
+    @Autowired
+    public BalanceChangePublisher(@Value("${accounts.stream.dispatch-threads:4}") int dispatchThreads) {
+        this(Executors.newFixedThreadPool(dispatchThreads, runnable -> {
+            Thread thread = new Thread(runnable, "balance-changes");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    BalanceChangePublisher(Executor executor) {
+        this.executor = executor;
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor instanceof ExecutorService) {
+            ((ExecutorService) executor).shutdownNow();
+        }
+    }
+
+    public void publish(Account account) {
+        Set<Subscription> subscriptions = subscriptionsByAccount.get(account.getAccountId());
+        if (subscriptions != null) {
+            for (Subscription subscription : subscriptions) {
+                subscription.offer(account);
+            }
+        }
+    }
+
+    /**
+     * @return true if some subscription is interested in the account, so its changes are worth reading to publish
+     */
+    public boolean isSubscribed(String accountId) {
+        return subscriptionsByAccount.containsKey(accountId);
+    }
+
+    /**
+     * Tells subscribers of the accounts that they were removed, after any change of the accounts offered before.
+     */
+    public void accountsRemoved(List<String> accountIds) {
+        for (String accountId : accountIds) {
+            Set<Subscription> subscriptions = subscriptionsByAccount.get(accountId);
+            if (subscriptions != null) {
+                for (Subscription subscription : subscriptions) {
+                    subscription.offerRemoval(accountId);
+                }
+            }
+        }
+    }
+
+    public Subscription subscribe(Set<String> accountIds, BalanceChangeSink sink) {
+        Subscription subscription = new Subscription(accountIds, sink);
+        for (String accountId : accountIds) {
+            subscriptionsByAccount.computeIfAbsent(accountId, id -> ConcurrentHashMap.newKeySet()).add(subscription);
+        }
+        return subscription;
+    }
+
+    public void unsubscribe(Subscription subscription) {
+        for (String accountId : subscription.accountIds) {
+            subscriptionsByAccount.computeIfPresent(accountId, (id, subscriptions) -> {
+                subscriptions.remove(subscription);
+                return subscriptions.isEmpty() ? null : subscriptions;
+            });
+        }
+    }
+
+    public final class Subscription {
+        private final Set<String> accountIds;
+        private final BalanceChangeSink sink;
+        // latest not yet delivered change per account
+        private final Map<String, Account> pendingChanges = new ConcurrentHashMap<>();
+        // accounts removed since the last delivery, delivered before pending changes
+        private final Set<String> pendingRemovals = ConcurrentHashMap.newKeySet();
+        // version of the last delivered change per account, used only by the dispatching thread
+        private final Map<String, Long> deliveredVersions = new HashMap<>();
+        private final AtomicBoolean dispatching = new AtomicBoolean();
+
+        private Subscription(Set<String> accountIds, BalanceChangeSink sink) {
+            this.accountIds = Set.copyOf(accountIds);
+            this.sink = sink;
+        }
+
+        /**
+         * Offers a state of the account, which is dropped if a later state of the account was offered before, as
+         * states published by concurrent transfers and the initial state of a subscription may arrive out of order.
+         */
+        public void offer(Account account) {
+            pendingChanges.merge(account.getAccountId(), account, (pending, offered) ->
+                    pending.getVersion() > offered.getVersion() ? pending : offered);
+            scheduleDispatch();
+        }
+
+        /**
+         * Offers removal of the account, which replaces its pending change. A later state of the account is of the
+         * account created again, which starts from a higher version.
+         */
+        private void offerRemoval(String accountId) {
+            pendingRemovals.add(accountId);
+            pendingChanges.remove(accountId);
+            scheduleDispatch();
+        }
+
+        private void scheduleDispatch() {
+            if (dispatching.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this::dispatch);
+                } catch (RejectedExecutionException e) {
+                    // publisher is shutting down
+                }
+            }
+        }
+
+        private void dispatch() {
+            do {
+                List<String> removals = new ArrayList<>(pendingRemovals.size());
+                for (String accountId : pendingRemovals) {
+                    if (pendingRemovals.remove(accountId)) {
+                        deliveredVersions.remove(accountId);
+                        removals.add(accountId);
+                    }
+                }
+                List<Account> changes = new ArrayList<>(pendingChanges.size());
+                for (String accountId : pendingChanges.keySet()) {
+                    Account change = pendingChanges.remove(accountId);
+                    Long deliveredVersion = change != null ? deliveredVersions.get(accountId) : null;
+                    if (change != null && (deliveredVersion == null || deliveredVersion <= change.getVersion())) {
+                        deliveredVersions.put(accountId, change.getVersion());
+                        changes.add(change);
+                    }
+                }
+
+                try {
+                    if (!removals.isEmpty()) {
+                        sink.sendRemoved(removals);
+                    }
+                    if (!changes.isEmpty()) {
+                        sink.send(changes);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    log.info("Dropping balance changes subscriber: {}", e.toString());
+                    unsubscribe(this);
+                    pendingChanges.clear();
+                    pendingRemovals.clear();
+                    return;
+                }
+
+                dispatching.set(false);
+            } while ((!pendingChanges.isEmpty() || !pendingRemovals.isEmpty())
+                    && dispatching.compareAndSet(false, true));
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.Account;
+
+import java.io.IOException;
+import java.util.List;
+
+public interface BalanceChangeSink {
+
+    void send(List<Account> accounts) throws IOException;
+
+    /**
+     * Sends ids of removed accounts, changes of the accounts sent after them are of accounts created again.
+     */
+    default void sendRemoved(List<String> accountIds) throws IOException {
+    }
+}
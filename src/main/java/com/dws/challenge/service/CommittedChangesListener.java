@@ -0,0 +1,24 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.Account;
+
+import java.util.List;
+
+/**
+ * Receives states of accounts changed together, once the change is committed and accounts are released, and states
+ * of accounts whose holds expired. States of an account may be received out of order, the latest one has the
+ * highest version.
+ */
+public interface CommittedChangesListener {
+
+    /**
+     * Called before the change is confirmed to the client, so it may block until the change is durable elsewhere.
+     */
+    void changesCommitted(List<Account> accounts);
+
+    /**
+     * Called once accounts are removed. An account created again with the same id starts from a higher version.
+     */
+    default void accountsRemoved(List<String> accountIds) {
+    }
+}
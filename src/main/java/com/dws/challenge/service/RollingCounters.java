@@ -0,0 +1,97 @@
+package com.dws.challenge.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed ring of counter buckets, one per period, packed into a single array. A bucket is stamped with its period and
+ * the first writer of a new period resets it, so updates and reads racing with the reset may be slightly off.
+ */
+final class RollingCounters {
+
+    static final int TRANSFERS = 0;
+    static final int FAILURES = 1;
+    static final int DEBIT_VOLUME = 2;
+    static final int CREDIT_VOLUME = 3;
+    static final int LOCK_WAIT_NANOS = 4;
+    static final int LOCK_WAITS = 5;
+    private static final int STAMP = 6;
+    private static final int FIELDS = 7;
+
+    private final long periodMillis;
+    private final int buckets;
+    private final AtomicLongArray values;
+
+    RollingCounters(long periodMillis, int buckets) {
+        this.periodMillis = periodMillis;
+        this.buckets = buckets;
+        this.values = new AtomicLongArray(buckets * FIELDS);
+    }
+
+    /**
+     * @return bucket of the current period, reset if it was left by an older one
+     */
+    int bucket(long nowMillis) {
+        long period = nowMillis / periodMillis;
+        int bucket = (int) (period % buckets) * FIELDS;
+        long stamp = values.get(bucket + STAMP);
+        if (stamp < period && values.compareAndSet(bucket + STAMP, stamp, period)) {
+            for (int field = 0; field < STAMP; field++) {
+                values.set(bucket + field, 0);
+            }
+        }
+        return bucket;
+    }
+
+    void add(int bucket, int field, long delta) {
+        values.getAndAdd(bucket + field, delta);
+    }
+
+    // volumes are kept as double bits
+    void addDouble(int bucket, int field, double delta) {
+        int index = bucket + field;
+        long bits;
+        do {
+            bits = values.get(index);
+        } while (!values.compareAndSet(index, bits, Double.doubleToRawLongBits(Double.longBitsToDouble(bits) + delta)));
+    }
+
+    /**
+     * Sums the field over the current period and previous ones, up to the number of buckets.
+     */
+    long sum(long nowMillis, int periods, int field) {
+        long sum = 0;
+        long period = nowMillis / periodMillis;
+        for (long p = period - Math.min(periods, buckets) + 1; p <= period; p++) {
+            int bucket = (int) (p % buckets) * FIELDS;
+            if (values.get(bucket + STAMP) == p) {
+                sum += values.get(bucket + field);
+            }
+        }
+        return sum;
+    }
+
+    double sumDouble(long nowMillis, int periods, int field) {
+        double sum = 0;
+        long period = nowMillis / periodMillis;
+        for (long p = period - Math.min(periods, buckets) + 1; p <= period; p++) {
+            int bucket = (int) (p % buckets) * FIELDS;
+            if (values.get(bucket + STAMP) == p) {
+                sum += Double.longBitsToDouble(values.get(bucket + field));
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * @return whether nothing was recorded within the last number of periods
+     */
+    boolean isIdle(long nowMillis, int periods) {
+        long oldestPeriod = nowMillis / periodMillis - periods;
+        for (int bucket = 0; bucket < values.length(); bucket += FIELDS) {
+            if (values.get(bucket + STAMP) > oldestPeriod) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
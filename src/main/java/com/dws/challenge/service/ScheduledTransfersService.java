@@ -0,0 +1,287 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.ScheduledTransfer;
+import com.dws.challenge.domain.ScheduledTransferRequest;
+import com.dws.challenge.exception.InvalidScheduleException;
+import com.dws.challenge.exception.InvalidTransferException;
+import com.dws.challenge.exception.TransferRejectedException;
+import com.dws.challenge.scheduling.HierarchicalTimingWheel;
+import com.dws.challenge.scheduling.ScheduledTransfersJournal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@Service
+@Slf4j
+public class ScheduledTransfersService {
+
+    // journal is compacted once it holds this many records more than twice the live transfers
+    private static final long COMPACTION_SLACK = 10_000;
+
+    private final TransfersService transfersService;
+    private final Clock clock;
+    private final long tickMillis;
+    private final int batchSize;
+    private final ScheduledTransfersJournal journal;
+
+    private final HierarchicalTimingWheel<ScheduledTransfer> wheel;
+    private final Map<Long, HierarchicalTimingWheel.Timer<ScheduledTransfer>> timers = new HashMap<>();
+    private final Deque<ScheduledTransfer> dueTransfers = new ArrayDeque<>();
+    private long nextId = 1;
+
+    private ScheduledExecutorService executor;
+
+    @Autowired
+    public ScheduledTransfersService(TransfersService transfersService,
+                                     @Value("${transfers.scheduler.tick-ms:100}") long tickMillis,
+                                     @Value("${transfers.scheduler.batch-size:1000}") int batchSize,
+                                     @Value("${transfers.scheduler.journal:}") String journalPath) {
+        this(transfersService, Clock.systemUTC(), tickMillis, batchSize,
+                journalPath.isEmpty() ? null : new ScheduledTransfersJournal(Paths.get(journalPath)));
+    }
+
+    ScheduledTransfersService(TransfersService transfersService, Clock clock, long tickMillis, int batchSize,
+                              ScheduledTransfersJournal journal) {
+        this.transfersService = transfersService;
+        this.clock = clock;
+        this.tickMillis = tickMillis;
+        this.batchSize = batchSize;
+        this.journal = journal;
+        this.wheel = new HierarchicalTimingWheel<>(currentTick());
+    }
+
+    @PostConstruct
+    public void start() {
+        restore();
+
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "scheduled-transfers");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(this::executeDueTransfers, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        if (executor != null) {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        if (journal != null) {
+            synchronized (this) {
+                journal.close();
+            }
+        }
+    }
+
+    synchronized void restore() {
+        if (journal != null) {
+            for (ScheduledTransfer transfer : journal.load()) {
+                timers.put(transfer.getId(), wheel.schedule(tickOf(transfer.getNextExecution()), transfer));
+                nextId = Math.max(nextId, transfer.getId() + 1);
+            }
+            log.info("Restored {} scheduled transfers", timers.size());
+        }
+    }
+
+    /**
+     * Returns once the transfer is in the journal on disk. The journal is forced outside the lock, so transfers
+     * scheduled and cancelled concurrently share a single force.
+     */
+    public ScheduledTransfer schedule(ScheduledTransferRequest request) {
+        Duration repeatInterval = request.getRepeatInterval();
+        if (repeatInterval != null && repeatInterval.toMillis() < tickMillis) {
+            throw new InvalidScheduleException("Repeat interval must be at least " + tickMillis + "ms");
+        }
+
+        ScheduledTransfer transfer;
+        synchronized (this) {
+            transfer = new ScheduledTransfer(nextId++, request.getTransfer(), request.getExecuteAt(), repeatInterval);
+            timers.put(transfer.getId(), wheel.schedule(tickOf(transfer.getNextExecution()), transfer));
+            if (journal != null) {
+                journal.scheduled(transfer);
+            }
+        }
+        if (journal != null) {
+            journal.flush();
+        }
+
+        log.info("Scheduled transfer {}", transfer.getId());
+        return transfer;
+    }
+
+    /**
+     * Returns once the cancellation is in the journal on disk, forced like by {@link #schedule}.
+     */
+    public boolean cancel(long id) {
+        synchronized (this) {
+            HierarchicalTimingWheel.Timer<ScheduledTransfer> timer = timers.remove(id);
+            if (timer == null) {
+                return false;
+            }
+
+            // timer which has already expired stays in due transfers, it is skipped as no longer registered
+            wheel.cancel(timer);
+            if (journal != null) {
+                journal.removed(id);
+            }
+        }
+        if (journal != null) {
+            journal.flush();
+        }
+
+        log.info("Cancelled scheduled transfer {}", id);
+        return true;
+    }
+
+    public synchronized int getPendingCount() {
+        return timers.size();
+    }
+
+    void executeDueTransfers() {
+        try {
+            List<Claim> batch;
+            while (!(batch = claimNextBatch()).isEmpty()) {
+                List<Claim> rejected = new ArrayList<>();
+                for (Claim claim : batch) {
+                    execute(claim, rejected);
+                }
+                if (!rejected.isEmpty()) {
+                    retry(rejected);
+                    // back off until the next tick
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to execute scheduled transfers", e);
+        }
+    }
+
+    /**
+     * Takes due transfers off the schedule, removing them or rescheduling their next execution, and forces the
+     * journal once for the whole batch before any of them is executed. A transfer interrupted by a crash is then not
+     * executed again.
+     */
+    private synchronized List<Claim> claimNextBatch() {
+        wheel.advanceTo(currentTick(), dueTransfers::add);
+
+        Instant now = clock.instant();
+        List<Claim> batch = new ArrayList<>(Math.min(batchSize, dueTransfers.size()));
+        while (batch.size() < batchSize && !dueTransfers.isEmpty()) {
+            ScheduledTransfer transfer = dueTransfers.poll();
+            HierarchicalTimingWheel.Timer<ScheduledTransfer> expired = timers.get(transfer.getId());
+            if (expired == null) {
+                continue;
+            }
+
+            HierarchicalTimingWheel.Timer<ScheduledTransfer> next = null;
+            if (transfer.isRecurring()) {
+                ScheduledTransfer nextTransfer = transfer.rescheduleAfter(now);
+                next = wheel.schedule(tickOf(nextTransfer.getNextExecution()), nextTransfer);
+                timers.put(transfer.getId(), next);
+                if (journal != null) {
+                    journal.rescheduled(nextTransfer);
+                }
+            } else {
+                timers.remove(transfer.getId());
+                if (journal != null) {
+                    journal.removed(transfer.getId());
+                }
+            }
+            batch.add(new Claim(transfer, expired, next));
+        }
+
+        if (journal != null && !batch.isEmpty()) {
+            if (journal.getRecordCount() > 2L * timers.size() + COMPACTION_SLACK) {
+                List<ScheduledTransfer> liveTransfers = new ArrayList<>(timers.size());
+                timers.values().forEach(timer -> liveTransfers.add(timer.getPayload()));
+                journal.compact(liveTransfers);
+            } else {
+                journal.flush();
+            }
+        }
+        return batch;
+    }
+
+    private void execute(Claim claim, List<Claim> rejected) {
+        ScheduledTransfer transfer = claim.transfer;
+        try {
+            transfersService.transfer(transfer.getTransfer());
+        } catch (TransferRejectedException e) {
+            log.info("Scheduled transfer {} was throttled, retrying on next tick", transfer.getId());
+            rejected.add(claim);
+        } catch (InvalidTransferException e) {
+            log.info("Scheduled transfer {} failed: {}", transfer.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Puts throttled transfers back on the schedule as they were before they were claimed, unless cancelled
+     * meanwhile.
+     */
+    private synchronized void retry(List<Claim> rejected) {
+        for (int i = rejected.size() - 1; i >= 0; i--) {
+            Claim claim = rejected.get(i);
+            ScheduledTransfer transfer = claim.transfer;
+            if (claim.next != null) {
+                if (timers.get(transfer.getId()) != claim.next) {
+                    continue;
+                }
+                wheel.cancel(claim.next);
+                if (journal != null) {
+                    journal.rescheduled(transfer);
+                }
+            } else if (journal != null) {
+                journal.scheduled(transfer);
+            }
+            timers.put(transfer.getId(), claim.expired);
+            dueTransfers.addFirst(transfer);
+        }
+
+        if (journal != null) {
+            journal.flush();
+        }
+    }
+
+    private long currentTick() {
+        return clock.millis() / tickMillis;
+    }
+
+    private long tickOf(Instant time) {
+        return time.toEpochMilli() / tickMillis;
+    }
+
+    private static final class Claim {
+        private final ScheduledTransfer transfer;
+        // timer the transfer was due by, registered again if the transfer is retried
+        private final HierarchicalTimingWheel.Timer<ScheduledTransfer> expired;
+        // timer of the next execution of a recurring transfer, null for one-off transfers
+        private final HierarchicalTimingWheel.Timer<ScheduledTransfer> next;
+
+        Claim(ScheduledTransfer transfer, HierarchicalTimingWheel.Timer<ScheduledTransfer> expired,
+              HierarchicalTimingWheel.Timer<ScheduledTransfer> next) {
+            this.transfer = transfer;
+            this.expired = expired;
+            this.next = next;
+        }
+    }
+}
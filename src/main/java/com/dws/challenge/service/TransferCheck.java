@@ -0,0 +1,20 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.TransferRequest;
+import com.dws.challenge.exception.InvalidTransferException;
+
+/**
+ * Stage of a transfer run before any account is locked, so rejected transfers never contend for account locks.
+ * Checks are Spring beans run in their {@code @Order}.
+ */
+public interface TransferCheck {
+
+    void check(TransferRequest transfer) throws InvalidTransferException;
+
+    /**
+     * Called when a transfer which passed this check is rejected by a later stage or fails to commit, so the check
+     * can undo whatever it accounted for the transfer.
+     */
+    default void transferFailed(TransferRequest transfer) {
+    }
+}
@@ -0,0 +1,12 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.TransferRequest;
+
+/**
+ * Post-commit stage of a transfer, called after account locks are released.
+ */
+public interface TransferListener {
+
+    void transferCompleted(TransferRequest transfer, Account debitAccount, Account creditAccount);
+}
@@ -0,0 +1,191 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.AccountTransferStats;
+import com.dws.challenge.domain.TransferRequest;
+import com.dws.challenge.domain.TransferStats;
+import lombok.Getter;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Rolling transfer statistics of accounts with transfers within the last hour. Every account keeps 12 five second
+ * buckets for the last minute and 60 minute buckets for longer windows, about 4KB per active account.
+ */
+@Component
+public class TransferStatsCollector {
+
+    private static final long SECONDS_PERIOD_MILLIS = 5_000;
+    private static final int SECONDS_BUCKETS = 12;
+    private static final long MINUTES_PERIOD_MILLIS = 60_000;
+    private static final int MINUTES_BUCKETS = 60;
+
+    public enum Window {
+        ONE_MINUTE("1m", SECONDS_PERIOD_MILLIS, SECONDS_BUCKETS),
+        FIVE_MINUTES("5m", MINUTES_PERIOD_MILLIS, 5),
+        ONE_HOUR("1h", MINUTES_PERIOD_MILLIS, MINUTES_BUCKETS);
+
+        @Getter
+        private final String label;
+        private final long periodMillis;
+        private final int periods;
+
+        Window(String label, long periodMillis, int periods) {
+            this.label = label;
+            this.periodMillis = periodMillis;
+            this.periods = periods;
+        }
+
+        /**
+         * @return window or null if there is no window with such label
+         */
+        public static Window ofLabel(String label) {
+            for (Window window : values()) {
+                if (window.label.equals(label)) {
+                    return window;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final Map<String, AccountCounters> accounts = new ConcurrentHashMap<>();
+    private final Clock clock;
+
+    public TransferStatsCollector() {
+        this(Clock.systemUTC());
+    }
+
+    TransferStatsCollector(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Records transfer which got locks of both accounts, whether it succeeded or not.
+     */
+    public void recordTransfer(TransferRequest transfer, boolean succeeded, long lockWaitNanos) {
+        long now = clock.millis();
+        double amount = transfer.getAmount().doubleValue();
+        counters(transfer.getAccountFromId()).record(now, succeeded, RollingCounters.DEBIT_VOLUME, amount, lockWaitNanos);
+        counters(transfer.getAccountToId()).record(now, succeeded, RollingCounters.CREDIT_VOLUME, amount, lockWaitNanos);
+    }
+
+    public AccountTransferStats getStats(String accountId) {
+        AccountCounters counters = accounts.get(accountId);
+        long now = clock.millis();
+
+        List<TransferStats> windows = new ArrayList<>();
+        for (Window window : Window.values()) {
+            windows.add(counters != null ? counters.stats(now, window) : new TransferStats(window.label, 0, 0, 0, 0, 0));
+        }
+        return new AccountTransferStats(accountId, windows);
+    }
+
+    /**
+     * @return accounts with most transfers within the window, busiest first
+     */
+    public List<AccountTransferStats> getBusiest(Window window, int limit) {
+        long now = clock.millis();
+        Comparator<Busy> byTransfers = Comparator.comparingLong(busy -> busy.transfers);
+        PriorityQueue<Busy> busiest = new PriorityQueue<>(byTransfers);
+        accounts.forEach((accountId, counters) -> {
+            long transfers = counters.transfers(now, window);
+            if (transfers > 0 && limit > 0 && (busiest.size() < limit || transfers > busiest.peek().transfers)) {
+                busiest.add(new Busy(accountId, counters, transfers));
+                if (busiest.size() > limit) {
+                    busiest.poll();
+                }
+            }
+        });
+
+        List<AccountTransferStats> result = new ArrayList<>(busiest.size());
+        while (!busiest.isEmpty()) {
+            Busy busy = busiest.poll();
+            result.add(new AccountTransferStats(busy.accountId,
+                    Collections.singletonList(busy.counters.stats(now, window))));
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * Drops accounts without transfers for the last hour.
+     */
+    @Scheduled(fixedDelay = MINUTES_PERIOD_MILLIS)
+    public void evictIdleAccounts() {
+        long now = clock.millis();
+        accounts.entrySet().removeIf(entry -> entry.getValue().isIdle(now));
+    }
+
+    private AccountCounters counters(String accountId) {
+        AccountCounters counters = accounts.get(accountId);
+        return counters != null ? counters : accounts.computeIfAbsent(accountId, id -> new AccountCounters());
+    }
+
+    private static final class AccountCounters {
+        private final RollingCounters seconds = new RollingCounters(SECONDS_PERIOD_MILLIS, SECONDS_BUCKETS);
+        private final RollingCounters minutes = new RollingCounters(MINUTES_PERIOD_MILLIS, MINUTES_BUCKETS);
+
+        void record(long now, boolean succeeded, int volumeField, double amount, long lockWaitNanos) {
+            record(seconds, now, succeeded, volumeField, amount, lockWaitNanos);
+            record(minutes, now, succeeded, volumeField, amount, lockWaitNanos);
+        }
+
+        private static void record(RollingCounters counters, long now, boolean succeeded, int volumeField,
+                                   double amount, long lockWaitNanos) {
+            int bucket = counters.bucket(now);
+            if (succeeded) {
+                counters.add(bucket, RollingCounters.TRANSFERS, 1);
+                counters.addDouble(bucket, volumeField, amount);
+            } else {
+                counters.add(bucket, RollingCounters.FAILURES, 1);
+            }
+            counters.add(bucket, RollingCounters.LOCK_WAIT_NANOS, lockWaitNanos);
+            counters.add(bucket, RollingCounters.LOCK_WAITS, 1);
+        }
+
+        long transfers(long now, Window window) {
+            return counters(window).sum(now, window.periods, RollingCounters.TRANSFERS);
+        }
+
+        TransferStats stats(long now, Window window) {
+            RollingCounters counters = counters(window);
+            long lockWaits = counters.sum(now, window.periods, RollingCounters.LOCK_WAITS);
+            long lockWaitNanos = counters.sum(now, window.periods, RollingCounters.LOCK_WAIT_NANOS);
+            return new TransferStats(window.label,
+                    counters.sum(now, window.periods, RollingCounters.TRANSFERS),
+                    counters.sum(now, window.periods, RollingCounters.FAILURES),
+                    counters.sumDouble(now, window.periods, RollingCounters.DEBIT_VOLUME),
+                    counters.sumDouble(now, window.periods, RollingCounters.CREDIT_VOLUME),
+                    lockWaits > 0 ? lockWaitNanos / 1e3 / lockWaits : 0);
+        }
+
+        boolean isIdle(long now) {
+            return minutes.isIdle(now, MINUTES_BUCKETS);
+        }
+
+        private RollingCounters counters(Window window) {
+            return window.periodMillis == SECONDS_PERIOD_MILLIS ? seconds : minutes;
+        }
+    }
+
+    private static final class Busy {
+        private final String accountId;
+        private final AccountCounters counters;
+        private final long transfers;
+
+        Busy(String accountId, AccountCounters counters, long transfers) {
+            this.accountId = accountId;
+            this.counters = counters;
+            this.transfers = transfers;
+        }
+    }
+}
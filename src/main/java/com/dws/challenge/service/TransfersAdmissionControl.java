@@ -0,0 +1,169 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.exception.TransferRejectedException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Caps transfers in flight per node and per account, so requests queueing on a hot account lock are rejected
+ * early instead of exhausting request threads needed by other accounts.
+ */
+@Component
+@Slf4j
+public class TransfersAdmissionControl {
+
+    private final AdaptiveLimit nodeLimit;
+    private final AtomicInteger nodeInFlight = new AtomicInteger();
+
+    // accounts with transfers in flight or within the idle period, so a limit learned in one burst applies to the next
+    private final Map<String, AccountAdmission> accounts = new ConcurrentHashMap<>();
+    private final int accountMinLimit;
+    private final int accountMaxLimit;
+    private final long accountIdleNanos;
+    private final Duration targetLatency;
+
+    public TransfersAdmissionControl(
+            @Value("${transfers.admission.target-latency-ms:50}") long targetLatencyMillis,
+            @Value("${transfers.admission.node.min-limit:20}") int nodeMinLimit,
+            @Value("${transfers.admission.node.max-limit:1000}") int nodeMaxLimit,
+            @Value("${transfers.admission.account.min-limit:2}") int accountMinLimit,
+            @Value("${transfers.admission.account.max-limit:32}") int accountMaxLimit,
+            @Value("${transfers.admission.account.idle-ms:600000}") long accountIdleMillis) {
+        this.targetLatency = Duration.ofMillis(targetLatencyMillis);
+        this.nodeLimit = new AdaptiveLimit(nodeMinLimit, nodeMaxLimit, targetLatency);
+        this.accountMinLimit = accountMinLimit;
+        this.accountMaxLimit = accountMaxLimit;
+        this.accountIdleNanos = Duration.ofMillis(accountIdleMillis).toNanos();
+    }
+
+    public Admission admit(String debitAccountId, String creditAccountId) throws TransferRejectedException {
+        return admit(Arrays.asList(debitAccountId, creditAccountId));
+    }
+
+    /**
+     * Admits transfer between all given accounts, each counted as one transfer in flight of the account.
+     */
+    public Admission admit(List<String> accountIds) throws TransferRejectedException {
+        if (nodeInFlight.incrementAndGet() > nodeLimit.getLimit()) {
+            nodeInFlight.decrementAndGet();
+            log.info("Rejecting transfer between {}: node concurrency limit reached", accountIds);
+            throw new TransferRejectedException("Too many transfers in progress", nodeLimit.retryAfter());
+        }
+
+        AccountAdmission rejectedBy = null;
+        int admitted = 0;
+        while (rejectedBy == null && admitted < accountIds.size()) {
+            rejectedBy = tryAdmitAccount(accountIds.get(admitted));
+            if (rejectedBy == null) {
+                admitted++;
+            }
+        }
+
+        if (rejectedBy != null) {
+            for (int i = 0; i < admitted; i++) {
+                releaseAccount(accountIds.get(i), -1);
+            }
+            nodeInFlight.decrementAndGet();
+            log.info("Rejecting transfer between {}: account concurrency limit reached", accountIds);
+            throw new TransferRejectedException("Too many transfers in progress for account", rejectedBy.limit.retryAfter());
+        }
+
+        return new Admission(accountIds, System.nanoTime());
+    }
+
+    /**
+     * Drops limits of accounts without transfers for the idle period, their next transfer starts from the max limit.
+     */
+    @Scheduled(fixedDelayString = "${transfers.admission.account.idle-ms:600000}")
+    public void evictIdleAccounts() {
+        evictIdleAccounts(System.nanoTime());
+    }
+
+    void evictIdleAccounts(long nowNanos) {
+        for (String accountId : accounts.keySet()) {
+            accounts.computeIfPresent(accountId, (id, admission) ->
+                    admission.inFlight == 0 && nowNanos - admission.lastUsedNanos >= accountIdleNanos
+                            ? null
+                            : admission);
+        }
+    }
+
+    int getNodeLimit() {
+        return nodeLimit.getLimit();
+    }
+
+    /**
+     * @return limit the next transfer of the account is admitted under
+     */
+    int getAccountLimit(String accountId) {
+        AccountAdmission admission = accounts.get(accountId);
+        return admission != null ? admission.limit.getLimit() : accountMaxLimit;
+    }
+
+    private AccountAdmission tryAdmitAccount(String accountId) {
+        AccountAdmission[] rejectedBy = new AccountAdmission[1];
+        accounts.compute(accountId, (id, admission) -> {
+            if (admission == null) {
+                admission = new AccountAdmission(new AdaptiveLimit(accountMinLimit, accountMaxLimit, targetLatency));
+            }
+            if (admission.inFlight >= admission.limit.getLimit()) {
+                rejectedBy[0] = admission;
+            } else {
+                admission.inFlight++;
+            }
+            admission.lastUsedNanos = System.nanoTime();
+            return admission;
+        });
+
+        return rejectedBy[0];
+    }
+
+    private void releaseAccount(String accountId, long latencyNanos) {
+        accounts.computeIfPresent(accountId, (id, admission) -> {
+            if (latencyNanos >= 0) {
+                admission.limit.onSample(latencyNanos, admission.inFlight);
+            }
+            admission.inFlight--;
+            admission.lastUsedNanos = System.nanoTime();
+            return admission;
+        });
+    }
+
+    public final class Admission {
+        private final List<String> accountIds;
+        private final long startNanos;
+
+        private Admission(List<String> accountIds, long startNanos) {
+            this.accountIds = accountIds;
+            this.startNanos = startNanos;
+        }
+
+        public void release() {
+            long latencyNanos = System.nanoTime() - startNanos;
+            for (String accountId : accountIds) {
+                releaseAccount(accountId, latencyNanos);
+            }
+            nodeLimit.onSample(latencyNanos, nodeInFlight.getAndDecrement());
+        }
+    }
+
+    private static class AccountAdmission {
+        // mutated only inside map compute calls, which are atomic per account
+        private int inFlight;
+        private long lastUsedNanos;
+        private final AdaptiveLimit limit;
+
+        AccountAdmission(AdaptiveLimit limit) {
+            this.limit = limit;
+        }
+    }
+}
@@ -1,18 +1,36 @@
 package com.dws.challenge.service;
 
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.MultiLegTransferExecution;
+import com.dws.challenge.domain.MultiLegTransferOutcome;
+import com.dws.challenge.domain.MultiLegTransferRequest;
+import com.dws.challenge.domain.TransferLeg;
 import com.dws.challenge.domain.TransferRequest;
 import com.dws.challenge.domain.TransferExecution;
+import com.dws.challenge.domain.TransferOutcome;
 import com.dws.challenge.exception.InsufficientFundsException;
 import com.dws.challenge.exception.InvalidTransferException;
 import com.dws.challenge.exception.NotExistingAccountException;
+import com.dws.challenge.exception.TransferRejectedException;
+import com.dws.challenge.jfr.TransferPhase;
+import com.dws.challenge.jfr.TransferPhaseEvent;
 import com.dws.challenge.repository.AccountsRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.StringJoiner;
 
 @Service
 @Slf4j
@@ -24,58 +42,466 @@ public class TransfersService {
     @Autowired
     private NotificationService notificationService;
 
+    @Autowired
+    private TransfersAdmissionControl admissionControl;
+
+    @Autowired
+    private BalanceChangePublisher balanceChangePublisher;
+
+    @Autowired
+    private TransferStatsCollector transferStats;
+
+    // in order of @Order, if any
+    @Autowired(required = false)
+    private List<TransferCheck> transferChecks = Collections.emptyList();
+
+    @Autowired(required = false)
+    private List<TransferListener> transferListeners = Collections.emptyList();
+
+    @Autowired(required = false)
+    private List<CommittedChangesListener> committedChangesListeners = Collections.emptyList();
+
+    /**
+     * Executes transfer like {@link #tryTransfer(TransferRequest)}.
+     *
+     * @throws InvalidTransferException if transfer failed, {@link TransferRejectedException} if it may be retried
+     */
     public TransferExecution transfer(TransferRequest transferRequest) throws InvalidTransferException {
+        TransferOutcome outcome = tryTransfer(transferRequest);
+        if (!outcome.isCompleted()) {
+            throw outcome.toException();
+        }
+        return outcome.getExecution();
+    }
+
+    /**
+     * Executes transfer in stages: validation, checks which may reject the transfer before any account is locked,
+     * admission and commit under account locks, then post-commit notifications and listeners. Every stage emits
+     * a {@link TransferPhaseEvent} when the recording enables it. Routine failures, such as insufficient funds, are
+     * returned rather than thrown, as they are frequent when clients retry during incidents.
+     */
+    public TransferOutcome tryTransfer(TransferRequest transferRequest) {
         log.debug("Handling transfer request {}", transferRequest);
 
+        TransferPhaseEvent phase = TransferPhaseEvent.begin(TransferPhase.VALIDATION);
+        TransferOutcome invalid = validate(transferRequest);
+        if (invalid != null) {
+            return invalid;
+        }
+        phase.finish(transferRequest);
+
+        phase = TransferPhaseEvent.begin(TransferPhase.CHECKS);
+        try {
+            runChecks(transferRequest);
+        } catch (InvalidTransferException e) {
+            return TransferOutcome.failed(e);
+        }
+        phase.finish(transferRequest);
+
+        CommittedTransfer committed = null;
+        try {
+            committed = lockAndCommit(transferRequest);
+        } finally {
+            if (committed == null || committed.failure != null) {
+                transferFailed(transferRequest, transferChecks.size());
+            }
+        }
+        if (committed.failure != null) {
+            return committed.failure;
+        }
+
+        phase = TransferPhaseEvent.begin(TransferPhase.REPLICATION);
+        changesCommitted(Arrays.asList(committed.debitAccount, committed.creditAccount));
+        phase.finish(transferRequest);
+
+        phase = TransferPhaseEvent.begin(TransferPhase.NOTIFICATION);
+        afterCommit(transferRequest, committed);
+        phase.finish(transferRequest);
+        return TransferOutcome.completed(new TransferExecution(transferRequest, LocalDateTime.now()));
+    }
+
+    /**
+     * Validates and checks transfer executed outside of this service, such as one crediting an account of another
+     * node. Checks passed by a transfer which then fails are told by {@link #checkedTransferFailed(TransferRequest)}.
+     *
+     * @return failure or null if the transfer may be executed
+     */
+    public TransferOutcome check(TransferRequest transferRequest) {
+        TransferOutcome invalid = validate(transferRequest);
+        if (invalid != null) {
+            return invalid;
+        }
+        try {
+            runChecks(transferRequest);
+            return null;
+        } catch (InvalidTransferException e) {
+            return TransferOutcome.failed(e);
+        }
+    }
+
+    public void checkedTransferFailed(TransferRequest transferRequest) {
+        transferFailed(transferRequest, transferChecks.size());
+    }
+
+    /**
+     * @return failure or null if the transfer is valid
+     */
+    private TransferOutcome validate(TransferRequest transferRequest) {
         if (Objects.equals(transferRequest.getAccountFromId(), transferRequest.getAccountToId())) {
-            log.info("Aborting transfer between same accounts");
-            throw new InvalidTransferException("Same credit and debit accounts");
+            log.debug("Aborting transfer between same accounts");
+            return TransferOutcome.SAME_ACCOUNTS;
         }
+        return null;
+    }
+
+    private void runChecks(TransferRequest transferRequest) throws InvalidTransferException {
+        for (int i = 0; i < transferChecks.size(); i++) {
+            try {
+                transferChecks.get(i).check(transferRequest);
+            } catch (InvalidTransferException | RuntimeException e) {
+                transferFailed(transferRequest, i);
+                throw e;
+            }
+        }
+    }
 
+    /**
+     * Lets the first passed checks know that transfer did not complete.
+     */
+    private void transferFailed(TransferRequest transferRequest, int passedChecks) {
+        for (int i = 0; i < passedChecks; i++) {
+            transferChecks.get(i).transferFailed(transferRequest);
+        }
+    }
+
+    private CommittedTransfer lockAndCommit(TransferRequest transferRequest) {
         // ensure locks are acquired in same order
         boolean shouldLockDebitAccountFirst = isLessAccountId(
                 transferRequest.getAccountFromId(),
                 transferRequest.getAccountToId());
 
+        TransferPhaseEvent phase = TransferPhaseEvent.begin(TransferPhase.ADMISSION);
+        TransfersAdmissionControl.Admission admission;
+        try {
+            admission = admissionControl.admit(transferRequest.getAccountFromId(), transferRequest.getAccountToId());
+        } catch (TransferRejectedException e) {
+            return CommittedTransfer.failed(TransferOutcome.failed(e));
+        }
+        phase.finish(transferRequest);
+
         Account debitAccount = null;
         Account creditAccount = null;
+        long lockStartNanos = System.nanoTime();
+        long lockWaitNanos = 0;
+        boolean transferred = false;
 
         try {
             if (shouldLockDebitAccountFirst) {
-                debitAccount = accountsRepository.lockAccount(transferRequest.getAccountFromId());
-                creditAccount = accountsRepository.lockAccount(transferRequest.getAccountToId());
+                debitAccount = lock(TransferPhase.FIRST_LOCK, transferRequest, transferRequest.getAccountFromId());
+                creditAccount = lock(TransferPhase.SECOND_LOCK, transferRequest, transferRequest.getAccountToId());
             } else {
-                creditAccount = accountsRepository.lockAccount(transferRequest.getAccountToId());
-                debitAccount = accountsRepository.lockAccount(transferRequest.getAccountFromId());
+                creditAccount = lock(TransferPhase.FIRST_LOCK, transferRequest, transferRequest.getAccountToId());
+                debitAccount = lock(TransferPhase.SECOND_LOCK, transferRequest, transferRequest.getAccountFromId());
             }
+            lockWaitNanos = System.nanoTime() - lockStartNanos;
 
+            phase = TransferPhaseEvent.begin(TransferPhase.MUTATION);
             if (!debitAccount.hasFunds(transferRequest.getAmount())) {
-                log.info("Failed to execute transfer {} because of insufficient funds", transferRequest);
-                throw new InvalidTransferException("Insufficient funds");
+                log.debug("Failed to execute transfer {} because of insufficient funds", transferRequest);
+                return CommittedTransfer.failed(TransferOutcome.INSUFFICIENT_FUNDS);
             }
 
             debitAccount = debitAccount.debit(transferRequest.getAmount());
             creditAccount = creditAccount.credit(transferRequest.getAmount());
+            phase.finish(transferRequest);
 
-            accountsRepository.updateAccount(debitAccount);
-            accountsRepository.updateAccount(creditAccount);
-        } catch (InsufficientFundsException | NotExistingAccountException e) {
-            log.info("Transfer {} failed: {}", transferRequest, e.toString());
-            throw new InvalidTransferException("Invalid transfer: " + e.getMessage(), e);
+            phase = TransferPhaseEvent.begin(TransferPhase.REPOSITORY_UPDATE);
+            debitAccount = commit(debitAccount);
+            creditAccount = commit(creditAccount);
+            accountsRepository.commitAccounts();
+
+            // published only once committed and before accounts are released; a state published after a later one,
+            // as repositories may unlock accounts on commit, is dropped by its version
+            balanceChangePublisher.publish(debitAccount);
+            balanceChangePublisher.publish(creditAccount);
+            phase.finish(transferRequest);
+            transferred = true;
+        } catch (NotExistingAccountException e) {
+            log.debug("Transfer {} failed: {}", transferRequest, e.getMessage());
+            return CommittedTransfer.failed(TransferOutcome.notExistingAccount(e));
+        } catch (InsufficientFundsException e) {
+            // funds are checked first, so debit does not fail
+            return CommittedTransfer.failed(TransferOutcome.INSUFFICIENT_FUNDS);
         } finally {
-            if (shouldLockDebitAccountFirst) {
-                releaseTransferAccounts(creditAccount, debitAccount);
-            } else {
-                releaseTransferAccounts(debitAccount, creditAccount);
+            try {
+                if (shouldLockDebitAccountFirst) {
+                    releaseTransferAccounts(creditAccount, debitAccount);
+                } else {
+                    releaseTransferAccounts(debitAccount, creditAccount);
+                }
+            } finally {
+                // released even if the repository failed to release accounts, so slots of failed commits don't leak
+                admission.release();
+
+                // transfers to or from not existing accounts are not counted, so unknown ids do not get statistics
+                if (debitAccount != null && creditAccount != null) {
+                    transferStats.recordTransfer(transferRequest, transferred, lockWaitNanos);
+                }
             }
         }
 
+        return new CommittedTransfer(debitAccount, creditAccount, null);
+    }
+
+    private void afterCommit(TransferRequest transferRequest, CommittedTransfer committed) {
+        Account debitAccount = committed.debitAccount;
+        Account creditAccount = committed.creditAccount;
+
         notificationService.notifyAboutTransfer(debitAccount,
                 String.format("%s was credited to %s", transferRequest.getAmount(), creditAccount.getAccountId()));
         notificationService.notifyAboutTransfer(creditAccount,
                 String.format("%s was debited from %s", transferRequest.getAmount(), debitAccount.getAccountId()));
 
-        return new TransferExecution(transferRequest, LocalDateTime.now());
+        // transfer is already committed, so a failing listener must not fail it
+        for (TransferListener listener : transferListeners) {
+            try {
+                listener.transferCompleted(transferRequest, debitAccount, creditAccount);
+            } catch (RuntimeException e) {
+                log.error("Transfer listener {} failed on {}", listener, transferRequest, e);
+            }
+        }
+    }
+
+    /**
+     * Executes multi-leg transfer like {@link #tryTransfer(MultiLegTransferRequest)}.
+     *
+     * @throws InvalidTransferException if transfer failed, {@link TransferRejectedException} if it may be retried
+     */
+    public MultiLegTransferExecution transfer(MultiLegTransferRequest transferRequest) throws InvalidTransferException {
+        MultiLegTransferOutcome outcome = tryTransfer(transferRequest);
+        if (!outcome.isCompleted()) {
+            throw outcome.getFailure().toException();
+        }
+        return outcome.getExecution();
+    }
+
+    /**
+     * Executes all legs of the transfer atomically: the debit account and all credit accounts are locked once in
+     * account id order, and either all legs are committed or none of them. Transfer checks and listeners see every
+     * leg as a separate transfer. Failures are returned like by {@link #tryTransfer(TransferRequest)}.
+     */
+    public MultiLegTransferOutcome tryTransfer(MultiLegTransferRequest transferRequest) {
+        log.debug("Handling multi-leg transfer request {}", transferRequest);
+
+        TransferPhaseEvent phase = TransferPhaseEvent.begin(TransferPhase.VALIDATION);
+        List<TransferRequest> legs = new ArrayList<>(transferRequest.getLegs().size());
+        for (TransferLeg leg : transferRequest.getLegs()) {
+            legs.add(transferRequest.toTransferRequest(leg));
+        }
+        TransferOutcome invalid = validate(legs);
+        if (invalid != null) {
+            return MultiLegTransferOutcome.failed(invalid);
+        }
+        phase.finish(transferRequest);
+
+        phase = TransferPhaseEvent.begin(TransferPhase.CHECKS);
+        int passedLegs = 0;
+        try {
+            for (TransferRequest leg : legs) {
+                runChecks(leg);
+                passedLegs++;
+            }
+        } catch (InvalidTransferException e) {
+            return MultiLegTransferOutcome.failed(TransferOutcome.failed(e));
+        } finally {
+            if (passedLegs < legs.size()) {
+                for (int i = 0; i < passedLegs; i++) {
+                    transferFailed(legs.get(i), transferChecks.size());
+                }
+            }
+        }
+        phase.finish(transferRequest);
+
+        CommittedLegs committed = null;
+        try {
+            committed = lockAndCommit(transferRequest, legs);
+        } finally {
+            if (committed == null || committed.failure != null) {
+                for (TransferRequest leg : legs) {
+                    transferFailed(leg, transferChecks.size());
+                }
+            }
+        }
+        if (committed.failure != null) {
+            return MultiLegTransferOutcome.failed(committed.failure);
+        }
+
+        phase = TransferPhaseEvent.begin(TransferPhase.REPLICATION);
+        changesCommitted(new ArrayList<>(committed.accounts.values()));
+        phase.finish(transferRequest);
+
+        phase = TransferPhaseEvent.begin(TransferPhase.NOTIFICATION);
+        afterCommit(transferRequest, legs, committed.accounts);
+        phase.finish(transferRequest);
+        return MultiLegTransferOutcome.completed(new MultiLegTransferExecution(transferRequest, LocalDateTime.now()));
+    }
+
+    /**
+     * @return failure or null if all legs are valid
+     */
+    private TransferOutcome validate(List<TransferRequest> legs) {
+        Set<String> creditAccountIds = new HashSet<>();
+        for (TransferRequest leg : legs) {
+            TransferOutcome invalid = validate(leg);
+            if (invalid != null) {
+                return invalid;
+            }
+            if (!creditAccountIds.add(leg.getAccountToId())) {
+                log.debug("Aborting multi-leg transfer with several legs to {}", leg.getAccountToId());
+                return TransferOutcome.failed(TransferOutcome.Reason.DUPLICATE_CREDIT_ACCOUNT,
+                        "Duplicate credit account " + leg.getAccountToId());
+            }
+        }
+        return null;
+    }
+
+    private CommittedLegs lockAndCommit(MultiLegTransferRequest transferRequest, List<TransferRequest> legs) {
+        // ensure locks are acquired in same order as by any other transfer
+        List<String> accountIds = new ArrayList<>(legs.size() + 1);
+        accountIds.add(transferRequest.getAccountFromId());
+        for (TransferRequest leg : legs) {
+            accountIds.add(leg.getAccountToId());
+        }
+        Collections.sort(accountIds);
+
+        TransferPhaseEvent phase = TransferPhaseEvent.begin(TransferPhase.ADMISSION);
+        TransfersAdmissionControl.Admission admission;
+        try {
+            admission = admissionControl.admit(accountIds);
+        } catch (TransferRejectedException e) {
+            return CommittedLegs.failed(TransferOutcome.failed(e));
+        }
+        phase.finish(transferRequest);
+
+        Map<String, Account> accounts = new HashMap<>();
+        long lockStartNanos = System.nanoTime();
+        long lockWaitNanos = 0;
+        boolean transferred = false;
+
+        try {
+            phase = TransferPhaseEvent.begin(TransferPhase.LOCKS);
+            for (String accountId : accountIds) {
+                accounts.put(accountId, accountsRepository.lockAccount(accountId));
+            }
+            lockWaitNanos = System.nanoTime() - lockStartNanos;
+            phase.finish(transferRequest);
+
+            phase = TransferPhaseEvent.begin(TransferPhase.MUTATION);
+            BigDecimal totalAmount = transferRequest.getTotalAmount();
+            Account debitAccount = accounts.get(transferRequest.getAccountFromId());
+            if (!debitAccount.hasFunds(totalAmount)) {
+                log.debug("Failed to execute multi-leg transfer {} because of insufficient funds", transferRequest);
+                return CommittedLegs.failed(TransferOutcome.INSUFFICIENT_FUNDS);
+            }
+
+            accounts.put(debitAccount.getAccountId(), debitAccount.debit(totalAmount));
+            for (TransferRequest leg : legs) {
+                accounts.put(leg.getAccountToId(), accounts.get(leg.getAccountToId()).credit(leg.getAmount()));
+            }
+            phase.finish(transferRequest);
+
+            phase = TransferPhaseEvent.begin(TransferPhase.REPOSITORY_UPDATE);
+            for (String accountId : accountIds) {
+                accounts.put(accountId, commit(accounts.get(accountId)));
+            }
+            accountsRepository.commitAccounts();
+            // published only once committed and before accounts are released; a state published after a later one,
+            // as repositories may unlock accounts on commit, is dropped by its version
+            for (String accountId : accountIds) {
+                balanceChangePublisher.publish(accounts.get(accountId));
+            }
+            phase.finish(transferRequest);
+            transferred = true;
+        } catch (NotExistingAccountException e) {
+            log.debug("Multi-leg transfer {} failed: {}", transferRequest, e.getMessage());
+            return CommittedLegs.failed(TransferOutcome.notExistingAccount(e));
+        } catch (InsufficientFundsException e) {
+            // funds are checked first, so debit does not fail
+            return CommittedLegs.failed(TransferOutcome.INSUFFICIENT_FUNDS);
+        } finally {
+            try {
+                for (int i = accountIds.size() - 1; i >= 0; i--) {
+                    if (accounts.containsKey(accountIds.get(i))) {
+                        accountsRepository.releaseAccount(accountIds.get(i));
+                    }
+                }
+            } finally {
+                admission.release();
+
+                // as for single transfers, only transfers which got all locks are counted
+                if (accounts.size() == accountIds.size()) {
+                    for (TransferRequest leg : legs) {
+                        transferStats.recordTransfer(leg, transferred, lockWaitNanos);
+                    }
+                }
+            }
+        }
+
+        return new CommittedLegs(accounts, null);
+    }
+
+    private void afterCommit(MultiLegTransferRequest transferRequest, List<TransferRequest> legs,
+                             Map<String, Account> committed) {
+        Account debitAccount = committed.get(transferRequest.getAccountFromId());
+
+        StringJoiner creditAccountIds = new StringJoiner(", ");
+        for (TransferRequest leg : legs) {
+            creditAccountIds.add(leg.getAccountToId());
+        }
+        notificationService.notifyAboutTransfer(debitAccount,
+                String.format("%s was credited to %s", transferRequest.getTotalAmount(), creditAccountIds));
+
+        for (TransferRequest leg : legs) {
+            Account creditAccount = committed.get(leg.getAccountToId());
+            notificationService.notifyAboutTransfer(creditAccount,
+                    String.format("%s was debited from %s", leg.getAmount(), debitAccount.getAccountId()));
+
+            for (TransferListener listener : transferListeners) {
+                try {
+                    listener.transferCompleted(leg, debitAccount, creditAccount);
+                } catch (RuntimeException e) {
+                    log.error("Transfer listener {} failed on {}", listener, leg, e);
+                }
+            }
+        }
+    }
+
+    private Account lock(TransferPhase phase, TransferRequest transferRequest, String accountId)
+            throws NotExistingAccountException {
+        TransferPhaseEvent event = TransferPhaseEvent.begin(phase);
+        Account account = accountsRepository.lockAccount(accountId);
+        event.finish(transferRequest, accountId);
+        return account;
+    }
+
+    /**
+     * Updates locked account.
+     *
+     * @return account with the version assigned by repository
+     */
+    private Account commit(Account account) {
+        Account updated = accountsRepository.updateAccount(account);
+        return updated != null ? updated : account;
+    }
+
+    private void changesCommitted(List<Account> accounts) {
+        for (CommittedChangesListener listener : committedChangesListeners) {
+            try {
+                listener.changesCommitted(accounts);
+            } catch (RuntimeException e) {
+                log.error("Committed changes listener {} failed on {}", listener, accounts, e);
+            }
+        }
     }
 
     private void releaseTransferAccounts(Account account, Account otherAccount) {
@@ -90,4 +516,37 @@ public class TransfersService {
     private boolean isLessAccountId(String accountId, String otherAccountId) {
         return accountId.compareTo(otherAccountId) < 0;
     }
+
+    private static final class CommittedTransfer {
+        private final Account debitAccount;
+        private final Account creditAccount;
+        // null if committed
+        private final TransferOutcome failure;
+
+        CommittedTransfer(Account debitAccount, Account creditAccount, TransferOutcome failure) {
+            this.debitAccount = debitAccount;
+            this.creditAccount = creditAccount;
+            this.failure = failure;
+        }
+
+        static CommittedTransfer failed(TransferOutcome failure) {
+            return new CommittedTransfer(null, null, failure);
+        }
+    }
+
+    private static final class CommittedLegs {
+        // committed accounts by id
+        private final Map<String, Account> accounts;
+        // null if committed
+        private final TransferOutcome failure;
+
+        CommittedLegs(Map<String, Account> accounts, TransferOutcome failure) {
+            this.accounts = accounts;
+            this.failure = failure;
+        }
+
+        static CommittedLegs failed(TransferOutcome failure) {
+            return new CommittedLegs(null, failure);
+        }
+    }
 }
@@ -0,0 +1,129 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.TransferRequest;
+import com.dws.challenge.exception.TransferRejectedException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Limits number and total amount of transfers debiting an account within a sliding window. The window is estimated
+ * from counts of the current and the previous fixed window, weighting the previous one by its part still inside the
+ * sliding window, so every account needs constant memory and time.
+ */
+@Component
+@ConditionalOnProperty(name = "transfers.velocity.enabled", havingValue = "true")
+@Slf4j
+public class VelocityLimitCheck implements TransferCheck {
+
+    private final Map<String, Velocity> accounts = new ConcurrentHashMap<>();
+    private final Clock clock;
+    private final long windowMillis;
+    private final long maxCount;
+    private final BigDecimal maxAmount;
+
+    @Autowired
+    public VelocityLimitCheck(@Value("${transfers.velocity.window-ms:60000}") long windowMillis,
+                              @Value("${transfers.velocity.max-count:100}") long maxCount,
+                              @Value("${transfers.velocity.max-amount:100000}") BigDecimal maxAmount) {
+        this(Clock.systemUTC(), windowMillis, maxCount, maxAmount);
+    }
+
+    VelocityLimitCheck(Clock clock, long windowMillis, long maxCount, BigDecimal maxAmount) {
+        this.clock = clock;
+        this.windowMillis = windowMillis;
+        this.maxCount = maxCount;
+        this.maxAmount = maxAmount;
+    }
+
+    @Override
+    public void check(TransferRequest transfer) throws TransferRejectedException {
+        Velocity velocity = accounts.computeIfAbsent(transfer.getAccountFromId(), id -> new Velocity());
+        long now = clock.millis();
+        if (!velocity.tryAdd(now, transfer.getAmount())) {
+            log.info("Rejecting transfer {}: velocity limit of account reached", transfer);
+            throw new TransferRejectedException("Transfer velocity limit reached for account",
+                    Duration.ofMillis(windowMillis - now % windowMillis));
+        }
+    }
+
+    @Override
+    public void transferFailed(TransferRequest transfer) {
+        Velocity velocity = accounts.get(transfer.getAccountFromId());
+        if (velocity != null) {
+            velocity.remove(clock.millis(), transfer.getAmount());
+        }
+    }
+
+    /**
+     * Drops accounts without transfers for the last two windows, which no longer affect the limit.
+     */
+    @Scheduled(fixedDelayString = "${transfers.velocity.window-ms:60000}")
+    public void evictIdleAccounts() {
+        long window = clock.millis() / windowMillis;
+        accounts.entrySet().removeIf(entry -> entry.getValue().isIdle(window));
+    }
+
+    private final class Velocity {
+        private long window;
+        private long previousCount;
+        private long currentCount;
+        private BigDecimal previousAmount = BigDecimal.ZERO;
+        private BigDecimal currentAmount = BigDecimal.ZERO;
+
+        synchronized boolean tryAdd(long now, BigDecimal amount) {
+            rotate(now / windowMillis);
+
+            // previous window is weighted by its remaining part, compared in windowMillis units to stay exact
+            long remainingMillis = windowMillis - now % windowMillis;
+            long count = previousCount * remainingMillis + (currentCount + 1) * windowMillis;
+            BigDecimal total = previousAmount.multiply(BigDecimal.valueOf(remainingMillis))
+                    .add(currentAmount.add(amount).multiply(BigDecimal.valueOf(windowMillis)));
+            if (count > maxCount * windowMillis
+                    || total.compareTo(maxAmount.multiply(BigDecimal.valueOf(windowMillis))) > 0) {
+                return false;
+            }
+
+            currentCount++;
+            currentAmount = currentAmount.add(amount);
+            return true;
+        }
+
+        synchronized void remove(long now, BigDecimal amount) {
+            // transfer added in an earlier window is left to expire
+            if (now / windowMillis == window && currentCount > 0) {
+                currentCount--;
+                currentAmount = currentAmount.subtract(amount);
+            }
+        }
+
+        synchronized boolean isIdle(long currentWindow) {
+            return window < currentWindow - 1;
+        }
+
+        private void rotate(long currentWindow) {
+            if (currentWindow == window) {
+                return;
+            }
+            if (currentWindow == window + 1) {
+                previousCount = currentCount;
+                previousAmount = currentAmount;
+            } else {
+                previousCount = 0;
+                previousAmount = BigDecimal.ZERO;
+            }
+            currentCount = 0;
+            currentAmount = BigDecimal.ZERO;
+            window = currentWindow;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.dws.challenge.traffic;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Duration;
+
+@AllArgsConstructor
+@Getter
+public class ReplayReport {
+    private final long accountCreations;
+    private final long transfers;
+    private final long failedOperations;
+    private final Duration elapsed;
+    private final long p50Nanos;
+    private final long p99Nanos;
+    private final long p999Nanos;
+    private final long maxNanos;
+    // SHA-256 of the final balances of all accounts in the trace, ordered by account id
+    private final String checksum;
+
+    public long getOperations() {
+        return accountCreations + transfers;
+    }
+
+    public double getThroughput() {
+        long elapsedNanos = Math.max(elapsed.toNanos(), 1);
+        return getOperations() * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d operations (%d account creations, %d transfers, %d failed) in %d ms, %.0f ops/s, "
+                        + "latency us p50=%.1f p99=%.1f p99.9=%.1f max=%.1f, checksum %s",
+                getOperations(), accountCreations, transfers, failedOperations, elapsed.toMillis(), getThroughput(),
+                p50Nanos / 1e3, p99Nanos / 1e3, p999Nanos / 1e3, maxNanos / 1e3, checksum);
+    }
+}
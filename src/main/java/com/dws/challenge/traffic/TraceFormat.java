@@ -0,0 +1,167 @@
+package com.dws.challenge.traffic;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.MultiLegTransferRequest;
+import com.dws.challenge.domain.TransferLeg;
+import com.dws.challenge.domain.TransferRequest;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Trace is a sequence of records: type byte, offset from previous record in nanoseconds as variable length
+ * integer, then account id and balance, or debit account id, credit account id and amount, or debit account id and
+ * legs as a count followed by credit account id and amount of every leg. Amounts are scale and unscaled value bytes.
+ */
+final class TraceFormat {
+
+    static final int MAGIC = 0x54524331;
+
+    private static final byte ACCOUNT_CREATION = 1;
+    private static final byte TRANSFER = 2;
+    private static final byte MULTI_LEG_TRANSFER = 3;
+
+    private TraceFormat() {
+    }
+
+    static void write(DataOutputStream out, long deltaNanos, TraceRecord record) throws IOException {
+        if (record.getAccount() != null) {
+            out.writeByte(ACCOUNT_CREATION);
+            writeVarLong(out, deltaNanos);
+            writeString(out, record.getAccount().getAccountId());
+            writeAmount(out, record.getAccount().getBalance());
+        } else if (record.getMultiLegTransfer() != null) {
+            MultiLegTransferRequest transfer = record.getMultiLegTransfer();
+            out.writeByte(MULTI_LEG_TRANSFER);
+            writeVarLong(out, deltaNanos);
+            writeString(out, transfer.getAccountFromId());
+            writeLegs(out, transfer.getLegs());
+        } else {
+            TransferRequest transfer = record.getTransfer();
+            out.writeByte(TRANSFER);
+            writeVarLong(out, deltaNanos);
+            writeString(out, transfer.getAccountFromId());
+            writeString(out, transfer.getAccountToId());
+            writeAmount(out, transfer.getAmount());
+        }
+    }
+
+    /**
+     * @return record or null at the end of trace
+     */
+    static TraceRecord read(DataInputStream in, long previousOffsetNanos) throws IOException {
+        int type = in.read();
+        if (type < 0) {
+            return null;
+        }
+
+        try {
+            long offsetNanos = previousOffsetNanos + readVarLong(in);
+            switch (type) {
+                case ACCOUNT_CREATION:
+                    return TraceRecord.accountCreation(offsetNanos, new Account(readString(in), readAmount(in)));
+                case TRANSFER:
+                    return TraceRecord.transfer(offsetNanos, TransferRequest.builder()
+                            .accountFromId(readString(in))
+                            .accountToId(readString(in))
+                            .amount(readAmount(in))
+                            .build());
+                case MULTI_LEG_TRANSFER:
+                    return TraceRecord.multiLegTransfer(offsetNanos, MultiLegTransferRequest.builder()
+                            .accountFromId(readString(in))
+                            .legs(readLegs(in))
+                            .build());
+                default:
+                    throw new IOException("Unknown trace record type " + type);
+            }
+        } catch (EOFException e) {
+            // recording was interrupted in the middle of the record
+            return null;
+        }
+    }
+
+    // recorder does not depend on requests being validated, so any field may be missing
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeLegs(DataOutputStream out, List<TransferLeg> legs) throws IOException {
+        out.writeBoolean(legs != null);
+        if (legs != null) {
+            writeVarLong(out, legs.size());
+            for (TransferLeg leg : legs) {
+                out.writeBoolean(leg != null);
+                if (leg != null) {
+                    writeString(out, leg.getAccountToId());
+                    writeAmount(out, leg.getAmount());
+                }
+            }
+        }
+    }
+
+    private static List<TransferLeg> readLegs(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        int count = (int) readVarLong(in);
+        List<TransferLeg> legs = new ArrayList<>(Math.min(count, MultiLegTransferRequest.MAX_LEGS));
+        for (int i = 0; i < count; i++) {
+            legs.add(in.readBoolean()
+                    ? TransferLeg.builder().accountToId(readString(in)).amount(readAmount(in)).build()
+                    : null);
+        }
+        return legs;
+    }
+
+    private static void writeAmount(DataOutputStream out, BigDecimal amount) throws IOException {
+        out.writeBoolean(amount != null);
+        if (amount != null) {
+            byte[] unscaled = amount.unscaledValue().toByteArray();
+            writeVarLong(out, amount.scale() & 0xFFFFFFFFL);
+            writeVarLong(out, unscaled.length);
+            out.write(unscaled);
+        }
+    }
+
+    private static BigDecimal readAmount(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        int scale = (int) readVarLong(in);
+        byte[] unscaled = new byte[(int) readVarLong(in)];
+        in.readFully(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.dws.challenge.traffic;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.MultiLegTransferRequest;
+import com.dws.challenge.domain.TransferRequest;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@AllArgsConstructor
+@Getter
+public class TraceRecord {
+    // time since recording started
+    private final long offsetNanos;
+    // exactly one of them is set
+    private final Account account;
+    private final TransferRequest transfer;
+    private final MultiLegTransferRequest multiLegTransfer;
+
+    public static TraceRecord accountCreation(long offsetNanos, Account account) {
+        return new TraceRecord(offsetNanos, account, null, null);
+    }
+
+    public static TraceRecord transfer(long offsetNanos, TransferRequest transfer) {
+        return new TraceRecord(offsetNanos, null, transfer, null);
+    }
+
+    public static TraceRecord multiLegTransfer(long offsetNanos, MultiLegTransferRequest multiLegTransfer) {
+        return new TraceRecord(offsetNanos, null, null, multiLegTransfer);
+    }
+}
@@ -0,0 +1,92 @@
+package com.dws.challenge.traffic;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.MultiLegTransferRequest;
+import com.dws.challenge.domain.TransferRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Records account creations, transfer and multi-leg transfer requests in order of arrival when
+ * traffic.recording.file is set.
+ */
+@Component
+@Slf4j
+public class TrafficRecorder {
+
+    private final DataOutputStream out;
+    private final long startNanos;
+    private long previousOffsetNanos;
+
+    @Autowired
+    public TrafficRecorder(@Value("${traffic.recording.file:}") String recordingFile) {
+        this(recordingFile.isEmpty() ? null : Paths.get(recordingFile));
+    }
+
+    TrafficRecorder(Path recordingFile) {
+        this.startNanos = System.nanoTime();
+        if (recordingFile == null) {
+            this.out = null;
+            return;
+        }
+
+        try {
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(recordingFile), 1 << 16));
+            this.out.writeInt(TraceFormat.MAGIC);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to start recording to " + recordingFile, e);
+        }
+        log.info("Recording traffic to {}", recordingFile);
+    }
+
+    public boolean isRecording() {
+        return out != null;
+    }
+
+    public void recordAccountCreation(Account account) {
+        if (out != null) {
+            record(TraceRecord.accountCreation(System.nanoTime() - startNanos, account));
+        }
+    }
+
+    public void recordTransfer(TransferRequest transfer) {
+        if (out != null) {
+            record(TraceRecord.transfer(System.nanoTime() - startNanos, transfer));
+        }
+    }
+
+    public void recordMultiLegTransfer(MultiLegTransferRequest transfer) {
+        if (out != null) {
+            record(TraceRecord.multiLegTransfer(System.nanoTime() - startNanos, transfer));
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (out != null) {
+            out.close();
+        }
+    }
+
+    private synchronized void record(TraceRecord record) {
+        // offset is taken before entering the monitor, so a racing record may be a little older
+        long offsetNanos = Math.max(record.getOffsetNanos(), previousOffsetNanos);
+        try {
+            TraceFormat.write(out, offsetNanos - previousOffsetNanos, record);
+            previousOffsetNanos = offsetNanos;
+        } catch (IOException e) {
+            log.error("Failed to record {}", record, e);
+        }
+    }
+}
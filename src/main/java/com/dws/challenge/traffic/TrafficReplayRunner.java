@@ -0,0 +1,40 @@
+package com.dws.challenge.traffic;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Paths;
+
+/**
+ * Replays traffic.replay.file on startup, against whatever repository the application is configured with.
+ */
+@Component
+@ConditionalOnProperty(name = "traffic.replay.file")
+@Slf4j
+public class TrafficReplayRunner implements ApplicationRunner {
+
+    private final TrafficReplayer replayer;
+    private final String traceFile;
+    private final boolean paced;
+
+    @Autowired
+    public TrafficReplayRunner(TrafficReplayer replayer,
+                               @Value("${traffic.replay.file}") String traceFile,
+                               @Value("${traffic.replay.paced:false}") boolean paced) {
+        this.replayer = replayer;
+        this.traceFile = traceFile;
+        this.paced = paced;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        log.info("Replaying {}{}", traceFile, paced ? " at recorded pace" : "");
+        ReplayReport report = replayer.replay(Paths.get(traceFile), paced);
+        log.info("Replayed {}", report);
+    }
+}
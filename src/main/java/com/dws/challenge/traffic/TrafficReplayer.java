@@ -0,0 +1,149 @@
+package com.dws.challenge.traffic;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.MultiLegTransferRequest;
+import com.dws.challenge.domain.TransferLeg;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.TransfersService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Feeds a recorded trace into the configured services in the recorded order, either as fast as possible or keeping
+ * the recorded gaps between operations. Operations are replayed from a single thread, so the final state of a
+ * deterministic engine only depends on the trace.
+ */
+@Component
+public class TrafficReplayer {
+
+    private final AccountsService accountsService;
+    private final TransfersService transfersService;
+
+    @Autowired
+    public TrafficReplayer(AccountsService accountsService, TransfersService transfersService) {
+        this.accountsService = accountsService;
+        this.transfersService = transfersService;
+    }
+
+    public ReplayReport replay(Path traceFile, boolean paced) throws IOException {
+        SortedSet<String> accountIds = new TreeSet<>();
+        long[] latencies = new long[1024];
+        long accountCreations = 0;
+        long transfers = 0;
+        long failedOperations = 0;
+
+        long startNanos = System.nanoTime();
+        try (TrafficTraceReader reader = new TrafficTraceReader(traceFile)) {
+            TraceRecord record;
+            while ((record = reader.next()) != null) {
+                if (paced) {
+                    long waitNanos = startNanos + record.getOffsetNanos() - System.nanoTime();
+                    if (waitNanos > 0) {
+                        LockSupport.parkNanos(waitNanos);
+                    }
+                }
+
+                long operationStart = System.nanoTime();
+                boolean succeeded;
+                if (record.getAccount() != null) {
+                    accountIds.add(record.getAccount().getAccountId());
+                    succeeded = createAccount(record.getAccount());
+                    accountCreations++;
+                } else if (record.getMultiLegTransfer() != null) {
+                    MultiLegTransferRequest transfer = record.getMultiLegTransfer();
+                    accountIds.add(transfer.getAccountFromId());
+                    for (TransferLeg leg : transfer.getLegs()) {
+                        accountIds.add(leg.getAccountToId());
+                    }
+                    succeeded = transfersService.tryTransfer(transfer).isCompleted();
+                    transfers++;
+                } else {
+                    accountIds.add(record.getTransfer().getAccountFromId());
+                    accountIds.add(record.getTransfer().getAccountToId());
+                    succeeded = transfer(record);
+                    transfers++;
+                }
+                long latency = System.nanoTime() - operationStart;
+
+                int operation = (int) (accountCreations + transfers - 1);
+                if (operation == latencies.length) {
+                    latencies = Arrays.copyOf(latencies, latencies.length * 2);
+                }
+                latencies[operation] = latency;
+                if (!succeeded) {
+                    failedOperations++;
+                }
+            }
+        }
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - startNanos);
+
+        int operations = (int) (accountCreations + transfers);
+        Arrays.sort(latencies, 0, operations);
+        return new ReplayReport(accountCreations, transfers, failedOperations, elapsed,
+                percentile(latencies, operations, 0.5), percentile(latencies, operations, 0.99),
+                percentile(latencies, operations, 0.999), operations > 0 ? latencies[operations - 1] : 0,
+                checksum(accountIds));
+    }
+
+    /**
+     * Hex encoded SHA-256 of account ids and balances, in account id order. Accounts which do not exist are hashed
+     * with no balance, and balances are compared numerically, so 10 and 10.00 give the same checksum.
+     */
+    public String checksum(SortedSet<String> accountIds) {
+        MessageDigest digest = sha256();
+        for (String accountId : accountIds) {
+            Account account = accountsService.getAccount(accountId);
+            BigDecimal balance = account != null ? account.getBalance() : null;
+            String entry = accountId + '=' + (balance != null ? balance.stripTrailingZeros().toPlainString() : "") + '\n';
+            digest.update(entry.getBytes(StandardCharsets.UTF_8));
+        }
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private boolean createAccount(Account account) {
+        try {
+            // services may keep the passed instance, the recorded one is not shared between replays
+            accountsService.createAccount(new Account(account.getAccountId(), account.getBalance()));
+            return true;
+        } catch (DuplicateAccountIdException e) {
+            return false;
+        }
+    }
+
+    private boolean transfer(TraceRecord record) {
+        return transfersService.tryTransfer(record.getTransfer()).isCompleted();
+    }
+
+    private static long percentile(long[] sortedLatencies, int count, double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        return sortedLatencies[Math.min(count - 1, (int) Math.ceil(percentile * count) - 1)];
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
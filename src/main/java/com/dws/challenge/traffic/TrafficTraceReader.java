@@ -0,0 +1,38 @@
+package com.dws.challenge.traffic;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class TrafficTraceReader implements Closeable {
+
+    private final DataInputStream in;
+    private long previousOffsetNanos;
+
+    public TrafficTraceReader(Path traceFile) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(traceFile), 1 << 16));
+        if (in.readInt() != TraceFormat.MAGIC) {
+            in.close();
+            throw new IOException(traceFile + " is not a traffic trace");
+        }
+    }
+
+    /**
+     * @return next record or null at the end of trace
+     */
+    public TraceRecord next() throws IOException {
+        TraceRecord record = TraceFormat.read(in, previousOffsetNanos);
+        if (record != null) {
+            previousOffsetNanos = record.getOffsetNanos();
+        }
+        return record;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,64 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.domain.Account;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serialized JSON of the latest seen version of accounts, so repeated reads of an unchanged account skip
+ * serialization. Bounded by evicting an arbitrary entry once full.
+ */
+@Component
+public class AccountResponseCache {
+
+    private final ObjectMapper objectMapper;
+    private final int maxEntries;
+    private final Map<String, CachedResponse> responses = new ConcurrentHashMap<>();
+
+    @Autowired
+    public AccountResponseCache(ObjectMapper objectMapper,
+                                @Value("${accounts.response-cache.max-entries:10000}") int maxEntries) {
+        this.objectMapper = objectMapper;
+        this.maxEntries = maxEntries;
+    }
+
+    public byte[] getResponse(Account account) throws JsonProcessingException {
+        CachedResponse cached = responses.get(account.getAccountId());
+        if (cached != null && cached.version == account.getVersion()) {
+            return cached.body;
+        }
+
+        byte[] body = objectMapper.writeValueAsBytes(account);
+        if (cached == null && responses.size() >= maxEntries) {
+            Iterator<String> iterator = responses.keySet().iterator();
+            if (iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+        responses.merge(account.getAccountId(), new CachedResponse(account.getVersion(), body),
+                (previous, current) -> previous.version > current.version ? previous : current);
+        return body;
+    }
+
+    public void remove(String accountId) {
+        responses.remove(accountId);
+    }
+
+    private static class CachedResponse {
+        private final long version;
+        private final byte[] body;
+
+        CachedResponse(long version, byte[] body) {
+            this.version = version;
+            this.body = body;
+        }
+    }
+}
@@ -2,36 +2,58 @@ package com.dws.challenge.web;
 
 import com.dws.challenge.domain.Account;
 import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.InvalidAccountChangeException;
+import com.dws.challenge.exception.NotExistingAccountException;
+import com.dws.challenge.exception.StateNotRetainedException;
 import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.traffic.TrafficRecorder;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 import javax.validation.Valid;
+import java.math.BigDecimal;
+import java.time.Instant;
 
 @RestController
 @RequestMapping("/v1/accounts")
 @Slf4j
 public class AccountsController {
 
+  private static final int MAX_ACCOUNTS_LIMIT = 1000;
+
+  private static final String INSTANCE_ID = Long.toString(System.currentTimeMillis(), 36);
+
   private final AccountsService accountsService;
 
+  private final AccountResponseCache responseCache;
+
+  private final TrafficRecorder trafficRecorder;
+
   @Autowired
-  public AccountsController(AccountsService accountsService) {
+  public AccountsController(AccountsService accountsService, AccountResponseCache responseCache,
+                            TrafficRecorder trafficRecorder) {
     this.accountsService = accountsService;
+    this.responseCache = responseCache;
+    this.trafficRecorder = trafficRecorder;
   }
 
   @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
   public ResponseEntity<Object> createAccount(@RequestBody @Valid Account account) {
     log.info("Creating account {}", account);
+    trafficRecorder.recordAccountCreation(account);
 
     try {
     this.accountsService.createAccount(account);
@@ -42,10 +64,83 @@ public class AccountsController {
     return new ResponseEntity<>(HttpStatus.CREATED);
   }
 
+  @GetMapping
+  public ResponseEntity<Object> getAccounts(@RequestParam String orderBy,
+                                            @RequestParam(defaultValue = "desc") String order,
+                                            @RequestParam(defaultValue = "100") int limit,
+                                            @RequestParam(required = false) BigDecimal minBalance,
+                                            @RequestParam(required = false) BigDecimal maxBalance) {
+    if (!"balance".equals(orderBy)) {
+      return new ResponseEntity<>("Accounts can be ordered only by balance", HttpStatus.BAD_REQUEST);
+    }
+    if (!"asc".equals(order) && !"desc".equals(order)) {
+      return new ResponseEntity<>("Order must be asc or desc", HttpStatus.BAD_REQUEST);
+    }
+    if (limit < 1 || limit > MAX_ACCOUNTS_LIMIT) {
+      return new ResponseEntity<>("Limit must be between 1 and " + MAX_ACCOUNTS_LIMIT, HttpStatus.BAD_REQUEST);
+    }
+
+    return ResponseEntity.ok(
+      this.accountsService.getAccountsByBalance(minBalance, maxBalance, "desc".equals(order), limit));
+  }
+
+  @GetMapping(path = "/{accountId}", params = "asOf")
+  public ResponseEntity<Object> getAccountAsOf(@PathVariable String accountId, @RequestParam Instant asOf) {
+    log.info("Retrieving account for id {} as of {}", accountId, asOf);
+    if (!this.accountsService.keepsAccountHistory()) {
+      return new ResponseEntity<>("Account history is not kept by this node", HttpStatus.NOT_IMPLEMENTED);
+    }
+
+    Account account;
+    try {
+      account = this.accountsService.getAccount(accountId, asOf);
+    } catch (StateNotRetainedException e) {
+      return new ResponseEntity<>(e.getMessage(), HttpStatus.GONE);
+    }
+    if (account == null) {
+      return ResponseEntity.ok().build();
+    }
+    return ResponseEntity.ok(account);
+  }
+
   @GetMapping(path = "/{accountId}")
-  public Account getAccount(@PathVariable String accountId) {
+  public ResponseEntity<byte[]> getAccount(@PathVariable String accountId, WebRequest request)
+    throws JsonProcessingException {
     log.info("Retrieving account for id {}", accountId);
-    return this.accountsService.getAccount(accountId);
+    Account account = this.accountsService.getAccount(accountId);
+    if (account == null) {
+      return ResponseEntity.ok().build();
+    }
+
+    String eTag = eTag(account);
+    if (request.checkNotModified(eTag)) {
+      return null;
+    }
+
+    return ResponseEntity.ok()
+      .eTag(eTag)
+      .contentType(MediaType.APPLICATION_JSON)
+      .body(this.responseCache.getResponse(account));
+  }
+
+  @DeleteMapping(path = "/{accountId}")
+  public ResponseEntity<Object> closeAccount(@PathVariable String accountId) {
+    log.info("Closing account {}", accountId);
+    try {
+      this.accountsService.closeAccount(accountId);
+    } catch (NotExistingAccountException e) {
+      return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+    } catch (InvalidAccountChangeException e) {
+      return new ResponseEntity<>(e.getMessage(), HttpStatus.CONFLICT);
+    }
+
+    this.responseCache.remove(accountId);
+    return ResponseEntity.noContent().build();
+  }
+
+  private String eTag(Account account) {
+    // versions restart with the process, instance id keeps tags issued by previous instances from matching
+    return "\"" + INSTANCE_ID + "-" + account.getVersion() + "\"";
   }
 
 }
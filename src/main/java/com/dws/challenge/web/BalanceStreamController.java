@@ -0,0 +1,83 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.BalanceChangePublisher;
+import com.dws.challenge.service.BalanceChangeSink;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+@RestController
+@RequestMapping("/v1/accounts/balance-stream")
+@Slf4j
+public class BalanceStreamController {
+
+    private final AccountsService accountsService;
+    private final BalanceChangePublisher balanceChangePublisher;
+    private final int maxAccountsPerSubscription;
+    private final long streamTimeoutMillis;
+
+    @Autowired
+    public BalanceStreamController(AccountsService accountsService,
+                                   BalanceChangePublisher balanceChangePublisher,
+                                   @Value("${accounts.stream.max-accounts:1000}") int maxAccountsPerSubscription,
+                                   @Value("${accounts.stream.timeout-ms:3600000}") long streamTimeoutMillis) {
+        this.accountsService = accountsService;
+        this.balanceChangePublisher = balanceChangePublisher;
+        this.maxAccountsPerSubscription = maxAccountsPerSubscription;
+        this.streamTimeoutMillis = streamTimeoutMillis;
+    }
+
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamBalanceChanges(@RequestParam Set<String> accountIds) {
+        if (accountIds.size() > maxAccountsPerSubscription) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "At most " + maxAccountsPerSubscription + " accounts can be subscribed");
+        }
+        log.info("Streaming balance changes of {} accounts", accountIds.size());
+
+        SseEmitter emitter = new SseEmitter(streamTimeoutMillis);
+        BalanceChangePublisher.Subscription subscription = balanceChangePublisher.subscribe(accountIds,
+                new BalanceChangeSink() {
+                    @Override
+                    public void send(List<Account> changes) throws IOException {
+                        for (Account account : changes) {
+                            emitter.send(SseEmitter.event().name("balance").data(account, MediaType.APPLICATION_JSON));
+                        }
+                    }
+
+                    @Override
+                    public void sendRemoved(List<String> removedAccountIds) throws IOException {
+                        for (String accountId : removedAccountIds) {
+                            emitter.send(SseEmitter.event().name("removed").data(accountId));
+                        }
+                    }
+                });
+        emitter.onCompletion(() -> balanceChangePublisher.unsubscribe(subscription));
+        emitter.onTimeout(() -> balanceChangePublisher.unsubscribe(subscription));
+        emitter.onError(e -> balanceChangePublisher.unsubscribe(subscription));
+
+        // start with current balances, which are dropped if a later change of the account was offered already
+        for (String accountId : accountIds) {
+            Account account = accountsService.getAccount(accountId);
+            if (account != null) {
+                subscription.offer(account);
+            }
+        }
+
+        return emitter;
+    }
+}
@@ -0,0 +1,52 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.domain.ChecksumNode;
+import com.dws.challenge.repository.AccountChecksums;
+import com.dws.challenge.service.AccountsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.regex.Pattern;
+
+/**
+ * Tree of account balance checksums, see {@link AccountChecksums}. A client holding the same tree compares the root,
+ * then descends into the children which differ, down to the accounts of a bucket.
+ */
+@RestController
+@RequestMapping("/v1/checksums")
+public class ChecksumsController {
+
+    private static final Pattern PREFIX = Pattern.compile("[0-9a-f]{1," + AccountChecksums.PREFIX_DIGITS + "}");
+
+    private final AccountsService accountsService;
+
+    @Autowired
+    public ChecksumsController(AccountsService accountsService) {
+        this.accountsService = accountsService;
+    }
+
+    @GetMapping
+    public ResponseEntity<Object> getRoot() {
+        return getNode("");
+    }
+
+    @GetMapping(path = "/{prefix}")
+    public ResponseEntity<Object> getNode(@PathVariable String prefix) {
+        if (!prefix.isEmpty() && !PREFIX.matcher(prefix).matches()) {
+            return ResponseEntity.badRequest().body(
+                    "Prefix must be up to " + AccountChecksums.PREFIX_DIGITS + " lowercase hex digits");
+        }
+
+        ChecksumNode node = accountsService.getChecksums(prefix);
+        if (node == null) {
+            return new ResponseEntity<>("Account checksums are not kept by this repository",
+                    HttpStatus.NOT_IMPLEMENTED);
+        }
+        return ResponseEntity.ok(node);
+    }
+}
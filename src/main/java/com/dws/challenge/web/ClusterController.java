@@ -0,0 +1,83 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.cluster.ClusterMembership;
+import com.dws.challenge.cluster.ClusterTransfers;
+import com.dws.challenge.domain.ClusterMember;
+import com.dws.challenge.domain.CreditRequest;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.validation.Valid;
+import java.util.List;
+
+/**
+ * Membership and credits of cross-node transfers, called by other nodes of the cluster.
+ */
+@RestController
+@RequestMapping("/v1/cluster")
+public class ClusterController {
+
+    // absent unless cluster.enabled is set
+    private final ObjectProvider<ClusterMembership> membership;
+    private final ObjectProvider<ClusterTransfers> clusterTransfers;
+
+    @Autowired
+    public ClusterController(ObjectProvider<ClusterMembership> membership,
+                             ObjectProvider<ClusterTransfers> clusterTransfers) {
+        this.membership = membership;
+        this.clusterTransfers = clusterTransfers;
+    }
+
+    @GetMapping(path = "/nodes")
+    public ResponseEntity<List<ClusterMember>> getMembers() {
+        ClusterMembership current = membership.getIfAvailable();
+        return current != null ? ResponseEntity.ok(current.getMembers()) : ResponseEntity.notFound().build();
+    }
+
+    @PostMapping(path = "/nodes", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<ClusterMember>> addMember(@RequestBody @Valid ClusterMember member) {
+        ClusterMembership current = membership.getIfAvailable();
+        if (current == null) {
+            return ResponseEntity.notFound().build();
+        }
+        current.addMember(member);
+        return ResponseEntity.ok(current.getMembers());
+    }
+
+    @PostMapping(path = "/credits/{transactionId}/prepare", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Void> prepareCredit(@PathVariable String transactionId,
+                                              @RequestBody @Valid CreditRequest credit) {
+        ClusterTransfers transfers = clusterTransfers.getIfAvailable();
+        return transfers != null && transfers.prepareCredit(transactionId, credit.getAccountId())
+                ? ResponseEntity.ok().build()
+                : ResponseEntity.notFound().build();
+    }
+
+    @PostMapping(path = "/credits/{transactionId}/commit", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Void> commitCredit(@PathVariable String transactionId,
+                                             @RequestBody @Valid CreditRequest credit) {
+        ClusterTransfers transfers = clusterTransfers.getIfAvailable();
+        return transfers != null && transfers.commitCredit(transactionId, credit)
+                ? ResponseEntity.ok().build()
+                : ResponseEntity.notFound().build();
+    }
+
+    @DeleteMapping(path = "/credits/{transactionId}")
+    public ResponseEntity<Void> abortCredit(@PathVariable String transactionId) {
+        ClusterTransfers transfers = clusterTransfers.getIfAvailable();
+        if (transfers == null) {
+            return ResponseEntity.notFound().build();
+        }
+        transfers.abortCredit(transactionId);
+        return ResponseEntity.ok().build();
+    }
+}
@@ -0,0 +1,185 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.cluster.ClusterClient;
+import com.dws.challenge.cluster.ClusterMembership;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UriUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Forwards requests for an account to the node owning it. The account of a request is the one in its path under
+ * {@code /v1/accounts}, the created account or the account a transfer debits; requests without an account, such as
+ * listings, multi-leg and scheduled transfers, are served by the node receiving them from its own accounts.
+ */
+@Component
+@ConditionalOnProperty(name = "cluster.enabled", havingValue = "true")
+public class ClusterRoutingFilter extends OncePerRequestFilter {
+
+    private static final String ACCOUNTS_PATH = "/v1/accounts";
+    private static final String TRANSFERS_PATH = "/v1/transfers";
+
+    private final ClusterMembership membership;
+    private final ClusterClient clusterClient;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public ClusterRoutingFilter(ClusterMembership membership, ClusterClient clusterClient,
+                                ObjectMapper objectMapper) {
+        this.membership = membership;
+        this.clusterClient = clusterClient;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (request.getHeader(ClusterClient.FORWARDED_HEADER) != null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        boolean post = HttpMethod.POST.matches(request.getMethod());
+        String accountId = accountInPath(path);
+        CachedBodyRequest cachedRequest = null;
+        if (accountId == null && post && (path.equals(ACCOUNTS_PATH) || path.equals(TRANSFERS_PATH))) {
+            cachedRequest = new CachedBodyRequest(request);
+            accountId = accountInBody(cachedRequest.body, path.equals(ACCOUNTS_PATH) ? "accountId" : "accountFromId");
+        }
+        HttpServletRequest routedRequest = cachedRequest != null ? cachedRequest : request;
+
+        if (accountId == null || membership.isLocal(accountId)) {
+            chain.doFilter(routedRequest, response);
+            return;
+        }
+        forward(routedRequest, response, membership.getOwner(accountId),
+                cachedRequest != null ? cachedRequest.body : StreamUtils.copyToByteArray(request.getInputStream()));
+    }
+
+    private void forward(HttpServletRequest request, HttpServletResponse response, String owner, byte[] body)
+            throws IOException {
+        String url = membership.getUrl(owner);
+        String pathAndQuery = request.getQueryString() != null
+                ? request.getRequestURI() + "?" + request.getQueryString()
+                : request.getRequestURI();
+        HttpResponse<byte[]> forwarded;
+        try {
+            if (url == null) {
+                throw new IOException("Url of node " + owner + " is not known");
+            }
+            forwarded = clusterClient.forward(url, request.getMethod(), pathAndQuery, request.getContentType(), body);
+        } catch (IOException e) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            response.getWriter().write("Node " + owner + " is unavailable");
+            return;
+        }
+
+        response.setStatus(forwarded.statusCode());
+        forwarded.headers().firstValue(HttpHeaders.CONTENT_TYPE).ifPresent(response::setContentType);
+        forwarded.headers().firstValue(HttpHeaders.RETRY_AFTER)
+                .ifPresent(retryAfter -> response.setHeader(HttpHeaders.RETRY_AFTER, retryAfter));
+        response.setContentLength(forwarded.body().length);
+        response.getOutputStream().write(forwarded.body());
+    }
+
+    private static String accountInPath(String path) {
+        if (!path.startsWith(ACCOUNTS_PATH + "/")) {
+            return null;
+        }
+        int start = ACCOUNTS_PATH.length() + 1;
+        int end = path.indexOf('/', start);
+        String segment = path.substring(start, end < 0 ? path.length() : end);
+        if (segment.isEmpty() || segment.equals("balance-stream") || segment.equals("stats")) {
+            return null;
+        }
+        return UriUtils.decode(segment, StandardCharsets.UTF_8);
+    }
+
+    private String accountInBody(byte[] body, String field) {
+        try {
+            JsonNode json = objectMapper.readTree(body);
+            JsonNode accountId = json != null ? json.get(field) : null;
+            return accountId != null && accountId.isTextual() ? accountId.asText() : null;
+        } catch (IOException e) {
+            // malformed requests are rejected by the local node
+            return null;
+        }
+    }
+
+    /**
+     * Request whose body can be read again after the account was looked up in it.
+     */
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request) throws IOException {
+            super(request);
+            this.body = StreamUtils.copyToByteArray(request.getInputStream());
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(body),
+                    encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8));
+        }
+    }
+}
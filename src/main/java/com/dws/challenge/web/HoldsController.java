@@ -0,0 +1,75 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Hold;
+import com.dws.challenge.domain.HoldRequest;
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.exception.InvalidAccountChangeException;
+import com.dws.challenge.exception.NotExistingAccountException;
+import com.dws.challenge.exception.NotExistingHoldException;
+import com.dws.challenge.service.AccountsService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.validation.Valid;
+
+@RestController
+@RequestMapping("/v1/accounts/{accountId}/holds")
+@Slf4j
+public class HoldsController {
+
+    private final AccountsService accountsService;
+
+    @Autowired
+    public HoldsController(AccountsService accountsService) {
+        this.accountsService = accountsService;
+    }
+
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> authorizeHold(@PathVariable String accountId,
+                                                @RequestBody @Valid HoldRequest holdRequest) {
+        log.info("Authorizing hold {} on account {}", holdRequest, accountId);
+
+        try {
+            Hold hold = accountsService.authorizeHold(accountId, holdRequest.getAmount(), holdRequest.getTtl());
+            return new ResponseEntity<>(hold, HttpStatus.CREATED);
+        } catch (NotExistingAccountException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+        } catch (InsufficientFundsException | InvalidAccountChangeException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    @PostMapping(path = "/{holdId}/capture")
+    public ResponseEntity<Object> captureHold(@PathVariable String accountId, @PathVariable long holdId) {
+        log.info("Capturing hold {} on account {}", holdId, accountId);
+
+        try {
+            Account account = accountsService.captureHold(accountId, holdId);
+            return ResponseEntity.ok(account);
+        } catch (NotExistingAccountException | NotExistingHoldException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+        }
+    }
+
+    @DeleteMapping(path = "/{holdId}")
+    public ResponseEntity<Object> releaseHold(@PathVariable String accountId, @PathVariable long holdId) {
+        log.info("Releasing hold {} on account {}", holdId, accountId);
+
+        try {
+            Account account = accountsService.releaseHold(accountId, holdId);
+            return ResponseEntity.ok(account);
+        } catch (NotExistingAccountException | NotExistingHoldException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+        }
+    }
+}
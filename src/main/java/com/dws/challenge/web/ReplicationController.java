@@ -0,0 +1,29 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.domain.ReplicationStatus;
+import com.dws.challenge.replication.ReplicationNode;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/v1/replication")
+public class ReplicationController {
+
+    // absent unless replication.role is set
+    private final ObjectProvider<ReplicationNode> replicationNode;
+
+    @Autowired
+    public ReplicationController(ObjectProvider<ReplicationNode> replicationNode) {
+        this.replicationNode = replicationNode;
+    }
+
+    @GetMapping(path = "/status")
+    public ResponseEntity<ReplicationStatus> getStatus() {
+        ReplicationNode node = replicationNode.getIfAvailable();
+        return node != null ? ResponseEntity.ok(node.getStatus()) : ResponseEntity.notFound().build();
+    }
+}
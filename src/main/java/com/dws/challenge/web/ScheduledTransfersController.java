@@ -0,0 +1,45 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.domain.ScheduledTransferRequest;
+import com.dws.challenge.exception.InvalidScheduleException;
+import com.dws.challenge.service.ScheduledTransfersService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.validation.Valid;
+
+@RestController
+@RequestMapping("/v1/transfers/scheduled")
+@Slf4j
+public class ScheduledTransfersController {
+
+    @Autowired
+    private ScheduledTransfersService scheduledTransfersService;
+
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> schedule(@RequestBody @Valid ScheduledTransferRequest request) {
+        log.info("Scheduling transfer {}", request);
+
+        try {
+            return new ResponseEntity<>(scheduledTransfersService.schedule(request), HttpStatus.CREATED);
+        } catch (InvalidScheduleException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    @DeleteMapping(path = "/{id}")
+    public ResponseEntity<Object> cancel(@PathVariable long id) {
+        return scheduledTransfersService.cancel(id)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+}
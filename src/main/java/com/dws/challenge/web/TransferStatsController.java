@@ -0,0 +1,43 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.domain.AccountTransferStats;
+import com.dws.challenge.service.TransferStatsCollector;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/v1/accounts")
+public class TransferStatsController {
+
+    private static final int MAX_BUSIEST_LIMIT = 1000;
+
+    private final TransferStatsCollector transferStats;
+
+    @Autowired
+    public TransferStatsController(TransferStatsCollector transferStats) {
+        this.transferStats = transferStats;
+    }
+
+    @GetMapping(path = "/{accountId}/stats")
+    public AccountTransferStats getStats(@PathVariable String accountId) {
+        return transferStats.getStats(accountId);
+    }
+
+    @GetMapping(path = "/stats/busiest")
+    public ResponseEntity<Object> getBusiest(@RequestParam(defaultValue = "1m") String window,
+                                             @RequestParam(defaultValue = "10") int limit) {
+        TransferStatsCollector.Window statsWindow = TransferStatsCollector.Window.ofLabel(window);
+        if (statsWindow == null) {
+            return ResponseEntity.badRequest().body("Unknown window " + window + ", expected 1m, 5m or 1h");
+        }
+        if (limit < 1 || limit > MAX_BUSIEST_LIMIT) {
+            return ResponseEntity.badRequest().body("Limit must be between 1 and " + MAX_BUSIEST_LIMIT);
+        }
+        return ResponseEntity.ok(transferStats.getBusiest(statsWindow, limit));
+    }
+}
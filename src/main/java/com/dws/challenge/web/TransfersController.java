@@ -1,12 +1,19 @@
 package com.dws.challenge.web;
 
+import com.dws.challenge.cluster.ClusterTransfers;
+import com.dws.challenge.domain.MultiLegTransferFailure;
+import com.dws.challenge.domain.MultiLegTransferOutcome;
+import com.dws.challenge.domain.MultiLegTransferRequest;
 import com.dws.challenge.domain.TransferFailure;
 import com.dws.challenge.domain.TransferRequest;
-import com.dws.challenge.domain.TransferExecution;
-import com.dws.challenge.exception.InvalidTransferException;
+import com.dws.challenge.domain.TransferOutcome;
 import com.dws.challenge.service.TransfersService;
+import com.dws.challenge.traffic.TrafficRecorder;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -25,15 +32,50 @@ public class TransfersController {
     @Autowired
     private TransfersService transfersService;
 
+    @Autowired
+    private TrafficRecorder trafficRecorder;
+
+    // absent unless cluster.enabled is set
+    @Autowired
+    private ObjectProvider<ClusterTransfers> clusterTransfers;
+
     @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<?> transfer(@RequestBody @Valid TransferRequest transferRequest) {
-        try {
-            TransferExecution transferExecution = transfersService.transfer(transferRequest);
-            return ResponseEntity.ok(transferExecution);
-        } catch (InvalidTransferException e) {
+        trafficRecorder.recordTransfer(transferRequest);
+        ClusterTransfers cluster = clusterTransfers.getIfAvailable();
+        TransferOutcome outcome = cluster != null
+                ? cluster.transfer(transferRequest)
+                : transfersService.tryTransfer(transferRequest);
+        if (outcome.isCompleted()) {
+            return ResponseEntity.ok(outcome.getExecution());
+        }
+        if (outcome.getReason() == TransferOutcome.Reason.REJECTED) {
+            return ResponseEntity
+                    .status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(outcome.getRetryAfter().toSeconds()))
+                    .body(new TransferFailure(transferRequest, LocalDateTime.now(), outcome));
+        }
+        return ResponseEntity
+                .badRequest()
+                .body(new TransferFailure(transferRequest, LocalDateTime.now(), outcome));
+    }
+
+    @PostMapping(path = "/multi-leg", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> transfer(@RequestBody @Valid MultiLegTransferRequest transferRequest) {
+        trafficRecorder.recordMultiLegTransfer(transferRequest);
+        MultiLegTransferOutcome outcome = transfersService.tryTransfer(transferRequest);
+        if (outcome.isCompleted()) {
+            return ResponseEntity.ok(outcome.getExecution());
+        }
+        TransferOutcome failure = outcome.getFailure();
+        if (failure.getReason() == TransferOutcome.Reason.REJECTED) {
             return ResponseEntity
-                    .badRequest()
-                    .body(new TransferFailure(transferRequest, LocalDateTime.now(), e.getMessage()));
+                    .status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(failure.getRetryAfter().toSeconds()))
+                    .body(new MultiLegTransferFailure(transferRequest, LocalDateTime.now(), failure));
         }
+        return ResponseEntity
+                .badRequest()
+                .body(new MultiLegTransferFailure(transferRequest, LocalDateTime.now(), failure));
     }
 }
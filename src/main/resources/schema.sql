@@ -0,0 +1,24 @@
+CREATE TABLE IF NOT EXISTS accounts (
+    account_id VARCHAR(255) NOT NULL PRIMARY KEY,
+    balance DECIMAL(38, 10) NOT NULL,
+    held_balance DECIMAL(38, 10) NOT NULL,
+    version BIGINT NOT NULL,
+    -- AccountChecksums.bucket of the account id, computed by the application
+    checksum_bucket INT NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS accounts_balance ON accounts (balance, account_id);
+CREATE INDEX IF NOT EXISTS accounts_checksum_bucket ON accounts (checksum_bucket, account_id);
+
+CREATE TABLE IF NOT EXISTS account_holds (
+    hold_id BIGINT NOT NULL PRIMARY KEY,
+    account_id VARCHAR(255) NOT NULL,
+    amount DECIMAL(38, 10) NOT NULL,
+    expires_at BIGINT NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS account_holds_expires_at ON account_holds (expires_at);
+CREATE INDEX IF NOT EXISTS account_holds_account_id ON account_holds (account_id);
+
+CREATE SEQUENCE IF NOT EXISTS account_incarnations;
+CREATE SEQUENCE IF NOT EXISTS account_hold_ids;
@@ -1,13 +1,17 @@
 package com.dws.challenge;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.hamcrest.Matchers.not;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 
 import com.dws.challenge.domain.Account;
 import com.dws.challenge.service.AccountsService;
@@ -16,6 +20,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.context.web.WebAppConfiguration;
@@ -40,7 +45,7 @@ class AccountsControllerTest {
     this.mockMvc = webAppContextSetup(this.webApplicationContext).build();
 
     // Reset the existing accounts before each test.
-    accountsService.getAccountsRepository().clearAccounts();
+    accountsService.clearAccounts();
   }
 
   @Test
@@ -102,4 +107,92 @@ class AccountsControllerTest {
       .andExpect(
         content().string("{\"accountId\":\"" + uniqueAccountId + "\",\"balance\":123.45}"));
   }
+
+  @Test
+  void getAccountNotModified() throws Exception {
+    this.accountsService.createAccount(new Account("Id-123", new BigDecimal("123.45")));
+    String eTag = this.mockMvc.perform(get("/v1/accounts/Id-123"))
+      .andExpect(status().isOk())
+      .andExpect(header().exists(HttpHeaders.ETAG))
+      .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+    this.mockMvc.perform(get("/v1/accounts/Id-123").header(HttpHeaders.IF_NONE_MATCH, eTag))
+      .andExpect(status().isNotModified())
+      .andExpect(content().string(""));
+  }
+
+  @Test
+  void getAccountModifiedSinceETag() throws Exception {
+    this.accountsService.createAccount(new Account("Id-123", new BigDecimal("123.45")));
+    String eTag = this.mockMvc.perform(get("/v1/accounts/Id-123"))
+      .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+    accountsService.getAccountsRepository().updateAccount(new Account("Id-123", new BigDecimal("100")));
+
+    this.mockMvc.perform(get("/v1/accounts/Id-123").header(HttpHeaders.IF_NONE_MATCH, eTag))
+      .andExpect(status().isOk())
+      .andExpect(header().string(HttpHeaders.ETAG, not(eTag)))
+      .andExpect(content().string("{\"accountId\":\"Id-123\",\"balance\":100}"));
+  }
+
+  @Test
+  void getAccountAsOf() throws Exception {
+    this.accountsService.createAccount(new Account("Id-123", new BigDecimal("123.45")));
+    Instant created = Instant.now();
+    Thread.sleep(5);
+    Account account = accountsService.getAccountsRepository().lockAccount("Id-123");
+    accountsService.getAccountsRepository().updateAccount(account.debit(new BigDecimal("23.45")));
+    accountsService.getAccountsRepository().releaseAccount("Id-123");
+
+    this.mockMvc.perform(get("/v1/accounts/Id-123").param("asOf", created.toString()))
+      .andExpect(status().isOk())
+      .andExpect(content().string("{\"accountId\":\"Id-123\",\"balance\":123.45}"));
+    this.mockMvc.perform(get("/v1/accounts/Id-123").param("asOf", Instant.now().toString()))
+      .andExpect(status().isOk())
+      .andExpect(content().string("{\"accountId\":\"Id-123\",\"balance\":100.00}"));
+    this.mockMvc.perform(get("/v1/accounts/Id-123").param("asOf", created.minusSeconds(3600).toString()))
+      .andExpect(status().isOk())
+      .andExpect(content().string(""));
+    this.mockMvc.perform(get("/v1/accounts/Id-123").param("asOf", "yesterday"))
+      .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  void closeAccount() throws Exception {
+    this.accountsService.createAccount(new Account("Id-123", BigDecimal.ZERO));
+    this.accountsService.createAccount(new Account("Id-456", new BigDecimal("10")));
+
+    this.mockMvc.perform(delete("/v1/accounts/Id-123")).andExpect(status().isNoContent());
+    this.mockMvc.perform(delete("/v1/accounts/Id-123")).andExpect(status().isNotFound());
+    this.mockMvc.perform(delete("/v1/accounts/Id-456")).andExpect(status().isConflict());
+
+    assertThat(accountsService.getAccount("Id-123")).isNull();
+    assertThat(accountsService.getAccount("Id-456")).isNotNull();
+  }
+
+  @Test
+  void getAccountsOrderedByBalance() throws Exception {
+    this.accountsService.createAccount(new Account("Id-1", new BigDecimal("10")));
+    this.accountsService.createAccount(new Account("Id-2", new BigDecimal("300")));
+    this.accountsService.createAccount(new Account("Id-3", new BigDecimal("20.5")));
+    this.accountsService.createAccount(new Account("Id-4", new BigDecimal("20.5")));
+
+    this.mockMvc.perform(get("/v1/accounts?orderBy=balance&limit=3"))
+      .andExpect(status().isOk())
+      .andExpect(content().json("[{\"accountId\":\"Id-2\",\"balance\":300},"
+        + "{\"accountId\":\"Id-4\",\"balance\":20.5},{\"accountId\":\"Id-3\",\"balance\":20.5}]", true));
+
+    this.mockMvc.perform(get("/v1/accounts?orderBy=balance&order=asc&minBalance=10.01&maxBalance=20.5"))
+      .andExpect(status().isOk())
+      .andExpect(content().json("[{\"accountId\":\"Id-3\",\"balance\":20.5},"
+        + "{\"accountId\":\"Id-4\",\"balance\":20.5}]", true));
+  }
+
+  @Test
+  void getAccountsRejectsUnsupportedOrder() throws Exception {
+    this.mockMvc.perform(get("/v1/accounts?orderBy=accountId"))
+      .andExpect(status().isBadRequest());
+    this.mockMvc.perform(get("/v1/accounts?orderBy=balance&limit=0"))
+      .andExpect(status().isBadRequest());
+  }
 }
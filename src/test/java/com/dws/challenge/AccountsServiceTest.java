@@ -4,10 +4,17 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Hold;
 import com.dws.challenge.exception.DuplicateAccountIdException;
 import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.BalanceChangePublisher;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -21,6 +28,9 @@ class AccountsServiceTest {
   @Autowired
   private AccountsService accountsService;
 
+  @Autowired
+  private BalanceChangePublisher balanceChangePublisher;
+
   @Test
   void addAccount() {
     Account account = new Account("Id-123");
@@ -43,4 +53,37 @@ class AccountsServiceTest {
       assertThat(ex.getMessage()).isEqualTo("Account id " + uniqueId + " already exists!");
     }
   }
+
+  @Test
+  void publishesCreatedAccountCapturedHoldAndCredit() throws Exception {
+    String accountId = "Id-held-" + System.nanoTime();
+    BlockingQueue<Account> received = new LinkedBlockingQueue<>();
+    BalanceChangePublisher.Subscription subscription =
+      this.balanceChangePublisher.subscribe(Set.of(accountId), received::addAll);
+    try {
+      this.accountsService.createAccount(new Account(accountId, new BigDecimal(100)));
+      assertThat(received.poll(5, TimeUnit.SECONDS)).isNotNull();
+
+      Hold hold = this.accountsService.authorizeHold(accountId, new BigDecimal(30), Duration.ofMinutes(1));
+      Account captured = this.accountsService.captureHold(accountId, hold.getHoldId());
+
+      // states may be coalesced, but the captured one is delivered last
+      Account delivered = received.poll(5, TimeUnit.SECONDS);
+      while (delivered != null && delivered.getVersion() < captured.getVersion()) {
+        delivered = received.poll(5, TimeUnit.SECONDS);
+      }
+      assertThat(delivered).isEqualTo(captured);
+      assertThat(delivered.getBalance()).isEqualByComparingTo("70");
+
+      Account credited = this.accountsService.credit(accountId, new BigDecimal(5));
+      delivered = received.poll(5, TimeUnit.SECONDS);
+      while (delivered != null && delivered.getVersion() < credited.getVersion()) {
+        delivered = received.poll(5, TimeUnit.SECONDS);
+      }
+      assertThat(delivered).isEqualTo(credited);
+      assertThat(delivered.getBalance()).isEqualByComparingTo("75");
+    } finally {
+      this.balanceChangePublisher.unsubscribe(subscription);
+    }
+  }
 }
@@ -0,0 +1,225 @@
+package com.dws.challenge;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Checks that a concurrent history of account operations is linearizable against a sequential model of accounts,
+ * using Wing and Gong search with memoization of already explored (linearized steps, balances) pairs.
+ * Accounts are numbered and balances are whole numbers.
+ * <p>
+ * Reads do not lock accounts, so they see the debit and the credit of a transfer take effect separately. The model
+ * therefore linearizes a completed transfer as two steps, the debit, which decides the outcome, and the credit,
+ * each at its own point within the transfer, in either order. Transfers lock their accounts, so no other transfer
+ * of the same accounts is linearized in between. Every account on its own is linearizable, while a transfer in
+ * progress may be seen half way by reads of both of its accounts. Accounts are limited to 64.
+ */
+public class LinearizabilityChecker {
+
+    private static final long NOT_EXISTING = -1;
+
+    public enum Outcome {
+        OK, DUPLICATE, INSUFFICIENT_FUNDS, NOT_EXISTING
+    }
+
+    public static final class Operation {
+        private final String description;
+        private final long invokedAt;
+        private final long respondedAt;
+        // bit mask of accounts locked between the steps
+        private final long lockedAccounts;
+        // linearized separately, the operation takes effect once all of them are
+        private final Step[] steps;
+
+        private Operation(String description, long invokedAt, long respondedAt, long lockedAccounts, Step... steps) {
+            if (respondedAt < invokedAt) {
+                throw new IllegalArgumentException("Operation " + description + " responded before invocation");
+            }
+            this.description = description;
+            this.invokedAt = invokedAt;
+            this.respondedAt = respondedAt;
+            this.lockedAccounts = lockedAccounts;
+            this.steps = steps;
+        }
+
+        public static Operation create(int account, long balance, Outcome outcome, long invokedAt, long respondedAt) {
+            return new Operation("create(" + account + ", " + balance + ") -> " + outcome, invokedAt, respondedAt, 0,
+                    balances -> {
+                        if (balances[account] != NOT_EXISTING) {
+                            return outcome == Outcome.DUPLICATE;
+                        }
+                        balances[account] = balance;
+                        return outcome == Outcome.OK;
+                    });
+        }
+
+        public static Operation transfer(int from, int to, long amount, Outcome outcome,
+                                         long invokedAt, long respondedAt) {
+            String description = "transfer(" + from + ", " + to + ", " + amount + ") -> " + outcome;
+            Step debit = balances -> {
+                if (balances[from] == NOT_EXISTING || balances[to] == NOT_EXISTING) {
+                    return outcome == Outcome.NOT_EXISTING;
+                }
+                if (balances[from] < amount) {
+                    return outcome == Outcome.INSUFFICIENT_FUNDS;
+                }
+                balances[from] -= amount;
+                return outcome == Outcome.OK;
+            };
+            // a transfer which finds an account missing may fail before it locks the other one
+            long lockedAccounts = outcome != Outcome.NOT_EXISTING ? (1L << from) | (1L << to) : 0;
+            if (outcome != Outcome.OK) {
+                return new Operation(description, invokedAt, respondedAt, lockedAccounts, debit);
+            }
+            // accounts are never removed, so the credit needs no checks of its own
+            Step credit = balances -> {
+                balances[to] += amount;
+                return true;
+            };
+            return new Operation(description, invokedAt, respondedAt, lockedAccounts, debit, credit);
+        }
+
+        /**
+         * @param balance read balance or null if account did not exist
+         */
+        public static Operation read(int account, Long balance, long invokedAt, long respondedAt) {
+            long expected = balance != null ? balance : NOT_EXISTING;
+            return new Operation("read(" + account + ") -> " + balance, invokedAt, respondedAt, 0,
+                    balances -> balances[account] == expected);
+        }
+
+        @Override
+        public String toString() {
+            return description + " [" + invokedAt + ", " + respondedAt + "]";
+        }
+    }
+
+    private interface Step {
+        /**
+         * Applies operation to balances, which are left in undefined state if outcome does not match.
+         *
+         * @return true if the model gives the same outcome
+         */
+        boolean apply(long[] balances);
+    }
+
+    // steps of all operations
+    private final Operation[] stepOperations;
+    private final Step[] steps;
+    // index of the other step of the same operation, or -1 if it has one step only
+    private final int[] otherSteps;
+    private final Set<State> explored = new HashSet<>();
+
+    private LinearizabilityChecker(List<Operation> operations) {
+        List<Operation> stepOperations = new ArrayList<>();
+        List<Step> steps = new ArrayList<>();
+        for (Operation operation : operations) {
+            if (operation.steps.length > 2) {
+                throw new IllegalArgumentException("Operation " + operation + " has more than two steps");
+            }
+            for (Step step : operation.steps) {
+                stepOperations.add(operation);
+                steps.add(step);
+            }
+        }
+        this.stepOperations = stepOperations.toArray(new Operation[0]);
+        this.steps = steps.toArray(new Step[0]);
+        this.otherSteps = new int[this.steps.length];
+        for (int i = 0; i < otherSteps.length; i++) {
+            otherSteps[i] = stepOperations.get(i).steps.length == 1 ? -1
+                    : i > 0 && stepOperations.get(i - 1) == stepOperations.get(i) ? i - 1 : i + 1;
+        }
+    }
+
+    /**
+     * @param initialBalances balances before the history, null for accounts which did not exist
+     * @return operations in an order which explains the history or null if there is no such order
+     */
+    public static List<Operation> linearize(Long[] initialBalances, List<Operation> history) {
+        long[] balances = new long[initialBalances.length];
+        for (int i = 0; i < balances.length; i++) {
+            balances[i] = initialBalances[i] != null ? initialBalances[i] : NOT_EXISTING;
+        }
+
+        LinearizabilityChecker checker = new LinearizabilityChecker(history);
+        List<Operation> order = new ArrayList<>(history.size());
+        return checker.search(new BitSet(), balances, order) ? order : null;
+    }
+
+    /**
+     * @param order operations in order of their last linearized step
+     */
+    private boolean search(BitSet linearized, long[] balances, List<Operation> order) {
+        int count = steps.length;
+        if (linearized.cardinality() == count) {
+            return true;
+        }
+        if (!explored.add(new State(linearized, balances))) {
+            return false;
+        }
+
+        // the next step must have been invoked before any pending operation responded, and no other transfer of
+        // accounts locked by a transfer half way may step in
+        long earliestResponse = Long.MAX_VALUE;
+        long lockedAccounts = 0;
+        for (int i = linearized.nextClearBit(0); i < count; i = linearized.nextClearBit(i + 1)) {
+            earliestResponse = Math.min(earliestResponse, stepOperations[i].respondedAt);
+            if (otherSteps[i] >= 0 && linearized.get(otherSteps[i])) {
+                lockedAccounts |= stepOperations[i].lockedAccounts;
+            }
+        }
+
+        for (int i = linearized.nextClearBit(0); i < count; i = linearized.nextClearBit(i + 1)) {
+            boolean halfWay = otherSteps[i] >= 0 && linearized.get(otherSteps[i]);
+            if (stepOperations[i].invokedAt > earliestResponse
+                    || !halfWay && (stepOperations[i].lockedAccounts & lockedAccounts) != 0) {
+                continue;
+            }
+
+            long[] next = balances.clone();
+            if (steps[i].apply(next)) {
+                BitSet nextLinearized = (BitSet) linearized.clone();
+                nextLinearized.set(i);
+                boolean completed = otherSteps[i] < 0 || halfWay;
+                if (completed) {
+                    order.add(stepOperations[i]);
+                }
+                if (search(nextLinearized, next, order)) {
+                    return true;
+                }
+                if (completed) {
+                    order.remove(order.size() - 1);
+                }
+            }
+        }
+        return false;
+    }
+
+    private static final class State {
+        private final BitSet linearized;
+        private final long[] balances;
+
+        State(BitSet linearized, long[] balances) {
+            this.linearized = linearized;
+            this.balances = balances;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof State)) {
+                return false;
+            }
+            State state = (State) o;
+            return linearized.equals(state.linearized) && Arrays.equals(balances, state.balances);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * linearized.hashCode() + Arrays.hashCode(balances);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.dws.challenge;
+
+import com.dws.challenge.LinearizabilityChecker.Operation;
+import com.dws.challenge.LinearizabilityChecker.Outcome;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LinearizabilityCheckerTest {
+
+    @Test
+    void ordersConcurrentOperations() {
+        // read which started before the transfer completed sees it, so the transfer goes first
+        List<Operation> order = LinearizabilityChecker.linearize(new Long[] {100L, 0L}, List.of(
+                Operation.read(1, 30L, 0, 10),
+                Operation.transfer(0, 1, 30, Outcome.OK, 2, 8),
+                Operation.read(0, 70L, 9, 12)));
+
+        assertThat(order).extracting(Operation::toString)
+                .containsExactly("transfer(0, 1, 30) -> OK [2, 8]", "read(1) -> 30 [0, 10]", "read(0) -> 70 [9, 12]");
+    }
+
+    @Test
+    void acceptsTransferObservedHalfWayWhileInProgress() {
+        // debit is seen by the first read, but credit is not seen by the later one, as reads don't lock accounts
+        assertThat(LinearizabilityChecker.linearize(new Long[] {100L, 0L}, List.of(
+                Operation.transfer(0, 1, 30, Outcome.OK, 0, 20),
+                Operation.read(0, 70L, 1, 2),
+                Operation.read(1, 0L, 3, 4)))).isNotNull();
+        assertThat(LinearizabilityChecker.linearize(new Long[] {100L, 0L}, List.of(
+                Operation.transfer(0, 1, 30, Outcome.OK, 0, 20),
+                Operation.read(1, 30L, 1, 2),
+                Operation.read(0, 100L, 3, 4)))).isNotNull();
+    }
+
+    @Test
+    void detectsTransferObservedHalfWayOnceCompleted() {
+        assertThat(LinearizabilityChecker.linearize(new Long[] {100L, 0L}, List.of(
+                Operation.transfer(0, 1, 30, Outcome.OK, 0, 2),
+                Operation.read(0, 70L, 3, 4),
+                Operation.read(1, 0L, 5, 6)))).isNull();
+    }
+
+    @Test
+    void decidesTransferOutcomeByDebit() {
+        // credit of the first transfer can't fund the second one before the first one is debited
+        assertThat(LinearizabilityChecker.linearize(new Long[] {30L, 0L, 0L}, List.of(
+                Operation.transfer(0, 1, 30, Outcome.OK, 0, 10),
+                Operation.transfer(1, 2, 30, Outcome.OK, 1, 5),
+                Operation.read(0, 30L, 6, 7)))).isNull();
+    }
+
+    @Test
+    void detectsLostUpdate() {
+        assertThat(LinearizabilityChecker.linearize(new Long[] {100L, 0L}, List.of(
+                Operation.transfer(0, 1, 30, Outcome.OK, 0, 5),
+                Operation.transfer(0, 1, 50, Outcome.OK, 1, 6),
+                Operation.read(0, 50L, 7, 8)))).isNull();
+    }
+
+    @Test
+    void detectsOverdraft() {
+        assertThat(LinearizabilityChecker.linearize(new Long[] {50L, 0L}, List.of(
+                Operation.transfer(0, 1, 30, Outcome.OK, 0, 5),
+                Operation.transfer(0, 1, 30, Outcome.OK, 1, 6)))).isNull();
+    }
+
+    @Test
+    void checksOutcomesAgainstAccountExistence() {
+        assertThat(LinearizabilityChecker.linearize(new Long[] {50L, null}, List.of(
+                Operation.transfer(0, 1, 10, Outcome.OK, 0, 5),
+                Operation.create(1, 5, Outcome.OK, 1, 6),
+                Operation.create(1, 7, Outcome.DUPLICATE, 2, 7),
+                Operation.read(1, 15L, 8, 9)))).isNotNull();
+
+        assertThat(LinearizabilityChecker.linearize(new Long[] {50L, null}, List.of(
+                Operation.create(1, 5, Outcome.OK, 0, 1),
+                Operation.transfer(0, 1, 10, Outcome.NOT_EXISTING, 2, 3)))).isNull();
+    }
+}
@@ -0,0 +1,135 @@
+package com.dws.challenge;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.MultiLegTransferRequest;
+import com.dws.challenge.domain.TransferLeg;
+import com.dws.challenge.domain.TransferRequest;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.traffic.ReplayReport;
+import com.dws.challenge.traffic.TrafficRecorder;
+import com.dws.challenge.traffic.TrafficReplayer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+@SpringBootTest
+public class TrafficReplayTest {
+
+    @TempDir
+    static Path tempDir;
+
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+
+    @Autowired
+    private AccountsRepository accountsRepository;
+
+    @Autowired
+    private TrafficRecorder trafficRecorder;
+
+    @Autowired
+    private TrafficReplayer trafficReplayer;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @TestConfiguration
+    static class RecordingConfiguration {
+        @Bean
+        @Primary
+        TrafficRecorder testTrafficRecorder() {
+            return new TrafficRecorder(tempDir.resolve("traffic.trace").toString());
+        }
+    }
+
+    @Test
+    void replaysRecordedTrafficToSameState() throws Exception {
+        accountsRepository.clearAccounts();
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+
+        createAccount(mockMvc, "Id-1", "1000");
+        createAccount(mockMvc, "Id-2", "50.5");
+        createAccount(mockMvc, "Id-1", "10");
+        for (int i = 0; i < 20; i++) {
+            transfer(mockMvc, i % 2 == 0 ? "Id-1" : "Id-2", i % 2 == 0 ? "Id-2" : "Id-1", String.valueOf((i + 1) * 7));
+        }
+        transfer(mockMvc, "Id-1", "Id-3", "1");
+        multiLegTransfer(mockMvc, "Id-2", "Id-1", "Id-3");
+        multiLegTransfer(mockMvc, "Id-2", "Id-1");
+        trafficRecorder.close();
+
+        String recordedChecksum = trafficReplayer.checksum(new TreeSet<>(List.of("Id-1", "Id-2", "Id-3")));
+        Account recordedAccount = accountsRepository.getAccount("Id-1");
+
+        accountsRepository.clearAccounts();
+        ReplayReport report = trafficReplayer.replay(tempDir.resolve("traffic.trace"), false);
+
+        assertThat(report.getAccountCreations()).isEqualTo(3);
+        assertThat(report.getTransfers()).isEqualTo(23);
+        assertThat(report.getFailedOperations()).isGreaterThanOrEqualTo(3);
+        assertThat(report.getMaxNanos()).isGreaterThanOrEqualTo(report.getP50Nanos());
+        assertThat(report.getChecksum()).isEqualTo(recordedChecksum);
+        assertThat(accountsRepository.getAccount("Id-1").getBalance()).isEqualTo(recordedAccount.getBalance());
+    }
+
+    @Test
+    void checksumDependsOnBalances() {
+        accountsRepository.clearAccounts();
+        accountsRepository.createAccount(new Account("Id-1", new BigDecimal("10.00")));
+        String checksum = trafficReplayer.checksum(new TreeSet<>(List.of("Id-1")));
+
+        accountsRepository.clearAccounts();
+        accountsRepository.createAccount(new Account("Id-1", new BigDecimal("10")));
+        assertThat(trafficReplayer.checksum(new TreeSet<>(List.of("Id-1")))).isEqualTo(checksum);
+
+        accountsRepository.clearAccounts();
+        accountsRepository.createAccount(new Account("Id-1", new BigDecimal("11")));
+        assertThat(trafficReplayer.checksum(new TreeSet<>(List.of("Id-1")))).isNotEqualTo(checksum);
+    }
+
+    private void createAccount(MockMvc mockMvc, String accountId, String balance) throws Exception {
+        mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"accountId\":\"" + accountId + "\",\"balance\":" + balance + "}"));
+    }
+
+    private void transfer(MockMvc mockMvc, String from, String to, String amount) throws Exception {
+        TransferRequest transferRequest = TransferRequest.builder()
+                .accountFromId(from)
+                .accountToId(to)
+                .amount(new BigDecimal(amount))
+                .build();
+        mockMvc.perform(post("/v1/transfers").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(transferRequest)));
+    }
+
+    private void multiLegTransfer(MockMvc mockMvc, String from, String... to) throws Exception {
+        List<TransferLeg> legs = new ArrayList<>();
+        for (String accountToId : to) {
+            legs.add(TransferLeg.builder().accountToId(accountToId).amount(BigDecimal.ONE).build());
+        }
+        MultiLegTransferRequest transferRequest = MultiLegTransferRequest.builder()
+                .accountFromId(from)
+                .legs(legs)
+                .build();
+        mockMvc.perform(post("/v1/transfers/multi-leg").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(transferRequest)));
+    }
+}
@@ -0,0 +1,124 @@
+package com.dws.challenge;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.TransferRequest;
+import com.dws.challenge.exception.InvalidTransferException;
+import com.dws.challenge.exception.TransferRejectedException;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.service.TransferCheck;
+import com.dws.challenge.service.TransferListener;
+import com.dws.challenge.service.TransfersService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Bean;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verify;
+
+@SpringBootTest(properties = {
+        "transfers.velocity.enabled=true",
+        "transfers.velocity.max-count=2",
+        "transfers.velocity.max-amount=1000"})
+public class TransferPipelineTest {
+
+    // velocity limits outlive the accounts, so every test uses its own accounts
+    private static final AtomicInteger testNumber = new AtomicInteger();
+
+    private String account1Id;
+    private String account2Id;
+
+    @Autowired
+    private TransfersService transfersService;
+
+    @SpyBean
+    private AccountsRepository accountsRepository;
+
+    @MockBean
+    private TransferListener transferListener;
+
+    @TestConfiguration
+    static class ChecksConfiguration {
+        @Bean
+        TransferCheck noTransfersToBlockedAccount() {
+            return transfer -> {
+                if ("blocked".equals(transfer.getAccountToId())) {
+                    throw new InvalidTransferException("Blocked account");
+                }
+            };
+        }
+    }
+
+    @BeforeEach
+    void beforeEach() {
+        account1Id = "account-1-" + testNumber.incrementAndGet();
+        account2Id = "account-2-" + testNumber.get();
+        accountsRepository.clearAccounts();
+        accountsRepository.createAccount(new Account(account1Id, new BigDecimal(100)));
+        accountsRepository.createAccount(new Account(account2Id, new BigDecimal(20)));
+        accountsRepository.createAccount(new Account("blocked", new BigDecimal(0)));
+        reset(accountsRepository);
+    }
+
+    @Test
+    void rejectsTransfersOverVelocityLimitBeforeLocking() throws Exception {
+        transfersService.transfer(transfer(account1Id, account2Id, "10"));
+        transfersService.transfer(transfer(account1Id, account2Id, "10"));
+        reset(accountsRepository);
+
+        assertThatThrownBy(() -> transfersService.transfer(transfer(account1Id, account2Id, "10")))
+                .isInstanceOf(TransferRejectedException.class)
+                .hasMessage("Transfer velocity limit reached for account");
+
+        verify(accountsRepository, never()).lockAccount(anyString());
+        assertThat(accountsRepository.getAccount(account1Id).getBalance()).isEqualByComparingTo("80");
+    }
+
+    @Test
+    void failedTransfersDoNotCountTowardsVelocityLimit() throws InvalidTransferException {
+        assertThatThrownBy(() -> transfersService.transfer(transfer(account2Id, account1Id, "500")))
+                .hasMessage("Insufficient funds");
+        assertThatThrownBy(() -> transfersService.transfer(transfer(account2Id, account1Id, "500")))
+                .hasMessage("Insufficient funds");
+
+        transfersService.transfer(transfer(account2Id, account1Id, "5"));
+        transfersService.transfer(transfer(account2Id, account1Id, "5"));
+    }
+
+    @Test
+    void runsCustomChecksBeforeLocking() throws Exception {
+        assertThatThrownBy(() -> transfersService.transfer(transfer(account1Id, "blocked", "10")))
+                .isInstanceOf(InvalidTransferException.class)
+                .hasMessage("Blocked account");
+
+        verify(accountsRepository, never()).lockAccount(anyString());
+    }
+
+    @Test
+    void notifiesListenersAfterCommit() throws InvalidTransferException {
+        TransferRequest transfer = transfer(account1Id, account2Id, "30");
+        transfersService.transfer(transfer);
+
+        verify(transferListener).transferCompleted(transfer,
+                new Account(account1Id, new BigDecimal(70)), new Account(account2Id, new BigDecimal(50)));
+    }
+
+    private static TransferRequest transfer(String from, String to, String amount) {
+        return TransferRequest.builder()
+                .accountFromId(from)
+                .accountToId(to)
+                .amount(new BigDecimal(amount))
+                .build();
+    }
+}
@@ -80,6 +80,7 @@ public class TransfersControllerTest {
                 .andReturn();
 
         assertThat(mvcResult.getResponse().getContentAsString())
+                .contains("\"failureCode\":\"INSUFFICIENT_FUNDS\"")
                 .contains("\"failureReason\":\"Insufficient funds\"");
 
         assertThat(accountsRepository.getAccount("account-1"))
@@ -160,6 +161,81 @@ public class TransfersControllerTest {
 
 
 
+    @Test
+    void transfersFundsToSeveralAccounts() throws Exception {
+        accountsRepository.createAccount(new Account("account-1", new BigDecimal(100)));
+        accountsRepository.createAccount(new Account("account-2", new BigDecimal(0)));
+        accountsRepository.createAccount(new Account("account-3", new BigDecimal(0)));
+
+        MvcResult mvcResult = this.mockMvc
+                .perform(
+                        post("/v1/transfers/multi-leg")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"accountFromId\":\"account-1\",\"legs\":["
+                                        + "{\"accountToId\":\"account-2\",\"amount\":45},"
+                                        + "{\"accountToId\":\"account-3\",\"amount\":30}]}"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        assertThat(mvcResult.getResponse().getContentAsString())
+                .contains("\"accountFromId\":\"account-1\"")
+                .contains("\"totalAmount\":75");
+
+        assertThat(accountsRepository.getAccount("account-1"))
+                .isEqualTo(new Account("account-1", new BigDecimal(25)));
+        assertThat(accountsRepository.getAccount("account-2"))
+                .isEqualTo(new Account("account-2", new BigDecimal(45)));
+        assertThat(accountsRepository.getAccount("account-3"))
+                .isEqualTo(new Account("account-3", new BigDecimal(30)));
+    }
+
+    @Test
+    void doesNotTransferFundsToSeveralAccountsIfInsufficientAmount() throws Exception {
+        accountsRepository.createAccount(new Account("account-1", new BigDecimal(100)));
+        accountsRepository.createAccount(new Account("account-2", new BigDecimal(0)));
+        accountsRepository.createAccount(new Account("account-3", new BigDecimal(0)));
+
+        MvcResult mvcResult = this.mockMvc
+                .perform(
+                        post("/v1/transfers/multi-leg")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"accountFromId\":\"account-1\",\"legs\":["
+                                        + "{\"accountToId\":\"account-2\",\"amount\":45},"
+                                        + "{\"accountToId\":\"account-3\",\"amount\":60}]}"))
+                .andExpect(status().isBadRequest())
+                .andReturn();
+
+        assertThat(mvcResult.getResponse().getContentAsString())
+                .contains("\"failureCode\":\"INSUFFICIENT_FUNDS\"")
+                .contains("\"failureReason\":\"Insufficient funds\"");
+
+        assertThat(accountsRepository.getAccount("account-1"))
+                .isEqualTo(new Account("account-1", new BigDecimal(100)));
+        assertThat(accountsRepository.getAccount("account-2"))
+                .isEqualTo(new Account("account-2", new BigDecimal(0)));
+    }
+
+    @Test
+    void rejectsMultiLegTransferWithoutLegs() throws Exception {
+        this.mockMvc
+                .perform(
+                        post("/v1/transfers/multi-leg")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"accountFromId\":\"account-1\",\"legs\":[]}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void rejectsMultiLegTransferWithNegativeAmount() throws Exception {
+        this.mockMvc
+                .perform(
+                        post("/v1/transfers/multi-leg")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"accountFromId\":\"account-1\",\"legs\":["
+                                        + "{\"accountToId\":\"account-2\",\"amount\":-5}]}"))
+                .andExpect(status().isBadRequest());
+    }
+
     private String transferRequest(String accountFrom, String accountTo, Integer amount) {
         StringBuilder request = new StringBuilder();
         request.append("{");
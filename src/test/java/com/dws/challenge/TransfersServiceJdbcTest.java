@@ -0,0 +1,76 @@
+package com.dws.challenge;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.TransferRequest;
+import com.dws.challenge.exception.InvalidTransferException;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.AccountsRepositoryJdbc;
+import com.dws.challenge.service.TransfersService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "accounts.repository=jdbc")
+public class TransfersServiceJdbcTest {
+
+    @Autowired
+    private TransfersService transfersService;
+
+    @Autowired
+    private AccountsRepository accountsRepository;
+
+    @Test
+    void consistentlyTransfersFundsBetweenAccounts() throws Exception {
+        assertThat(accountsRepository).isInstanceOf(AccountsRepositoryJdbc.class);
+        accountsRepository.clearAccounts();
+
+        int accountsCount = 4;
+        BigDecimal initialDeposit = new BigDecimal(1000);
+        for (int i = 0; i < accountsCount; i++) {
+            accountsRepository.createAccount(new Account("account-" + i, initialDeposit));
+        }
+
+        Random random = new Random();
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            int from = random.nextInt(accountsCount);
+            int to = (from + 1 + random.nextInt(accountsCount - 1)) % accountsCount;
+            TransferRequest transferRequest = TransferRequest.builder()
+                    .accountFromId("account-" + from)
+                    .accountToId("account-" + to)
+                    .amount(new BigDecimal(1 + random.nextInt(100)))
+                    .build();
+
+            results.add(executorService.submit(() -> {
+                try {
+                    return transfersService.transfer(transferRequest);
+                } catch (InvalidTransferException e) {
+                    return null;
+                }
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get();
+        }
+        executorService.shutdown();
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < accountsCount; i++) {
+            Account account = accountsRepository.getAccount("account-" + i);
+            assertThat(account.getBalance()).isNotNegative();
+            total = total.add(account.getBalance());
+        }
+        assertThat(total).isEqualByComparingTo(initialDeposit.multiply(new BigDecimal(accountsCount)));
+    }
+}
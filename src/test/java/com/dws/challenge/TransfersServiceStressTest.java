@@ -0,0 +1,196 @@
+package com.dws.challenge;
+
+import com.dws.challenge.LinearizabilityChecker.Operation;
+import com.dws.challenge.LinearizabilityChecker.Outcome;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.TransferRequest;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.InvalidTransferException;
+import com.dws.challenge.exception.NotExistingAccountException;
+import com.dws.challenge.exception.TransferRejectedException;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.NotificationService;
+import com.dws.challenge.service.TransfersService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs rounds of random concurrent account creations, transfers and reads, and checks each round for conservation
+ * of money, non-negative balances and linearizability of the recorded history.
+ */
+@SpringBootTest
+public class TransfersServiceStressTest {
+
+    private static final int ROUNDS = 300;
+    private static final int THREADS = 6;
+    private static final int OPERATIONS_PER_THREAD = 9;
+    private static final int ACCOUNTS = 4;
+    // accounts with higher numbers are created during the round
+    private static final int INITIAL_ACCOUNTS = 2;
+
+    @Autowired
+    private TransfersService transfersService;
+
+    @Autowired
+    private AccountsRepository accountsRepository;
+
+    @MockBean
+    private NotificationService notificationService;
+
+    @Test
+    void concurrentHistoriesAreLinearizable() throws Exception {
+        assertThat(accountsRepository).isInstanceOf(AccountsRepositoryInMemory.class);
+
+        long seed = System.nanoTime();
+        Random random = new Random(seed);
+        ExecutorService executorService = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                runRound(executorService, new Random(random.nextLong()), "seed " + seed + ", round " + round);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private void runRound(ExecutorService executorService, Random random, String description) throws Exception {
+        accountsRepository.clearAccounts();
+
+        Long[] initialBalances = new Long[ACCOUNTS];
+        long expectedTotal = 0;
+        for (int account = 0; account < INITIAL_ACCOUNTS; account++) {
+            initialBalances[account] = (long) random.nextInt(100);
+            expectedTotal += initialBalances[account];
+            accountsRepository.createAccount(new Account(accountId(account), BigDecimal.valueOf(initialBalances[account])));
+        }
+
+        ConcurrentLinkedQueue<Operation> history = new ConcurrentLinkedQueue<>();
+        ConcurrentLinkedQueue<Long> createdBalances = new ConcurrentLinkedQueue<>();
+        CyclicBarrier start = new CyclicBarrier(THREADS);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            Random threadRandom = new Random(random.nextLong());
+            workers.add(executorService.submit(() -> {
+                start.await();
+                for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                    Operation operation = randomOperation(threadRandom, createdBalances);
+                    if (operation != null) {
+                        history.add(operation);
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+
+        // final state is read once all operations completed, so it's checked as part of the history too
+        long total = 0;
+        for (int account = 0; account < ACCOUNTS; account++) {
+            history.add(read(account));
+            Account finalAccount = accountsRepository.getAccount(accountId(account));
+            if (finalAccount != null) {
+                assertThat(finalAccount.getBalance().signum()).as(description).isGreaterThanOrEqualTo(0);
+                total += finalAccount.getBalance().longValueExact();
+            }
+        }
+        for (Long createdBalance : createdBalances) {
+            expectedTotal += createdBalance;
+        }
+        assertThat(total).as("Total balance, %s", description).isEqualTo(expectedTotal);
+
+        List<Operation> operations = new ArrayList<>(history);
+        assertThat(LinearizabilityChecker.linearize(initialBalances, operations))
+                .as("Linearization of %s, %s", operations, description)
+                .isNotNull();
+    }
+
+    /**
+     * @return completed operation or null if transfer was throttled without any effect
+     */
+    private Operation randomOperation(Random random, ConcurrentLinkedQueue<Long> createdBalances) {
+        int account = random.nextInt(ACCOUNTS);
+        int choice = random.nextInt(10);
+        if (choice == 0) {
+            return create(account, random.nextInt(100), createdBalances);
+        } else if (choice < 4) {
+            return read(account);
+        }
+
+        int otherAccount = (account + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+        return transfer(account, otherAccount, 1 + random.nextInt(60));
+    }
+
+    private Operation create(int account, long balance, ConcurrentLinkedQueue<Long> createdBalances) {
+        Outcome outcome;
+        long invokedAt = System.nanoTime();
+        try {
+            accountsRepository.createAccount(new Account(accountId(account), BigDecimal.valueOf(balance)));
+            outcome = Outcome.OK;
+        } catch (DuplicateAccountIdException e) {
+            outcome = Outcome.DUPLICATE;
+        }
+        long respondedAt = System.nanoTime();
+
+        if (outcome == Outcome.OK) {
+            createdBalances.add(balance);
+        }
+        return Operation.create(account, balance, outcome, invokedAt, respondedAt);
+    }
+
+    private Operation transfer(int from, int to, long amount) {
+        TransferRequest transferRequest = TransferRequest.builder()
+                .accountFromId(accountId(from))
+                .accountToId(accountId(to))
+                .amount(BigDecimal.valueOf(amount))
+                .build();
+
+        Outcome outcome;
+        long invokedAt = System.nanoTime();
+        try {
+            transfersService.transfer(transferRequest);
+            outcome = Outcome.OK;
+        } catch (TransferRejectedException e) {
+            return null;
+        } catch (InvalidTransferException e) {
+            outcome = e.getCause() instanceof NotExistingAccountException
+                    ? Outcome.NOT_EXISTING
+                    : Outcome.INSUFFICIENT_FUNDS;
+        }
+        long respondedAt = System.nanoTime();
+
+        return Operation.transfer(from, to, amount, outcome, invokedAt, respondedAt);
+    }
+
+    private Operation read(int account) {
+        long invokedAt = System.nanoTime();
+        Account read = accountsRepository.getAccount(accountId(account));
+        long respondedAt = System.nanoTime();
+
+        Long balance = read != null ? read.getBalance().longValueExact() : null;
+        if (balance != null) {
+            assertThat(balance).isGreaterThanOrEqualTo(0);
+        }
+        return Operation.read(account, balance, invokedAt, respondedAt);
+    }
+
+    private static String accountId(int account) {
+        return "stress-" + account;
+    }
+}
@@ -1,8 +1,13 @@
 package com.dws.challenge;
 
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.MultiLegTransferExecution;
+import com.dws.challenge.domain.MultiLegTransferOutcome;
+import com.dws.challenge.domain.MultiLegTransferRequest;
+import com.dws.challenge.domain.TransferLeg;
 import com.dws.challenge.domain.TransferRequest;
 import com.dws.challenge.domain.TransferExecution;
+import com.dws.challenge.domain.TransferOutcome;
 import com.dws.challenge.exception.InvalidTransferException;
 import com.dws.challenge.repository.AccountsRepository;
 import com.dws.challenge.service.NotificationService;
@@ -19,6 +24,8 @@ import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.*;
@@ -36,6 +43,7 @@ public class TransfersServiceTest {
 
     private static final String ACCOUNT_1_ID = "account-1";
     private static final String ACCOUNT_2_ID = "account-2";
+    private static final String ACCOUNT_3_ID = "account-3";
 
     @Autowired
     private TransfersService transfersService;
@@ -97,6 +105,32 @@ public class TransfersServiceTest {
         verify(notificationService, never()).notifyAboutTransfer(any(), any());
     }
 
+    @Test
+    void returnsReasonOfFailedTransfer() {
+        TransferOutcome insufficientFunds = transfersService.tryTransfer(TransferRequest.builder()
+                .accountFromId(ACCOUNT_2_ID)
+                .accountToId(ACCOUNT_1_ID)
+                .amount(new BigDecimal(21))
+                .build());
+        TransferOutcome unknownAccount = transfersService.tryTransfer(TransferRequest.builder()
+                .accountFromId(ACCOUNT_1_ID)
+                .accountToId("unknown-account")
+                .amount(BigDecimal.ONE)
+                .build());
+
+        assertThat(insufficientFunds.isCompleted()).isFalse();
+        assertThat(insufficientFunds).isSameAs(TransferOutcome.INSUFFICIENT_FUNDS);
+        assertThat(unknownAccount.getReason()).isEqualTo(TransferOutcome.Reason.NOT_EXISTING_ACCOUNT);
+        assertThat(unknownAccount.getMessage()).isEqualTo("Invalid transfer: Account unknown-account does not exist");
+        assertThat(unknownAccount.getCause().getStackTrace()).isEmpty();
+
+        assertThat(accountsRepository.getAccount(ACCOUNT_1_ID))
+                .isEqualTo(new Account(ACCOUNT_1_ID, new BigDecimal(100)));
+        assertThat(accountsRepository.getAccount(ACCOUNT_2_ID))
+                .isEqualTo(new Account(ACCOUNT_2_ID, new BigDecimal(20)));
+        verify(notificationService, never()).notifyAboutTransfer(any(), any());
+    }
+
     @Test
     void failsToCreditUnknownAccount() {
         BigDecimal transferAmount = new BigDecimal(200);
@@ -207,6 +241,186 @@ public class TransfersServiceTest {
         assertThat(total).isEqualTo(initialDeposit.multiply(new BigDecimal(accountsCount)));
     }
 
+    @Test
+    void transfersFundsToSeveralAccounts() throws InvalidTransferException {
+        accountsRepository.createAccount(new Account(ACCOUNT_3_ID, new BigDecimal(5)));
+        MultiLegTransferRequest transferRequest = multiLegTransferRequest(ACCOUNT_2_ID,
+                leg(ACCOUNT_3_ID, 15), leg(ACCOUNT_1_ID, 4));
+
+        MultiLegTransferExecution transferExecution = transfersService.transfer(transferRequest);
+        assertThat(transferExecution.getAccountFromId()).isEqualTo(ACCOUNT_2_ID);
+        assertThat(transferExecution.getLegs()).isEqualTo(transferRequest.getLegs());
+        assertThat(transferExecution.getTotalAmount()).isEqualTo(new BigDecimal(19));
+
+        Account updated1 = new Account(ACCOUNT_1_ID, new BigDecimal(104));
+        Account updated2 = new Account(ACCOUNT_2_ID, new BigDecimal(1));
+        Account updated3 = new Account(ACCOUNT_3_ID, new BigDecimal(20));
+        assertThat(accountsRepository.getAccount(ACCOUNT_1_ID)).isEqualTo(updated1);
+        assertThat(accountsRepository.getAccount(ACCOUNT_2_ID)).isEqualTo(updated2);
+        assertThat(accountsRepository.getAccount(ACCOUNT_3_ID)).isEqualTo(updated3);
+
+        verify(notificationService).notifyAboutTransfer(updated2, "19 was credited to account-3, account-1");
+        verify(notificationService).notifyAboutTransfer(updated3, "15 was debited from account-2");
+        verify(notificationService).notifyAboutTransfer(updated1, "4 was debited from account-2");
+    }
+
+    @Test
+    void failsToTransferToSeveralAccountsIfInsufficientAmountForAllLegs() {
+        accountsRepository.createAccount(new Account(ACCOUNT_3_ID, new BigDecimal(5)));
+        MultiLegTransferRequest transferRequest = multiLegTransferRequest(ACCOUNT_2_ID,
+                leg(ACCOUNT_3_ID, 15), leg(ACCOUNT_1_ID, 6));
+
+        assertThatThrownBy(() -> transfersService.transfer(transferRequest))
+                .isInstanceOf(InvalidTransferException.class)
+                .hasMessage("Insufficient funds");
+
+        assertThat(accountsRepository.getAccount(ACCOUNT_1_ID))
+                .isEqualTo(new Account(ACCOUNT_1_ID, new BigDecimal(100)));
+        assertThat(accountsRepository.getAccount(ACCOUNT_2_ID))
+                .isEqualTo(new Account(ACCOUNT_2_ID, new BigDecimal(20)));
+        assertThat(accountsRepository.getAccount(ACCOUNT_3_ID))
+                .isEqualTo(new Account(ACCOUNT_3_ID, new BigDecimal(5)));
+
+        verify(notificationService, never()).notifyAboutTransfer(any(), any());
+    }
+
+    @Test
+    void failsToTransferToSeveralAccountsIfAnyIsUnknown() {
+        MultiLegTransferRequest transferRequest = multiLegTransferRequest(ACCOUNT_1_ID,
+                leg(ACCOUNT_2_ID, 10), leg("unknown-account", 10));
+
+        assertThatThrownBy(() -> transfersService.transfer(transferRequest))
+                .isInstanceOf(InvalidTransferException.class)
+                .hasMessage("Invalid transfer: Account unknown-account does not exist");
+
+        assertThat(accountsRepository.getAccount(ACCOUNT_1_ID))
+                .isEqualTo(new Account(ACCOUNT_1_ID, new BigDecimal(100)));
+        assertThat(accountsRepository.getAccount(ACCOUNT_2_ID))
+                .isEqualTo(new Account(ACCOUNT_2_ID, new BigDecimal(20)));
+
+        verify(notificationService, never()).notifyAboutTransfer(any(), any());
+    }
+
+    @Test
+    void returnsReasonOfFailedTransferToSeveralAccounts() {
+        MultiLegTransferOutcome insufficientFunds = transfersService.tryTransfer(multiLegTransferRequest(ACCOUNT_2_ID,
+                leg(ACCOUNT_1_ID, 21)));
+        MultiLegTransferOutcome unknownAccount = transfersService.tryTransfer(multiLegTransferRequest(ACCOUNT_2_ID,
+                leg(ACCOUNT_1_ID, 1), leg("unknown-account", 1)));
+        MultiLegTransferOutcome duplicateAccount = transfersService.tryTransfer(multiLegTransferRequest(ACCOUNT_2_ID,
+                leg(ACCOUNT_1_ID, 1), leg(ACCOUNT_1_ID, 1)));
+
+        assertThat(insufficientFunds.isCompleted()).isFalse();
+        assertThat(insufficientFunds.getExecution()).isNull();
+        assertThat(insufficientFunds.getFailure()).isSameAs(TransferOutcome.INSUFFICIENT_FUNDS);
+        assertThat(unknownAccount.getFailure().getReason()).isEqualTo(TransferOutcome.Reason.NOT_EXISTING_ACCOUNT);
+        assertThat(unknownAccount.getFailure().getCause().getStackTrace()).isEmpty();
+        assertThat(duplicateAccount.getFailure().getReason())
+                .isEqualTo(TransferOutcome.Reason.DUPLICATE_CREDIT_ACCOUNT);
+
+        assertThat(accountsRepository.getAccount(ACCOUNT_1_ID))
+                .isEqualTo(new Account(ACCOUNT_1_ID, new BigDecimal(100)));
+        assertThat(accountsRepository.getAccount(ACCOUNT_2_ID))
+                .isEqualTo(new Account(ACCOUNT_2_ID, new BigDecimal(20)));
+    }
+
+    @Test
+    void failsToTransferToSameAccountTwice() {
+        MultiLegTransferRequest transferRequest = multiLegTransferRequest(ACCOUNT_1_ID,
+                leg(ACCOUNT_2_ID, 10), leg(ACCOUNT_2_ID, 10));
+
+        assertThatThrownBy(() -> transfersService.transfer(transferRequest))
+                .isInstanceOf(InvalidTransferException.class)
+                .hasMessage("Duplicate credit account account-2");
+    }
+
+    @Test
+    void failsToTransferToDebitAccount() {
+        MultiLegTransferRequest transferRequest = multiLegTransferRequest(ACCOUNT_1_ID,
+                leg(ACCOUNT_2_ID, 10), leg(ACCOUNT_1_ID, 10));
+
+        assertThatThrownBy(() -> transfersService.transfer(transferRequest))
+                .isInstanceOf(InvalidTransferException.class)
+                .hasMessage("Same credit and debit accounts");
+
+        assertThat(accountsRepository.getAccount(ACCOUNT_2_ID))
+                .isEqualTo(new Account(ACCOUNT_2_ID, new BigDecimal(20)));
+    }
+
+    @Test
+    void consistentlyMixesMultiLegAndSingleTransfers() throws Exception {
+        accountsRepository.clearAccounts();
+
+        int accountsCount = 5;
+        int transfersCount = 5_000;
+        BigDecimal initialDeposit = new BigDecimal(3000);
+
+        for (int i = 0; i < accountsCount; i++) {
+            accountsRepository.createAccount(new Account("account-" + i, initialDeposit));
+        }
+
+        Random random = new Random();
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        List<Future<?>> transferResults = new ArrayList<>();
+        for (int i = 0; i < transfersCount; i++) {
+            boolean multiLeg = random.nextBoolean();
+            TransferRequest transferRequest = randomTransferRequest(random, accountsCount, 100);
+            MultiLegTransferRequest multiLegTransferRequest = randomMultiLegTransferRequest(random, accountsCount, 100);
+
+            transferResults.add(executorService.submit(() -> {
+                try {
+                    return multiLeg
+                            ? transfersService.transfer(multiLegTransferRequest)
+                            : transfersService.transfer(transferRequest);
+                } catch (InvalidTransferException e) {
+                    return null;
+                }
+            }));
+        }
+        for (Future<?> result : transferResults) {
+            result.get(10, TimeUnit.SECONDS);
+        }
+        executorService.shutdown();
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < accountsCount; i++) {
+            Account account = accountsRepository.getAccount("account-" + i);
+            assertThat(account.getBalance().signum()).isGreaterThanOrEqualTo(0);
+            total = total.add(account.getBalance());
+        }
+
+        assertThat(total).isEqualTo(initialDeposit.multiply(new BigDecimal(accountsCount)));
+    }
+
+    private static MultiLegTransferRequest multiLegTransferRequest(String accountFromId, TransferLeg... legs) {
+        return MultiLegTransferRequest.builder()
+                .accountFromId(accountFromId)
+                .legs(Arrays.asList(legs))
+                .build();
+    }
+
+    private static TransferLeg leg(String accountToId, int amount) {
+        return TransferLeg.builder()
+                .accountToId(accountToId)
+                .amount(new BigDecimal(amount))
+                .build();
+    }
+
+    private MultiLegTransferRequest randomMultiLegTransferRequest(Random random, int accountsCount, int maxAmount) {
+        List<Integer> accounts = new ArrayList<>();
+        for (int i = 0; i < accountsCount; i++) {
+            accounts.add(i);
+        }
+        Collections.shuffle(accounts, random);
+
+        int legsCount = 1 + random.nextInt(accountsCount - 1);
+        TransferLeg[] legs = new TransferLeg[legsCount];
+        for (int i = 0; i < legsCount; i++) {
+            legs[i] = leg("account-" + accounts.get(i + 1), 1 + random.nextInt(maxAmount));
+        }
+        return multiLegTransferRequest("account-" + accounts.get(0), legs);
+    }
+
     private TransferRequest randomTransferRequest(Random random, int accountsCount, int maxAmount) {
         int debitAccountId = random.nextInt(accountsCount);
         int creditAccountId;
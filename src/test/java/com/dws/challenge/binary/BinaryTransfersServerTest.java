@@ -0,0 +1,106 @@
+package com.dws.challenge.binary;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.TransferRequest;
+import com.dws.challenge.exception.InvalidTransferException;
+import com.dws.challenge.repository.AccountsRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {
+        "transfers.binary.enabled=true",
+        "transfers.binary.port=0",
+        "transfers.binary.max-in-flight=8"})
+public class BinaryTransfersServerTest {
+
+    @Autowired
+    private BinaryTransfersServer server;
+
+    @Autowired
+    private AccountsRepository accountsRepository;
+
+    private BinaryTransfersClient client;
+
+    @BeforeEach
+    void beforeEach() throws Exception {
+        accountsRepository.clearAccounts();
+        client = new BinaryTransfersClient("127.0.0.1", server.getPort());
+    }
+
+    @AfterEach
+    void afterEach() throws Exception {
+        client.close();
+    }
+
+    @Test
+    void executesPipelinedTransfers() throws Exception {
+        accountsRepository.createAccount(new Account("account-1", new BigDecimal(1000)));
+        accountsRepository.createAccount(new Account("account-2", new BigDecimal(1000)));
+
+        // more transfers in flight than the connection is allowed, the rest waits in the socket
+        List<CompletableFuture<Void>> transfers = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            transfers.add(client.transfer(i % 4 == 0
+                    ? transfer("account-2", "account-1", new BigDecimal("1.5"))
+                    : transfer("account-1", "account-2", new BigDecimal("2.5"))));
+        }
+        CompletableFuture.allOf(transfers.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+
+        assertThat(accountsRepository.getAccount("account-1").getBalance()).isEqualByComparingTo("850");
+        assertThat(accountsRepository.getAccount("account-2").getBalance()).isEqualByComparingTo("1150");
+    }
+
+    @Test
+    void queriesBalance() throws Exception {
+        accountsRepository.createAccount(new Account("account-1", new BigDecimal("123.45")));
+
+        Account account = client.getAccount("account-1").get(5, TimeUnit.SECONDS);
+
+        assertThat(account.getAccountId()).isEqualTo("account-1");
+        assertThat(account.getBalance()).isEqualByComparingTo("123.45");
+        assertThat(client.getAccount("account-2").get(5, TimeUnit.SECONDS)).isNull();
+    }
+
+    @Test
+    void failsInvalidTransfers() throws Exception {
+        accountsRepository.createAccount(new Account("account-1", new BigDecimal(10)));
+        accountsRepository.createAccount(new Account("account-2", new BigDecimal(10)));
+
+        assertInvalid(transfer("account-1", "account-1", BigDecimal.ONE), "Same credit and debit accounts");
+        assertInvalid(transfer("account-1", "account-2", BigDecimal.ZERO), "Transferred amount must be positive.");
+        assertInvalid(transfer("account-1", "account-2", new BigDecimal(11)), "Insufficient funds");
+        assertInvalid(transfer("account-1", "account-3", BigDecimal.ONE), "account-3");
+
+        // the connection stays usable after failed requests
+        client.transfer(transfer("account-1", "account-2", BigDecimal.TEN)).get(5, TimeUnit.SECONDS);
+        assertThat(accountsRepository.getAccount("account-2").getBalance()).isEqualByComparingTo("20");
+    }
+
+    private void assertInvalid(TransferRequest transferRequest, String message) {
+        assertThatThrownBy(() -> client.transfer(transferRequest).get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(InvalidTransferException.class)
+                .hasMessageContaining(message);
+    }
+
+    private static TransferRequest transfer(String accountFromId, String accountToId, BigDecimal amount) {
+        return TransferRequest.builder()
+                .accountFromId(accountFromId)
+                .accountToId(accountToId)
+                .amount(amount)
+                .build();
+    }
+}
@@ -0,0 +1,196 @@
+package com.dws.challenge.cluster;
+
+import com.dws.challenge.ChallengeApplication;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.service.AccountsService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs nodes of a cluster as separate application contexts of this JVM on ephemeral ports, each with its own
+ * accounts and coordinator log. Nodes talk to each other only over HTTP, like processes do, but they are not
+ * separate processes.
+ */
+public class ClusterTest {
+
+    private static final int ACCOUNTS = 40;
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal(1000);
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+
+    @AfterEach
+    void afterEach() {
+        nodes.forEach(ConfigurableApplicationContext::close);
+    }
+
+    @Test
+    void routesRequestsAndTransfersBetweenNodes() throws Exception {
+        ConfigurableApplicationContext node1 = startNode("node-1", null);
+        ConfigurableApplicationContext node2 = startNode("node-2", url(node1));
+        createAccounts(node1);
+
+        HashRing ring = node1.getBean(ClusterMembership.class).getRing();
+        assertThat(ring.getNodeIds()).containsExactly("node-1", "node-2");
+        assertThat(node2.getBean(ClusterMembership.class).getRing().getNodeIds()).containsExactly("node-1", "node-2");
+        for (int i = 0; i < ACCOUNTS; i++) {
+            String accountId = "account-" + i;
+            ConfigurableApplicationContext owner = ring.ownerOf(accountId).equals("node-1") ? node1 : node2;
+            ConfigurableApplicationContext other = owner == node1 ? node2 : node1;
+            assertThat(owner.getBean(AccountsService.class).getAccount(accountId)).isNotNull();
+            assertThat(other.getBean(AccountsService.class).getAccount(accountId)).isNull();
+        }
+
+        Random random = new Random(42);
+        int crossNode = 0;
+        for (int i = 0; i < 200; i++) {
+            String from = "account-" + random.nextInt(ACCOUNTS);
+            String to = "account-" + random.nextInt(ACCOUNTS);
+            if (from.equals(to)) {
+                continue;
+            }
+            if (!ring.ownerOf(from).equals(ring.ownerOf(to))) {
+                crossNode++;
+            }
+            HttpResponse<String> response = transfer(i % 2 == 0 ? node1 : node2, from, to, 1 + random.nextInt(100));
+            assertThat(response.statusCode()).isIn(200, 400);
+        }
+
+        assertThat(crossNode).isPositive();
+        assertThat(node1.getBean(ClusterTransfers.class).getUncreditedCount()).isZero();
+        assertThat(node2.getBean(ClusterTransfers.class).getUncreditedCount()).isZero();
+        assertThat(totalBalance(node2)).isEqualByComparingTo(INITIAL_BALANCE.multiply(new BigDecimal(ACCOUNTS)));
+    }
+
+    @Test
+    void failsTransferToAccountMissingOnOtherNode() throws Exception {
+        ConfigurableApplicationContext node1 = startNode("node-1", null);
+        ConfigurableApplicationContext node2 = startNode("node-2", url(node1));
+        createAccounts(node1);
+
+        HashRing ring = node1.getBean(ClusterMembership.class).getRing();
+        String missing = "missing-0";
+        for (int i = 1; ring.ownerOf(missing).equals(ring.ownerOf("account-0")); i++) {
+            missing = "missing-" + i;
+        }
+        HttpResponse<String> response = transfer(node2, "account-0", missing, 10);
+
+        assertThat(response.statusCode()).isEqualTo(400);
+        assertThat(response.body()).contains("\"failureCode\":\"NOT_EXISTING_ACCOUNT\"");
+        assertThat(balance(node1, "account-0")).isEqualByComparingTo(INITIAL_BALANCE);
+        ConfigurableApplicationContext owner = ring.ownerOf("account-0").equals("node-1") ? node1 : node2;
+        Account account = owner.getBean(AccountsService.class).getAccount("account-0");
+        assertThat(account.getHeldBalance()).isZero();
+    }
+
+    @Test
+    void movesAccountsToJoinedNode() throws Exception {
+        ConfigurableApplicationContext node1 = startNode("node-1", null);
+        ConfigurableApplicationContext node2 = startNode("node-2", url(node1));
+        createAccounts(node2);
+
+        ConfigurableApplicationContext node3 = startNode("node-3", url(node1));
+        HashRing ring = node3.getBean(ClusterMembership.class).getRing();
+        assertThat(ring.getNodeIds()).containsExactly("node-1", "node-2", "node-3");
+        assertThat(node2.getBean(ClusterMembership.class).getRing().getNodeIds())
+                .containsExactlyElementsOf(ring.getNodeIds());
+        assertThat(node1.getBean(ClusterRebalancer.class).rebalance()).isZero();
+        assertThat(node2.getBean(ClusterRebalancer.class).rebalance()).isZero();
+
+        int moved = 0;
+        for (int i = 0; i < ACCOUNTS; i++) {
+            String accountId = "account-" + i;
+            boolean onNode3 = node3.getBean(AccountsService.class).getAccount(accountId) != null;
+            assertThat(onNode3).isEqualTo(ring.ownerOf(accountId).equals("node-3"));
+            moved += onNode3 ? 1 : 0;
+        }
+        assertThat(moved).isPositive();
+        for (ConfigurableApplicationContext node : nodes) {
+            assertThat(totalBalance(node)).isEqualByComparingTo(INITIAL_BALANCE.multiply(new BigDecimal(ACCOUNTS)));
+        }
+
+        HttpResponse<String> response = transfer(node1, "account-0", "account-1", 10);
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(totalBalance(node3)).isEqualByComparingTo(INITIAL_BALANCE.multiply(new BigDecimal(ACCOUNTS)));
+    }
+
+    private ConfigurableApplicationContext startNode(String nodeId, String seed) {
+        ConfigurableApplicationContext node = new SpringApplicationBuilder(ChallengeApplication.class)
+                .properties(
+                        "server.port=0",
+                        "cluster.enabled=true",
+                        "cluster.node-id=" + nodeId,
+                        "cluster.seeds=" + (seed != null ? seed : ""),
+                        "cluster.virtual-nodes=16",
+                        // rebalanced by the tests
+                        "cluster.rebalance-interval-ms=3600000")
+                .run();
+        nodes.add(node);
+        return node;
+    }
+
+    private void createAccounts(ConfigurableApplicationContext node) throws Exception {
+        for (int i = 0; i < ACCOUNTS; i++) {
+            HttpResponse<String> response = post(node, "/v1/accounts",
+                    "{\"accountId\":\"account-" + i + "\",\"balance\":" + INITIAL_BALANCE + "}");
+            assertThat(response.statusCode()).isEqualTo(201);
+        }
+    }
+
+    private HttpResponse<String> transfer(ConfigurableApplicationContext node, String from, String to, int amount)
+            throws Exception {
+        return post(node, "/v1/transfers",
+                "{\"accountFromId\":\"" + from + "\",\"accountToId\":\"" + to + "\",\"amount\":" + amount + "}");
+    }
+
+    private BigDecimal totalBalance(ConfigurableApplicationContext node) throws Exception {
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < ACCOUNTS; i++) {
+            total = total.add(balance(node, "account-" + i));
+        }
+        return total;
+    }
+
+    private BigDecimal balance(ConfigurableApplicationContext node, String accountId) throws Exception {
+        HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(url(node) + "/v1/accounts/" + accountId))
+                .GET());
+        assertThat(response.statusCode()).isEqualTo(200);
+        JsonNode account = objectMapper.readTree(response.body());
+        assertThat(account.path("accountId").asText()).isEqualTo(accountId);
+        return account.get("balance").decimalValue();
+    }
+
+    private HttpResponse<String> post(ConfigurableApplicationContext node, String path, String json)
+            throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(URI.create(url(node) + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json)));
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request)
+            throws IOException, InterruptedException {
+        return httpClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static String url(ConfigurableApplicationContext node) {
+        return "http://127.0.0.1:" + ((WebServerApplicationContext) node).getWebServer().getPort();
+    }
+}
@@ -0,0 +1,103 @@
+package com.dws.challenge.cluster;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CoordinatorLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recoversOpenTransactions() throws IOException {
+        Path path = directory.resolve("coordinator.log");
+        try (CoordinatorLog log = new CoordinatorLog(path)) {
+            assertThat(log.load()).isEmpty();
+            log.begun(transaction("tx-1"));
+            log.begun(transaction("tx-2"));
+            log.begun(transaction("tx-3"));
+            log.begun(transaction("tx-4"));
+            log.committed("tx-2");
+            log.committed("tx-3");
+            log.completed("tx-3");
+            log.aborted("tx-4");
+            assertThat(log.getOpenCount()).isEqualTo(2);
+        }
+
+        try (CoordinatorLog log = new CoordinatorLog(path)) {
+            Collection<CoordinatorLog.Transaction> open = log.load();
+
+            assertThat(open).extracting(CoordinatorLog.Transaction::getTransactionId).containsExactly("tx-1", "tx-2");
+            assertThat(open).extracting(CoordinatorLog.Transaction::isCommitted).containsExactly(false, true);
+            CoordinatorLog.Transaction committed = open.stream().filter(CoordinatorLog.Transaction::isCommitted)
+                    .findFirst().orElseThrow();
+            assertThat(committed.debitAccountId).isEqualTo("account-1");
+            assertThat(committed.creditAccountId).isEqualTo("account-2");
+            assertThat(committed.amount).isEqualByComparingTo("12.34");
+            assertThat(committed.holdId).isEqualTo(7);
+            assertThat(committed.participantId).isEqualTo("node-2");
+        }
+    }
+
+    @Test
+    void ignoresIncompleteLastRecord() throws IOException {
+        Path path = directory.resolve("coordinator.log");
+        try (CoordinatorLog log = new CoordinatorLog(path)) {
+            log.load();
+            log.begun(transaction("tx-1"));
+            log.committed("tx-1");
+        }
+        // record torn by a crash while it was appended
+        Files.write(path, new byte[]{1, 0, 10, 't', 'x'}, StandardOpenOption.APPEND);
+
+        try (CoordinatorLog log = new CoordinatorLog(path)) {
+            assertThat(log.load()).extracting(CoordinatorLog.Transaction::getTransactionId).containsExactly("tx-1");
+            log.completed("tx-1");
+        }
+
+        try (CoordinatorLog log = new CoordinatorLog(path)) {
+            assertThat(log.load()).isEmpty();
+        }
+    }
+
+    @Test
+    void replacesCompensatedTransactionWithCommittedCompensation() throws IOException {
+        Path path = directory.resolve("coordinator.log");
+        try (CoordinatorLog log = new CoordinatorLog(path)) {
+            log.load();
+            log.begun(transaction("tx-1"));
+            log.committed("tx-1");
+            log.compensated("tx-1", new CoordinatorLog.Transaction("tx-2", "account-2", "account-1",
+                    new BigDecimal("12.34"), -1, "node-1", true));
+        }
+
+        try (CoordinatorLog log = new CoordinatorLog(path)) {
+            Collection<CoordinatorLog.Transaction> open = log.load();
+
+            assertThat(open).extracting(CoordinatorLog.Transaction::getTransactionId).containsExactly("tx-2");
+            CoordinatorLog.Transaction compensation = open.iterator().next();
+            assertThat(compensation.isCommitted()).isTrue();
+            assertThat(compensation.creditAccountId).isEqualTo("account-1");
+            assertThat(compensation.createAccount).isTrue();
+            log.completed("tx-2");
+        }
+
+        try (CoordinatorLog log = new CoordinatorLog(path)) {
+            assertThat(log.load()).isEmpty();
+        }
+    }
+
+    private static CoordinatorLog.Transaction transaction(String transactionId) {
+        return new CoordinatorLog.Transaction(transactionId, "account-1", "account-2", new BigDecimal("12.34"), 7,
+                "node-2", false);
+    }
+}
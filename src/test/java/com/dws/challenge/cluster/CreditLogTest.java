@@ -0,0 +1,80 @@
+package com.dws.challenge.cluster;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CreditLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void remembersAppliedCreditsAfterReopen() throws IOException {
+        Path path = directory.resolve("credits.log");
+        try (CreditLog log = new CreditLog(path, 10)) {
+            log.load();
+            log.applied("tx-1");
+            log.applied("tx-2");
+            assertThat(log.contains("tx-1")).isTrue();
+        }
+
+        try (CreditLog log = new CreditLog(path, 10)) {
+            log.load();
+
+            assertThat(log.contains("tx-1")).isTrue();
+            assertThat(log.contains("tx-2")).isTrue();
+            assertThat(log.contains("tx-3")).isFalse();
+        }
+    }
+
+    @Test
+    void keepsLatestCredits() throws IOException {
+        Path path = directory.resolve("credits.log");
+        try (CreditLog log = new CreditLog(path, 3)) {
+            log.load();
+            for (int i = 1; i <= 10; i++) {
+                log.applied("tx-" + i);
+            }
+            assertThat(log.contains("tx-7")).isFalse();
+            assertThat(log.contains("tx-8")).isTrue();
+        }
+
+        try (CreditLog log = new CreditLog(path, 3)) {
+            log.load();
+
+            assertThat(log.contains("tx-7")).isFalse();
+            assertThat(log.contains("tx-8")).isTrue();
+            assertThat(log.contains("tx-10")).isTrue();
+        }
+    }
+
+    @Test
+    void ignoresIncompleteLastRecord() throws IOException {
+        Path path = directory.resolve("credits.log");
+        try (CreditLog log = new CreditLog(path, 10)) {
+            log.load();
+            log.applied("tx-1");
+        }
+        // record torn by a crash while it was appended
+        Files.write(path, new byte[]{0, 10, 't', 'x'}, StandardOpenOption.APPEND);
+
+        try (CreditLog log = new CreditLog(path, 10)) {
+            log.load();
+            log.applied("tx-2");
+        }
+
+        try (CreditLog log = new CreditLog(path, 10)) {
+            log.load();
+
+            assertThat(log.contains("tx-1")).isTrue();
+            assertThat(log.contains("tx-2")).isTrue();
+        }
+    }
+}
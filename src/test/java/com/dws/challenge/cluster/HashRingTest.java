@@ -0,0 +1,58 @@
+package com.dws.challenge.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HashRingTest {
+
+    private static final int ACCOUNTS = 100_000;
+
+    @Test
+    void spreadsAccountsEvenlyOverNodes() {
+        HashRing ring = new HashRing(Arrays.asList("node-1", "node-2", "node-3", "node-4"), 128);
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            counts.merge(ring.ownerOf("account-" + i), 1, Integer::sum);
+        }
+
+        assertThat(counts).hasSize(4);
+        counts.values().forEach(count -> assertThat(count).isBetween(ACCOUNTS / 4 * 3 / 4, ACCOUNTS / 4 * 5 / 4));
+    }
+
+    @Test
+    void movesAccountsOnlyToJoinedNode() {
+        HashRing ring = new HashRing(Arrays.asList("node-1", "node-2", "node-3"), 128);
+        HashRing joined = ring.withNode("node-4");
+
+        int moved = 0;
+        for (int i = 0; i < ACCOUNTS; i++) {
+            String owner = ring.ownerOf("account-" + i);
+            String newOwner = joined.ownerOf("account-" + i);
+            if (!owner.equals(newOwner)) {
+                assertThat(newOwner).isEqualTo("node-4");
+                moved++;
+            }
+        }
+
+        assertThat(moved).isBetween(ACCOUNTS / 4 * 3 / 4, ACCOUNTS / 4 * 5 / 4);
+    }
+
+    @Test
+    void assignsSameOwnersWhateverOrderNodesJoinedIn() {
+        List<String> nodeIds = Arrays.asList("node-1", "node-2", "node-3");
+        HashRing ring = new HashRing(nodeIds, 16);
+        HashRing joined = new HashRing(List.of("node-3"), 16).withNode("node-1").withNode("node-2");
+
+        assertThat(joined.getNodeIds()).containsExactlyElementsOf(nodeIds);
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(joined.ownerOf("account-" + i)).isEqualTo(ring.ownerOf("account-" + i));
+        }
+    }
+}
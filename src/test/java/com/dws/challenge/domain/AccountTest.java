@@ -67,6 +67,29 @@ public class AccountTest {
         assertThat(updatedAccount).isEqualTo(new Account(ACCOUNT_ID, amount("70")));
     }
 
+    @Test
+    void excludesHeldBalanceFromFunds() throws InsufficientFundsException {
+        Account account = new Account(ACCOUNT_ID, amount("100")).hold(amount("30"));
+
+        assertThat(account.getAvailableBalance()).isEqualByComparingTo("70");
+        assertThat(account.hasFunds(amount("70"))).isTrue();
+        assertThat(account.hasFunds(amount("70.01"))).isFalse();
+        assertThatThrownBy(() -> account.debit(amount("80")))
+                .isInstanceOf(InsufficientFundsException.class);
+        assertThatThrownBy(() -> account.hold(amount("80")))
+                .isInstanceOf(InsufficientFundsException.class);
+    }
+
+    @Test
+    void capturesAndReleasesHolds() throws InsufficientFundsException {
+        Account account = new Account(ACCOUNT_ID, amount("100")).hold(amount("30"));
+
+        assertThat(account.captureHold(amount("30"))).isEqualTo(new Account(ACCOUNT_ID, amount("70")));
+        assertThat(account.releaseHold(amount("30"))).isEqualTo(new Account(ACCOUNT_ID, amount("100")));
+        assertThatThrownBy(() -> account.releaseHold(amount("31")))
+                .isInstanceOf(InvalidAccountChangeException.class);
+    }
+
     private static BigDecimal amount(String amount) {
         return new BigDecimal(amount);
     }
@@ -0,0 +1,107 @@
+package com.dws.challenge.jfr;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.TransferRequest;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TransferRecordingSummaryTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void summarisesPhasesAndLockWaits() throws Exception {
+        AccountsRepository accountsRepository = new AccountsRepositoryInMemory();
+        accountsRepository.createAccount(new Account("account-1", BigDecimal.TEN));
+        TransferRequest transferRequest = TransferRequest.builder()
+                .accountFromId("account-1")
+                .accountToId("account-2")
+                .amount(BigDecimal.ONE)
+                .build();
+
+        Path file = directory.resolve("transfers.jfr");
+        try (Recording recording = new Recording(sampleConfiguration())) {
+            recording.start();
+
+            for (int i = 0; i < 3; i++) {
+                TransferPhaseEvent phase = TransferPhaseEvent.begin(TransferPhase.VALIDATION);
+                phase.finish(transferRequest);
+            }
+            TransferPhaseEvent phase = TransferPhaseEvent.begin(TransferPhase.FIRST_LOCK);
+            Thread.sleep(20);
+            phase.finish(transferRequest, "account-1");
+
+            waitForLockHeldByAnotherThread(accountsRepository, "account-1");
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        TransferRecordingSummary summary = TransferRecordingSummary.read(file);
+
+        assertThat(summary.getPhase(TransferPhase.VALIDATION).getCount()).isEqualTo(3);
+        assertThat(summary.getPhase(TransferPhase.FIRST_LOCK).getCount()).isEqualTo(1);
+        assertThat(summary.getPhase(TransferPhase.FIRST_LOCK).getMaxNanos()).isGreaterThanOrEqualTo(20_000_000L);
+        assertThat(summary.getPhase(TransferPhase.MUTATION)).isNull();
+
+        assertThat(summary.getMostContendedAccounts(10)).containsExactly("account-1");
+        assertThat(summary.getLockWaits("account-1").getCount()).isEqualTo(1);
+        assertThat(summary.getLockWaits("account-1").getMaxNanos()).isPositive();
+        assertThat(summary.toString()).contains("VALIDATION", "FIRST_LOCK", "account-1");
+    }
+
+    private static Configuration sampleConfiguration() throws Exception {
+        try (Reader reader = new InputStreamReader(
+                TransferRecordingSummaryTest.class.getResourceAsStream("/jfr/transfers.jfc"), StandardCharsets.UTF_8)) {
+            return Configuration.create(reader);
+        }
+    }
+
+    private static void waitForLockHeldByAnotherThread(AccountsRepository accountsRepository, String accountId)
+            throws Exception {
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            try {
+                accountsRepository.lockAccount(accountId);
+                locked.countDown();
+                release.await();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            } finally {
+                accountsRepository.releaseAccount(accountId);
+            }
+        });
+        holder.start();
+        locked.await();
+
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            release.countDown();
+        });
+        releaser.start();
+
+        accountsRepository.lockAccount(accountId);
+        accountsRepository.releaseAccount(accountId);
+        holder.join();
+        releaser.join();
+    }
+}
@@ -0,0 +1,187 @@
+package com.dws.challenge.replication;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.ReplicationStatus;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs primary and standby over a loopback socket, each with its own repository.
+ */
+public class ReplicationTest {
+
+    private static final long TIMEOUT_MILLIS = 5_000;
+
+    private final AccountsRepository primaryRepository = new AccountsRepositoryInMemory();
+    private final AccountsRepository standbyRepository = new AccountsRepositoryInMemory();
+
+    private ReplicationPrimary primary;
+    private ReplicationStandby standby;
+
+    @AfterEach
+    void afterEach() throws Exception {
+        if (standby != null) {
+            standby.stop();
+        }
+        if (primary != null) {
+            primary.stop();
+        }
+    }
+
+    @Test
+    void replicatesSnapshotAndChanges() throws Exception {
+        primaryRepository.createAccount(new Account("account-1", new BigDecimal(100)));
+        startPrimary("async", 0);
+        startStandby(primary.getPort());
+        awaitCondition(() -> standby.getStatus().isSynced());
+
+        assertThat(standbyRepository.getAccount("account-1")).isEqualTo(new Account("account-1", new BigDecimal(100)));
+
+        primaryRepository.createAccount(new Account("account-2", new BigDecimal(20)));
+        commit(new Account("account-1", new BigDecimal(90)));
+        commit(new Account("account-2", new BigDecimal(30)));
+
+        Account replicated = new Account("account-2", new BigDecimal(30));
+        awaitCondition(() -> replicated.equals(standbyRepository.getAccount("account-2")));
+        assertThat(standbyRepository.getAccount("account-1")).isEqualTo(new Account("account-1", new BigDecimal(90)));
+    }
+
+    @Test
+    void confirmsChangesAppliedByStandbyInSyncMode() throws Exception {
+        primaryRepository.createAccount(new Account("account-1", new BigDecimal(100)));
+        startPrimary("sync", 0);
+        startStandby(primary.getPort());
+        awaitCondition(() -> primary.getStatus().isSynced());
+
+        for (int i = 1; i <= 20; i++) {
+            commit(new Account("account-1", new BigDecimal(100 - i)));
+            assertThat(standbyRepository.getAccount("account-1"))
+                    .isEqualTo(new Account("account-1", new BigDecimal(100 - i)));
+        }
+
+        ReplicationStatus status = primary.getStatus();
+        assertThat(status.getAcknowledgedSequence()).isEqualTo(status.getSequence());
+        assertThat(status.getLagMillis()).isZero();
+        assertThat(standby.getStatus().getSequence()).isEqualTo(status.getSequence());
+    }
+
+    @Test
+    void doesNotWaitForDisconnectedStandbyInSyncMode() throws Exception {
+        primaryRepository.createAccount(new Account("account-1", new BigDecimal(100)));
+        startPrimary("sync", 0);
+
+        long start = System.nanoTime();
+        commit(new Account("account-1", new BigDecimal(90)));
+
+        assertThat(System.nanoTime() - start).isLessThan(500_000_000L);
+        assertThat(primary.getStatus().isConnected()).isFalse();
+    }
+
+    @Test
+    void appliesOnlyNewerAccountStates() throws Exception {
+        primaryRepository.createAccount(new Account("account-1", new BigDecimal(100)));
+        startPrimary("sync", 0);
+        startStandby(primary.getPort());
+        awaitCondition(() -> primary.getStatus().isSynced());
+
+        Account account = primaryRepository.getAccount("account-1");
+        primary.changesCommitted(Collections.singletonList(
+                new Account("account-1", new BigDecimal(70), BigDecimal.ZERO, account.getVersion() + 2)));
+        primary.changesCommitted(Collections.singletonList(
+                new Account("account-1", new BigDecimal(80), BigDecimal.ZERO, account.getVersion() + 1)));
+
+        assertThat(standbyRepository.getAccount("account-1")).isEqualTo(new Account("account-1", new BigDecimal(70)));
+    }
+
+    @Test
+    void replicatesExpiredHoldsAndRemovedAccounts() throws Exception {
+        primaryRepository.createAccount(new Account("account-1", new BigDecimal(100)));
+        primaryRepository.createAccount(new Account("account-2", BigDecimal.ZERO));
+        startPrimary("sync", 0);
+        startStandby(primary.getPort());
+        awaitCondition(() -> primary.getStatus().isSynced());
+
+        primaryRepository.authorizeHold("account-1", new BigDecimal(30), Duration.ofMillis(500));
+        primary.changesCommitted(Collections.singletonList(primaryRepository.lockAccount("account-1")));
+        primaryRepository.releaseAccount("account-1");
+        assertThat(standbyRepository.getAccount("account-1").getHeldBalance()).isEqualByComparingTo("30");
+
+        // released lazily by a read, then passed by the sweep anyway once its expiry second is over
+        Thread.sleep(600);
+        primaryRepository.getAccount("account-1");
+        awaitCondition(() -> {
+            primaryRepository.releaseExpiredHolds(
+                    account -> primary.changesCommitted(Collections.singletonList(account)));
+            return standbyRepository.getAccount("account-1").getHeldBalance().signum() == 0;
+        });
+
+        primaryRepository.closeAccount("account-2");
+        primary.accountsRemoved(Collections.singletonList("account-2"));
+        assertThat(standbyRepository.getAccount("account-2")).isNull();
+    }
+
+    @Test
+    void resynchronizesWithRestartedPrimary() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        primaryRepository.createAccount(new Account("account-1", new BigDecimal(100)));
+        startPrimary("async", port);
+        startStandby(port);
+        awaitCondition(() -> standby.getStatus().isSynced());
+        long firstEpoch = standby.getStatus().getEpoch();
+
+        // restarted primary has another epoch and none of the previous accounts
+        primary.stop();
+        primaryRepository.clearAccounts();
+        primaryRepository.createAccount(new Account("account-2", new BigDecimal(20)));
+        startPrimary("async", port);
+
+        awaitCondition(() -> standby.getStatus().isSynced() && standby.getStatus().getEpoch() != firstEpoch);
+        assertThat(standbyRepository.getAccount("account-1")).isNull();
+        assertThat(standbyRepository.getAccount("account-2")).isEqualTo(new Account("account-2", new BigDecimal(20)));
+    }
+
+    private void startPrimary(String mode, int port) throws Exception {
+        primary = new ReplicationPrimary(primaryRepository, "127.0.0.1", port, mode, 2_000, 1_000);
+        primary.start();
+    }
+
+    private void startStandby(int port) {
+        standby = new ReplicationStandby(standbyRepository, "127.0.0.1", port, 50);
+        standby.start();
+    }
+
+    /**
+     * Applies change to primary repository and replicates it, as transfers do.
+     */
+    private void commit(Account change) throws Exception {
+        primaryRepository.lockAccount(change.getAccountId());
+        Account committed;
+        try {
+            committed = primaryRepository.updateAccount(change);
+        } finally {
+            primaryRepository.releaseAccount(change.getAccountId());
+        }
+        primary.changesCommitted(Collections.singletonList(committed));
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("Condition met before timeout").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.dws.challenge.repository;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Hold;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AccountChecksumsTest {
+
+    private static final int ACCOUNTS = 1000;
+
+    @Test
+    void matchesChecksumsOfSameBalancesComputedFromScratch() throws Exception {
+        AccountsRepositoryInMemory accountsRepository = accountsWithBalance(100);
+        for (int i = 0; i < ACCOUNTS; i += 3) {
+            update(accountsRepository, "account-" + i, new BigDecimal(i));
+        }
+        Hold hold = accountsRepository.authorizeHold("account-1", new BigDecimal(40), Duration.ofMinutes(1));
+        accountsRepository.captureHold("account-1", hold.getHoldId());
+
+        AccountsRepositoryInMemory expected = new AccountsRepositoryInMemory();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            int balance = i % 3 == 0 ? i : i == 1 ? 60 : 100;
+            // checksums do not depend on the scale of balances
+            expected.createAccount(new Account("account-" + i, new BigDecimal(balance).setScale(2)));
+        }
+
+        assertThat(accountsRepository.getChecksums().getChecksum(""))
+                .isEqualTo(expected.getChecksums().getChecksum(""));
+    }
+
+    @Test
+    void locatesDivergingAccountByDescendingIntoDifferingChildren() throws Exception {
+        AccountsRepositoryInMemory accountsRepository = accountsWithBalance(100);
+        AccountsRepositoryInMemory other = accountsWithBalance(100);
+        update(other, "account-123", new BigDecimal(99));
+
+        AccountChecksums checksums = accountsRepository.getChecksums();
+        AccountChecksums otherChecksums = other.getChecksums();
+        String prefix = "";
+        while (prefix.length() < AccountChecksums.PREFIX_DIGITS) {
+            String differing = null;
+            long sum = 0;
+            for (int digit = 0; digit < 16; digit++) {
+                String child = prefix + Character.forDigit(digit, 16);
+                sum += checksums.getChecksum(child);
+                if (checksums.getChecksum(child) != otherChecksums.getChecksum(child)) {
+                    assertThat(differing).isNull();
+                    differing = child;
+                }
+            }
+            assertThat(sum).isEqualTo(checksums.getChecksum(prefix));
+            assertThat(differing).isNotNull();
+            prefix = differing;
+        }
+
+        assertThat(prefix).isEqualTo(AccountChecksums.bucketPrefix("account-123"));
+        assertThat(other.getChecksumBucket(Integer.parseInt(prefix, 16)))
+                .extracting(Account::getAccountId)
+                .contains("account-123");
+    }
+
+    @Test
+    void resetsChecksumsWithAccounts() {
+        AccountsRepositoryInMemory accountsRepository = accountsWithBalance(100);
+
+        accountsRepository.clearAccounts();
+
+        assertThat(accountsRepository.getChecksums().getChecksum("")).isZero();
+    }
+
+    private static AccountsRepositoryInMemory accountsWithBalance(int balance) {
+        AccountsRepositoryInMemory accountsRepository = new AccountsRepositoryInMemory();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accountsRepository.createAccount(new Account("account-" + i, new BigDecimal(balance)));
+        }
+        return accountsRepository;
+    }
+
+    private static void update(AccountsRepository accountsRepository, String accountId, BigDecimal balance)
+            throws Exception {
+        accountsRepository.lockAccount(accountId);
+        try {
+            accountsRepository.updateAccount(new Account(accountId, balance));
+        } finally {
+            accountsRepository.releaseAccount(accountId);
+        }
+    }
+}
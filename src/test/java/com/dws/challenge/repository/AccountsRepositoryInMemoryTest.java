@@ -0,0 +1,381 @@
+package com.dws.challenge.repository;
+
+import com.dws.challenge.MutableClock;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Hold;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.exception.InvalidAccountChangeException;
+import com.dws.challenge.exception.NotExistingAccountException;
+import com.dws.challenge.exception.NotExistingHoldException;
+import com.dws.challenge.exception.StateNotRetainedException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class AccountsRepositoryInMemoryTest {
+
+    private static final String ACCOUNT_ID = "account-1";
+    private static final Duration HOLD_TTL = Duration.ofMinutes(15);
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2023-01-01T00:00:00Z"));
+
+    private AccountsRepositoryInMemory accountsRepository;
+
+    @BeforeEach
+    void beforeEach() {
+        accountsRepository = new AccountsRepositoryInMemory(clock);
+        accountsRepository.createAccount(new Account(ACCOUNT_ID, new BigDecimal(100)));
+    }
+
+    @Test
+    void reservesFundsForHold() throws Exception {
+        Hold hold = accountsRepository.authorizeHold(ACCOUNT_ID, new BigDecimal(60), HOLD_TTL);
+
+        assertThat(hold.getExpiresAt()).isEqualTo(clock.instant().plus(HOLD_TTL));
+        assertThat(accountsRepository.getAccount(ACCOUNT_ID).getAvailableBalance()).isEqualByComparingTo("40");
+        assertThatThrownBy(() -> accountsRepository.authorizeHold(ACCOUNT_ID, new BigDecimal(50), HOLD_TTL))
+                .isInstanceOf(InsufficientFundsException.class);
+    }
+
+    @Test
+    void capturesHold() throws Exception {
+        Hold hold = accountsRepository.authorizeHold(ACCOUNT_ID, new BigDecimal(60), HOLD_TTL);
+
+        Account account = accountsRepository.captureHold(ACCOUNT_ID, hold.getHoldId());
+
+        assertThat(account).isEqualTo(new Account(ACCOUNT_ID, new BigDecimal(40)));
+        assertThat(accountsRepository.getAccount(ACCOUNT_ID)).isEqualTo(account);
+        assertThatThrownBy(() -> accountsRepository.captureHold(ACCOUNT_ID, hold.getHoldId()))
+                .isInstanceOf(NotExistingHoldException.class);
+    }
+
+    @Test
+    void runsActionBeforeCapturingLiveHoldOnly() throws Exception {
+        Hold hold = accountsRepository.authorizeHold(ACCOUNT_ID, new BigDecimal(60), HOLD_TTL);
+        List<Account> seenByAction = new ArrayList<>();
+
+        assertThatThrownBy(() -> accountsRepository.captureHold(ACCOUNT_ID, hold.getHoldId(), () -> {
+            throw new IllegalStateException("Log is not writable");
+        })).isInstanceOf(IllegalStateException.class);
+        accountsRepository.captureHold(ACCOUNT_ID, hold.getHoldId(),
+                () -> seenByAction.add(accountsRepository.getAccount(ACCOUNT_ID)));
+
+        assertThat(seenByAction).extracting(Account::getHeldBalance).containsExactly(new BigDecimal(60));
+        assertThat(accountsRepository.getAccount(ACCOUNT_ID)).isEqualTo(new Account(ACCOUNT_ID, new BigDecimal(40)));
+
+        Hold expiring = accountsRepository.authorizeHold(ACCOUNT_ID, new BigDecimal(10), HOLD_TTL);
+        clock.advance(HOLD_TTL);
+        assertThatThrownBy(() -> accountsRepository.captureHold(ACCOUNT_ID, expiring.getHoldId(),
+                () -> seenByAction.add(null)))
+                .isInstanceOf(NotExistingHoldException.class);
+        assertThat(seenByAction).hasSize(1);
+    }
+
+    @Test
+    void capturesExpiredHoldNotReleasedYet() throws Exception {
+        Hold hold = accountsRepository.authorizeHold(ACCOUNT_ID, new BigDecimal(60), HOLD_TTL);
+        Hold other = accountsRepository.authorizeHold(ACCOUNT_ID, new BigDecimal(10), HOLD_TTL);
+        clock.advance(HOLD_TTL);
+
+        Account account = accountsRepository.captureUnreleasedHold(ACCOUNT_ID, hold.getHoldId());
+
+        assertThat(account).isEqualTo(new Account(ACCOUNT_ID, new BigDecimal(40)));
+        assertThatThrownBy(() -> accountsRepository.captureUnreleasedHold(ACCOUNT_ID, other.getHoldId()))
+                .isInstanceOf(NotExistingHoldException.class);
+    }
+
+    @Test
+    void releasesHold() throws Exception {
+        Hold hold = accountsRepository.authorizeHold(ACCOUNT_ID, new BigDecimal(60), HOLD_TTL);
+
+        Account account = accountsRepository.releaseHold(ACCOUNT_ID, hold.getHoldId());
+
+        assertThat(account).isEqualTo(new Account(ACCOUNT_ID, new BigDecimal(100)));
+    }
+
+    @Test
+    void releasesExpiredHoldLazilyOnAccess() throws Exception {
+        Hold hold = accountsRepository.authorizeHold(ACCOUNT_ID, new BigDecimal(60), HOLD_TTL);
+
+        clock.advance(HOLD_TTL);
+
+        assertThat(accountsRepository.getAccount(ACCOUNT_ID)).isEqualTo(new Account(ACCOUNT_ID, new BigDecimal(100)));
+        assertThatThrownBy(() -> accountsRepository.captureHold(ACCOUNT_ID, hold.getHoldId()))
+                .isInstanceOf(NotExistingHoldException.class);
+    }
+
+    @Test
+    void sweepsOnlyAccountsWithExpiredHolds() throws Exception {
+        accountsRepository.createAccount(new Account("account-2", new BigDecimal(100)));
+        accountsRepository.authorizeHold(ACCOUNT_ID, new BigDecimal(10), Duration.ofMinutes(1));
+        accountsRepository.authorizeHold(ACCOUNT_ID, new BigDecimal(20), Duration.ofMinutes(2));
+        accountsRepository.authorizeHold("account-2", new BigDecimal(30), Duration.ofMinutes(3));
+
+        assertThat(accountsRepository.releaseExpiredHolds()).isZero();
+
+        clock.advance(Duration.ofMinutes(2));
+        assertThat(accountsRepository.releaseExpiredHolds()).isEqualTo(1);
+        assertThat(accountsRepository.lockAccount(ACCOUNT_ID).getHeldBalance()).isEqualByComparingTo("0");
+        accountsRepository.releaseAccount(ACCOUNT_ID);
+        assertThat(accountsRepository.lockAccount("account-2").getHeldBalance()).isEqualByComparingTo("30");
+        accountsRepository.releaseAccount("account-2");
+    }
+
+    @Test
+    void incrementsVersionOnUpdate() {
+        long version = accountsRepository.getAccount(ACCOUNT_ID).getVersion();
+
+        Account updated = accountsRepository.updateAccount(new Account(ACCOUNT_ID, new BigDecimal(50)));
+
+        assertThat(updated.getVersion()).isEqualTo(version + 1);
+        assertThat(accountsRepository.getAccount(ACCOUNT_ID).getVersion()).isEqualTo(version + 1);
+    }
+
+    @Test
+    void startsRecreatedAccountFromHigherVersion() {
+        long version = accountsRepository.updateAccount(new Account(ACCOUNT_ID, new BigDecimal(50))).getVersion();
+
+        accountsRepository.clearAccounts();
+        accountsRepository.createAccount(new Account(ACCOUNT_ID, new BigDecimal(100)));
+
+        assertThat(accountsRepository.getAccount(ACCOUNT_ID).getVersion()).isGreaterThan(version);
+    }
+
+    @Test
+    void keepsBalanceIndexUpToDate() throws Exception {
+        accountsRepository.createAccount(new Account("account-2", new BigDecimal(50)));
+        accountsRepository.createAccount(new Account("account-3", new BigDecimal(150)));
+
+        accountsRepository.lockAccount(ACCOUNT_ID);
+        accountsRepository.updateAccount(new Account(ACCOUNT_ID, new BigDecimal(10)));
+        accountsRepository.releaseAccount(ACCOUNT_ID);
+        Hold hold = accountsRepository.authorizeHold("account-3", new BigDecimal(120), HOLD_TTL);
+        accountsRepository.captureHold("account-3", hold.getHoldId());
+
+        assertThat(accountsRepository.getAccountsByBalance(null, null, true, 10))
+                .extracting(Account::getAccountId)
+                .containsExactly("account-2", "account-3", ACCOUNT_ID);
+        assertThat(accountsRepository.getAccountsByBalance(new BigDecimal(10), new BigDecimal(30), false, 10))
+                .extracting(Account::getAccountId)
+                .containsExactly(ACCOUNT_ID, "account-3");
+        assertThat(accountsRepository.getAccountsByBalance(new BigDecimal("30.0"), null, false, 1))
+                .extracting(Account::getAccountId)
+                .containsExactly("account-3");
+
+        accountsRepository.clearAccounts();
+        assertThat(accountsRepository.getAccountsByBalance(null, null, true, 10)).isEmpty();
+    }
+
+    @Test
+    void answersAccountStateAsOfTime() throws Exception {
+        Instant created = clock.instant();
+        clock.advance(Duration.ofMinutes(1));
+        update(new BigDecimal(80));
+        Instant firstUpdate = clock.instant();
+        clock.advance(Duration.ofMinutes(1));
+        update(new BigDecimal(30));
+
+        assertThat(accountsRepository.getAccount(ACCOUNT_ID, created.minusMillis(1))).isNull();
+        assertThat(accountsRepository.getAccount(ACCOUNT_ID, created))
+                .isEqualTo(new Account(ACCOUNT_ID, new BigDecimal(100)));
+        assertThat(accountsRepository.getAccount(ACCOUNT_ID, firstUpdate.minusMillis(1)).getBalance())
+                .isEqualByComparingTo("100");
+        assertThat(accountsRepository.getAccount(ACCOUNT_ID, firstUpdate).getBalance()).isEqualByComparingTo("80");
+        assertThat(accountsRepository.getAccount(ACCOUNT_ID, clock.instant())).isEqualTo(
+                accountsRepository.getAccount(ACCOUNT_ID));
+        assertThat(accountsRepository.getAccount("account-2", clock.instant())).isNull();
+    }
+
+    @Test
+    void expiresAccountStatesReplacedBeforeRetention() throws Exception {
+        accountsRepository = new AccountsRepositoryInMemory(clock, Duration.ofHours(1).toMillis());
+        accountsRepository.createAccount(new Account(ACCOUNT_ID, new BigDecimal(100)));
+        Instant created = clock.instant();
+        for (int i = 1; i <= 10; i++) {
+            clock.advance(Duration.ofMinutes(10));
+            update(new BigDecimal(100 - i));
+        }
+
+        // states committed more than an hour ago except the one effective an hour ago
+        assertThat(accountsRepository.expireAccountHistory()).isEqualTo(4);
+        assertThat(accountsRepository.expireAccountHistory()).isZero();
+
+        Instant retentionStart = clock.instant().minus(Duration.ofHours(1));
+        assertThat(accountsRepository.getAccount(ACCOUNT_ID, retentionStart).getBalance()).isEqualByComparingTo("96");
+        assertThatThrownBy(() -> accountsRepository.getAccount(ACCOUNT_ID, retentionStart.minusMillis(1)))
+                .isInstanceOf(StateNotRetainedException.class);
+        assertThatThrownBy(() -> accountsRepository.getAccount(ACCOUNT_ID, created))
+                .isInstanceOf(StateNotRetainedException.class);
+        assertThat(accountsRepository.getAccount(ACCOUNT_ID, clock.instant()).getBalance()).isEqualByComparingTo("90");
+    }
+
+    @Test
+    void keepsNewerHalfOfStatesOverLimit() throws Exception {
+        accountsRepository = new AccountsRepositoryInMemory(clock, Duration.ofDays(1).toMillis(), 4);
+        accountsRepository.createAccount(new Account(ACCOUNT_ID, new BigDecimal(100)));
+        Instant created = clock.instant();
+        for (int i = 1; i <= 4; i++) {
+            clock.advance(Duration.ofMinutes(1));
+            update(new BigDecimal(100 - i));
+        }
+
+        assertThatThrownBy(() -> accountsRepository.getAccount(ACCOUNT_ID, created))
+                .isInstanceOf(StateNotRetainedException.class);
+        assertThat(accountsRepository.getAccount(ACCOUNT_ID, created.plus(Duration.ofMinutes(2))).getBalance())
+                .isEqualByComparingTo("98");
+        assertThat(accountsRepository.getAccount(ACCOUNT_ID, clock.instant()).getBalance())
+                .isEqualByComparingTo("96");
+    }
+
+    @Test
+    void keepsStatesWithBalancesOfAnySize() throws Exception {
+        Instant created = clock.instant();
+        clock.advance(Duration.ofMinutes(1));
+        BigDecimal large = new BigDecimal("123456789012345678901234567890.125");
+        update(large);
+        clock.advance(Duration.ofMinutes(1));
+        update(new BigDecimal("0.5"));
+
+        assertThat(accountsRepository.getAccount(ACCOUNT_ID, created).getBalance()).isEqualByComparingTo("100");
+        assertThat(accountsRepository.getAccount(ACCOUNT_ID, created.plus(Duration.ofMinutes(1))).getBalance())
+                .isEqualTo(large);
+        assertThat(accountsRepository.getAccount(ACCOUNT_ID, clock.instant()).getBalance())
+                .isEqualTo(new BigDecimal("0.5"));
+    }
+
+    @Test
+    void closesOnlyAccountWithoutFunds() throws Exception {
+        assertThatThrownBy(() -> accountsRepository.closeAccount(ACCOUNT_ID))
+                .isInstanceOf(InvalidAccountChangeException.class);
+
+        update(BigDecimal.ZERO);
+        accountsRepository.closeAccount(ACCOUNT_ID);
+
+        assertThat(accountsRepository.getAccount(ACCOUNT_ID)).isNull();
+        assertThat(accountsRepository.getAccountsByBalance(null, null, true, 10)).isEmpty();
+        assertThat(accountsRepository.getChecksums().getChecksum("")).isZero();
+        assertThatThrownBy(() -> accountsRepository.lockAccount(ACCOUNT_ID))
+                .isInstanceOf(NotExistingAccountException.class);
+        assertThatThrownBy(() -> accountsRepository.closeAccount(ACCOUNT_ID))
+                .isInstanceOf(NotExistingAccountException.class);
+        accountsRepository.createAccount(new Account(ACCOUNT_ID, BigDecimal.ONE));
+    }
+
+    @Test
+    void clearsAccountsOnceTheyAreReleased() throws Exception {
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        List<String> removedAccountIds = new CopyOnWriteArrayList<>();
+        accountsRepository.lockAccount(ACCOUNT_ID);
+        Future<?> clear = executorService.submit(() -> accountsRepository.clearAccounts(removedAccountIds::add));
+
+        Thread.sleep(100);
+        assertThat(clear.isDone()).isFalse();
+        accountsRepository.updateAccount(new Account(ACCOUNT_ID, new BigDecimal(50)));
+        accountsRepository.releaseAccount(ACCOUNT_ID);
+        clear.get(10, TimeUnit.SECONDS);
+        executorService.shutdown();
+
+        assertThat(removedAccountIds).containsExactly(ACCOUNT_ID);
+        assertThat(accountsRepository.getAccount(ACCOUNT_ID)).isNull();
+        assertThat(accountsRepository.getAccountsByBalance(null, null, true, 10)).isEmpty();
+        assertThat(accountsRepository.getChecksums().getChecksum("")).isZero();
+    }
+
+    @Test
+    void conservesBalancesWhileAccountsAreClosed() throws Exception {
+        String transitId = "transit";
+        int workers = 4;
+        for (int i = 0; i < workers; i++) {
+            accountsRepository.createAccount(new Account("funded-" + i, new BigDecimal(100)));
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(workers + 1);
+        AtomicBoolean done = new AtomicBoolean();
+
+        // closes the transit account whenever it's empty and creates it again
+        Future<?> closer = executorService.submit(() -> {
+            while (!done.get()) {
+                try {
+                    accountsRepository.closeAccount(transitId);
+                } catch (InvalidAccountChangeException | NotExistingAccountException e) {
+                    // in use or closed already
+                }
+                try {
+                    accountsRepository.createAccount(new Account(transitId, BigDecimal.ZERO));
+                } catch (DuplicateAccountIdException e) {
+                    // not closed
+                }
+            }
+            return null;
+        });
+        // moves funds to the transit account and back, the transit account can't be closed in between
+        List<Future<?>> movers = new ArrayList<>();
+        for (int worker = 0; worker < workers; worker++) {
+            String fundedId = "funded-" + worker;
+            movers.add(executorService.submit(() -> {
+                for (int i = 0; i < 2_000; i++) {
+                    try {
+                        move(fundedId, transitId, false);
+                    } catch (NotExistingAccountException e) {
+                        continue;
+                    }
+                    move(fundedId, transitId, true);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> mover : movers) {
+            mover.get(30, TimeUnit.SECONDS);
+        }
+        done.set(true);
+        closer.get(30, TimeUnit.SECONDS);
+        executorService.shutdown();
+
+        for (int i = 0; i < workers; i++) {
+            assertThat(accountsRepository.getAccount("funded-" + i).getBalance()).isEqualByComparingTo("100");
+        }
+        Account transit = accountsRepository.getAccount(transitId);
+        assertThat(transit == null || transit.getBalance().signum() == 0).isTrue();
+    }
+
+    /**
+     * Moves a unit from the funded account to the transit one or back, locking them in id order.
+     */
+    private void move(String fundedId, String transitId, boolean back) throws Exception {
+        Account funded = accountsRepository.lockAccount(fundedId);
+        try {
+            Account transit = accountsRepository.lockAccount(transitId);
+            try {
+                accountsRepository.updateAccount(back ? funded.credit(BigDecimal.ONE) : funded.debit(BigDecimal.ONE));
+                accountsRepository.updateAccount(back ? transit.debit(BigDecimal.ONE) : transit.credit(BigDecimal.ONE));
+            } finally {
+                accountsRepository.releaseAccount(transitId);
+            }
+        } finally {
+            accountsRepository.releaseAccount(fundedId);
+        }
+    }
+
+    private void update(BigDecimal balance) throws Exception {
+        accountsRepository.lockAccount(ACCOUNT_ID);
+        try {
+            accountsRepository.updateAccount(new Account(ACCOUNT_ID, balance));
+        } finally {
+            accountsRepository.releaseAccount(ACCOUNT_ID);
+        }
+    }
+}
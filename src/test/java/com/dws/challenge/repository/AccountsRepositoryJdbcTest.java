@@ -0,0 +1,220 @@
+package com.dws.challenge.repository;
+
+import com.dws.challenge.MutableClock;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Hold;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.InsufficientFundsException;
+import com.dws.challenge.exception.NotExistingAccountException;
+import com.dws.challenge.exception.NotExistingHoldException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class AccountsRepositoryJdbcTest {
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2023-01-01T00:00:00Z"));
+
+    private EmbeddedDatabase database;
+    private AccountsRepositoryJdbc accountsRepository;
+
+    @BeforeEach
+    void beforeEach() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("schema.sql")
+                .build();
+        accountsRepository = new AccountsRepositoryJdbc(database, clock);
+        accountsRepository.createAccount(new Account("account-1", new BigDecimal(100)));
+        accountsRepository.createAccount(new Account("account-2", new BigDecimal(20)));
+    }
+
+    @AfterEach
+    void afterEach() {
+        database.shutdown();
+    }
+
+    @Test
+    void failsToCreateDuplicateAccount() {
+        assertThatThrownBy(() -> accountsRepository.createAccount(new Account("account-1", new BigDecimal(5))))
+                .isInstanceOf(DuplicateAccountIdException.class)
+                .hasMessage("Account id account-1 already exists!");
+    }
+
+    @Test
+    void createsAccountsInBatch() {
+        accountsRepository.createAccounts(List.of(
+                new Account("account-3", new BigDecimal("1.50")),
+                new Account("account-4", new BigDecimal(7))));
+
+        assertThat(accountsRepository.getAccount("account-3").getBalance()).isEqualByComparingTo("1.50");
+        assertThat(accountsRepository.getAccount("account-4").getBalance()).isEqualByComparingTo("7");
+    }
+
+    @Test
+    void rollsBackBatchWithDuplicateAccount() {
+        assertThatThrownBy(() -> accountsRepository.createAccounts(List.of(
+                new Account("account-3", new BigDecimal(1)),
+                new Account("account-1", new BigDecimal(7)))))
+                .isInstanceOf(DuplicateAccountIdException.class);
+
+        assertThat(accountsRepository.getAccount("account-3")).isNull();
+        assertThat(accountsRepository.getAccount("account-1").getBalance()).isEqualByComparingTo("100");
+    }
+
+    @Test
+    void findsAccountsByBalance() {
+        accountsRepository.createAccount(new Account("account-3", new BigDecimal(20)));
+        accountsRepository.createAccount(new Account("account-4", new BigDecimal(5)));
+
+        assertThat(accountsRepository.getAccountsByBalance(null, null, true, 3))
+                .extracting(Account::getAccountId)
+                .containsExactly("account-1", "account-3", "account-2");
+        assertThat(accountsRepository.getAccountsByBalance(new BigDecimal(5), new BigDecimal(20), false, 10))
+                .extracting(Account::getAccountId)
+                .containsExactly("account-4", "account-2", "account-3");
+    }
+
+    @Test
+    void findsAccountsOfChecksumBucket() throws Exception {
+        accountsRepository.createAccounts(List.of(
+                new Account("account-3", new BigDecimal(7)),
+                new Account("account-4", BigDecimal.ZERO)));
+        accountsRepository.closeAccount("account-4");
+
+        assertThat(accountsRepository.getChecksumBucket(AccountChecksums.bucket("account-1")))
+                .extracting(Account::getAccountId)
+                .containsExactly("account-1");
+        assertThat(accountsRepository.getChecksumBucket(AccountChecksums.bucket("account-3")))
+                .containsExactly(accountsRepository.getAccount("account-3"));
+        assertThat(accountsRepository.getChecksumBucket(AccountChecksums.bucket("account-4"))).isEmpty();
+    }
+
+    @Test
+    void commitsLockedAccountsChangesOnRelease() throws Exception {
+        Account debitAccount = accountsRepository.lockAccount("account-1");
+        Account creditAccount = accountsRepository.lockAccount("account-2");
+
+        accountsRepository.updateAccount(debitAccount.debit(new BigDecimal(30)));
+        accountsRepository.updateAccount(creditAccount.credit(new BigDecimal(30)));
+        accountsRepository.releaseAccount("account-2");
+
+        // still uncommitted while first account is locked
+        assertThat(balanceSeenByOtherThread("account-2")).isEqualByComparingTo("20");
+
+        accountsRepository.releaseAccount("account-1");
+
+        assertThat(accountsRepository.getAccount("account-1").getBalance()).isEqualByComparingTo("70");
+        assertThat(accountsRepository.getAccount("account-2").getBalance()).isEqualByComparingTo("50");
+        assertThat(accountsRepository.getAccount("account-1").getVersion()).isEqualTo(debitAccount.getVersion() + 1);
+    }
+
+    @Test
+    void rollsBackLockedAccountsNotAllUpdated() throws Exception {
+        Account debitAccount = accountsRepository.lockAccount("account-1");
+        accountsRepository.lockAccount("account-2");
+
+        // caller failed before updating the credit account
+        accountsRepository.updateAccount(debitAccount.debit(new BigDecimal(30)));
+        accountsRepository.releaseAccount("account-2");
+        accountsRepository.releaseAccount("account-1");
+
+        assertThat(accountsRepository.getAccount("account-1")).isEqualTo(debitAccount);
+        assertThat(accountsRepository.getAccount("account-1").getVersion()).isEqualTo(debitAccount.getVersion());
+        assertThat(accountsRepository.getAccount("account-2").getBalance()).isEqualByComparingTo("20");
+    }
+
+    @Test
+    void commitsLockedAccountsChangesBeforeRelease() throws Exception {
+        Account account = accountsRepository.lockAccount("account-1");
+        accountsRepository.updateAccount(account.debit(new BigDecimal(30)));
+
+        accountsRepository.commitAccounts();
+
+        assertThat(balanceSeenByOtherThread("account-1")).isEqualByComparingTo("70");
+        accountsRepository.releaseAccount("account-1");
+        assertThat(accountsRepository.getAccount("account-1").getBalance()).isEqualByComparingTo("70");
+    }
+
+    @Test
+    void rollsBackLockedAccountsOnFailedCommit() throws Exception {
+        Account account = accountsRepository.lockAccount("account-1");
+        // does not fit the balance column
+        accountsRepository.updateAccount(account.credit(new BigDecimal("1E+30")));
+
+        assertThatThrownBy(() -> accountsRepository.commitAccounts()).isInstanceOf(DataAccessException.class);
+        accountsRepository.releaseAccount("account-1");
+
+        assertThat(accountsRepository.getAccount("account-1")).isEqualTo(account);
+        account = accountsRepository.lockAccount("account-1");
+        accountsRepository.updateAccount(account.credit(BigDecimal.ONE));
+        accountsRepository.releaseAccount("account-1");
+        assertThat(accountsRepository.getAccount("account-1").getBalance()).isEqualByComparingTo("101");
+    }
+
+    @Test
+    void failsToLockNotExistingAccount() throws Exception {
+        assertThatThrownBy(() -> accountsRepository.lockAccount("unknown-account"))
+                .isInstanceOf(NotExistingAccountException.class);
+
+        // failed lock must not leave a transaction bound to the thread
+        Account account = accountsRepository.lockAccount("account-1");
+        accountsRepository.updateAccount(account.credit(BigDecimal.ONE));
+        accountsRepository.releaseAccount("account-1");
+        assertThat(accountsRepository.getAccount("account-1").getBalance()).isEqualByComparingTo("101");
+    }
+
+    @Test
+    void capturesAndExpiresHolds() throws Exception {
+        Hold captured = accountsRepository.authorizeHold("account-1", new BigDecimal(40), Duration.ofMinutes(1));
+        accountsRepository.authorizeHold("account-1", new BigDecimal(50), Duration.ofMinutes(2));
+
+        assertThatThrownBy(() -> accountsRepository.authorizeHold("account-1", new BigDecimal(20), Duration.ofMinutes(1)))
+                .isInstanceOf(InsufficientFundsException.class);
+
+        Account account = accountsRepository.captureHold("account-1", captured.getHoldId());
+        assertThat(account.getBalance()).isEqualByComparingTo("60");
+        assertThat(account.getHeldBalance()).isEqualByComparingTo("50");
+
+        clock.advance(Duration.ofMinutes(2));
+        assertThat(accountsRepository.releaseExpiredHolds()).isEqualTo(1);
+        assertThat(accountsRepository.getAccount("account-1").getHeldBalance()).isEqualByComparingTo("0");
+    }
+
+    @Test
+    void capturesExpiredHoldNotReleasedYet() throws Exception {
+        Hold hold = accountsRepository.authorizeHold("account-1", new BigDecimal(40), Duration.ofMinutes(1));
+        Hold other = accountsRepository.authorizeHold("account-1", new BigDecimal(50), Duration.ofMinutes(1));
+        clock.advance(Duration.ofMinutes(1));
+
+        Account account = accountsRepository.captureUnreleasedHold("account-1", hold.getHoldId());
+        assertThat(account.getBalance()).isEqualByComparingTo("60");
+        assertThat(account.getHeldBalance()).isEqualByComparingTo("50");
+
+        assertThat(accountsRepository.getAccount("account-1").getHeldBalance()).isEqualByComparingTo("50");
+        assertThat(accountsRepository.releaseExpiredHolds()).isEqualTo(1);
+        assertThatThrownBy(() -> accountsRepository.captureUnreleasedHold("account-1", other.getHoldId()))
+                .isInstanceOf(NotExistingHoldException.class);
+    }
+
+    private BigDecimal balanceSeenByOtherThread(String accountId) throws InterruptedException {
+        BigDecimal[] balance = new BigDecimal[1];
+        Thread thread = new Thread(() -> balance[0] = accountsRepository.getAccount(accountId).getBalance());
+        thread.start();
+        thread.join();
+        return balance[0];
+    }
+}
@@ -0,0 +1,311 @@
+package com.dws.challenge.repository;
+
+import com.dws.challenge.MutableClock;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.InvalidAccountChangeException;
+import com.dws.challenge.exception.NotExistingAccountException;
+import com.dws.challenge.exception.StateNotRetainedException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class AccountsRepositoryTieredTest {
+
+    private static final int MAX_HOT_ACCOUNTS = 4;
+    private static final int ACCOUNTS = 20;
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2023-01-01T00:00:00Z"));
+
+    @TempDir
+    Path directory;
+
+    private AccountsRepositoryTiered accountsRepository;
+
+    @BeforeEach
+    void beforeEach() throws Exception {
+        accountsRepository = new AccountsRepositoryTiered(clock, directory.resolve("cold.log"), MAX_HOT_ACCOUNTS);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accountsRepository.createAccount(new Account(accountId(i), new BigDecimal(i * 10)));
+        }
+    }
+
+    @AfterEach
+    void afterEach() throws Exception {
+        accountsRepository.close();
+    }
+
+    @Test
+    void evictsAccountsOverBudget() {
+        assertThat(accountsRepository.getHotAccounts()).isLessThanOrEqualTo(MAX_HOT_ACCOUNTS);
+        assertThat(accountsRepository.getColdAccounts()).isGreaterThanOrEqualTo(ACCOUNTS - MAX_HOT_ACCOUNTS);
+    }
+
+    @Test
+    void promotesEvictedAccountsOnAccess() {
+        for (int i = 0; i < ACCOUNTS; i++) {
+            assertThat(accountsRepository.getAccount(accountId(i)))
+                    .isEqualTo(new Account(accountId(i), new BigDecimal(i * 10)));
+        }
+        assertThat(accountsRepository.getAccount("unknown-account")).isNull();
+        assertThat(accountsRepository.getHotAccounts()).isLessThanOrEqualTo(MAX_HOT_ACCOUNTS);
+    }
+
+    @Test
+    void keepsChangesOfEvictedAccounts() throws Exception {
+        Account account = accountsRepository.lockAccount(accountId(0));
+        accountsRepository.updateAccount(account.credit(new BigDecimal(5)));
+        accountsRepository.releaseAccount(accountId(0));
+        long version = accountsRepository.getAccount(accountId(0)).getVersion();
+
+        // touching all other accounts evicts the changed one
+        for (int i = 1; i < ACCOUNTS; i++) {
+            accountsRepository.getAccount(accountId(i));
+        }
+
+        Account promoted = accountsRepository.lockAccount(accountId(0));
+        accountsRepository.releaseAccount(accountId(0));
+        assertThat(promoted).isEqualTo(new Account(accountId(0), new BigDecimal(5)));
+        assertThat(promoted.getVersion()).isEqualTo(version);
+    }
+
+    @Test
+    void doesNotEvictLockedAccounts() throws Exception {
+        accountsRepository.lockAccount(accountId(0));
+        for (int i = 1; i < ACCOUNTS; i++) {
+            accountsRepository.getAccount(accountId(i));
+        }
+
+        // update is not lost, as the locked account stayed in memory
+        Account updated = accountsRepository.updateAccount(new Account(accountId(0), new BigDecimal(7)));
+        accountsRepository.releaseAccount(accountId(0));
+
+        assertThat(updated).isNotNull();
+        assertThat(accountsRepository.getAccount(accountId(0))).isEqualTo(new Account(accountId(0), new BigDecimal(7)));
+    }
+
+    @Test
+    void doesNotEvictAccountsWithHolds() throws Exception {
+        accountsRepository.authorizeHold(accountId(1), new BigDecimal(4), Duration.ofMinutes(1));
+        for (int i = 2; i < ACCOUNTS; i++) {
+            accountsRepository.getAccount(accountId(i));
+        }
+
+        assertThat(accountsRepository.getAccount(accountId(1)).getAvailableBalance()).isEqualByComparingTo("6");
+
+        clock.advance(Duration.ofMinutes(2));
+        assertThat(accountsRepository.releaseExpiredHolds()).isEqualTo(1);
+        assertThat(accountsRepository.getAccount(accountId(1)).getAvailableBalance()).isEqualByComparingTo("10");
+    }
+
+    @Test
+    void rejectsDuplicateOfEvictedAccount() {
+        assertThatThrownBy(() -> accountsRepository.createAccount(new Account(accountId(0), BigDecimal.ONE)))
+                .isInstanceOf(DuplicateAccountIdException.class);
+        assertThat(accountsRepository.getAccount(accountId(0))).isEqualTo(new Account(accountId(0), BigDecimal.ZERO));
+    }
+
+    @Test
+    void failsToLockUnknownAccount() {
+        assertThatThrownBy(() -> accountsRepository.lockAccount("unknown-account"))
+                .isInstanceOf(NotExistingAccountException.class);
+    }
+
+    @Test
+    void findsAccountsByBalanceInBothTiers() {
+        assertThat(accountsRepository.getAccountsByBalance(new BigDecimal(30), null, true, 3))
+                .extracting(Account::getAccountId)
+                .containsExactly(accountId(19), accountId(18), accountId(17));
+        assertThat(accountsRepository.getAccountsByBalance(new BigDecimal(30), new BigDecimal(60), false, 10))
+                .extracting(Account::getAccountId)
+                .containsExactly(accountId(3), accountId(4), accountId(5), accountId(6));
+    }
+
+    @Test
+    void findsAccountsByBalanceWithoutPromotingThem() throws Exception {
+        Account account = accountsRepository.lockAccount(accountId(0));
+        accountsRepository.updateAccount(account.credit(new BigDecimal(500)));
+        accountsRepository.releaseAccount(accountId(0));
+        for (int i = 1; i < ACCOUNTS; i++) {
+            accountsRepository.getAccount(accountId(i));
+        }
+        int hotAccounts = accountsRepository.getHotAccounts();
+
+        assertThat(accountsRepository.getAccountsByBalance(null, null, true, 2))
+                .containsExactly(new Account(accountId(0), new BigDecimal(500)),
+                        new Account(accountId(19), new BigDecimal(190)));
+        assertThat(accountsRepository.getHotAccounts()).isEqualTo(hotAccounts);
+    }
+
+    @Test
+    void passesAccountsOfBothTiersOnce() throws Exception {
+        Account account = accountsRepository.lockAccount(accountId(0));
+        accountsRepository.updateAccount(account.credit(new BigDecimal(5)));
+        accountsRepository.releaseAccount(accountId(0));
+
+        List<Account> accounts = new ArrayList<>();
+        accountsRepository.forEachAccount(accounts::add);
+
+        assertThat(accounts).hasSize(ACCOUNTS);
+        assertThat(accounts).contains(new Account(accountId(0), new BigDecimal(5)),
+                new Account(accountId(19), new BigDecimal(190)));
+    }
+
+    @Test
+    void countsHistoryInMemoryBudget() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            Account account = accountsRepository.lockAccount(accountId(0));
+            accountsRepository.updateAccount(account.credit(BigDecimal.ONE));
+            accountsRepository.releaseAccount(accountId(0));
+        }
+
+        assertThat(accountsRepository.getHotAccounts()).isLessThan(MAX_HOT_ACCOUNTS);
+        assertThat(accountsRepository.getAccount(accountId(0)).getBalance()).isEqualByComparingTo("4");
+    }
+
+    @Test
+    void countsEvictedAccountsInMemoryBudget() {
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accountsRepository.getAccount(accountId(i));
+        }
+
+        // slots of evicted accounts in the index of the file take the space of more than one hot account
+        assertThat(accountsRepository.getHotAccounts()).isLessThan(MAX_HOT_ACCOUNTS - 1);
+        assertThat(accountsRepository.getHotAccounts() + accountsRepository.getColdAccounts())
+                .isGreaterThanOrEqualTo(ACCOUNTS);
+    }
+
+    @Test
+    void doesNotRetainStatesOfEvictedAccounts() throws Exception {
+        Instant created = clock.instant();
+        clock.advance(Duration.ofMinutes(1));
+
+        assertThat(accountsRepository.getAccount(accountId(0), clock.instant()))
+                .isEqualTo(new Account(accountId(0), BigDecimal.ZERO));
+        assertThatThrownBy(() -> accountsRepository.getAccount(accountId(0), created))
+                .isInstanceOf(StateNotRetainedException.class);
+        assertThat(accountsRepository.getAccount("unknown-account", created)).isNull();
+    }
+
+    @Test
+    void keepsChecksumsOfBothTiers() throws Exception {
+        Account account = accountsRepository.lockAccount(accountId(0));
+        accountsRepository.updateAccount(account.credit(new BigDecimal(5)));
+        accountsRepository.releaseAccount(accountId(0));
+        for (int i = 1; i < ACCOUNTS; i++) {
+            accountsRepository.getAccount(accountId(i));
+        }
+
+        AccountsRepositoryInMemory expected = new AccountsRepositoryInMemory();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            expected.createAccount(new Account(accountId(i), new BigDecimal(i == 0 ? 5 : i * 10)));
+        }
+        assertThat(accountsRepository.getChecksums().getChecksum(""))
+                .isEqualTo(expected.getChecksums().getChecksum(""));
+
+        for (int i = 0; i < ACCOUNTS; i++) {
+            int bucket = AccountChecksums.bucket(accountId(i));
+            assertThat(accountsRepository.getChecksumBucket(bucket))
+                    .containsExactlyInAnyOrder(expected.getChecksumBucket(bucket).toArray());
+        }
+    }
+
+    @Test
+    void clearsBothTiers() {
+        accountsRepository.clearAccounts();
+
+        assertThat(accountsRepository.getAccount(accountId(0))).isNull();
+        assertThat(accountsRepository.getColdAccounts()).isZero();
+        assertThat(accountsRepository.getChecksums().getChecksum("")).isZero();
+        accountsRepository.createAccount(new Account(accountId(0), BigDecimal.ONE));
+    }
+
+    @Test
+    void closesEvictedAccount() throws Exception {
+        accountsRepository.closeAccount(accountId(0));
+
+        // not promoted from the cold store again
+        assertThat(accountsRepository.getAccount(accountId(0))).isNull();
+        assertThatThrownBy(() -> accountsRepository.lockAccount(accountId(0)))
+                .isInstanceOf(NotExistingAccountException.class);
+        assertThatThrownBy(() -> accountsRepository.closeAccount(accountId(1)))
+                .isInstanceOf(InvalidAccountChangeException.class);
+        for (int i = 1; i < ACCOUNTS; i++) {
+            assertThat(accountsRepository.getAccount(accountId(i)).getBalance()).isEqualByComparingTo(
+                    new BigDecimal(i * 10));
+        }
+        accountsRepository.createAccount(new Account(accountId(0), BigDecimal.ONE));
+    }
+
+    @Test
+    void conservesBalancesWhileAccountsAreEvicted() throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int thread = 0; thread < 8; thread++) {
+            Random random = new Random(thread);
+            workers.add(executorService.submit(() -> {
+                for (int i = 0; i < 2_000; i++) {
+                    int from = random.nextInt(ACCOUNTS);
+                    int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+                    transfer(Math.min(from, to), Math.max(from, to), from < to, random.nextInt(20));
+                }
+                return null;
+            }));
+        }
+        for (Future<?> worker : workers) {
+            worker.get(30, TimeUnit.SECONDS);
+        }
+        executorService.shutdown();
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < ACCOUNTS; i++) {
+            Account account = accountsRepository.getAccount(accountId(i));
+            assertThat(account.getBalance().signum()).isGreaterThanOrEqualTo(0);
+            total = total.add(account.getBalance());
+        }
+        assertThat(total).isEqualTo(new BigDecimal(10 * ACCOUNTS * (ACCOUNTS - 1) / 2));
+    }
+
+    /**
+     * Moves amount between accounts locked in id order, unless the debit account has insufficient funds.
+     */
+    private void transfer(int first, int second, boolean debitFirst, int amount) throws Exception {
+        Account firstAccount = accountsRepository.lockAccount(accountId(first));
+        try {
+            Account secondAccount = accountsRepository.lockAccount(accountId(second));
+            try {
+                Account debitAccount = debitFirst ? firstAccount : secondAccount;
+                Account creditAccount = debitFirst ? secondAccount : firstAccount;
+                if (debitAccount.hasFunds(new BigDecimal(amount))) {
+                    accountsRepository.updateAccount(debitAccount.debit(new BigDecimal(amount)));
+                    accountsRepository.updateAccount(creditAccount.credit(new BigDecimal(amount)));
+                }
+            } finally {
+                accountsRepository.releaseAccount(accountId(second));
+            }
+        } finally {
+            accountsRepository.releaseAccount(accountId(first));
+        }
+    }
+
+    // zero padded, so that id order is numeric order
+    private static String accountId(int account) {
+        return String.format("account-%02d", account);
+    }
+}
@@ -0,0 +1,65 @@
+package com.dws.challenge.scheduling;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HierarchicalTimingWheelTest {
+
+    @Test
+    void expiresTimersAtTheirDeadline() {
+        long startTick = (1L << 24) - 3;
+        HierarchicalTimingWheel<long[]> wheel = new HierarchicalTimingWheel<>(startTick);
+        Random random = new Random(42);
+
+        List<long[]> timers = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            long deadline = startTick + 1 + random.nextInt(i % 2 == 0 ? 300 : 300_000);
+            long[] timer = {deadline, -1};
+            timers.add(timer);
+            wheel.schedule(deadline, timer);
+        }
+
+        long tick = startTick;
+        while (wheel.size() > 0) {
+            tick += 1 + random.nextInt(50);
+            wheel.advanceTo(tick, timer -> {
+                assertThat(timer[1]).isEqualTo(-1);
+                timer[1] = wheel.getCurrentTick();
+            });
+        }
+
+        timers.forEach(timer -> assertThat(timer[1]).isEqualTo(timer[0]));
+    }
+
+    @Test
+    void doesNotExpireCancelledTimers() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(0);
+        HierarchicalTimingWheel.Timer<String> cancelled = wheel.schedule(1_000, "cancelled");
+        wheel.schedule(1_000, "expired");
+
+        assertThat(wheel.cancel(cancelled)).isTrue();
+        assertThat(wheel.cancel(cancelled)).isFalse();
+
+        List<String> expired = new ArrayList<>();
+        wheel.advanceTo(1_000, expired::add);
+
+        assertThat(expired).containsExactly("expired");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void expiresPastDeadlinesOnNextTick() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(100);
+        wheel.schedule(10, "overdue");
+
+        List<String> expired = new ArrayList<>();
+        wheel.advanceTo(101, expired::add);
+
+        assertThat(expired).containsExactly("overdue");
+    }
+}
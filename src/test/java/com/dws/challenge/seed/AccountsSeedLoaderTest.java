@@ -0,0 +1,83 @@
+package com.dws.challenge.seed;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AccountsSeedLoaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final AccountsRepositoryInMemory accountsRepository = new AccountsRepositoryInMemory();
+
+    @Test
+    void loadsAccountsFromCsv() throws Exception {
+        Path seedFile = seedFile("accountId,balance\r\nId-1,10.50\r\n\n  Id-2 , 7 \n"
+                + "Id-3,123456789012345678901234.5\nId-4,0");
+
+        AccountsSeedLoader loader = new AccountsSeedLoader(accountsRepository, seedFile.toString(), 2, 2, 1000);
+        loader.load();
+
+        assertThat(loader.getLoadedAccounts()).isEqualTo(4);
+        assertThat(accountsRepository.getAccount("Id-1")).isEqualTo(new Account("Id-1", new BigDecimal("10.50")));
+        assertThat(accountsRepository.getAccount("Id-2")).isEqualTo(new Account("Id-2", new BigDecimal(7)));
+        assertThat(accountsRepository.getAccount("Id-3").getBalance())
+                .isEqualTo(new BigDecimal("123456789012345678901234.5"));
+        assertThat(accountsRepository.getAccount("Id-4").getBalance()).isEqualTo(BigDecimal.ZERO);
+        assertThat(accountsRepository.getAccount("accountId")).isNull();
+    }
+
+    @Test
+    void loadsLargeFileInParallelChunks() throws Exception {
+        StringBuilder content = new StringBuilder();
+        int accounts = 200_000;
+        for (int i = 0; i < accounts; i++) {
+            content.append("account-").append(i).append(',').append(i % 1000).append(".25\n");
+        }
+        Path seedFile = seedFile(content.toString());
+
+        AccountsSeedLoader loader = new AccountsSeedLoader(accountsRepository, seedFile.toString(), 4, 1000, 1000);
+        loader.load();
+
+        assertThat(loader.getLoadedAccounts()).isEqualTo(accounts);
+        for (int i = 0; i < accounts; i += 997) {
+            assertThat(accountsRepository.getAccount("account-" + i).getBalance())
+                    .isEqualTo(new BigDecimal((i % 1000) + ".25"));
+        }
+    }
+
+    @Test
+    void failsOnMalformedLine() throws Exception {
+        Path seedFile = seedFile("Id-1,10\nId-2,-5\n");
+
+        assertThatThrownBy(() -> new AccountsSeedLoader(accountsRepository, seedFile.toString(), 1, 10, 1000).load())
+                .isInstanceOf(IllegalStateException.class)
+                .hasRootCauseMessage("Malformed seed line at byte 13: balance is not a positive decimal number");
+    }
+
+    @Test
+    void failsOnDuplicateAccount() throws Exception {
+        Path seedFile = seedFile("Id-1,10\nId-2,5\nId-1,3\n");
+
+        assertThatThrownBy(() -> new AccountsSeedLoader(accountsRepository, seedFile.toString(), 1, 10, 1000).load())
+                .isInstanceOf(IllegalStateException.class)
+                .hasCauseInstanceOf(DuplicateAccountIdException.class);
+    }
+
+    private Path seedFile(String content) throws Exception {
+        Path seedFile = tempDir.resolve("accounts.csv");
+        Files.write(seedFile, content.getBytes(StandardCharsets.UTF_8));
+        return seedFile;
+    }
+}
@@ -0,0 +1,138 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.Account;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BalanceChangePublisherTest {
+
+    @Test
+    void deliversChangesOfSubscribedAccounts() {
+        BalanceChangePublisher publisher = new BalanceChangePublisher(Runnable::run);
+        List<Account> received = new ArrayList<>();
+        publisher.subscribe(Set.of("account-1"), received::addAll);
+
+        publisher.publish(new Account("account-1", new BigDecimal(10)));
+        publisher.publish(new Account("account-2", new BigDecimal(20)));
+
+        assertThat(received).containsExactly(new Account("account-1", new BigDecimal(10)));
+    }
+
+    @Test
+    void stopsDeliveringAfterUnsubscribe() {
+        BalanceChangePublisher publisher = new BalanceChangePublisher(Runnable::run);
+        List<Account> received = new ArrayList<>();
+        BalanceChangePublisher.Subscription subscription = publisher.subscribe(Set.of("account-1"), received::addAll);
+
+        publisher.unsubscribe(subscription);
+        publisher.publish(new Account("account-1", new BigDecimal(10)));
+
+        assertThat(received).isEmpty();
+    }
+
+    @Test
+    void deliversRemovalAndForgetsDeliveredVersions() {
+        BalanceChangePublisher publisher = new BalanceChangePublisher(Runnable::run);
+        RecordingSink sink = new RecordingSink();
+        publisher.subscribe(Set.of("account-1"), sink);
+
+        publisher.publish(new Account("account-1", new BigDecimal(10), BigDecimal.ZERO, 2));
+        publisher.accountsRemoved(List.of("account-1", "account-2"));
+        publisher.publish(new Account("account-1", new BigDecimal(20), BigDecimal.ZERO, 1));
+
+        assertThat(sink.received).containsExactly(
+                new Account("account-1", new BigDecimal(10), BigDecimal.ZERO, 2),
+                "account-1",
+                new Account("account-1", new BigDecimal(20), BigDecimal.ZERO, 1));
+    }
+
+    @Test
+    void dropsChangePendingBeforeRemoval() {
+        List<Runnable> scheduled = new ArrayList<>();
+        BalanceChangePublisher publisher = new BalanceChangePublisher(scheduled::add);
+        RecordingSink sink = new RecordingSink();
+        publisher.subscribe(Set.of("account-1"), sink);
+
+        publisher.publish(new Account("account-1", new BigDecimal(10), BigDecimal.ZERO, 2));
+        publisher.accountsRemoved(List.of("account-1"));
+        scheduled.forEach(Runnable::run);
+
+        assertThat(sink.received).containsExactly("account-1");
+    }
+
+    @Test
+    void dropsStatesOlderThanOfferedOrDeliveredOnes() {
+        BalanceChangePublisher publisher = new BalanceChangePublisher(Runnable::run);
+        List<Account> received = new ArrayList<>();
+        BalanceChangePublisher.Subscription subscription = publisher.subscribe(Set.of("account-1"), received::addAll);
+
+        publisher.publish(new Account("account-1", new BigDecimal(10), BigDecimal.ZERO, 2));
+        // initial state read before the change was published
+        subscription.offer(new Account("account-1", new BigDecimal(20), BigDecimal.ZERO, 1));
+        publisher.publish(new Account("account-1", new BigDecimal(5), BigDecimal.ZERO, 3));
+
+        assertThat(received).containsExactly(
+                new Account("account-1", new BigDecimal(10), BigDecimal.ZERO, 2),
+                new Account("account-1", new BigDecimal(5), BigDecimal.ZERO, 3));
+    }
+
+    @Test
+    void coalescesChangesForSlowSubscriber() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        BalanceChangePublisher publisher = new BalanceChangePublisher(executor);
+
+        CountDownLatch firstSendStarted = new CountDownLatch(1);
+        CountDownLatch slowSubscriber = new CountDownLatch(1);
+        List<List<Account>> received = new CopyOnWriteArrayList<>();
+        publisher.subscribe(Set.of("account-1", "account-2"), changes -> {
+            firstSendStarted.countDown();
+            try {
+                slowSubscriber.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            received.add(changes);
+        });
+
+        publisher.publish(new Account("account-1", new BigDecimal(0)));
+        assertThat(firstSendStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        for (int i = 1; i <= 1000; i++) {
+            publisher.publish(new Account("account-1", new BigDecimal(i)));
+            publisher.publish(new Account("account-2", new BigDecimal(-i)));
+        }
+        slowSubscriber.countDown();
+
+        executor.shutdown();
+        assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(received).hasSize(2);
+        assertThat(received.get(1)).containsExactlyInAnyOrder(
+                new Account("account-1", new BigDecimal(1000)),
+                new Account("account-2", new BigDecimal(-1000)));
+    }
+
+    private static class RecordingSink implements BalanceChangeSink {
+        private final List<Object> received = new ArrayList<>();
+
+        @Override
+        public void send(List<Account> accounts) {
+            received.addAll(accounts);
+        }
+
+        @Override
+        public void sendRemoved(List<String> accountIds) {
+            received.addAll(accountIds);
+        }
+    }
+}
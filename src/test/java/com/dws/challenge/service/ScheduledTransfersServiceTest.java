@@ -0,0 +1,164 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.MutableClock;
+import com.dws.challenge.domain.ScheduledTransfer;
+import com.dws.challenge.domain.ScheduledTransferRequest;
+import com.dws.challenge.domain.TransferRequest;
+import com.dws.challenge.exception.TransferRejectedException;
+import com.dws.challenge.scheduling.ScheduledTransfersJournal;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+public class ScheduledTransfersServiceTest {
+
+    private static final TransferRequest TRANSFER = TransferRequest.builder()
+            .accountFromId("account-1")
+            .accountToId("account-2")
+            .amount(new BigDecimal("12.50"))
+            .build();
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2023-01-01T00:00:00Z"));
+
+    private TransfersService transfersService;
+
+    @BeforeEach
+    void beforeEach() {
+        transfersService = mock(TransfersService.class);
+    }
+
+    @Test
+    void executesTransferWhenDue() throws Exception {
+        ScheduledTransfersService service = new ScheduledTransfersService(transfersService, clock, 100, 10, null);
+        service.schedule(request(clock.instant().plusSeconds(60), null));
+
+        clock.advance(Duration.ofSeconds(59));
+        service.executeDueTransfers();
+        verify(transfersService, never()).transfer(any(TransferRequest.class));
+
+        clock.advance(Duration.ofSeconds(1));
+        service.executeDueTransfers();
+        verify(transfersService).transfer(TRANSFER);
+        assertThat(service.getPendingCount()).isZero();
+    }
+
+    @Test
+    void repeatsRecurringTransfer() throws Exception {
+        ScheduledTransfersService service = new ScheduledTransfersService(transfersService, clock, 100, 10, null);
+        service.schedule(request(clock.instant().plusSeconds(10), Duration.ofSeconds(10)));
+
+        for (int i = 0; i < 3; i++) {
+            clock.advance(Duration.ofSeconds(10));
+            service.executeDueTransfers();
+        }
+
+        verify(transfersService, times(3)).transfer(TRANSFER);
+        assertThat(service.getPendingCount()).isEqualTo(1);
+    }
+
+    @Test
+    void doesNotExecuteCancelledTransfer() throws Exception {
+        ScheduledTransfersService service = new ScheduledTransfersService(transfersService, clock, 100, 10, null);
+        ScheduledTransfer transfer = service.schedule(request(clock.instant().plusSeconds(10), null));
+
+        assertThat(service.cancel(transfer.getId())).isTrue();
+        assertThat(service.cancel(transfer.getId())).isFalse();
+
+        clock.advance(Duration.ofSeconds(10));
+        service.executeDueTransfers();
+        verify(transfersService, never()).transfer(any(TransferRequest.class));
+    }
+
+    @Test
+    void restoresPendingTransfersFromJournal(@TempDir Path directory) throws Exception {
+        Path journalPath = directory.resolve("scheduled-transfers.journal");
+
+        ScheduledTransfersService service = new ScheduledTransfersService(transfersService, clock, 100, 10,
+                new ScheduledTransfersJournal(journalPath));
+        service.restore();
+        service.schedule(request(clock.instant().plusSeconds(10), null));
+        ScheduledTransfer cancelled = service.schedule(request(clock.instant().plusSeconds(10), null));
+        service.cancel(cancelled.getId());
+        service.stop();
+
+        ScheduledTransfersService restarted = new ScheduledTransfersService(transfersService, clock, 100, 10,
+                new ScheduledTransfersJournal(journalPath));
+        restarted.restore();
+        assertThat(restarted.getPendingCount()).isEqualTo(1);
+
+        clock.advance(Duration.ofSeconds(10));
+        restarted.executeDueTransfers();
+        verify(transfersService).transfer(TRANSFER);
+        restarted.stop();
+    }
+
+    @Test
+    void doesNotExecuteTransferAgainAfterCrashDuringExecution(@TempDir Path directory) throws Exception {
+        Path journalPath = directory.resolve("scheduled-transfers.journal");
+        Path crashedJournalPath = directory.resolve("crashed.journal");
+        doAnswer(invocation -> {
+            // journal as a crash would leave it while the transfer executes
+            Files.copy(journalPath, crashedJournalPath);
+            return null;
+        }).when(transfersService).transfer(TRANSFER);
+
+        ScheduledTransfersService service = new ScheduledTransfersService(transfersService, clock, 100, 10,
+                new ScheduledTransfersJournal(journalPath));
+        service.restore();
+        service.schedule(request(clock.instant().plusSeconds(10), null));
+        clock.advance(Duration.ofSeconds(10));
+        service.executeDueTransfers();
+        service.stop();
+
+        ScheduledTransfersService restarted = new ScheduledTransfersService(transfersService, clock, 100, 10,
+                new ScheduledTransfersJournal(crashedJournalPath));
+        restarted.restore();
+        assertThat(restarted.getPendingCount()).isZero();
+        restarted.stop();
+    }
+
+    @Test
+    void retriesThrottledTransferOnNextTick(@TempDir Path directory) throws Exception {
+        Path journalPath = directory.resolve("scheduled-transfers.journal");
+        when(transfersService.transfer(TRANSFER))
+                .thenThrow(new TransferRejectedException("Too many transfers in progress", Duration.ofSeconds(1)))
+                .thenReturn(null);
+
+        ScheduledTransfersService service = new ScheduledTransfersService(transfersService, clock, 100, 10,
+                new ScheduledTransfersJournal(journalPath));
+        service.restore();
+        service.schedule(request(clock.instant().plusSeconds(10), null));
+        clock.advance(Duration.ofSeconds(10));
+        service.executeDueTransfers();
+        assertThat(service.getPendingCount()).isEqualTo(1);
+
+        clock.advance(Duration.ofMillis(100));
+        service.executeDueTransfers();
+        verify(transfersService, times(2)).transfer(TRANSFER);
+        assertThat(service.getPendingCount()).isZero();
+        service.stop();
+
+        ScheduledTransfersService restarted = new ScheduledTransfersService(transfersService, clock, 100, 10,
+                new ScheduledTransfersJournal(journalPath));
+        restarted.restore();
+        assertThat(restarted.getPendingCount()).isZero();
+        restarted.stop();
+    }
+
+    private static ScheduledTransferRequest request(Instant executeAt, Duration repeatInterval) {
+        return ScheduledTransferRequest.builder()
+                .transfer(TRANSFER)
+                .executeAt(executeAt)
+                .repeatInterval(repeatInterval)
+                .build();
+    }
+}
@@ -0,0 +1,99 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.MutableClock;
+import com.dws.challenge.domain.AccountTransferStats;
+import com.dws.challenge.domain.TransferRequest;
+import com.dws.challenge.domain.TransferStats;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TransferStatsCollectorTest {
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2023-01-01T00:00:00Z"));
+    private final TransferStatsCollector collector = new TransferStatsCollector(clock);
+
+    @Test
+    void keepsStatsForEachWindow() {
+        collector.recordTransfer(transfer("account-1", "account-2", "10.5"), true, 2_000);
+        clock.advance(Duration.ofMinutes(3));
+        collector.recordTransfer(transfer("account-1", "account-2", "20"), true, 4_000);
+        collector.recordTransfer(transfer("account-1", "account-2", "500"), false, 6_000);
+
+        List<TransferStats> windows = collector.getStats("account-1").getWindows();
+        assertThat(windows).extracting(TransferStats::getWindow).containsExactly("1m", "5m", "1h");
+        assertThat(windows).extracting(TransferStats::getTransfers).containsExactly(1L, 2L, 2L);
+        assertThat(windows).extracting(TransferStats::getFailures).containsExactly(1L, 1L, 1L);
+        assertThat(windows).extracting(TransferStats::getDebitVolume).containsExactly(20.0, 30.5, 30.5);
+        assertThat(windows).extracting(TransferStats::getCreditVolume).containsExactly(0.0, 0.0, 0.0);
+        assertThat(windows.get(0).getAverageLockWaitMicros()).isEqualTo(5.0);
+        assertThat(windows.get(2).getAverageLockWaitMicros()).isEqualTo(4.0);
+
+        assertThat(collector.getStats("account-2").getWindows())
+                .extracting(TransferStats::getCreditVolume).containsExactly(20.0, 30.5, 30.5);
+    }
+
+    @Test
+    void forgetsTransfersOutsideOfWindow() {
+        collector.recordTransfer(transfer("account-1", "account-2", "10"), true, 0);
+
+        clock.advance(Duration.ofSeconds(65));
+        assertThat(collector.getStats("account-1").getWindows())
+                .extracting(TransferStats::getTransfers).containsExactly(0L, 1L, 1L);
+
+        clock.advance(Duration.ofMinutes(59));
+        assertThat(collector.getStats("account-1").getWindows())
+                .extracting(TransferStats::getTransfers).containsExactly(0L, 0L, 0L);
+
+        collector.evictIdleAccounts();
+        collector.recordTransfer(transfer("account-3", "account-4", "10"), true, 0);
+        assertThat(collector.getBusiest(TransferStatsCollector.Window.ONE_HOUR, 10))
+                .extracting(AccountTransferStats::getAccountId).containsExactlyInAnyOrder("account-3", "account-4");
+    }
+
+    @Test
+    void reusesBucketsOfPreviousRotation() {
+        collector.recordTransfer(transfer("account-1", "account-2", "10"), true, 0);
+        clock.advance(Duration.ofHours(1));
+        collector.recordTransfer(transfer("account-1", "account-2", "10"), true, 0);
+
+        assertThat(collector.getStats("account-1").getWindows())
+                .extracting(TransferStats::getTransfers).containsExactly(1L, 1L, 1L);
+    }
+
+    @Test
+    void listsBusiestAccounts() {
+        for (int i = 0; i < 5; i++) {
+            collector.recordTransfer(transfer("account-1", "account-2", "1"), true, 0);
+        }
+        for (int i = 0; i < 3; i++) {
+            collector.recordTransfer(transfer("account-3", "account-1", "1"), true, 0);
+        }
+        collector.recordTransfer(transfer("account-4", "account-5", "1"), false, 0);
+
+        List<AccountTransferStats> busiest = collector.getBusiest(TransferStatsCollector.Window.ONE_MINUTE, 3);
+
+        assertThat(busiest).extracting(AccountTransferStats::getAccountId)
+                .containsExactly("account-1", "account-2", "account-3");
+        assertThat(busiest.get(0).getWindows()).extracting(TransferStats::getTransfers).containsExactly(8L);
+    }
+
+    @Test
+    void returnsEmptyStatsOfUnknownAccount() {
+        assertThat(collector.getStats("unknown").getWindows())
+                .extracting(TransferStats::getTransfers).containsExactly(0L, 0L, 0L);
+    }
+
+    private static TransferRequest transfer(String from, String to, String amount) {
+        return TransferRequest.builder()
+                .accountFromId(from)
+                .accountToId(to)
+                .amount(new BigDecimal(amount))
+                .build();
+    }
+}
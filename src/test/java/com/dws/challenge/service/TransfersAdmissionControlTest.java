@@ -0,0 +1,75 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.exception.TransferRejectedException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TransfersAdmissionControlTest {
+
+    @Test
+    void rejectsTransfersOverAccountLimit() throws TransferRejectedException {
+        TransfersAdmissionControl admissionControl = new TransfersAdmissionControl(50, 10, 10, 1, 1, 60_000);
+
+        TransfersAdmissionControl.Admission admission = admissionControl.admit("account-1", "account-2");
+
+        assertThatThrownBy(() -> admissionControl.admit("account-1", "account-3"))
+                .isInstanceOf(TransferRejectedException.class)
+                .hasMessage("Too many transfers in progress for account")
+                .satisfies(e -> assertThat(((TransferRejectedException) e).getRetryAfter())
+                        .isGreaterThanOrEqualTo(Duration.ofSeconds(1)));
+        assertThatThrownBy(() -> admissionControl.admit("account-3", "account-2"))
+                .isInstanceOf(TransferRejectedException.class);
+
+        // rejected transfer must not leak its admission of the other account
+        admissionControl.admit("account-3", "account-4").release();
+
+        admission.release();
+        admissionControl.admit("account-1", "account-3").release();
+    }
+
+    @Test
+    void rejectsTransfersOverNodeLimit() throws TransferRejectedException {
+        TransfersAdmissionControl admissionControl = new TransfersAdmissionControl(50, 1, 1, 10, 10, 60_000);
+
+        TransfersAdmissionControl.Admission admission = admissionControl.admit("account-1", "account-2");
+
+        assertThatThrownBy(() -> admissionControl.admit("account-3", "account-4"))
+                .isInstanceOf(TransferRejectedException.class)
+                .hasMessage("Too many transfers in progress");
+
+        admission.release();
+        admissionControl.admit("account-3", "account-4").release();
+    }
+
+    @Test
+    void reducesLimitWhenLatencyExceedsTarget() throws Exception {
+        TransfersAdmissionControl admissionControl = new TransfersAdmissionControl(1, 2, 100, 10, 10, 60_000);
+
+        TransfersAdmissionControl.Admission admission = admissionControl.admit("account-1", "account-2");
+        Thread.sleep(10);
+        admission.release();
+
+        assertThat(admissionControl.getNodeLimit()).isLessThan(100);
+    }
+
+    @Test
+    void keepsAccountLimitUntilAccountIsIdle() throws Exception {
+        TransfersAdmissionControl admissionControl = new TransfersAdmissionControl(1, 2, 100, 2, 10, 60_000);
+
+        TransfersAdmissionControl.Admission admission = admissionControl.admit("account-1", "account-2");
+        Thread.sleep(10);
+        admission.release();
+        int learnedLimit = admissionControl.getAccountLimit("account-1");
+        assertThat(learnedLimit).isLessThan(10);
+
+        admissionControl.evictIdleAccounts(System.nanoTime());
+        assertThat(admissionControl.getAccountLimit("account-1")).isEqualTo(learnedLimit);
+
+        admissionControl.evictIdleAccounts(System.nanoTime() + Duration.ofMinutes(1).toNanos());
+        assertThat(admissionControl.getAccountLimit("account-1")).isEqualTo(10);
+    }
+}
@@ -0,0 +1,90 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.MutableClock;
+import com.dws.challenge.domain.TransferRequest;
+import com.dws.challenge.exception.TransferRejectedException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class VelocityLimitCheckTest {
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2023-01-01T00:00:00Z"));
+    private final VelocityLimitCheck check = new VelocityLimitCheck(clock, 60_000, 3, new BigDecimal(100));
+
+    @Test
+    void limitsNumberOfTransfersFromAccount() throws TransferRejectedException {
+        check.check(transfer("account-1", "1"));
+        check.check(transfer("account-1", "1"));
+        check.check(transfer("account-1", "1"));
+
+        clock.advance(Duration.ofSeconds(15));
+        assertThatThrownBy(() -> check.check(transfer("account-1", "1")))
+                .isInstanceOf(TransferRejectedException.class)
+                .hasMessage("Transfer velocity limit reached for account")
+                .satisfies(e -> assertThat(((TransferRejectedException) e).getRetryAfter())
+                        .isEqualTo(Duration.ofSeconds(45)));
+
+        // other accounts have their own limits
+        check.check(transfer("account-2", "1"));
+    }
+
+    @Test
+    void limitsAmountOfTransfersFromAccount() throws TransferRejectedException {
+        check.check(transfer("account-1", "60"));
+
+        assertThatThrownBy(() -> check.check(transfer("account-1", "40.01")))
+                .isInstanceOf(TransferRejectedException.class);
+        check.check(transfer("account-1", "40"));
+    }
+
+    @Test
+    void slidesWindowOverPreviousWindow() throws TransferRejectedException {
+        check.check(transfer("account-1", "30"));
+        check.check(transfer("account-1", "30"));
+        check.check(transfer("account-1", "30"));
+
+        // a third of the previous window is still within the sliding window
+        clock.advance(Duration.ofSeconds(100));
+        check.check(transfer("account-1", "30"));
+        check.check(transfer("account-1", "30"));
+        assertThatThrownBy(() -> check.check(transfer("account-1", "1")))
+                .isInstanceOf(TransferRejectedException.class);
+
+        clock.advance(Duration.ofSeconds(20));
+        check.check(transfer("account-1", "30"));
+    }
+
+    @Test
+    void forgetsFailedTransfers() throws TransferRejectedException {
+        TransferRequest transfer = transfer("account-1", "100");
+        check.check(transfer);
+        check.transferFailed(transfer);
+
+        check.check(transfer("account-1", "100"));
+    }
+
+    @Test
+    void evictsIdleAccounts() throws TransferRejectedException {
+        check.check(transfer("account-1", "100"));
+
+        clock.advance(Duration.ofMinutes(2));
+        check.evictIdleAccounts();
+        check.transferFailed(transfer("account-1", "100"));
+
+        check.check(transfer("account-1", "100"));
+    }
+
+    private static TransferRequest transfer(String from, String amount) {
+        return TransferRequest.builder()
+                .accountFromId(from)
+                .accountToId("account-9")
+                .amount(new BigDecimal(amount))
+                .build();
+    }
+}
@@ -0,0 +1,108 @@
+package com.dws.challenge.traffic;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.MultiLegTransferRequest;
+import com.dws.challenge.domain.TransferLeg;
+import com.dws.challenge.domain.TransferRequest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TrafficRecorderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void recordsTrafficInOrder() throws IOException {
+        Path trace = tempDir.resolve("traffic.trace");
+        TrafficRecorder recorder = new TrafficRecorder(trace);
+        recorder.recordAccountCreation(new Account("Id-1", new BigDecimal("100.50")));
+        recorder.recordTransfer(TransferRequest.builder()
+                .accountFromId("Id-1")
+                .accountToId("Id-2")
+                .amount(new BigDecimal("-12345678901234567890.123"))
+                .build());
+        recorder.recordAccountCreation(new Account("Id-2", null));
+        recorder.recordMultiLegTransfer(MultiLegTransferRequest.builder()
+                .accountFromId("Id-2")
+                .legs(Arrays.asList(
+                        TransferLeg.builder().accountToId("Id-1").amount(new BigDecimal("1.5")).build(),
+                        null,
+                        TransferLeg.builder().accountToId("Id-3").build()))
+                .build());
+        recorder.close();
+
+        try (TrafficTraceReader reader = new TrafficTraceReader(trace)) {
+            TraceRecord first = reader.next();
+            assertThat(first.getAccount().getAccountId()).isEqualTo("Id-1");
+            assertThat(first.getAccount().getBalance()).isEqualTo(new BigDecimal("100.50"));
+            assertThat(first.getTransfer()).isNull();
+
+            TraceRecord second = reader.next();
+            assertThat(second.getAccount()).isNull();
+            assertThat(second.getTransfer().getAccountFromId()).isEqualTo("Id-1");
+            assertThat(second.getTransfer().getAccountToId()).isEqualTo("Id-2");
+            assertThat(second.getTransfer().getAmount()).isEqualTo(new BigDecimal("-12345678901234567890.123"));
+            assertThat(second.getOffsetNanos()).isGreaterThanOrEqualTo(first.getOffsetNanos());
+
+            TraceRecord third = reader.next();
+            assertThat(third.getAccount().getAccountId()).isEqualTo("Id-2");
+            assertThat(third.getAccount().getBalance()).isNull();
+            assertThat(third.getOffsetNanos()).isGreaterThanOrEqualTo(second.getOffsetNanos());
+
+            TraceRecord fourth = reader.next();
+            assertThat(fourth.getAccount()).isNull();
+            assertThat(fourth.getTransfer()).isNull();
+            assertThat(fourth.getMultiLegTransfer().getAccountFromId()).isEqualTo("Id-2");
+            assertThat(fourth.getMultiLegTransfer().getLegs()).containsExactly(
+                    TransferLeg.builder().accountToId("Id-1").amount(new BigDecimal("1.5")).build(),
+                    null,
+                    TransferLeg.builder().accountToId("Id-3").build());
+
+            assertThat(reader.next()).isNull();
+        }
+    }
+
+    @Test
+    void dropsTornLastRecord() throws IOException {
+        Path trace = tempDir.resolve("traffic.trace");
+        TrafficRecorder recorder = new TrafficRecorder(trace);
+        recorder.recordAccountCreation(new Account("Id-1", BigDecimal.ONE));
+        recorder.recordAccountCreation(new Account("Id-2", BigDecimal.TEN));
+        recorder.close();
+
+        byte[] content = Files.readAllBytes(trace);
+        Files.write(trace, Arrays.copyOf(content, content.length - 1));
+
+        try (TrafficTraceReader reader = new TrafficTraceReader(trace)) {
+            assertThat(reader.next().getAccount().getAccountId()).isEqualTo("Id-1");
+            assertThat(reader.next()).isNull();
+        }
+    }
+
+    @Test
+    void rejectsFileWhichIsNotTrace() throws IOException {
+        Path trace = tempDir.resolve("other.file");
+        Files.write(trace, new byte[] {1, 2, 3, 4, 5});
+
+        assertThatThrownBy(() -> new TrafficTraceReader(trace)).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void ignoresTrafficWhenRecordingIsDisabled() {
+        TrafficRecorder recorder = new TrafficRecorder("");
+
+        recorder.recordAccountCreation(new Account("Id-1", BigDecimal.ONE));
+
+        assertThat(recorder.isRecording()).isFalse();
+    }
+}